@@ -4,7 +4,9 @@ import numeric
 from simplenode import SimpleNode
 from nef_core import Network
 import hrr
-from ca.nengo.model import Origin, StepListener
+from ca.nengo.model import Origin
+from ca.nengo.io import StepLog
+from java.io import File
 import stats.reader
 import os
 from ca.nengo.model.impl import NetworkArrayImpl
@@ -21,128 +23,27 @@ class LogOverride:
         cls.override_filename=filename
 
 
-class LogOrigin:
-    def __init__(self,name,origin):
-        self.name=name
-        self.origin=origin
-        self.init()
-    def init(self):
-        self.value=numeric.array([0]*self.length(),typecode='f')
-    def length(self):
-        return len(self.data())
-    def type(self):
-        return 'v<%d>'%self.length()
-    def data(self):
-        if isinstance(self.origin,list):
-            r=[]
-            for o in self.origin: r.extend(o.getValues().getValues())
-            return r
-        else:    
-            return self.origin.getValues().getValues()
-    def tick(self,dt):
-        self.value=self.data()
-    def text(self):
-        return ';'.join(['%1.3f'%x for x in self.value])
-    def flush(self):
-        pass    
- 
-
-class LogVector(LogOrigin):
-    def __init__(self,name,origin,tau):
-        LogOrigin.__init__(self,name,origin)
-        if tau<=0: tau=None
-        self.tau=tau
-    def init(self):
-        self.value=numeric.array([0]*self.length(),typecode='f')
-    def tick(self,dt):
-        if self.tau is None or dt is None:
-            self.value[:]=self.data()
-        else:    
-            self.value*=(1.0-dt/self.tau)
-            self.value+=numeric.array(self.data())*(dt/self.tau)    
-
-class LogVocab(LogVector):
+class LogVocab(StepLog.OriginEntry):
+    """Filtered vector values, written as the closest terms in a vocabulary."""
     def __init__(self,name,origin,tau,vocab,terms=None,pairs=True,threshold=0.1,normalize=False):
-        LogVector.__init__(self,name,origin,tau)
+        StepLog.OriginEntry.__init__(self,name,[origin],tau)
         self.vocab=vocab
         self.terms=terms
         self.pairs=pairs
         self.threshold=threshold
         self.normalize=normalize
-    def text(self):
-        return self.vocab.text(self.value,threshold=self.threshold,terms=self.terms,include_pairs=self.pairs,join=';',normalize=self.normalize)
-    def type(self):
-        return 'vocab'
-
-
-class LogSpikeCount(LogOrigin):
-    def __init__(self,name,origin,skip=0):
-        self.skip=skip
-        LogOrigin.__init__(self,name,origin)
-    def init(self):
-        self.value=numeric.array([0]*self.length(),typecode='d')
-    def length(self):
-        length=LogOrigin.length(self)
-        scale=1+self.skip
-        length2=length/scale
-        if length%scale>0: length2+=1
-        return length2
-    def type(self):
-        return 's<%d>'%self.length()
-    def tick(self,dt):
-        data=self.data()
-        if self.skip>0:
-            data=[data[i] for i in range(0,len(data),self.skip+1)]
-        for i,s in enumerate(data):
-            if s!=0: self.value[i]+=s
-    def text(self):
-        return ';'.join(['%d'%x for x in self.value])
-    def flush(self):
-        self.value[:]=0
+    def format(self,row,offset,out):
+        value=numeric.array([row[offset+i] for i in range(self.getLength())],typecode='f')
+        out.append(self.vocab.text(value,threshold=self.threshold,terms=self.terms,include_pairs=self.pairs,join=';',normalize=self.normalize))
 
 
-class LogTermination:
-    def __init__(self, name, termination):
-        self.name = name
-        self.termination = termination
-        self.init()
-    def init(self):
-        self.value = numeric.array([0] * self.length(), typecode='f')
-    def length(self):
-        return len(self.data())
-    def type(self):
-        return 'v<%d>' % self.length()
-    def data(self):
-        return self.termination.getInput().getValues()
-    def tick(self,dt):
-        self.value = self.data()
-    def text(self):
-        return ';'.join(['%1.5f' % x for x in self.value])
-    def flush(self):
-        pass
-
-class LogOutput(LogTermination):
-    def data(self):
-        if self.termination.getFilteredOutput() is None:
-            return self.termination.getTheta()
-        return self.termination.getFilteredOutput()
-    def text(self):
-        return ';'.join(['%.3e' % x for x in self.value])
-
-class LogTransform(LogTermination):
-    def data(self):
-        return numeric.ravel(self.termination.getTransform())
-    def text(self):
-        return ';'.join(['%.3e' % x for x in self.value])
-
-class LogTheta(LogTermination):
-    def data(self):
-        return self.termination.getTheta()
-    def text(self):
-        return ';'.join(['%.3e' % x for x in self.value])
-
+class Log(object):
+    """Logs values from a network to a CSV file as it runs.
 
-class Log(StepListener):
+    The values are read and written by ca.nengo.io.StepLog, which batches rows and writes them
+    from a background thread; this class finds the origins and terminations to log. With
+    auto_flush, each row is handed to the writer thread as soon as it is logged, so the file is
+    up to date even while a simulation is paused."""
     def __init__(self,network,name=None,dir=None,filename='%(name)s-%(time)s.csv',interval=0.001,tau=0.01, auto_flush=True):
         if not isinstance(network,Network):
             network=Network(network)
@@ -160,126 +61,77 @@ class Log(StepListener):
         self.filename_template=filename
         self.interval=interval
         self.tau=tau
-        self.t=None
         self.auto_flush = auto_flush
 
-        self.logs=[]
-        self.network.network.addStepListener(self)
-    
-    def init(self):
-        self.filename=self.make_filename()
-        for log in self.logs:
-            log.init()
-        self.next_time=0
-        self.write_header()
-
-    def make_filename(self):
-        t=time.strftime('%Y%m%d-%H%M%S')
-        fn=self.filename_template%dict(time=t,name=self.logname)
-        if self.dir is not None: 
-            fn='%s/%s'%(self.dir,fn)
+        if dir is None: directory=None
+        else: directory=File(dir)
+        self.log=StepLog(self.logname,directory,filename,interval)
+        self.log.setAutoFlush(auto_flush)
+        self.network.network.addStepListener(self.log)
+        self.network.network.simulator.addSimulatorListener(self.log)
 
-            #ensure directory exists
-            if not os.access(self.dir+'/',os.F_OK):
-                os.makedirs(self.dir)
-        return fn
-
-    def stepStarted(self, time):
-        if len(self.logs)==0: return
-        
-        if self.t is None or self.t>time:
-            self.init()
-            dt=None
-        else:
-            dt=time-self.t
-
-        #print 'step',self.t,time,self.next_time
-        
-        self.t=time
-        for log in self.logs:
-            log.tick(dt)
-        eps = 1e-10
-        if self.t + eps > self.next_time:            
-            self.next_time += self.interval
-            self.write_data()    
-            for log in self.logs:
-                log.flush()
+    def _get_filename(self):
+        f=self.log.getFile()
+        if f is None: return None
+        return f.getPath().replace('\\','/')
+    filename=property(_get_filename)
 
     def add_spikes(self,source,name=None,skip=0):    
         if name is None: name=source+'_spikes'
 
         node=self.network.get(source)
         if isinstance(node,Origin):
-            origin=node
+            origin=[node]
         elif isinstance(node,NetworkArrayImpl):
             origin=[n.getOrigin('AXON') for n in node.nodes]
         else:    
-            origin=node.getOrigin('AXON')
-        self.logs.append(LogSpikeCount(name,origin,skip=skip))
+            origin=[node.getOrigin('AXON')]
+        self.log.addEntry(StepLog.SpikeCountEntry(name,origin,skip))
 
     def add(self,source,name=None,tau='default',origin='X'):
         if name is None: name=source
         if tau=='default': tau=self.tau
+        if tau is None: tau=0
         node = self.network._get_node(source)
         _origin = node.getOrigin(origin)
-        self.logs.append(LogVector(name,_origin,tau))
+        self.log.addEntry(StepLog.OriginEntry(name,[_origin],tau))
     
     def add_transform(self,source,name=None,termination='input'):
         if name is None: name=source+":"+termination+"_weights"
         node = self.network._get_node(source)
         _termination = node.getTermination(termination)
-        self.logs.append(LogTransform(name,_termination))
+        self.log.addEntry(StepLog.TerminationEntry(name,_termination,StepLog.TerminationEntry.Kind.TRANSFORM))
     
     def add_theta(self,source,name=None,termination='input'):
         if name is None: name=source+":"+termination+"_theta"
         node = self.network._get_node(source)
         _termination = node.getTermination(termination)
-        self.logs.append(LogTheta(name,_termination))
+        self.log.addEntry(StepLog.TerminationEntry(name,_termination,StepLog.TerminationEntry.Kind.THETA))
     
     def add_output(self,source,name=None,termination='input'):
         if name is None: name=source+":"+termination+"_output"
         node = self.network._get_node(source)
         _termination = node.getTermination(termination)
-        self.logs.append(LogOutput(name,_termination))
+        self.log.addEntry(StepLog.TerminationEntry(name,_termination,StepLog.TerminationEntry.Kind.OUTPUT))
 
     def add_vocab(self,source,vocab=None,name=None,tau='default',terms=None,pairs=False,threshold=0.1,normalize=False):
         if name is None: name=source+'_vocab'
         if tau=='default': tau=self.tau
+        if tau is None: tau=0
         origin=self.network.get(source,require_origin=True)
         if vocab is None: 
             dim=origin.dimensions
             vocab=hrr.Vocabulary.defaults[dim]        
-        self.logs.append(LogVocab(name,origin,tau=tau,vocab=vocab,terms=terms,pairs=pairs,threshold=threshold,normalize=normalize))
-        
-    def write_header(self):
-        f=open(self.filename,'a')
-        #f.write('\n')
-        f.write('time,%s\n'%(','.join([log.name for log in self.logs])))
-        #f.write('    ,%s\n'%(','.join([log.type() for log in self.logs])))
-        f.close()
-        self.wrote_header=True
-        
-        
-    def write_data(self):
-        data=[log.text() for log in self.logs]
-        self.write('%1.3f,%s\n'%(self.t,','.join(data)))
-        
-    next_flush_time = None    
-    def write(self,text):
-        if self.auto_flush:
-            f=open(self.filename,'a')
-            f.write(text)
-            f.close()
-        else:
-            if not hasattr(self, 'logfile'):
-                self.logfile = open(self.filename,'a')    
-            self.logfile.write(text)
-            if self.next_flush_time is None or time.time() > self.next_flush_time:
-                self.logfile.flush()
-                self.next_flush_time = time.time() + 1.0
-                
+        self.log.addEntry(LogVocab(name,origin,tau=tau,vocab=vocab,terms=terms,pairs=pairs,threshold=threshold,normalize=normalize))
+
+    def flush(self):
+        self.log.flush()
+
+    def close(self):
+        self.log.close()
         
     def read(self):
+        self.flush()
         if '/' in self.filename:
             dir,fn=self.filename.rsplit('/',1)
         else:
@@ -296,30 +148,9 @@ class Log(StepListener):
         
 class TimelockedLog(Log):
     """
-    Log variant that
+    Log variant that writes a row every skipticks steps, rather than every interval
     """
     def __init__(self, skipticks=1, **kwargs):
         Log.__init__(self, **kwargs)
         self.skipticks = skipticks
-        self.skipticks_counter = 0
-
-    def stepStarted(self, time):
-        if len(self.logs)==0: return
-        
-        if self.t is None or self.t>time:
-            self.init()
-            dt=None
-        else:
-            dt=time-self.t
-
-        self.t = time
-        for log in self.logs:
-            log.tick(dt)
-
-        if self.skipticks_counter == 0:
-            self.write_data()    
-            for log in self.logs:
-                log.flush()
-
-        self.skipticks_counter = (self.skipticks_counter + 1) % self.skipticks
-           
+        self.log.setSkipTicks(skipticks)
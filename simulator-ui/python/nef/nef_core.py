@@ -1,6 +1,6 @@
 from ca.nengo.model.impl import NetworkImpl, NoiseFactory, FunctionInput, NetworkArrayImpl
 from ca.nengo.model import SimulationMode, Origin, Units, Termination, Network
-from ca.nengo.model.nef.impl import NEFEnsembleFactoryImpl
+from ca.nengo.model.nef.impl import NEFEnsembleFactoryImpl, EnsembleCache
 from ca.nengo.model.nef import NEFEnsemble
 from ca.nengo.model.neuron.impl import LIFNeuronFactory
 from ca.nengo.model.plasticity.impl import BCMTermination, hPESTermination, PESTermination, PreLearnTermination, STDPTermination, PlasticEnsembleImpl
@@ -24,6 +24,16 @@ import random
 import inspect
 import log
     
+_ensemble_cache=None
+def _get_ensemble_cache():
+    """Returns the cache used for quick mode, which is shared by all processes using this installation."""
+    global _ensemble_cache
+    if _ensemble_cache is None:
+        parent = os.path.dirname(__file__)
+        parent = os.path.join(parent[:parent.index("python")], "quick")
+        _ensemble_cache=EnsembleCache(java.io.File(parent), 1024*1024*1024)
+    return _ensemble_cache
+
 
 class Network:
     """Wraps a Nengo network with a set of helper functions for simplifying the creation of Nengo models.
@@ -161,36 +171,17 @@ class Network:
             quick=self.defaults['quick'] #load default quick value
             
         if quick:
-            parent = os.path.dirname(__file__)
-            parent = os.path.join(parent[:parent.index("python")], "quick")
-            storage_name='quick_%s_%d_%d_%1.3f_%1.3f'%(storage_code,neurons,dimensions,tau_rc,tau_ref)
-            if type(max_rate) is tuple and len(max_rate)==2:
-                storage_name+='_%1.1f_%1.1f'%max_rate
-            else:
-                storage_name+='_%08x'%hash(tuple(max_rate))
-            if type(intercept) is tuple and len(intercept)==2:
-                storage_name+='_%1.3f_%1.3f'%intercept
-            else:
-                storage_name+='_%08x'%hash(tuple(intercept))
-            if isinstance(radius,list):
-                storage_name+='_(%s)_%1.3f'%(''.join(['%1.3f'%x for x in radius]),decoder_noise)
-            else:
-                storage_name+='_%1.3f_%1.3f'%(radius,decoder_noise)
-            if encoders is not None:
-                storage_name+='_enc%08x'%hash(tuple([tuple(x) for x in encoders]))
-            if decoder_sign is not None:
-                storage_name+='_sign%d'%decoder_sign
-            if eval_points is not None:
-                storage_name+='_eval%08x'%hash(tuple([tuple(x) for x in eval_points]))
-            if node_factory is not None:
-                storage_name+='_node%s'%node_factory.__class__.__name__                
-            if seed is not None:
-                storage_name+='_seed%08x'%seed
-            if not java.io.File(storage_name+'.'+FileManager.ENSEMBLE_EXTENSION).exists():
-                if not java.io.File(parent).exists(): java.io.File(parent).mkdirs()
-                storage_name=os.path.join(parent, storage_name)
+            #the cache key is a digest of all the parameters (the ensemble factory adds its own
+            #configuration, the number of neurons and the radii)
+            if encoders is not None: encoders=[[float(x) for x in row] for row in encoders]
+            if eval_points is not None: eval_points=[[float(x) for x in row] for row in eval_points]
+            node_class=None
+            if node_factory is not None: node_class=node_factory.__class__.__name__
+            cache_key=EnsembleCache.Key()
+            cache_key.add(repr((storage_code,dimensions,tau_rc,tau_ref,max_rate,intercept,decoder_noise,
+                                decoder_sign,encoders,eval_points,node_class,seed)))
         else:
-            storage_name=''
+            cache_key=None
             
             
         #set up ensemble factory
@@ -244,7 +235,10 @@ class Network:
         parent,name=self._parse_name(name)
 
         #create ensemble
-        n=ef.make(name,neurons,r,storage_name,False)
+        if cache_key is not None:
+            n=ef.make(name,neurons,r,_get_ensemble_cache(),cache_key)
+        else:
+            n=ef.make(name,neurons,r,'',False)
         
         if add_to_network: 
             parent.addNode(n)
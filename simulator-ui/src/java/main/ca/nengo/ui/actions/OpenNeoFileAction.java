@@ -37,6 +37,7 @@ import org.python.core.PyClass;
 import org.python.util.PythonInterpreter;
 import org.python.util.PythonObjectInputStream;
 
+import ca.nengo.io.NetworkFile;
 import ca.nengo.model.Node;
 import ca.nengo.ui.NengoGraphics;
 import ca.nengo.ui.lib.actions.ActionException;
@@ -47,6 +48,7 @@ import ca.nengo.ui.models.NodeContainer;
 import ca.nengo.ui.models.NodeContainer.ContainerException;
 import ca.nengo.ui.models.UINeoNode;
 import ca.nengo.ui.models.nodes.UINodeViewable;
+import ca.nengo.ui.util.PythonClassLoader;
 
 /**
  * Action used to open a Neo model from file
@@ -108,11 +110,15 @@ public class OpenNeoFileAction extends StandardAction {
                         // created, so
                         // we use the one from the NengoGraphics.
                         PythonInterpreter pi = NengoGraphics.getInstance().getPythonInterpreter();
-                        pi.set("___inStream",
-                                new PythonObjectInputStream(new FileInputStream(file)));
-                        org.python.core.PyObject obj = pi.eval("___inStream.readObject()");
-                        objLoaded = obj.__tojava__(Class.forName("ca.nengo.model.Node"));
-                        pi.exec("del ___inStream");
+                        if (NetworkFile.isNetworkFile(file)) {
+                            objLoaded = (Node) NetworkFile.read(file, new PythonClassLoader(pi));
+                        } else {
+                            pi.set("___inStream",
+                                    new PythonObjectInputStream(new FileInputStream(file)));
+                            org.python.core.PyObject obj = pi.eval("___inStream.readObject()");
+                            objLoaded = obj.__tojava__(Class.forName("ca.nengo.model.Node"));
+                            pi.exec("del ___inStream");
+                        }
 
                         SwingUtilities.invokeLater(new Runnable() {
                             public void run() {
@@ -42,6 +42,7 @@ import java.util.Vector;
 import javax.swing.SwingUtilities;
 
 import ca.nengo.io.FileManager;
+import ca.nengo.io.NetworkFile;
 import ca.nengo.model.Ensemble;
 import ca.nengo.model.Network;
 import ca.nengo.model.Node;
@@ -717,7 +718,11 @@ public abstract class UINeoNode extends UINeoModel implements DroppableX {
 	public void saveModel(File file) throws IOException {
 		FileManager fm = new FileManager();
 
-		fm.save(this.getModel(), file);
+		if (file.getName().endsWith("." + NetworkFile.EXTENSION)) {
+			fm.saveCompact(this.getModel(), file);
+		} else {
+			fm.save(this.getModel(), file);
+		}
 		new TransientStatusMessage(this.getFullName() + " was saved to " + file.toString(), 2500);
 	}
 	
@@ -0,0 +1,90 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "PythonClassLoader.java". Description:
+"Resolves classes by name, including classes defined in Python scripts"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.ui.util;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PySystemState;
+import org.python.core.PyTuple;
+import org.python.core.__builtin__;
+import org.python.core.imp;
+import org.python.util.PythonInterpreter;
+
+/**
+ * Resolves classes by name, including classes defined in Python scripts. Classes are looked
+ * up on the interpreter's sys.path first; otherwise Java proxies of Python classes are found by
+ * importing the module that defines them, as PythonObjectInputStream does. This allows models
+ * that contain scripted nodes to be loaded from files read with ordinary object streams.
+ */
+public class PythonClassLoader extends ClassLoader {
+
+	private static final String PROXY_PREFIX = "org.python.proxies.";
+
+	private final PySystemState myState;
+
+	/**
+	 * @param interpreter Interpreter in which modules are imported
+	 */
+	public PythonClassLoader(PythonInterpreter interpreter) {
+		super(imp.getSyspathJavaLoader());
+		myState = interpreter.getSystemState();
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		PySystemState previous = Py.setSystemState(myState);
+		try {
+			PyObject found = null;
+			if (name.startsWith(PROXY_PREFIX)) {
+				//proxy names have the form org.python.proxies.module$Class$n
+				String proxy = name.substring(PROXY_PREFIX.length());
+				int first = proxy.indexOf('$');
+				int last = proxy.lastIndexOf('$');
+				if (first > 0 && last > first) {
+					PyObject module = importModule(proxy.substring(0, first));
+					found = module.__getattr__(proxy.substring(first + 1, last).intern());
+				}
+			} else {
+				found = importModule(name);
+			}
+
+			Object result = (found == null) ? null : found.__tojava__(Class.class);
+			if (result instanceof Class<?>) {
+				return (Class<?>) result;
+			}
+		} catch (PyException e) {
+			throw new ClassNotFoundException(name, e);
+		} finally {
+			Py.setSystemState(previous);
+		}
+		throw new ClassNotFoundException(name);
+	}
+
+	private static PyObject importModule(String name) {
+		return __builtin__.__import__(name, null, null, new PyTuple(Py.newString("__doc__")));
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "BatchDynamicalSystem.java". Description:
+"A batch of structurally identical dynamical systems with state held by the caller"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.dynamics;
+
+import java.io.Serializable;
+
+/**
+ * <p>A batch of structurally identical DynamicalSystems (eg the spike generation dynamics of each
+ * neuron in a population), which are evaluated together. Unlike a DynamicalSystem, a batch does not
+ * hold its state. The state of each system is a row of a matrix that belongs to the caller (usually a
+ * BatchIntegrator), and results are written into matrices given by the caller, so that evaluation
+ * need not create objects.</p>
+ *
+ * <p>Parameters may differ between systems in a batch, but the dimensions of state, input, and output
+ * are shared.</p>
+ */
+public interface BatchDynamicalSystem extends Serializable {
+
+	/**
+	 * @return Number of systems in the batch
+	 */
+	public int getSize();
+
+	/**
+	 * @return Dimension of the state vector of each system
+	 */
+	public int getStateDimension();
+
+	/**
+	 * @return Dimension of the input vector of each system
+	 */
+	public int getInputDimension();
+
+	/**
+	 * @return Dimension of the output vector of each system
+	 */
+	public int getOutputDimension();
+
+	/**
+	 * The dynamic equation.
+	 *
+	 * @param t Time
+	 * @param u Input vector of each system (rows correspond to systems)
+	 * @param x State vector of each system
+	 * @param dxdt Matrix into which the 1st derivative of each state vector is written
+	 */
+	public void f(float t, float[][] u, float[][] x, float[][] dxdt);
+
+	/**
+	 * The output equation.
+	 *
+	 * @param t Time
+	 * @param u Input vector of each system
+	 * @param x State vector of each system
+	 * @param y Matrix into which the output vector of each system is written
+	 */
+	public void g(float t, float[][] u, float[][] x, float[][] y);
+
+	/**
+	 * A DynamicalSystem that can provide a native batch implementation of itself, eg one that evaluates
+	 * the batch in a single loop without allocation.
+	 */
+	public interface Batchable extends DynamicalSystem {
+
+		/**
+		 * @param systems Systems of the same class as this one (possibly including this one)
+		 * @return A batch that evaluates the given systems together (their initial states are not copied)
+		 */
+		public BatchDynamicalSystem makeBatch(DynamicalSystem[] systems);
+
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "BatchIntegrator.java". Description:
+"A numerical integrator that advances a batch of dynamical systems in place"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.dynamics;
+
+import java.io.Serializable;
+
+/**
+ * <p>A numerical integrator of ordinary differential equations that advances a batch of structurally
+ * identical systems together. In contrast with an Integrator, state is updated in place, input is held
+ * constant over the integration interval, and no TimeSeries of output is created. Intermediate results
+ * can be collected with an Observer.</p>
+ *
+ * <p>Implementations may keep workspace between calls, so an instance should not be used by more than
+ * one thread at a time.</p>
+ */
+public interface BatchIntegrator extends Serializable, Cloneable {
+
+	/**
+	 * Advances all systems in the batch from startTime to endTime.
+	 *
+	 * @param system The systems to solve
+	 * @param state State of each system at startTime (rows correspond to systems); overwritten with the
+	 * 		state at endTime
+	 * @param input Input vector of each system, held constant from startTime to endTime
+	 * @param startTime Time at start of integration
+	 * @param endTime Time at end of integration
+	 * @param observer Notified of the state after each step, or null
+	 */
+	public void integrate(BatchDynamicalSystem system, float[][] state, float[][] input,
+			float startTime, float endTime, Observer observer);
+
+	/**
+	 * @return cloned BatchIntegrator (without shared workspace)
+	 * @throws CloneNotSupportedException is clone operation fails
+	 */
+	public BatchIntegrator clone() throws CloneNotSupportedException;
+
+	/**
+	 * Receives intermediate results of a batch integration, eg to detect threshold crossings.
+	 */
+	public interface Observer {
+
+		/**
+		 * Called once with the state at the start of integration, and then after each step.
+		 * The state matrix is reused, so it must not be modified or kept.
+		 *
+		 * @param t Time
+		 * @param state State of each system at time t
+		 */
+		public void step(float t, float[][] state);
+
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "BatchEulerIntegrator.java". Description:
+"Euler's method of numerical integration for a batch of dynamical systems"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.dynamics.impl;
+
+import ca.nengo.dynamics.BatchDynamicalSystem;
+import ca.nengo.dynamics.BatchIntegrator;
+
+/**
+ * Euler's method of numerical integration for a batch of systems: x(t+h) ~ x(t) + h*x'(t). Steps
+ * are the same as those of EulerIntegrator, so results match those of integrating each system
+ * separately with constant input.
+ */
+public class BatchEulerIntegrator implements BatchIntegrator {
+
+	private static final long serialVersionUID = 1L;
+
+	//shrink factor to avoid possible very small step at end due to float comparison (as in EulerIntegrator)
+	private static final float SHRINK = .99999f;
+
+	private float h;
+	private transient float[][] myDerivative;
+
+	/**
+	 * @param stepSize Timestep size (dt)
+	 */
+	public BatchEulerIntegrator(float stepSize) {
+		h = stepSize;
+	}
+
+	/**
+	 * Uses default step size of .0001
+	 */
+	public BatchEulerIntegrator() {
+		this(.0001f);
+	}
+
+	/**
+	 * @return Timestep size
+	 */
+	public float getStepSize() {
+		return h;
+	}
+
+	/**
+	 * @param stepSize Timestep size
+	 */
+	public void setStepSize(float stepSize) {
+		h = stepSize;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchIntegrator#integrate(ca.nengo.dynamics.BatchDynamicalSystem, float[][], float[][], float, float, ca.nengo.dynamics.BatchIntegrator.Observer)
+	 */
+	public void integrate(BatchDynamicalSystem system, float[][] state, float[][] input,
+			float startTime, float endTime, Observer observer) {
+		int n = system.getSize();
+		int dim = system.getStateDimension();
+		if (myDerivative == null || myDerivative.length != n || (n > 0 && myDerivative[0].length != dim)) {
+			myDerivative = new float[n][dim];
+		}
+
+		int steps = (int) Math.ceil((endTime - startTime)*SHRINK / h);
+		if (observer != null) {
+			observer.step(startTime, state);
+		}
+
+		float t = startTime;
+		for (int i = 1; i <= steps; i++) {
+			float dt = (i < steps) ? h : (endTime - t);
+			t = t + dt;
+
+			system.f(t, input, state, myDerivative);
+			for (int j = 0; j < n; j++) {
+				float[] x = state[j];
+				float[] dxdt = myDerivative[j];
+				for (int k = 0; k < dim; k++) {
+					x[k] = x[k] + dxdt[k] * dt;
+				}
+			}
+
+			if (observer != null) {
+				observer.step(t, state);
+			}
+		}
+	}
+
+	@Override
+	public BatchIntegrator clone() throws CloneNotSupportedException {
+		BatchEulerIntegrator result = (BatchEulerIntegrator) super.clone();
+		result.myDerivative = null;
+		return result;
+	}
+
+}
@@ -0,0 +1,217 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "BatchRK45Integrator.java". Description:
+"A variable-timestep Dormand-Prince integrator for a batch of dynamical systems"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.dynamics.impl;
+
+import org.apache.log4j.Logger;
+
+import ca.nengo.dynamics.BatchDynamicalSystem;
+import ca.nengo.dynamics.BatchIntegrator;
+
+/**
+ * <p>A variable-timestep BatchIntegrator, which uses the Dormand-Prince 4th and 5th-order Runge-Kutta
+ * formulae (as RK45Integrator does for a single system).</p>
+ *
+ * <p>Step size control is shared across the batch: a step is accepted only if the error of every system
+ * is within tolerance, and the next step size is chosen for the system with the largest relative error.
+ * Steps may therefore be smaller than those RK45Integrator would take for some systems, but all systems
+ * are advanced with the same stage evaluations, so that a native BatchDynamicalSystem can evaluate each
+ * stage in a single loop.</p>
+ */
+public class BatchRK45Integrator implements BatchIntegrator {
+
+	private static final long serialVersionUID = 1L;
+
+	private static Logger ourLogger = Logger.getLogger(BatchRK45Integrator.class);
+
+	//The Dormand-Prince 4(5) coefficients (see RK45Integrator):
+	private static float[][] a = new float[][] {
+		new float[]{0},
+		new float[]{1f/5f},
+		new float[]{3f/40f, 9f/40f},
+		new float[]{44f/45f, -56f/15f, 32f/9f},
+		new float[]{19372f/6561f, -25360f/2187f, 64448f/6561f, -212f/729f},
+		new float[]{9017f/3168f, -355f/33f, 46732f/5247f, 49f/176f, -5103f/18656f},
+		new float[]{35f/384f, 0f, 500f/1113f, 125f/192f, -2187f/6784f, 11f/84f}
+	};
+
+	private static float[] b4 = new float[]{5179f/57600f, 0f, 7571f/16695f, 393f/640f, -92097f/339200f, 187f/2100f, 1f/40f};
+	private static float[] b5 = new float[]{35f/384f, 0, 500f/1113f, 125f/192f, -2187f/6784f, 11f/84f, 0f};
+
+	private static float[] c = new float[] {0f, 1f/5f, 3f/10f, 4f/5f, 8f/9f, 1f, 1f}; //sums of a[0] to a[6]
+
+	private double myPow = 1f/6f;
+	private float myTolerance;
+
+	private transient float[][][] myStages; //7 stages x systems x state dimension
+	private transient float[][] myTrialState;
+
+	/**
+	 * @param tolerance Error tolerance
+	 */
+	public BatchRK45Integrator(float tolerance) {
+		myTolerance = tolerance;
+	}
+
+	/**
+	 * Uses default error tolerance of 1e-6
+	 */
+	public BatchRK45Integrator() {
+		this(1e-6f);
+	}
+
+	/**
+	 * @return Error tolerance
+	 */
+	public float getTolerance() {
+		return myTolerance;
+	}
+
+	/**
+	 * @param tolerance Error tolerance
+	 */
+	public void setTolerance(float tolerance) {
+		myTolerance = tolerance;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchIntegrator#integrate(ca.nengo.dynamics.BatchDynamicalSystem, float[][], float[][], float, float, ca.nengo.dynamics.BatchIntegrator.Observer)
+	 */
+	public void integrate(BatchDynamicalSystem system, float[][] state, float[][] input,
+			float startTime, float endTime, Observer observer) {
+		int n = system.getSize();
+		int dim = system.getStateDimension();
+		if (myTrialState == null || myTrialState.length != n || (n > 0 && myTrialState[0].length != dim)) {
+			myStages = new float[7][n][dim];
+			myTrialState = new float[n][dim];
+		}
+		float[][][] k = myStages;
+		float[][] trial = myTrialState;
+
+		float t0 = startTime;
+		float tfinal = endTime;
+		float hmax = (tfinal - t0) / 2.5f;
+		float hmin = (tfinal - t0) / 1e9f;
+		float h = (tfinal - t0) / 100f; //initial guess at step size
+		float t = t0;
+
+		if (observer != null) {
+			observer.step(t, state);
+		}
+
+		//the first stage is subsequently assigned from the previous step's last stage
+		system.f(t, input, state, k[0]);
+
+		while (t < tfinal && h >= hmin) {
+			if (t + h > tfinal) h = tfinal - t;
+
+			for (int j = 0; j < 6; j++) {
+				float stageTime = t + c[j+1]*h;
+				for (int q = 0; q < n; q++) {
+					float[] x = state[q];
+					float[] xs = trial[q];
+					for (int d = 0; d < dim; d++) {
+						float ka = 0;
+						for (int r = 0; r <= j; r++) {
+							ka += k[r][q][d] * a[j+1][r];
+						}
+						xs[d] = x[d] + ka * h;
+					}
+				}
+				system.f(stageTime, input, trial, k[j+1]);
+			}
+
+			//find 5th order estimates, and the smallest ratio of allowable to actual error across the batch
+			boolean accept = true;
+			boolean valid = true;
+			float minRatio = Float.POSITIVE_INFINITY;
+			for (int q = 0; q < n; q++) {
+				float[] x = state[q];
+				float[] x5 = trial[q];
+				float delta = 0; //actual error
+				float norm = 0;
+				for (int d = 0; d < dim; d++) {
+					float sum4 = 0;
+					float sum5 = 0;
+					for (int r = 0; r < 7; r++) {
+						sum4 += k[r][q][d] * b4[r];
+						sum5 += k[r][q][d] * b5[r];
+					}
+					float error = Math.abs(h * (sum5 - sum4));
+					if ( !(error >= 0) ) {
+						valid = false;
+					} else if (error > delta) {
+						delta = error;
+					}
+					norm = Math.max(norm, Math.abs(x[d]));
+					x5[d] = x[d] + h * sum5;
+				}
+
+				float tau = myTolerance * Math.max(norm, 1f); //allowable error
+				if (delta > tau) {
+					accept = false;
+				}
+				minRatio = Math.min(minRatio, tau / Math.max(delta, 1e-16f));
+			}
+
+			//Update the solution only if the error is acceptable for every system
+			if (valid && accept) {
+				t = t + h;
+				for (int q = 0; q < n; q++) {
+					System.arraycopy(trial[q], 0, state[q], 0, dim);
+				}
+				if (observer != null) {
+					observer.step(t, state);
+				}
+
+				//re-use last stage as first stage of next step
+				float[][] first = k[0];
+				k[0] = k[6];
+				k[6] = first;
+			}
+
+			//Update step size
+			if (!valid) {
+				h = h / 2f;
+			} else {
+				boolean hWasAlreadyMinimum = (h == hmin);
+				h = Math.min(hmax, 0.8f * h * (float) Math.pow(minRatio, myPow));
+				if (h < hmin && !hWasAlreadyMinimum) h = hmin; //give it one more chance at hmin
+			}
+		}
+
+		if (t < tfinal) {
+			ourLogger.warn("Step size grew too small -- integration aborted.");
+		}
+	}
+
+	@Override
+	public BatchIntegrator clone() throws CloneNotSupportedException {
+		BatchRK45Integrator result = (BatchRK45Integrator) super.clone();
+		result.myStages = null;
+		result.myTrialState = null;
+		return result;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "DynamicalSystemArray.java". Description:
+"A BatchDynamicalSystem that evaluates an array of DynamicalSystems one at a time"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.dynamics.impl;
+
+import ca.nengo.dynamics.BatchDynamicalSystem;
+import ca.nengo.dynamics.DynamicalSystem;
+
+/**
+ * <p>A BatchDynamicalSystem that evaluates an array of ordinary DynamicalSystems one at a time. This
+ * allows any DynamicalSystem to be used with a BatchIntegrator, although without the savings of a native
+ * batch implementation (see BatchDynamicalSystem.Batchable).</p>
+ *
+ * <p>The systems' own states are set to rows of the batch state before each evaluation, so they are not
+ * meaningful while the batch is in use.</p>
+ */
+public class DynamicalSystemArray implements BatchDynamicalSystem {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DynamicalSystem[] mySystems;
+	private final int myStateDimension;
+	private final int myInputDimension;
+	private final int myOutputDimension;
+
+	/**
+	 * @param systems Systems to evaluate together (they must have the same dimensions)
+	 */
+	public DynamicalSystemArray(DynamicalSystem[] systems) {
+		if (systems.length == 0) {
+			throw new IllegalArgumentException("At least one system is needed");
+		}
+
+		mySystems = systems;
+		myStateDimension = systems[0].getState().length;
+		myInputDimension = systems[0].getInputDimension();
+		myOutputDimension = systems[0].getOutputDimension();
+
+		for (int i = 1; i < systems.length; i++) {
+			if (systems[i].getState().length != myStateDimension
+					|| systems[i].getInputDimension() != myInputDimension
+					|| systems[i].getOutputDimension() != myOutputDimension) {
+				throw new IllegalArgumentException("System " + i + " has different dimensions than system 0");
+			}
+		}
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#getSize()
+	 */
+	public int getSize() {
+		return mySystems.length;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#getStateDimension()
+	 */
+	public int getStateDimension() {
+		return myStateDimension;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#getInputDimension()
+	 */
+	public int getInputDimension() {
+		return myInputDimension;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#getOutputDimension()
+	 */
+	public int getOutputDimension() {
+		return myOutputDimension;
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#f(float, float[][], float[][], float[][])
+	 */
+	public void f(float t, float[][] u, float[][] x, float[][] dxdt) {
+		for (int i = 0; i < mySystems.length; i++) {
+			mySystems[i].setState(x[i]);
+			System.arraycopy(mySystems[i].f(t, u[i]), 0, dxdt[i], 0, myStateDimension);
+		}
+	}
+
+	/**
+	 * @see ca.nengo.dynamics.BatchDynamicalSystem#g(float, float[][], float[][], float[][])
+	 */
+	public void g(float t, float[][] u, float[][] x, float[][] y) {
+		for (int i = 0; i < mySystems.length; i++) {
+			mySystems[i].setState(x[i]);
+			System.arraycopy(mySystems[i].g(t, u[i]), 0, y[i], 0, myOutputDimension);
+		}
+	}
+
+}
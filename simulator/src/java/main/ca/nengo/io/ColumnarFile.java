@@ -0,0 +1,298 @@
+package ca.nengo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SpikePattern;
+import ca.nengo.util.TimeSeries;
+
+/**
+ * <p>Reads and writes TimeSeries and SpikePattern data in a columnar binary format that is read by
+ * memory-mapping the file, so that large recordings can be opened without loading them, and windows
+ * of time or subsets of dimensions can be read cheaply.</p>
+ *
+ * <p>All numbers are little-endian. A file starts with a header: the int MAGIC, the int VERSION, the kind
+ * of data (KIND_TIME_SERIES or KIND_SPIKE_PATTERN), and the length of the header in bytes (a multiple
+ * of 8). The data follows the header.</p>
+ *
+ * <p>For a TimeSeries, the rest of the header is the number of samples (long), the dimension (int), the
+ * name, the name of each dimension's Units and each dimension's label. Strings are written as a length
+ * in bytes (int, -1 for null) followed by UTF-8 bytes. The data are a column of sample times (floats in
+ * ascending order, which serves as the index for time windows) followed by a column of floats for
+ * each dimension.</p>
+ *
+ * <p>For a SpikePattern, the rest of the header is the number of neurons (int), four bytes of padding,
+ * and for each neuron and one more, the index of the neuron's first spike in the data (long). The
+ * data are a single column of spike times (floats, ascending for each neuron).</p>
+ */
+public class ColumnarFile {
+
+	/**
+	 * First int of every columnar file ("NCOL" in ASCII when read as little-endian bytes)
+	 */
+	public static final int MAGIC = 0x4C4F434E;
+
+	/**
+	 * Version of the format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Kind of data in a file that holds a TimeSeries
+	 */
+	public static final int KIND_TIME_SERIES = 1;
+
+	/**
+	 * Kind of data in a file that holds a SpikePattern
+	 */
+	public static final int KIND_SPIKE_PATTERN = 2;
+
+	/**
+	 * Extension for columnar files
+	 */
+	public static final String EXTENSION = "ncol";
+
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+	private static final Charset ourCharset = Charset.forName("UTF-8");
+	private static final int ourBufferSize = 1 << 20;
+
+	/**
+	 * @param series TimeSeries to write
+	 * @param destination File to write (overwritten if it exists)
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public static void write(TimeSeries series, File destination) throws IOException {
+		float[] times = series.getTimes();
+		float[][] values = series.getValues();
+		Units[] units = series.getUnits();
+		String[] labels = series.getLabels();
+		int dimension = series.getDimension();
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize(series)).order(ORDER);
+		header.putInt(MAGIC).putInt(VERSION).putInt(KIND_TIME_SERIES).putInt(header.capacity());
+		header.putLong(times.length).putInt(dimension);
+		putString(header, series.getName());
+		for (int i = 0; i < dimension; i++) {
+			putString(header, units == null || units[i] == null ? null : units[i].name());
+		}
+		for (int i = 0; i < dimension; i++) {
+			putString(header, labels == null ? null : labels[i]);
+		}
+
+		FileChannel channel = new RandomAccessFile(destination, "rw").getChannel();
+		try {
+			channel.truncate(0);
+			header.rewind();
+			writeFully(channel, header);
+
+			ByteBuffer buffer = ByteBuffer.allocate(ourBufferSize).order(ORDER);
+			for (int i = 0; i < times.length; i++) {
+				putFloat(channel, buffer, times[i]);
+			}
+			for (int d = 0; d < dimension; d++) {
+				for (int i = 0; i < values.length; i++) {
+					putFloat(channel, buffer, values[i][d]);
+				}
+			}
+			buffer.flip();
+			writeFully(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param pattern SpikePattern to write
+	 * @param destination File to write (overwritten if it exists)
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public static void write(SpikePattern pattern, File destination) throws IOException {
+		int neurons = pattern.getNumNeurons();
+
+		ByteBuffer header = ByteBuffer.allocate(24 + 8 * (neurons + 1)).order(ORDER);
+		header.putInt(MAGIC).putInt(VERSION).putInt(KIND_SPIKE_PATTERN).putInt(header.capacity());
+		header.putInt(neurons).putInt(0);
+
+		FileChannel channel = new RandomAccessFile(destination, "rw").getChannel();
+		try {
+			channel.truncate(0);
+			channel.position(header.capacity());
+
+			long spikes = 0;
+			ByteBuffer buffer = ByteBuffer.allocate(ourBufferSize).order(ORDER);
+			for (int n = 0; n < neurons; n++) {
+				header.putLong(spikes);
+				float[] times = pattern.getSpikeTimes(n);
+				for (int i = 0; i < times.length; i++) {
+					putFloat(channel, buffer, times[i]);
+				}
+				spikes += times.length;
+			}
+			header.putLong(spikes);
+			buffer.flip();
+			writeFully(channel, buffer);
+
+			header.rewind();
+			channel.position(0);
+			writeFully(channel, header);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param source A file
+	 * @return True if the file starts with the columnar file header
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public static boolean isColumnar(File source) throws IOException {
+		if (source.length() < 16) {
+			return false;
+		}
+		RandomAccessFile file = new RandomAccessFile(source, "r");
+		try {
+			return Integer.reverseBytes(file.readInt()) == MAGIC;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Opens a columnar file by memory-mapping it. The data are read from the file when they are
+	 * used. The file shouldn't be changed while it is open.
+	 *
+	 * @param source A columnar file
+	 * @return A MappedTimeSeries or MappedSpikePattern, depending on the kind of file
+	 * @throws IOException if the file can't be read or isn't a columnar file
+	 */
+	public static Object open(File source) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(source, "r");
+		FileChannel channel = file.getChannel();
+		try {
+			ByteBuffer start = ByteBuffer.allocate(16).order(ORDER);
+			readFully(channel, start, 0);
+			if (start.getInt(0) != MAGIC) {
+				throw new IOException(source + " is not a columnar file");
+			}
+			if (start.getInt(4) > VERSION) {
+				throw new IOException(source + " has unsupported version " + start.getInt(4));
+			}
+
+			int kind = start.getInt(8);
+			ByteBuffer header = ByteBuffer.allocate(start.getInt(12)).order(ORDER);
+			readFully(channel, header, 0);
+			header.position(16);
+
+			if (kind == KIND_TIME_SERIES) {
+				return openTimeSeries(channel, header);
+			} else if (kind == KIND_SPIKE_PATTERN) {
+				return openSpikePattern(channel, header);
+			} else {
+				throw new IOException(source + " contains unknown kind of data " + kind);
+			}
+		} finally {
+			file.close(); //mappings remain valid after the file is closed
+		}
+	}
+
+	private static MappedTimeSeries openTimeSeries(FileChannel channel, ByteBuffer header) throws IOException {
+		long samples = header.getLong();
+		int dimension = header.getInt();
+		String name = getString(header);
+		Units[] units = new Units[dimension];
+		for (int i = 0; i < dimension; i++) {
+			String unitName = getString(header);
+			units[i] = unitName == null ? Units.UNK : Units.valueOf(unitName);
+		}
+		String[] labels = new String[dimension];
+		for (int i = 0; i < dimension; i++) {
+			labels[i] = getString(header);
+		}
+
+		long position = header.capacity();
+		MappedFloatColumn times = new MappedFloatColumn(channel, position, samples, ORDER);
+		MappedFloatColumn[] columns = new MappedFloatColumn[dimension];
+		for (int d = 0; d < dimension; d++) {
+			position += 4 * samples;
+			columns[d] = new MappedFloatColumn(channel, position, samples, ORDER);
+		}
+		return new MappedTimeSeries(name, times, columns, units, labels);
+	}
+
+	private static MappedSpikePattern openSpikePattern(FileChannel channel, ByteBuffer header) throws IOException {
+		int neurons = header.getInt();
+		header.getInt();
+		long[] starts = new long[neurons + 1];
+		for (int i = 0; i <= neurons; i++) {
+			starts[i] = header.getLong();
+		}
+		MappedFloatColumn times = new MappedFloatColumn(channel, header.capacity(), starts[neurons], ORDER);
+		return new MappedSpikePattern(starts, times);
+	}
+
+	private static int headerSize(TimeSeries series) {
+		int size = 28 + stringSize(series.getName());
+		Units[] units = series.getUnits();
+		String[] labels = series.getLabels();
+		for (int i = 0; i < series.getDimension(); i++) {
+			size += stringSize(units == null || units[i] == null ? null : units[i].name());
+			size += stringSize(labels == null ? null : labels[i]);
+		}
+		return (size + 7) / 8 * 8;
+	}
+
+	private static int stringSize(String s) {
+		return 4 + (s == null ? 0 : s.getBytes(ourCharset).length);
+	}
+
+	private static void putString(ByteBuffer buffer, String s) {
+		if (s == null) {
+			buffer.putInt(-1);
+		} else {
+			byte[] bytes = s.getBytes(ourCharset);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, ourCharset);
+	}
+
+	private static void putFloat(FileChannel channel, ByteBuffer buffer, float value) throws IOException {
+		if (buffer.remaining() < 4) {
+			buffer.flip();
+			writeFully(channel, buffer);
+			buffer.clear();
+		}
+		buffer.putFloat(value);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		buffer.flip();
+	}
+
+}
@@ -33,6 +33,8 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -42,6 +44,7 @@ import java.io.ObjectOutputStream;
 
 import ca.nengo.model.Node;
 import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.util.SpikePattern;
 import ca.nengo.util.TimeSeries;
 
 /**
@@ -69,6 +72,18 @@ public class FileManager {
 		saveObject(node, destination);
 	}
 
+	/**
+	 * Saves a Node in the NetworkFile format, which is faster to save and load than save(Node, File)
+	 * for large models. load() recognizes either format.
+	 *
+	 * @param node Node to save
+	 * @param destination File to save the Node in
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public void saveCompact(Node node, File destination) throws IOException {
+		NetworkFile.write(node, destination);
+	}
+
 	public void generate(Node node, String destination) throws IOException {
 		NetworkImpl network = (NetworkImpl) node;
 		network.dumpToScript(destination);
@@ -83,9 +98,32 @@ public class FileManager {
 		saveObject(timeSeries, destination);
 	}
 
+	/**
+	 * Saves a TimeSeries in the columnar format (see ColumnarFile), which load() opens by memory-mapping
+	 * rather than reading the whole file.
+	 *
+	 * @param timeSeries TimeSeries to save
+	 * @param destination File to save the TimeSeries in
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public void saveColumnar(TimeSeries timeSeries, File destination) throws IOException {
+		ColumnarFile.write(timeSeries, destination);
+	}
+
+	/**
+	 * Saves a SpikePattern in the columnar format (see ColumnarFile).
+	 *
+	 * @param spikePattern SpikePattern to save
+	 * @param destination File to save the SpikePattern in
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public void saveColumnar(SpikePattern spikePattern, File destination) throws IOException {
+		ColumnarFile.write(spikePattern, destination);
+	}
+
 	private static void saveObject(Object object, File destination) throws IOException {
 		FileOutputStream fos = new FileOutputStream(destination);
-		ObjectOutputStream oos = new ObjectOutputStream(fos);
+		ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fos, 1 << 16));
 		oos.writeObject(object);
 		oos.flush();
 		oos.close();
@@ -93,16 +131,24 @@ public class FileManager {
 	}
 
 	/**
-	 * @param source Serialized file to load
-	 * @return Object represented by the serialized file
+	 * @param source Serialized, network or columnar file to load
+	 * @return Object represented by the serialized file (a MappedTimeSeries or MappedSpikePattern
+	 *   for a columnar file)
 	 * @throws IOException if there's a problem writing to disk
 	 * @throws ClassNotFoundException if the serialized file contains classes
 	 *   not known in this context
 	 */
 	public Object load(File source) throws IOException, ClassNotFoundException {
+		if (ColumnarFile.isColumnar(source)) {
+			return ColumnarFile.open(source);
+		}
+		if (NetworkFile.isNetworkFile(source)) {
+			return NetworkFile.read(source);
+		}
+
 		FileInputStream fis = new FileInputStream(source);
 
-		ObjectInputStream ois = new ObjectInputStream(fis);
+		ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(fis, 1 << 16));
 		Object return_obj = ois.readObject();
 
 		ois.close();
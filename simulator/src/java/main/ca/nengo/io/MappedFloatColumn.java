@@ -0,0 +1,97 @@
+package ca.nengo.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A column of floats in a memory-mapped file. Columns larger than a single mapping allows
+ * (2 GB) are mapped in several segments.
+ */
+class MappedFloatColumn {
+
+	private static final int ourSegmentFloats = 1 << 28;
+
+	private final long myLength;
+	private final FloatBuffer[] mySegments;
+
+	/**
+	 * @param channel Channel of an open file
+	 * @param position Position of the column in the file (bytes)
+	 * @param length Number of floats in the column
+	 * @param order Byte order of the file
+	 * @throws IOException If the column can't be mapped
+	 */
+	public MappedFloatColumn(FileChannel channel, long position, long length, ByteOrder order) throws IOException {
+		myLength = length;
+		int segments = (int) ((length + ourSegmentFloats - 1) / ourSegmentFloats);
+		mySegments = new FloatBuffer[segments];
+		for (int i = 0; i < segments; i++) {
+			long start = (long) i * ourSegmentFloats;
+			long floats = Math.min(ourSegmentFloats, length - start);
+			mySegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + 4 * start, 4 * floats)
+					.order(order).asFloatBuffer();
+		}
+	}
+
+	/**
+	 * @return Number of floats in the column
+	 */
+	public long getLength() {
+		return myLength;
+	}
+
+	/**
+	 * @param index Index of a float in the column
+	 * @return The float at the index
+	 */
+	public float get(long index) {
+		return mySegments[(int) (index / ourSegmentFloats)].get((int) (index % ourSegmentFloats));
+	}
+
+	/**
+	 * @param from Index of first float
+	 * @param to Index after last float
+	 * @return The floats in the range
+	 */
+	public float[] get(long from, long to) {
+		if (from < 0 || to > myLength || from > to || to - from > Integer.MAX_VALUE) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " in column of length " + myLength);
+		}
+
+		float[] result = new float[(int) (to - from)];
+		int done = 0;
+		while (done < result.length) {
+			long index = from + done;
+			FloatBuffer segment = mySegments[(int) (index / ourSegmentFloats)].duplicate();
+			segment.position((int) (index % ourSegmentFloats));
+			int n = Math.min(segment.remaining(), result.length - done);
+			segment.get(result, done, n);
+			done += n;
+		}
+		return result;
+	}
+
+	/**
+	 * @param value A value
+	 * @param from Index of first float to search
+	 * @param to Index after last float to search
+	 * @return Index of the first float in the range that is not less than the given value, assuming
+	 * 		the range is sorted in ascending order (to if there is none)
+	 */
+	public long search(float value, long from, long to) {
+		long low = from;
+		long high = to;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (get(mid) < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
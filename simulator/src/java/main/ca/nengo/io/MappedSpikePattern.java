@@ -0,0 +1,67 @@
+package ca.nengo.io;
+
+import java.io.ObjectStreamException;
+
+import ca.nengo.util.SpikePattern;
+import ca.nengo.util.impl.SpikePatternImpl;
+
+/**
+ * A SpikePattern read from a memory-mapped columnar file (see ColumnarFile). The spike times of a
+ * neuron are read from the file only when they are asked for.
+ */
+public class MappedSpikePattern implements SpikePattern {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient long[] myStarts;
+	private final transient MappedFloatColumn myTimes;
+
+	MappedSpikePattern(long[] starts, MappedFloatColumn times) {
+		myStarts = starts;
+		myTimes = times;
+	}
+
+	/**
+	 * @see ca.nengo.util.SpikePattern#getNumNeurons()
+	 */
+	public int getNumNeurons() {
+		return myStarts.length - 1;
+	}
+
+	/**
+	 * @see ca.nengo.util.SpikePattern#getSpikeTimes(int)
+	 */
+	public float[] getSpikeTimes(int neuron) {
+		return myTimes.get(myStarts[neuron], myStarts[neuron + 1]);
+	}
+
+	/**
+	 * @param neuron Index of a neuron
+	 * @param startTime Start of a time window
+	 * @param endTime End of the time window
+	 * @return Times of the neuron's spikes in [startTime, endTime)
+	 */
+	public float[] getSpikeTimes(int neuron, float startTime, float endTime) {
+		long from = myTimes.search(startTime, myStarts[neuron], myStarts[neuron + 1]);
+		long to = Math.max(from, myTimes.search(endTime, myStarts[neuron], myStarts[neuron + 1]));
+		return myTimes.get(from, to);
+	}
+
+	@Override
+	public SpikePattern clone() throws CloneNotSupportedException {
+		return this; //immutable
+	}
+
+	//the mapping can't be serialized, so an in-memory copy is serialized instead
+	private Object writeReplace() throws ObjectStreamException {
+		SpikePatternImpl result = new SpikePatternImpl(getNumNeurons());
+		for (int n = 0; n < getNumNeurons(); n++) {
+			float[] times = getSpikeTimes(n);
+			for (int i = 0; i < times.length; i++) {
+				result.addSpike(n, times[i]);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,178 @@
+package ca.nengo.io;
+
+import java.io.ObjectStreamException;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.TimeSeries;
+import ca.nengo.util.impl.TimeSeriesImpl;
+
+/**
+ * <p>A TimeSeries read from a memory-mapped columnar file (see ColumnarFile). Data are read from
+ * the file only as they are used, so the methods that read a window of time or a few dimensions
+ * are cheap regardless of the size of the file.</p>
+ *
+ * <p>getTimes() and getValues() read the whole file into memory, and should be avoided for large
+ * files.</p>
+ */
+public class MappedTimeSeries implements TimeSeries {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String myName;
+	private final transient MappedFloatColumn myTimes;
+	private final transient MappedFloatColumn[] myColumns;
+	private final Units[] myUnits;
+	private final String[] myLabels;
+
+	MappedTimeSeries(String name, MappedFloatColumn times, MappedFloatColumn[] columns, Units[] units, String[] labels) {
+		myName = name;
+		myTimes = times;
+		myColumns = columns;
+		myUnits = units;
+		myLabels = labels;
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getName()
+	 */
+	public String getName() {
+		return myName;
+	}
+
+	/**
+	 * @return Number of samples
+	 */
+	public long getNumSamples() {
+		return myTimes.getLength();
+	}
+
+	/**
+	 * @param time A time
+	 * @return Index of the first sample at or after the given time (getNumSamples() if there is none)
+	 */
+	public long indexOf(float time) {
+		return myTimes.search(time, 0, myTimes.getLength());
+	}
+
+	/**
+	 * @param from Index of first sample
+	 * @param to Index after last sample
+	 * @return Times of the samples
+	 */
+	public float[] getTimes(long from, long to) {
+		return myTimes.get(from, to);
+	}
+
+	/**
+	 * @param dimension A dimension
+	 * @param from Index of first sample
+	 * @param to Index after last sample
+	 * @return Values of the given dimension in the samples
+	 */
+	public float[] getColumn(int dimension, long from, long to) {
+		return myColumns[dimension].get(from, to);
+	}
+
+	/**
+	 * @param from Index of first sample
+	 * @param to Index after last sample
+	 * @param dimensions Dimensions to read (null for all)
+	 * @return Values of the given dimensions in the samples (one row per sample)
+	 */
+	public float[][] getValues(long from, long to, int[] dimensions) {
+		dimensions = dimensions == null ? allDimensions() : dimensions;
+
+		float[][] result = new float[(int) (to - from)][];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new float[dimensions.length];
+		}
+		for (int d = 0; d < dimensions.length; d++) {
+			float[] column = getColumn(dimensions[d], from, to);
+			for (int i = 0; i < result.length; i++) {
+				result[i][d] = column[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param startTime Start of a time window
+	 * @param endTime End of the time window
+	 * @param dimensions Dimensions to read (null for all)
+	 * @return An in-memory TimeSeries with the given dimensions of the samples with times in
+	 * 		[startTime, endTime)
+	 */
+	public TimeSeries getWindow(float startTime, float endTime, int[] dimensions) {
+		dimensions = dimensions == null ? allDimensions() : dimensions;
+
+		long from = indexOf(startTime);
+		long to = Math.max(from, indexOf(endTime));
+
+		Units[] units = new Units[dimensions.length];
+		String[] labels = new String[dimensions.length];
+		for (int d = 0; d < dimensions.length; d++) {
+			units[d] = myUnits[dimensions[d]];
+			labels[d] = myLabels[dimensions[d]];
+		}
+
+		TimeSeriesImpl result = new TimeSeriesImpl(getTimes(from, to), getValues(from, to, dimensions), units, labels);
+		result.setName(myName);
+		return result;
+	}
+
+	private int[] allDimensions() {
+		int[] result = new int[myColumns.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getTimes()
+	 */
+	public float[] getTimes() {
+		return getTimes(0, getNumSamples());
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getDimension()
+	 */
+	public int getDimension() {
+		return myColumns.length;
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getValues()
+	 */
+	public float[][] getValues() {
+		return getValues(0, getNumSamples(), null);
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getUnits()
+	 */
+	public Units[] getUnits() {
+		return myUnits;
+	}
+
+	/**
+	 * @see ca.nengo.util.TimeSeries#getLabels()
+	 */
+	public String[] getLabels() {
+		return myLabels;
+	}
+
+	@Override
+	public TimeSeries clone() throws CloneNotSupportedException {
+		return this; //immutable
+	}
+
+	//the mapping can't be serialized, so an in-memory copy is serialized instead
+	private Object writeReplace() throws ObjectStreamException {
+		TimeSeriesImpl result = new TimeSeriesImpl(getTimes(), getValues(), myUnits, myLabels);
+		result.setName(myName);
+		return result;
+	}
+
+}
@@ -0,0 +1,473 @@
+package ca.nengo.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>A file format for Nodes (typically whole Networks) that is faster to save and load, and smaller,
+ * than plain serialization of large models.</p>
+ *
+ * <p>The structure of the model (networks, ensembles, neurons, origins, terminations, projections)
+ * is serialized as usual, but large primitive arrays (eg encoders, decoders, weight matrices and the
+ * matrices kept by decoding approximators) are replaced in the object stream by references to
+ * blocks of raw little-endian numbers, which are stored after the object stream and copied in bulk
+ * when the model is loaded. Arrays that are shared between objects remain shared.</p>
+ *
+ * <p>The layout is a header (magic number, version, offset and length of the block section), the
+ * object stream, then the block section, with each block aligned to 8 bytes.</p>
+ */
+public class NetworkFile {
+
+	/**
+	 * First four bytes of a network file
+	 */
+	public static final int MAGIC = 0x54454E4E; //"NNET" in little-endian
+
+	/**
+	 * Version of the format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Extension for network files
+	 */
+	public static final String EXTENSION = "nnet";
+
+	/**
+	 * Primitive arrays with fewer elements than this are serialized with the object stream
+	 */
+	public static final int MIN_BLOCK_ELEMENTS = 64;
+
+	private static final int HEADER_SIZE = 24;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private static final byte FLOAT = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte SHORT = 5;
+	private static final byte BYTE = 6;
+
+	/**
+	 * @param object Object to save (typically a Node)
+	 * @param destination File to save the object in
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public static void write(Object object, File destination) throws IOException {
+		File blockFile = File.createTempFile("nengo", ".blocks", destination.getAbsoluteFile().getParentFile());
+		RandomAccessFile file = new RandomAccessFile(destination, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+
+			//object stream goes into the file, blocks into a temporary file that is appended
+			BlockWriter blocks = new BlockWriter(new FileOutputStream(blockFile).getChannel());
+			try {
+				channel.position(HEADER_SIZE);
+				OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+				ObjectOutputStream oos = new BlockOutputStream(out, blocks);
+				oos.writeObject(object);
+				oos.flush();
+				blocks.flush();
+			} finally {
+				blocks.close();
+			}
+
+			long blockOffset = align(channel.position());
+			long blockLength = blockFile.length();
+			FileChannel blockChannel = new FileInputStream(blockFile).getChannel();
+			try {
+				long transferred = 0;
+				while (transferred < blockLength) {
+					transferred += blockChannel.transferTo(transferred, blockLength - transferred, channel.position(blockOffset + transferred));
+				}
+			} finally {
+				blockChannel.close();
+			}
+			if (file.length() < blockOffset + blockLength) {
+				file.setLength(blockOffset + blockLength); //alignment padding when there are no blocks
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putLong(blockOffset).putLong(blockLength);
+			header.flip();
+			channel.write(header, 0);
+		} finally {
+			file.close();
+			blockFile.delete();
+		}
+	}
+
+	/**
+	 * @param file A file
+	 * @return True if the file starts with the network file magic number
+	 */
+	public static boolean isNetworkFile(File file) {
+		if (!file.isFile() || file.length() < HEADER_SIZE) {
+			return false;
+		}
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				return Integer.reverseBytes(raf.readInt()) == MAGIC;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param source A network file
+	 * @return The object saved in the file
+	 * @throws IOException if the file can't be read or isn't a network file
+	 * @throws ClassNotFoundException if the file contains classes not known in this context
+	 */
+	public static Object read(File source) throws IOException, ClassNotFoundException {
+		return read(source, null);
+	}
+
+	/**
+	 * @param source A network file
+	 * @param loader ClassLoader through which classes in the file are resolved (eg one that knows
+	 * 		about classes defined in scripts), before falling back to the default resolution; may be null
+	 * @return The object saved in the file
+	 * @throws IOException if the file can't be read or isn't a network file
+	 * @throws ClassNotFoundException if the file contains classes not known in this context
+	 */
+	public static Object read(File source, ClassLoader loader) throws IOException, ClassNotFoundException {
+		RandomAccessFile file = new RandomAccessFile(source, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+				//read whole header
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException(source + " is not a network file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported network file version " + version);
+			}
+			long blockOffset = header.getLong();
+			long blockLength = header.getLong();
+			if (blockOffset < HEADER_SIZE || blockOffset + blockLength > channel.size()) {
+				throw new IOException("Network file " + source + " is truncated");
+			}
+
+			channel.position(HEADER_SIZE);
+			InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+			BlockReader blocks = new BlockReader(channel, blockOffset, blockLength);
+			return new BlockInputStream(in, blocks, loader).readObject();
+		} finally {
+			file.close();
+		}
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	//stands in for a primitive array in the object stream
+	private static class Block implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final byte myType;
+		private final int myLength;
+		private final long myOffset; //within the block section
+
+		public Block(byte type, int length, long offset) {
+			myType = type;
+			myLength = length;
+			myOffset = offset;
+		}
+	}
+
+	private static class BlockOutputStream extends ObjectOutputStream {
+
+		private final BlockWriter myBlocks;
+
+		public BlockOutputStream(OutputStream out, BlockWriter blocks) throws IOException {
+			super(out);
+			myBlocks = blocks;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			//the stream substitutes this result for later references to the same array
+			return myBlocks.replace(obj);
+		}
+	}
+
+	private static class BlockInputStream extends ObjectInputStream {
+
+		private final BlockReader myBlocks;
+		private final ClassLoader myLoader;
+
+		public BlockInputStream(InputStream in, BlockReader blocks, ClassLoader loader) throws IOException {
+			super(in);
+			myBlocks = blocks;
+			myLoader = loader;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if (myLoader != null) {
+				try {
+					return Class.forName(desc.getName(), false, myLoader);
+				} catch (ClassNotFoundException e) {
+					//fall back to default resolution (also handles primitive types)
+				}
+			}
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			return (obj instanceof Block) ? myBlocks.read((Block) obj) : obj;
+		}
+	}
+
+	//appends arrays to the block section through a direct buffer
+	private static class BlockWriter {
+
+		private final FileChannel myChannel;
+		private final ByteBuffer myBuffer;
+		private long myPosition; //bytes written to the block section, including buffered bytes
+
+		public BlockWriter(FileChannel channel) {
+			myChannel = channel;
+			myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		public Object replace(Object obj) throws IOException {
+			if (obj instanceof float[] && ((float[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				float[] array = (float[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(4));
+					myBuffer.asFloatBuffer().put(array, i, n);
+					advance(n * 4);
+					i += n;
+				}
+				return new Block(FLOAT, array.length, offset);
+			} else if (obj instanceof double[] && ((double[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				double[] array = (double[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(8));
+					myBuffer.asDoubleBuffer().put(array, i, n);
+					advance(n * 8);
+					i += n;
+				}
+				return new Block(DOUBLE, array.length, offset);
+			} else if (obj instanceof int[] && ((int[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				int[] array = (int[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(4));
+					myBuffer.asIntBuffer().put(array, i, n);
+					advance(n * 4);
+					i += n;
+				}
+				return new Block(INT, array.length, offset);
+			} else if (obj instanceof long[] && ((long[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				long[] array = (long[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(8));
+					myBuffer.asLongBuffer().put(array, i, n);
+					advance(n * 8);
+					i += n;
+				}
+				return new Block(LONG, array.length, offset);
+			} else if (obj instanceof short[] && ((short[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				short[] array = (short[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(2));
+					myBuffer.asShortBuffer().put(array, i, n);
+					advance(n * 2);
+					i += n;
+				}
+				return new Block(SHORT, array.length, offset);
+			} else if (obj instanceof byte[] && ((byte[]) obj).length >= MIN_BLOCK_ELEMENTS) {
+				byte[] array = (byte[]) obj;
+				long offset = start();
+				for (int i = 0; i < array.length; ) {
+					int n = Math.min(array.length - i, room(1));
+					myBuffer.put(array, i, n);
+					myPosition += n;
+					i += n;
+				}
+				return new Block(BYTE, array.length, offset);
+			}
+			return obj;
+		}
+
+		//pads to 8-byte alignment, and returns the offset of the new block
+		private long start() throws IOException {
+			while ((myPosition & 7) != 0) {
+				room(1);
+				myBuffer.put((byte) 0);
+				myPosition++;
+			}
+			return myPosition;
+		}
+
+		//makes room for at least one element of the given size, and returns how many fit
+		private int room(int size) throws IOException {
+			if (myBuffer.remaining() < size) {
+				flush();
+			}
+			return myBuffer.remaining() / size;
+		}
+
+		//typed views don't move the buffer's position
+		private void advance(int bytes) {
+			myBuffer.position(myBuffer.position() + bytes);
+			myPosition += bytes;
+		}
+
+		public void flush() throws IOException {
+			myBuffer.flip();
+			while (myBuffer.hasRemaining()) {
+				myChannel.write(myBuffer);
+			}
+			myBuffer.clear();
+		}
+
+		public void close() throws IOException {
+			myChannel.close();
+		}
+	}
+
+	//copies blocks from the file into arrays through a direct buffer
+	private static class BlockReader {
+
+		private final FileChannel myChannel;
+		private final long myOffset;
+		private final long myLength;
+		private final ByteBuffer myBuffer;
+
+		public BlockReader(FileChannel channel, long offset, long length) {
+			myChannel = channel;
+			myOffset = offset;
+			myLength = length;
+			myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		public Object read(Block block) throws IOException {
+			int size = getSize(block.myType);
+			if (block.myLength < 0 || block.myOffset < 0 || block.myOffset + (long) block.myLength * size > myLength) {
+				throw new IOException("Corrupt block in network file");
+			}
+
+			long position = myOffset + block.myOffset;
+			switch (block.myType) {
+			case FLOAT:
+				float[] floats = new float[block.myLength];
+				for (int i = 0; i < floats.length; ) {
+					int n = fill(position, floats.length - i, 4);
+					myBuffer.asFloatBuffer().get(floats, i, n);
+					position += n * 4;
+					i += n;
+				}
+				return floats;
+			case DOUBLE:
+				double[] doubles = new double[block.myLength];
+				for (int i = 0; i < doubles.length; ) {
+					int n = fill(position, doubles.length - i, 8);
+					myBuffer.asDoubleBuffer().get(doubles, i, n);
+					position += n * 8;
+					i += n;
+				}
+				return doubles;
+			case INT:
+				int[] ints = new int[block.myLength];
+				for (int i = 0; i < ints.length; ) {
+					int n = fill(position, ints.length - i, 4);
+					myBuffer.asIntBuffer().get(ints, i, n);
+					position += n * 4;
+					i += n;
+				}
+				return ints;
+			case LONG:
+				long[] longs = new long[block.myLength];
+				for (int i = 0; i < longs.length; ) {
+					int n = fill(position, longs.length - i, 8);
+					myBuffer.asLongBuffer().get(longs, i, n);
+					position += n * 8;
+					i += n;
+				}
+				return longs;
+			case SHORT:
+				short[] shorts = new short[block.myLength];
+				for (int i = 0; i < shorts.length; ) {
+					int n = fill(position, shorts.length - i, 2);
+					myBuffer.asShortBuffer().get(shorts, i, n);
+					position += n * 2;
+					i += n;
+				}
+				return shorts;
+			default:
+				byte[] bytes = new byte[block.myLength];
+				for (int i = 0; i < bytes.length; ) {
+					int n = fill(position, bytes.length - i, 1);
+					myBuffer.get(bytes, i, n);
+					position += n;
+					i += n;
+				}
+				return bytes;
+			}
+		}
+
+		//reads up to the given number of elements into the buffer, and returns how many were read
+		private int fill(long position, int elements, int size) throws IOException {
+			myBuffer.clear();
+			myBuffer.limit(Math.min(myBuffer.capacity() / size, elements) * size);
+			while (myBuffer.hasRemaining()) {
+				if (myChannel.read(myBuffer, position + myBuffer.position()) < 0) {
+					throw new IOException("Unexpected end of network file");
+				}
+			}
+			myBuffer.flip();
+			return myBuffer.remaining() / size;
+		}
+
+		private static int getSize(byte type) throws IOException {
+			switch (type) {
+			case FLOAT: return 4;
+			case DOUBLE: return 8;
+			case INT: return 4;
+			case LONG: return 8;
+			case SHORT: return 2;
+			case BYTE: return 1;
+			default: throw new IOException("Unknown block type " + type);
+			}
+		}
+	}
+
+}
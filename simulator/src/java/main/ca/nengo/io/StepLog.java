@@ -0,0 +1,849 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "StepLog.java". Description:
+"Logs values from a network to CSV files as it runs"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ca.nengo.model.InstantaneousOutput;
+import ca.nengo.model.Origin;
+import ca.nengo.model.RealOutput;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.SpikeOutput;
+import ca.nengo.model.StepListener;
+import ca.nengo.model.Termination;
+import ca.nengo.model.nef.impl.DecodedTermination;
+import ca.nengo.model.plasticity.impl.BCMTermination;
+import ca.nengo.model.plasticity.impl.PlasticEnsembleTermination;
+import ca.nengo.sim.SimulatorEvent;
+import ca.nengo.sim.SimulatorListener;
+
+/**
+ * <p>Logs values from a Network to a CSV file as it runs (this is the engine behind nef.Log in the
+ * Python scripting interface). Each row has the time, followed by a field for each Entry, in which
+ * the Entry's values are separated by semicolons.</p>
+ *
+ * <p>As a StepListener, the log reads each Entry at the start of every step, and writes a row every
+ * interval (or every few steps; see setSkipTicks()). Rows are copied into batches of primitive arrays,
+ * and formatted and written by a background thread, so logging adds little to each step. A batch is
+ * handed to the writer thread when it is full, when a second has passed since the last one, and when
+ * a simulation finishes (if the log is also added as a SimulatorListener). With auto-flush (see
+ * setAutoFlush()), each row is handed to the writer thread as soon as it is logged.</p>
+ *
+ * <p>A new file is started whenever time goes backwards (ie when a new run starts). Its name is made
+ * from a template, in which %(name)s is replaced with the name of the log and %(time)s with the date
+ * and time.</p>
+ *
+ * Example usage (Python syntax):
+ *   log = StepLog("model", File("logs"), "%(name)s-%(time)s.csv", 0.001)
+ *   log.addEntry(StepLog.OriginEntry("A", [network.getNode("A").getOrigin("X")], 0.01))
+ *   network.addStepListener(log)
+ *   network.simulator.addSimulatorListener(log)
+ */
+public class StepLog implements StepListener, SimulatorListener {
+
+	private static final double ourTolerance = 1e-10;
+	private static final int ourBatchRows = 256;
+	private static final int ourQueueCapacity = 16;
+	private static final long ourMaxBatchAge = 1000; //ms
+
+	private final String myName;
+	private final File myDirectory;
+	private final String myTemplate;
+	private final float myInterval;
+	private final List<Entry> myEntries;
+
+	private int mySkipTicks;
+	private boolean myAutoFlush;
+	private int myTickCount;
+	private float myTime = Float.NaN;
+	private double myNextTime;
+	private File myFile;
+
+	private int myRowWidth;
+	private Batch myBatch;
+	private long myBatchTime;
+	private BlockingQueue<Batch> myQueue;
+	private Thread myWriterThread;
+	private volatile IOException myError;
+
+	/**
+	 * @param name Name of the log (used in file names)
+	 * @param directory Directory in which files are written (created if necessary; may be null for
+	 * 		the working directory)
+	 * @param template Template for file names, eg "%(name)s-%(time)s.csv"
+	 * @param interval Simulation time between rows
+	 */
+	public StepLog(String name, File directory, String template, float interval) {
+		myName = name;
+		myDirectory = directory;
+		myTemplate = template;
+		myInterval = interval;
+		myEntries = new ArrayList<Entry>();
+	}
+
+	/**
+	 * @param entry A column of the log. Entries should be added before a simulation starts.
+	 */
+	public synchronized void addEntry(Entry entry) {
+		myEntries.add(entry);
+	}
+
+	/**
+	 * @return The columns of the log
+	 */
+	public synchronized Entry[] getEntries() {
+		return myEntries.toArray(new Entry[0]);
+	}
+
+	/**
+	 * @param skipTicks If positive, a row is written every skipTicks steps rather than every interval
+	 */
+	public void setSkipTicks(int skipTicks) {
+		mySkipTicks = skipTicks;
+	}
+
+	/**
+	 * @return Number of steps between rows, or 0 if rows are written every interval
+	 */
+	public int getSkipTicks() {
+		return mySkipTicks;
+	}
+
+	/**
+	 * @param autoFlush If true, each row is handed to the writer thread (and written to the file) as
+	 * 		soon as it is logged, rather than in batches. Takes effect when the next file is started.
+	 */
+	public void setAutoFlush(boolean autoFlush) {
+		myAutoFlush = autoFlush;
+	}
+
+	/**
+	 * @return True if each row is written as soon as it is logged
+	 */
+	public boolean getAutoFlush() {
+		return myAutoFlush;
+	}
+
+	/**
+	 * @return The file being written, or that was written by the latest run (null before the first run)
+	 */
+	public synchronized File getFile() {
+		return myFile;
+	}
+
+	/**
+	 * @see ca.nengo.model.StepListener#stepStarted(float)
+	 */
+	public synchronized void stepStarted(float time) {
+		if (myEntries.isEmpty()) {
+			return;
+		}
+
+		float dt;
+		if (Float.isNaN(myTime) || myTime > time) {
+			start();
+			dt = Float.NaN;
+		} else {
+			dt = time - myTime;
+		}
+		myTime = time;
+
+		for (int i = 0; i < myEntries.size(); i++) {
+			myEntries.get(i).tick(dt);
+		}
+
+		if (mySkipTicks > 0) {
+			if (myTickCount == 0) {
+				writeRow();
+			}
+			myTickCount = (myTickCount + 1) % mySkipTicks;
+		} else if (time + ourTolerance > myNextTime) {
+			myNextTime += myInterval;
+			writeRow();
+		}
+	}
+
+	/**
+	 * Hands rows logged so far to the writer thread, and waits until they have been written to the
+	 * file. The file stays open, and further rows are added to it.
+	 */
+	public void flush() {
+		Batch batch;
+		Thread writer;
+		synchronized (this) {
+			if (myQueue == null) {
+				return;
+			}
+			batch = myBatch;
+			writer = myWriterThread;
+			enqueue();
+		}
+
+		try {
+			batch.awaitWritten(writer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes any rows not yet written and closes the current file. Logging starts a new file at the
+	 * start of the next run.
+	 *
+	 * @throws IOException If there was an error writing the file
+	 */
+	public synchronized void close() throws IOException {
+		myTime = Float.NaN;
+		if (myQueue == null) {
+			return;
+		}
+
+		try {
+			if (myBatch.size() > 0) {
+				myQueue.put(myBatch);
+			}
+			myQueue.put(Batch.END);
+			myWriterThread.join();
+		} catch (InterruptedException e) {
+			myWriterThread.interrupt();
+			throw new IOException("Interrupted while closing " + myFile);
+		} finally {
+			myQueue = null;
+			myBatch = null;
+			myWriterThread = null;
+		}
+
+		if (myError != null) {
+			IOException error = myError;
+			myError = null;
+			throw error;
+		}
+	}
+
+	/**
+	 * Flushes when a simulation finishes, so that the file is complete.
+	 *
+	 * @see ca.nengo.sim.SimulatorListener#processEvent(ca.nengo.sim.SimulatorEvent)
+	 */
+	public void processEvent(SimulatorEvent event) {
+		if (event.getType() == SimulatorEvent.Type.FINISHED) {
+			flush();
+		}
+	}
+
+	//starts a new file
+	private void start() {
+		try {
+			close();
+		} catch (IOException e) {
+			System.err.println("IO Exception in StepLog: " + e);
+		}
+
+		myRowWidth = 1;
+		for (int i = 0; i < myEntries.size(); i++) {
+			Entry entry = myEntries.get(i);
+			entry.reset();
+			myRowWidth += entry.getLength();
+		}
+		myNextTime = 0;
+		myTickCount = 0;
+		myFile = makeFile();
+
+		final Entry[] entries = myEntries.toArray(new Entry[0]);
+		final File file = myFile;
+		final BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(ourQueueCapacity);
+		myError = null;
+
+		myWriterThread = new Thread("StepLog " + myFile.getName()) {
+			public void run() {
+				try {
+					writeAll(queue, file, entries);
+				} catch (IOException e) {
+					myError = e;
+					System.err.println("IO Exception in StepLog: " + e);
+					drain(queue);
+				} catch (InterruptedException e) {
+					myError = new IOException("Writer thread was interrupted");
+				}
+			}
+		};
+		myWriterThread.setDaemon(true);
+		myWriterThread.start();
+
+		myQueue = queue;
+		myBatch = new Batch(myAutoFlush ? 1 : ourBatchRows, myRowWidth);
+		myBatchTime = System.currentTimeMillis();
+	}
+
+	private File makeFile() {
+		String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		String name = myTemplate.replace("%(name)s", myName).replace("%(time)s", time);
+		if (!name.endsWith(".csv")) {
+			name = name + ".csv";
+		}
+		if (myDirectory != null) {
+			myDirectory.mkdirs();
+		}
+		return new File(myDirectory, name);
+	}
+
+	private void writeRow() {
+		float[] row = myBatch.nextRow();
+		int offset = myBatch.rowOffset();
+		row[offset++] = myTime;
+		for (int i = 0; i < myEntries.size(); i++) {
+			Entry entry = myEntries.get(i);
+			entry.read(row, offset);
+			entry.clear();
+			offset += entry.getLength();
+		}
+
+		if (myBatch.isFull() || System.currentTimeMillis() - myBatchTime > ourMaxBatchAge) {
+			enqueue();
+		}
+	}
+
+	private void enqueue() {
+		try {
+			myQueue.put(myBatch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		myBatch = new Batch(myBatch.capacity(), myRowWidth);
+		myBatchTime = System.currentTimeMillis();
+	}
+
+	private static void writeAll(BlockingQueue<Batch> queue, File file, Entry[] entries) throws IOException, InterruptedException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "US-ASCII"), 1 << 16);
+		try {
+			StringBuilder line = new StringBuilder("time");
+			for (int i = 0; i < entries.length; i++) {
+				line.append(',').append(entries[i].getName());
+			}
+			writer.write(line.append('\n').toString());
+
+			Batch batch;
+			while ((batch = queue.take()) != Batch.END) {
+				float[] data = batch.myData;
+				for (int r = 0; r < batch.size(); r++) {
+					int offset = r * batch.myWidth;
+					line.setLength(0);
+					line.append(String.format(Locale.US, "%1.3f", data[offset++]));
+					for (int i = 0; i < entries.length; i++) {
+						line.append(',');
+						entries[i].format(data, offset, line);
+						offset += entries[i].getLength();
+					}
+					writer.write(line.append('\n').toString());
+				}
+				writer.flush();
+				batch.markWritten();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	//after an error, keeps taking batches so that the simulation doesn't wait forever
+	private static void drain(BlockingQueue<Batch> queue) {
+		try {
+			Batch batch;
+			while ((batch = queue.take()) != Batch.END) {
+				batch.markWritten(); //not written, but flush() needn't wait for it
+			}
+		} catch (InterruptedException e) {
+		}
+	}
+
+	/**
+	 * A column of a StepLog, which reads one or more values at each step.
+	 */
+	public abstract static class Entry {
+
+		private final String myName;
+		private int myLength;
+
+		/**
+		 * @param name Name of the column
+		 */
+		public Entry(String name) {
+			myName = name;
+		}
+
+		/**
+		 * @return Name of the column
+		 */
+		public String getName() {
+			return myName;
+		}
+
+		/**
+		 * @return Number of values in the column (fixed when a file is started)
+		 */
+		public int getLength() {
+			return myLength;
+		}
+
+		/**
+		 * Called when a file is started. Finds the number of values and clears any state.
+		 */
+		public void reset() {
+			myLength = getData().length;
+		}
+
+		/**
+		 * Called at the start of each step.
+		 *
+		 * @param dt Time since the last step (NaN at the first step of a file)
+		 */
+		public abstract void tick(float dt);
+
+		/**
+		 * @param row Array into which the current values are to be copied
+		 * @param offset Position in row of the first value
+		 */
+		public abstract void read(float[] row, int offset);
+
+		/**
+		 * Called after the values have been read for a row.
+		 */
+		public void clear() {
+		}
+
+		/**
+		 * Called by the writer thread to write values as text. By default they are separated by
+		 * semicolons, each with the format given by getFormat().
+		 *
+		 * @param row Array that contains the values
+		 * @param offset Position in row of the first value
+		 * @param out Text of the current line, to which the values are to be appended
+		 */
+		public void format(float[] row, int offset, StringBuilder out) {
+			String format = getFormat();
+			for (int i = 0; i < myLength; i++) {
+				if (i > 0) {
+					out.append(';');
+				}
+				out.append(String.format(Locale.US, format, row[offset + i]));
+			}
+		}
+
+		/**
+		 * @return Format of each value (see java.util.Formatter)
+		 */
+		protected String getFormat() {
+			return "%1.3f";
+		}
+
+		/**
+		 * @return Current unfiltered values
+		 */
+		protected abstract float[] getData();
+
+		//copies data into a row, padding with zeros if its length has changed
+		protected void copy(float[] data, float[] row, int offset) {
+			int n = Math.min(data.length, myLength);
+			System.arraycopy(data, 0, row, offset, n);
+			for (int i = n; i < myLength; i++) {
+				row[offset + i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Values of one or more Origins (concatenated), optionally low-pass filtered.
+	 */
+	public static class OriginEntry extends Entry {
+
+		private final Origin[] myOrigins;
+		private final float myTau;
+		private float[] myValues;
+		private float[] myData;
+		private float myDt = Float.NaN;
+		private float myDecay;
+		private float myGain;
+
+		/**
+		 * @param name Name of the column
+		 * @param origins Origins whose values are logged
+		 * @param tau Time constant of a low-pass filter applied to the values (no filter if <= 0)
+		 */
+		public OriginEntry(String name, Origin[] origins, float tau) {
+			super(name);
+			myOrigins = origins;
+			myTau = tau;
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#reset()
+		 */
+		public void reset() {
+			super.reset();
+			myValues = new float[getLength()];
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#tick(float)
+		 */
+		public void tick(float dt) {
+			float[] data = getData();
+			int n = Math.min(data.length, myValues.length);
+			if (myTau <= 0 || Float.isNaN(dt)) {
+				System.arraycopy(data, 0, myValues, 0, n);
+			} else {
+				if (dt != myDt) {
+					myDt = dt;
+					myDecay = 1f - dt / myTau;
+					myGain = dt / myTau;
+				}
+				for (int i = 0; i < n; i++) {
+					myValues[i] = myValues[i] * myDecay + data[i] * myGain;
+				}
+			}
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#read(float[], int)
+		 */
+		public void read(float[] row, int offset) {
+			copy(myValues, row, offset);
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#getData()
+		 */
+		protected float[] getData() {
+			if (myData == null || myData.length != getDimensions()) {
+				myData = new float[getDimensions()];
+			}
+			int offset = 0;
+			for (int i = 0; i < myOrigins.length; i++) {
+				offset = getValues(myOrigins[i], myData, offset);
+			}
+			return myData;
+		}
+
+		private int getDimensions() {
+			int result = 0;
+			for (int i = 0; i < myOrigins.length; i++) {
+				result += myOrigins[i].getDimensions();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Numbers of spikes from one or more Origins (concatenated) since the last row. Optionally, only
+	 * every (skip+1)th neuron is logged.
+	 */
+	public static class SpikeCountEntry extends Entry {
+
+		private final Origin[] myOrigins;
+		private final int mySkip;
+		private float[] myCounts;
+		private float[] myData;
+
+		/**
+		 * @param name Name of the column
+		 * @param origins Spike Origins (eg AXON Origins of ensembles)
+		 * @param skip Number of neurons to skip between logged neurons
+		 */
+		public SpikeCountEntry(String name, Origin[] origins, int skip) {
+			super(name);
+			myOrigins = origins;
+			mySkip = skip;
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#reset()
+		 */
+		public void reset() {
+			super.reset();
+			myCounts = new float[getLength()];
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#tick(float)
+		 */
+		public void tick(float dt) {
+			float[] data = getAllData();
+			for (int i = 0, j = 0; i < data.length && j < myCounts.length; i += mySkip + 1, j++) {
+				myCounts[j] += data[i];
+			}
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#read(float[], int)
+		 */
+		public void read(float[] row, int offset) {
+			copy(myCounts, row, offset);
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#clear()
+		 */
+		public void clear() {
+			for (int i = 0; i < myCounts.length; i++) {
+				myCounts[i] = 0;
+			}
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#format(float[], int, java.lang.StringBuilder)
+		 */
+		public void format(float[] row, int offset, StringBuilder out) {
+			for (int i = 0; i < getLength(); i++) {
+				if (i > 0) {
+					out.append(';');
+				}
+				out.append((long) row[offset + i]);
+			}
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#getData()
+		 */
+		protected float[] getData() {
+			float[] all = getAllData();
+			return new float[(all.length + mySkip) / (mySkip + 1)];
+		}
+
+		private float[] getAllData() {
+			int dimensions = 0;
+			for (int i = 0; i < myOrigins.length; i++) {
+				dimensions += myOrigins[i].getDimensions();
+			}
+			if (myData == null || myData.length != dimensions) {
+				myData = new float[dimensions];
+			}
+			int offset = 0;
+			for (int i = 0; i < myOrigins.length; i++) {
+				offset = getValues(myOrigins[i], myData, offset);
+			}
+			return myData;
+		}
+	}
+
+	/**
+	 * Input, output, transform or learning threshold of a Termination.
+	 */
+	public static class TerminationEntry extends Entry {
+
+		/**
+		 * Values of a Termination that can be logged.
+		 */
+		public enum Kind {
+			/**
+			 * Input to the Termination
+			 */
+			INPUT,
+
+			/**
+			 * Filtered output of a PlasticEnsembleTermination (or the threshold of a BCMTermination
+			 * if there is no output yet)
+			 */
+			OUTPUT,
+
+			/**
+			 * Transform (flattened by rows) of a DecodedTermination or PlasticEnsembleTermination
+			 */
+			TRANSFORM,
+
+			/**
+			 * Threshold of a BCMTermination
+			 */
+			THETA
+		}
+
+		private final Termination myTermination;
+		private final Kind myKind;
+		private float[] myValues;
+
+		/**
+		 * @param name Name of the column
+		 * @param termination Termination whose values are logged
+		 * @param kind Values to log
+		 */
+		public TerminationEntry(String name, Termination termination, Kind kind) {
+			super(name);
+			myTermination = termination;
+			myKind = kind;
+			if ((kind == Kind.TRANSFORM && !(termination instanceof DecodedTermination || termination instanceof PlasticEnsembleTermination))
+					|| (kind == Kind.OUTPUT && !(termination instanceof PlasticEnsembleTermination))
+					|| (kind == Kind.THETA && !(termination instanceof BCMTermination))) {
+				throw new IllegalArgumentException("Can't log " + kind + " of termination " + termination.getName());
+			}
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#reset()
+		 */
+		public void reset() {
+			super.reset();
+			myValues = getData();
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#tick(float)
+		 */
+		public void tick(float dt) {
+			myValues = getData();
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#read(float[], int)
+		 */
+		public void read(float[] row, int offset) {
+			copy(myValues, row, offset);
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#getFormat()
+		 */
+		protected String getFormat() {
+			return myKind == Kind.INPUT ? "%1.5f" : "%.3e";
+		}
+
+		/**
+		 * @see ca.nengo.io.StepLog.Entry#getData()
+		 */
+		protected float[] getData() {
+			float[] result = null;
+			if (myKind == Kind.INPUT) {
+				InstantaneousOutput input = myTermination.getInput();
+				result = (input instanceof RealOutput) ? ((RealOutput) input).getValues() : null;
+			} else if (myKind == Kind.OUTPUT) {
+				result = ((PlasticEnsembleTermination) myTermination).getFilteredOutput();
+				if (result == null && myTermination instanceof BCMTermination) {
+					result = ((BCMTermination) myTermination).getTheta();
+				}
+			} else if (myKind == Kind.TRANSFORM) {
+				float[][] transform = (myTermination instanceof DecodedTermination)
+					? ((DecodedTermination) myTermination).getTransform()
+					: ((PlasticEnsembleTermination) myTermination).getTransform();
+				int columns = transform.length > 0 ? transform[0].length : 0;
+				result = new float[transform.length * columns];
+				for (int i = 0; i < transform.length; i++) {
+					System.arraycopy(transform[i], 0, result, i * columns, columns);
+				}
+			} else {
+				result = ((BCMTermination) myTermination).getTheta();
+			}
+			return result == null ? new float[0] : result;
+		}
+	}
+
+	//copies the values of an Origin into an array (spikes as 1 or 0), returning the next offset
+	private static int getValues(Origin origin, float[] result, int offset) {
+		InstantaneousOutput output;
+		try {
+			output = origin.getValues();
+		} catch (SimulationException e) {
+			throw new RuntimeException("Can't log origin " + origin.getName(), e);
+		}
+
+		if (output instanceof RealOutput) {
+			float[] values = ((RealOutput) output).getValues();
+			int n = Math.min(values.length, result.length - offset);
+			System.arraycopy(values, 0, result, offset, n);
+			return offset + n;
+		} else if (output instanceof SpikeOutput) {
+			boolean[] values = ((SpikeOutput) output).getValues();
+			int n = Math.min(values.length, result.length - offset);
+			for (int i = 0; i < n; i++) {
+				result[offset + i] = values[i] ? 1 : 0;
+			}
+			return offset + n;
+		}
+		return offset;
+	}
+
+	/**
+	 * Rows packed into a primitive array: for each row, the time followed by the values of each Entry.
+	 */
+	private static class Batch {
+
+		static final Batch END = new Batch(0, 0);
+
+		private final float[] myData;
+		private final int myWidth;
+		private final int myCapacity;
+		private int mySize;
+		private boolean myWritten;
+
+		public Batch(int rows, int width) {
+			myData = new float[rows * width];
+			myWidth = width;
+			myCapacity = rows;
+		}
+
+		public int size() {
+			return mySize;
+		}
+
+		public int capacity() {
+			return myCapacity;
+		}
+
+		public boolean isFull() {
+			return mySize == myCapacity;
+		}
+
+		public synchronized void markWritten() {
+			myWritten = true;
+			notifyAll();
+		}
+
+		//waits until the batch has been written, or the writer thread has stopped
+		public synchronized void awaitWritten(Thread writer) throws InterruptedException {
+			while (!myWritten && writer.isAlive()) {
+				wait(100);
+			}
+		}
+
+		//adds a row, returning the data array (see rowOffset())
+		public float[] nextRow() {
+			mySize++;
+			return myData;
+		}
+
+		public int rowOffset() {
+			return (mySize - 1) * myWidth;
+		}
+	}
+
+}
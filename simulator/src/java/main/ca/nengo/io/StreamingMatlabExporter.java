@@ -0,0 +1,749 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "StreamingMatlabExporter.java". Description:
+"Streams data to a Matlab .mat file with bounded memory"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import ca.nengo.sim.SimulatorEvent;
+import ca.nengo.sim.SimulatorListener;
+import ca.nengo.util.Probe;
+import ca.nengo.util.SpikePattern;
+import ca.nengo.util.TimeSeries;
+
+/**
+ * <p>Writes data to a Matlab .mat file (level 5) as it arrives, using a bounded amount of memory.
+ * Unlike MatlabExporter, which holds every variable in memory until write(), each variable here
+ * has a fixed-size buffer, which is spilled to a scratch file next to the destination when full.
+ * The .mat file is assembled from the scratch file when the exporter is closed.</p>
+ *
+ * <p>Variables grow by columns: each sample of a TimeSeries is a column of the variable (so a variable
+ * has one row per dimension, the transpose of MatlabExporter's layout), and its times are a row
+ * vector in name_time. Spikes are stored as events, one column of [neuron (from 1); time] each.</p>
+ *
+ * <p>After close(), the exporter can be opened again (eg by the next run of a simulation), and
+ * further data are appended to the existing variables. An exporter created with append=true appends
+ * in the same way to a file written earlier by another StreamingMatlabExporter. Other variables in
+ * the file are kept as they are, but can't be appended to. Existing data are copied on disk, but
+ * never into memory.</p>
+ *
+ * <p>When appending, the file is extended in place. The first variable that grows keeps its
+ * position, and the elements after it are moved toward the end of the file to make room. A close()
+ * therefore costs I/O in proportion to the new data plus the elements after the first growing
+ * variable. Variables are written with the most rows first, so that the largest (eg a Probe's values,
+ * rather than its times) usually stays in place. A failure during close() can leave the file
+ * incomplete. If the file can't be extended in place, it is rewritten through a temporary file, which
+ * copies all of its data and needs up to twice its size on disk.</p>
+ *
+ * <p>As a SimulatorListener, the exporter is opened when a simulation starts and closed when it
+ * finishes, so the file is complete after each run. Samples from Probes added with addProbe() are
+ * written as they are collected (see Probe.Listener).</p>
+ *
+ * Example usage (Python syntax):
+ *   exporter = StreamingMatlabExporter(File("output/run.mat"))
+ *   exporter.addProbe("error", network.simulator.addProbe("error", "X", False))
+ *   network.simulator.addSimulatorListener(exporter)
+ */
+public class StreamingMatlabExporter implements SimulatorListener, Probe.Listener {
+
+	private static final int miINT8 = 1;
+	private static final int miINT32 = 5;
+	private static final int miUINT32 = 6;
+	private static final int miDOUBLE = 9;
+	private static final int miMATRIX = 14;
+	private static final int miCOMPRESSED = 15;
+	private static final int mxDOUBLE_CLASS = 6;
+
+	private static final int ourHeaderSize = 128;
+	private static final long ourMaxDataBytes = Integer.MAX_VALUE - 1024; //Matlab limits a variable to 2GB
+	private static final int ourDefaultBufferSize = 1 << 16;
+	private static final int ourMatrixHeaderLimit = 256; //enough for flags, dimensions, name and data tag
+
+	private final File myDestination;
+	private final int myBufferSize;
+	private final Map<String, Variable> myVariables;
+	private final Map<Probe, String> myProbeNames;
+
+	private boolean myAppend;
+	private ByteOrder myOrder;
+	private List<Element> myExistingElements;
+	private RandomAccessFile myExisting;
+	private RandomAccessFile mySpill;
+	private ByteBuffer myByteBuffer;
+	private IOException myError;
+
+	/**
+	 * @param destination File to which data are to be written (should have extension .mat). It is
+	 * 		overwritten when the exporter is first opened.
+	 */
+	public StreamingMatlabExporter(File destination) {
+		this(destination, false, ourDefaultBufferSize);
+	}
+
+	/**
+	 * @param destination File to which data are to be written (should have extension .mat)
+	 * @param append If true and the destination exists, data are appended to the variables it contains
+	 * 		(it must have been written by a StreamingMatlabExporter); otherwise it is overwritten
+	 * @param bufferSize Number of values buffered in memory for each variable before they are written
+	 * 		to the scratch file
+	 */
+	public StreamingMatlabExporter(File destination, boolean append, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		myDestination = destination;
+		myAppend = append;
+		myBufferSize = bufferSize;
+		myVariables = new LinkedHashMap<String, Variable>();
+		myProbeNames = new HashMap<Probe, String>();
+	}
+
+	/**
+	 * @param name Matlab variable name for samples collected by the Probe (times are stored in
+	 * 		name_time)
+	 * @param probe A Probe whose samples are to be written as they are collected
+	 */
+	public synchronized void addProbe(String name, Probe probe) {
+		myProbeNames.put(probe, MatlabExporter.makeVariableNameValid(name));
+		probe.addListener(this);
+	}
+
+	/**
+	 * @param probe A Probe whose samples are no longer to be written
+	 */
+	public synchronized void removeProbe(Probe probe) {
+		if (myProbeNames.remove(probe) != null) {
+			probe.removeListener(this);
+		}
+	}
+
+	/**
+	 * Opens the exporter, reading the variables of the destination file if it is to be appended to.
+	 * Does nothing if already open. The add() methods open the exporter if necessary.
+	 *
+	 * @throws IOException If the scratch file can't be created, or the destination can't be read
+	 */
+	public synchronized void open() throws IOException {
+		if (mySpill != null) {
+			return;
+		}
+
+		myExistingElements = new ArrayList<Element>();
+		myOrder = ByteOrder.LITTLE_ENDIAN;
+		if (myAppend && myDestination.exists()) {
+			myExisting = new RandomAccessFile(myDestination, "rw");
+			readElements();
+		}
+
+		File spill = getSpillFile();
+		mySpill = new RandomAccessFile(spill, "rw");
+		mySpill.setLength(0);
+		myError = null;
+	}
+
+	/**
+	 * Appends one sample to a variable, and its time to name_time.
+	 *
+	 * @param name Matlab variable name
+	 * @param time Time of the sample
+	 * @param values Values of the sample (a column of the variable)
+	 * @throws IOException If there is a problem writing to the scratch file
+	 */
+	public synchronized void add(String name, float time, float[] values) throws IOException {
+		name = MatlabExporter.makeVariableNameValid(name);
+		addColumn(name + "_time", new float[]{time});
+		addColumn(name, values);
+	}
+
+	/**
+	 * Appends the samples of a TimeSeries to a variable, and their times to name_time.
+	 *
+	 * @param name Matlab variable name
+	 * @param data Data to be appended to the Matlab variable
+	 * @throws IOException If there is a problem writing to the scratch file
+	 */
+	public synchronized void add(String name, TimeSeries data) throws IOException {
+		float[] times = data.getTimes();
+		float[][] values = data.getValues();
+		for (int i = 0; i < times.length; i++) {
+			add(name, times[i], values[i]);
+		}
+	}
+
+	/**
+	 * Appends the spikes of a SpikePattern to a variable, as columns of [neuron (from 1); time].
+	 *
+	 * @param name Matlab variable name
+	 * @param pattern Spike times for a group of neurons
+	 * @throws IOException If there is a problem writing to the scratch file
+	 */
+	public synchronized void add(String name, SpikePattern pattern) throws IOException {
+		name = MatlabExporter.makeVariableNameValid(name);
+		float[] event = new float[2];
+		for (int i = 0; i < pattern.getNumNeurons(); i++) {
+			float[] times = pattern.getSpikeTimes(i);
+			event[0] = i + 1;
+			for (int j = 0; j < times.length; j++) {
+				event[1] = times[j];
+				addColumn(name, event);
+			}
+		}
+	}
+
+	/**
+	 * Writes the .mat file, containing all data added since the exporter was created (and any data
+	 * it was opened to append to), and deletes the scratch file. Does nothing if not open.
+	 *
+	 * @throws IOException If there is a problem writing the file, or there was a problem writing
+	 * 		samples collected from Probes
+	 */
+	public synchronized void close() throws IOException {
+		if (mySpill == null) {
+			return;
+		}
+
+		File temp = null;
+		try {
+			for (Variable variable : myVariables.values()) {
+				spill(variable);
+			}
+			if (myExisting == null || !updateFile()) {
+				temp = new File(myDestination.getPath() + ".tmp");
+				writeFile(temp);
+			}
+		} finally {
+			if (myExisting != null) {
+				myExisting.close();
+				myExisting = null;
+			}
+			mySpill.close();
+			mySpill = null;
+			getSpillFile().delete();
+		}
+
+		if (temp != null) {
+			if (myDestination.exists() && !myDestination.delete()) {
+				throw new IOException("Can't replace " + myDestination);
+			}
+			if (!temp.renameTo(myDestination)) {
+				throw new IOException("Can't rename " + temp + " to " + myDestination);
+			}
+		}
+
+		//the variables are now in the destination file, and further data are appended to them
+		myVariables.clear();
+		myExistingElements = null;
+		myAppend = true;
+
+		if (myError != null) {
+			IOException error = myError;
+			myError = null;
+			throw error;
+		}
+	}
+
+	/**
+	 * @see ca.nengo.util.Probe.Listener#sampleCollected(ca.nengo.util.Probe, float, float[])
+	 */
+	public synchronized void sampleCollected(Probe probe, float time, float[] values) {
+		String name = myProbeNames.get(probe);
+		if (name == null || myError != null) {
+			return;
+		}
+		try {
+			add(name, time, values);
+		} catch (IOException e) {
+			myError = e; //reported by close()
+		}
+	}
+
+	/**
+	 * @see ca.nengo.sim.SimulatorListener#processEvent(ca.nengo.sim.SimulatorEvent)
+	 */
+	public void processEvent(SimulatorEvent event) {
+		try {
+			if (event.getType() == SimulatorEvent.Type.STARTED) {
+				open();
+			} else if (event.getType() == SimulatorEvent.Type.FINISHED) {
+				close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("IO Exception in StreamingMatlabExporter: " + e);
+		}
+	}
+
+	private File getSpillFile() {
+		return new File(myDestination.getPath() + ".part");
+	}
+
+	private void addColumn(String name, float[] values) throws IOException {
+		open();
+
+		Variable variable = myVariables.get(name);
+		if (variable == null) {
+			variable = new Variable(name, values.length);
+			for (int i = 0; i < myExistingElements.size(); i++) {
+				Element element = myExistingElements.get(i);
+				if (name.equals(element.myName)) {
+					if (!element.myAppendable || element.myRows != values.length) {
+						throw new IOException("Can't append " + values.length + "-row columns to variable " + name
+								+ " in " + myDestination);
+					}
+					variable.myExisting = element;
+					variable.myColumns = element.myColumns;
+					myExistingElements.remove(i);
+					break;
+				}
+			}
+			myVariables.put(name, variable);
+		} else if (values.length != variable.myRows) {
+			throw new IllegalArgumentException("Variable " + name + " has " + variable.myRows + " rows");
+		}
+
+		if ((variable.myColumns + 1) * variable.myRows * 8L > ourMaxDataBytes) {
+			throw new IOException("Variable " + name + " would exceed the size limit of a .mat file variable");
+		}
+
+		if (variable.myBufferCount + values.length > variable.myBuffer.length) {
+			spill(variable);
+		}
+		System.arraycopy(values, 0, variable.myBuffer, variable.myBufferCount, values.length);
+		variable.myBufferCount += values.length;
+		variable.myColumns++;
+	}
+
+	//writes a variable's buffer to the end of the scratch file
+	private void spill(Variable variable) throws IOException {
+		if (variable.myBufferCount == 0) {
+			return;
+		}
+
+		int bytes = variable.myBufferCount * 8;
+		if (myByteBuffer == null || myByteBuffer.capacity() < bytes) {
+			myByteBuffer = ByteBuffer.allocateDirect(Math.max(bytes, myBufferSize * 8));
+		}
+		myByteBuffer.clear();
+		myByteBuffer.order(myOrder);
+		for (int i = 0; i < variable.myBufferCount; i++) {
+			myByteBuffer.putDouble(variable.myBuffer[i]);
+		}
+		myByteBuffer.flip();
+
+		FileChannel channel = mySpill.getChannel();
+		long offset = channel.size();
+		channel.position(offset);
+		while (myByteBuffer.hasRemaining()) {
+			channel.write(myByteBuffer);
+		}
+		variable.addBlock(offset, bytes);
+		variable.myBufferCount = 0;
+	}
+
+	private void writeFile(File file) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			writeFully(channel, makeHeader());
+
+			for (Element element : myExistingElements) {
+				transfer(myExisting.getChannel(), element.myOffset, element.myLength, channel);
+			}
+
+			for (Variable variable : getVariablesBySize(myVariables.values())) {
+				if (variable.myExisting != null) {
+					writeVariable(variable, channel, myExisting.getChannel(), variable.myExisting.myDataOffset);
+				} else {
+					writeVariable(variable, channel, null, 0);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * Extends the destination file in place. Elements from the first one that grows are moved toward
+	 * the end of the file, in reverse order so that none is overwritten before it has been moved, and
+	 * new variables follow them. Returns false (without changing the file) if this would move any
+	 * element toward the start of the file.
+	 */
+	private boolean updateFile() throws IOException {
+		Map<Element, Variable> grown = new IdentityHashMap<Element, Variable>();
+		List<Element> elements = new ArrayList<Element>(myExistingElements);
+		List<Variable> added = new ArrayList<Variable>();
+		for (Variable variable : myVariables.values()) {
+			if (variable.myExisting == null) {
+				added.add(variable);
+			} else {
+				grown.put(variable.myExisting, variable);
+				elements.add(variable.myExisting);
+			}
+		}
+		Collections.sort(elements, new Comparator<Element>() {
+			public int compare(Element a, Element b) {
+				return a.myOffset < b.myOffset ? -1 : (a.myOffset > b.myOffset ? 1 : 0);
+			}
+		});
+
+		int first = 0;
+		while (first < elements.size() && !grown.containsKey(elements.get(first))) {
+			first++;
+		}
+		long position = elements.isEmpty() ? ourHeaderSize : elements.get(elements.size() - 1).end();
+		long[] offsets = new long[elements.size()];
+		if (first < elements.size()) {
+			position = elements.get(first).myOffset;
+		}
+		for (int i = first; i < elements.size(); i++) {
+			Element element = elements.get(i);
+			offsets[i] = position;
+			Variable variable = grown.get(element);
+			if (position < element.myOffset
+					|| (variable != null && position + variable.getHeaderSize() < element.myDataOffset)) {
+				return false;
+			}
+			position += (variable == null) ? element.myLength : variable.getElementSize();
+		}
+
+		FileChannel channel = myExisting.getChannel();
+		for (int i = elements.size() - 1; i >= first; i--) {
+			Element element = elements.get(i);
+			Variable variable = grown.get(element);
+			if (variable == null) {
+				move(channel, element.myOffset, offsets[i], element.myLength);
+			} else {
+				long dataOffset = offsets[i] + variable.getHeaderSize();
+				move(channel, element.myDataOffset, dataOffset, element.myDataBytes);
+				channel.position(offsets[i]);
+				writeVariable(variable, channel, channel, dataOffset);
+			}
+		}
+
+		channel.position(position);
+		for (Variable variable : getVariablesBySize(added)) {
+			writeVariable(variable, channel, null, 0);
+		}
+		channel.truncate(channel.position());
+		channel.force(false);
+		return true;
+	}
+
+	/*
+	 * Writes a matrix element for a variable at the channel's position, with existing data from the
+	 * given channel (if any) followed by the spilled data. If the existing data are in the same
+	 * channel, they must already be where they belong in the element.
+	 */
+	private void writeVariable(Variable variable, FileChannel channel, FileChannel existing, long existingOffset) throws IOException {
+		long dataBytes = variable.myColumns * variable.myRows * 8L;
+		writeFully(channel, makeMatrixHeader(variable.myName, variable.myRows, variable.myColumns, dataBytes));
+		if (variable.myExisting != null) {
+			if (existing == channel) {
+				channel.position(existingOffset + variable.myExisting.myDataBytes);
+			} else {
+				transfer(existing, existingOffset, variable.myExisting.myDataBytes, channel);
+			}
+		}
+		FileChannel spill = mySpill.getChannel();
+		for (int i = 0; i < variable.myNumBlocks; i++) {
+			transfer(spill, variable.myBlockOffsets[i], variable.myBlockLengths[i], channel);
+		}
+		writeFully(channel, ByteBuffer.allocate(padding(dataBytes)));
+	}
+
+	//variables with the most rows first, so that the largest is the one most likely to stay in place
+	private static List<Variable> getVariablesBySize(Collection<Variable> variables) {
+		List<Variable> result = new ArrayList<Variable>(variables);
+		Collections.sort(result, new Comparator<Variable>() {
+			public int compare(Variable a, Variable b) {
+				return b.myRows - a.myRows;
+			}
+		});
+		return result;
+	}
+
+	//copies bytes to a later position in the same file, from the end back, so that overlap is safe
+	private void move(FileChannel channel, long from, long to, long length) throws IOException {
+		if (from == to || length == 0) {
+			return;
+		}
+		if (myByteBuffer == null || myByteBuffer.capacity() < myBufferSize * 8) {
+			myByteBuffer = ByteBuffer.allocateDirect(myBufferSize * 8);
+		}
+		long remaining = length;
+		while (remaining > 0) {
+			int n = (int) Math.min(remaining, myByteBuffer.capacity());
+			remaining -= n;
+			myByteBuffer.clear();
+			myByteBuffer.limit(n);
+			while (myByteBuffer.hasRemaining()) {
+				if (channel.read(myByteBuffer, from + remaining + myByteBuffer.position()) < 0) {
+					throw new IOException("Unexpected end of .mat file");
+				}
+			}
+			myByteBuffer.flip();
+			while (myByteBuffer.hasRemaining()) {
+				channel.write(myByteBuffer, to + remaining + myByteBuffer.position());
+			}
+		}
+	}
+
+	private ByteBuffer makeHeader() {
+		ByteBuffer result = ByteBuffer.allocate(ourHeaderSize).order(myOrder);
+		String text = "MATLAB 5.0 MAT-file, Platform: Java, Created by: Nengo StreamingMatlabExporter on " + new Date();
+		for (int i = 0; i < 116; i++) {
+			result.put((byte) (i < text.length() ? text.charAt(i) : ' '));
+		}
+		result.putLong(0); //no subsystem data
+		result.putShort((short) 0x0100);
+		result.putShort((short) ('M' << 8 | 'I')); //reads as "IM" if little-endian
+		result.flip();
+		return result;
+	}
+
+	//everything in a matrix element up to its data
+	private ByteBuffer makeMatrixHeader(String name, int rows, int columns, long dataBytes) {
+		int nameLength = name.length() + padding(name.length());
+		long size = 16 + 16 + (8 + nameLength) + (8 + dataBytes + padding(dataBytes));
+
+		ByteBuffer result = ByteBuffer.allocate(8 + 16 + 16 + 8 + nameLength + 8).order(myOrder);
+		result.putInt(miMATRIX).putInt((int) size);
+		result.putInt(miUINT32).putInt(8).putInt(mxDOUBLE_CLASS).putInt(0);
+		result.putInt(miINT32).putInt(8).putInt(rows).putInt(columns);
+		result.putInt(miINT8).putInt(name.length());
+		for (int i = 0; i < nameLength; i++) {
+			result.put((byte) (i < name.length() ? name.charAt(i) : 0));
+		}
+		result.putInt(miDOUBLE).putInt((int) dataBytes);
+		result.flip();
+		return result;
+	}
+
+	private static int padding(long bytes) {
+		return (int) ((8 - bytes % 8) % 8);
+	}
+
+	/*
+	 * Finds the elements of the destination file. Each is kept as it is, unless it is a matrix written
+	 * by this class, in which case it can be appended to.
+	 */
+	private void readElements() throws IOException {
+		FileChannel channel = myExisting.getChannel();
+		ByteBuffer header = readFully(channel, 0, ourHeaderSize);
+		if (header.get(126) == 'M' && header.get(127) == 'I') {
+			myOrder = ByteOrder.BIG_ENDIAN; //new data are written in the same byte order
+		} else if (header.get(126) != 'I' || header.get(127) != 'M') {
+			throw new IOException(myDestination + " is not a level 5 .mat file");
+		}
+
+		long offset = ourHeaderSize;
+		long fileSize = channel.size();
+		while (offset + 8 <= fileSize) {
+			ByteBuffer tag = readFully(channel, offset, 8);
+			int type = tag.getInt();
+			long size = tag.getInt() & 0xFFFFFFFFL;
+
+			Element element = new Element();
+			element.myOffset = offset;
+			element.myLength = 8 + size + (type == miCOMPRESSED ? 0 : padding(size)); //compressed elements aren't padded
+			if (type == miMATRIX) {
+				parseMatrix(readFully(channel, offset + 8, (int) Math.min(size, ourMatrixHeaderLimit)), element);
+				element.myDataOffset += offset + 8;
+			} else if (type == miCOMPRESSED) {
+				InputStream in = new InflaterInputStream(Channels.newInputStream(channel.position(offset + 8)));
+				ByteBuffer inflated = ByteBuffer.wrap(readUpTo(in, 8 + ourMatrixHeaderLimit)).order(myOrder);
+				if (inflated.limit() >= 8 && inflated.getInt(0) == miMATRIX) {
+					inflated.position(8);
+					parseMatrix(inflated.slice().order(myOrder), element);
+					element.myAppendable = false;
+				}
+			}
+			myExistingElements.add(element);
+			offset += element.myLength;
+		}
+	}
+
+	/*
+	 * Reads the name and shape of a matrix from the start of its sub-elements (array flags, dimensions,
+	 * name, real part), and the position of its data relative to the start of the buffer, if it is a
+	 * matrix that this class can append to.
+	 */
+	private static void parseMatrix(ByteBuffer buffer, Element element) throws IOException {
+		try {
+			int flags = buffer.getInt(8);
+			int dimsBytes = buffer.getInt(20);
+			int position = 24 + dimsBytes + padding(dimsBytes);
+
+			int nameTag = buffer.getInt(position);
+			int nameLength, nameStart;
+			if ((nameTag >>> 16) != 0) { //small data element format
+				nameLength = nameTag >>> 16;
+				nameStart = position + 4;
+				position += 8;
+			} else {
+				nameLength = buffer.getInt(position + 4);
+				nameStart = position + 8;
+				position = nameStart + nameLength + padding(nameLength);
+			}
+			byte[] name = new byte[nameLength];
+			for (int i = 0; i < nameLength; i++) {
+				name[i] = buffer.get(nameStart + i);
+			}
+			element.myName = new String(name, "US-ASCII");
+
+			element.myAppendable = (flags & 0xFFFF) == mxDOUBLE_CLASS //not complex, global or logical
+					&& dimsBytes == 8 && position + 8 <= buffer.limit() && buffer.getInt(position) == miDOUBLE;
+			if (element.myAppendable) {
+				element.myRows = buffer.getInt(24);
+				element.myColumns = buffer.getInt(28);
+				element.myDataBytes = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+				element.myDataOffset = position + 8;
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Invalid matrix in .mat file");
+		}
+	}
+
+	private static byte[] readUpTo(InputStream in, int length) throws IOException {
+		byte[] result = new byte[length];
+		int read = 0;
+		int n;
+		while (read < length && (n = in.read(result, read, length - read)) >= 0) {
+			read += n;
+		}
+		if (read < length) {
+			byte[] trimmed = new byte[read];
+			System.arraycopy(result, 0, trimmed, 0, read);
+			result = trimmed;
+		}
+		return result;
+	}
+
+	private ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer result = ByteBuffer.allocate(length).order(myOrder);
+		while (result.hasRemaining()) {
+			if (channel.read(result, position + result.position()) < 0) {
+				throw new IOException("Unexpected end of .mat file");
+			}
+		}
+		result.flip();
+		return result;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void transfer(FileChannel from, long position, long length, FileChannel to) throws IOException {
+		long done = 0;
+		while (done < length) {
+			long n = from.transferTo(position + done, length - done, to);
+			if (n <= 0) {
+				throw new IOException("Unexpected end of file while copying data");
+			}
+			done += n;
+		}
+	}
+
+	//an element of the destination file, when appending
+	private static class Element {
+		private long myOffset;
+		private long myLength;
+		private String myName;
+		private boolean myAppendable;
+		private int myRows;
+		private int myColumns;
+		private long myDataOffset;
+		private long myDataBytes;
+
+		public long end() {
+			return myOffset + myLength;
+		}
+	}
+
+	//a variable being written, the data of which are in the existing file, spilled blocks and the buffer
+	private class Variable {
+		private final String myName;
+		private final int myRows;
+		private final float[] myBuffer;
+		private int myBufferCount;
+		private int myColumns;
+		private Element myExisting;
+		private long[] myBlockOffsets = new long[16];
+		private int[] myBlockLengths = new int[16];
+		private int myNumBlocks;
+
+		public Variable(String name, int rows) {
+			myName = name;
+			myRows = rows;
+			myBuffer = new float[Math.max(1, myBufferSize / Math.max(1, rows)) * Math.max(1, rows)];
+		}
+
+		//size of the matrix element written by makeMatrixHeader(...), up to the data
+		public int getHeaderSize() {
+			return 8 + 16 + 16 + 8 + myName.length() + padding(myName.length()) + 8;
+		}
+
+		public long getElementSize() {
+			long dataBytes = myColumns * myRows * 8L;
+			return getHeaderSize() + dataBytes + padding(dataBytes);
+		}
+
+		public void addBlock(long offset, int length) {
+			if (myNumBlocks == myBlockOffsets.length) {
+				long[] offsets = new long[2 * myNumBlocks];
+				int[] lengths = new int[2 * myNumBlocks];
+				System.arraycopy(myBlockOffsets, 0, offsets, 0, myNumBlocks);
+				System.arraycopy(myBlockLengths, 0, lengths, 0, myNumBlocks);
+				myBlockOffsets = offsets;
+				myBlockLengths = lengths;
+			}
+			myBlockOffsets[myNumBlocks] = offset;
+			myBlockLengths[myNumBlocks] = length;
+			myNumBlocks++;
+		}
+	}
+
+}
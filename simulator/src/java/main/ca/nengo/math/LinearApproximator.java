@@ -54,6 +54,17 @@ public interface LinearApproximator extends Serializable, Cloneable {
 	 */
 	public float[] findCoefficients(Function target);
 
+	/**
+	 * Finds coefficients for many target functions. Implementations may share work between
+	 * targets, so this can be much faster than finding coefficients for each target separately.
+	 *
+	 * @param targets Functions to approximate
+	 * @return Coefficients on component functions for each target. The first dimension
+	 * 		corresponds to the component functions and the second to the targets (eg a row
+	 * 		of decoders for each neuron).
+	 */
+	public float[][] findCoefficients(Function[] targets);
+
 	/**
 	 * @return Valid clone
 	 * @throws CloneNotSupportedException if clone can't be made
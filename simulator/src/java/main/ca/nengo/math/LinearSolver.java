@@ -0,0 +1,74 @@
+package ca.nengo.math;
+
+import java.io.Serializable;
+
+/**
+ * <p>Solves linear systems Gx = b, in which G is symmetric positive semi-definite, for example to
+ * find decoders from a gamma matrix (see ca.nengo.math.impl.WeightedCostApproximator).</p>
+ *
+ * <p>A solver first prepares a Solution for a given matrix (eg by factoring it), which can then
+ * solve for many right-hand sides cheaply. Solutions report how long they took and how well
+ * conditioned the (regularized) system was.</p>
+ */
+public interface LinearSolver extends Serializable, Cloneable {
+
+	/**
+	 * @param matrix A symmetric positive semi-definite matrix
+	 * @param minSV Variance of noise in the data from which the matrix was built. Eigenvalues
+	 * 		smaller than this carry mostly noise, so solvers use it to regularize the system
+	 * 		(by truncation or by adding it to the diagonal).
+	 * @param nSV Maximum number of eigenvalues to use, for solvers that truncate the spectrum
+	 * 		(zero or less means use as many as possible)
+	 * @return A Solution for systems with the given matrix
+	 */
+	public Solution prepare(double[][] matrix, float minSV, int nSV);
+
+	/**
+	 * @return Valid clone
+	 * @throws CloneNotSupportedException if clone can't be made
+	 */
+	public LinearSolver clone() throws CloneNotSupportedException;
+
+	/**
+	 * Solves systems with a prepared matrix.
+	 */
+	public interface Solution extends Serializable {
+
+		/**
+		 * @param b Right-hand side of the system
+		 * @return x such that Gx approximates b
+		 */
+		public double[] solve(double[] b);
+
+		/**
+		 * Solves for many right-hand sides at once, which is typically faster than solving for
+		 * each separately.
+		 *
+		 * @param b Right-hand sides of the system, one per column
+		 * @return X such that GX approximates b (one solution per column)
+		 */
+		public double[][] solve(double[][] b);
+
+		/**
+		 * @return Time taken to prepare the Solution (ms)
+		 */
+		public long getPrepareTime();
+
+		/**
+		 * @return Total time taken in calls to solve(...) so far (ms)
+		 */
+		public long getSolveTime();
+
+		/**
+		 * @return Condition number of the regularized system that is actually solved (or an
+		 * 		estimate of it), or Double.NaN if it is not yet known
+		 */
+		public double getConditionNumber();
+
+		/**
+		 * @return A short description of the Solution, including method, timing, and conditioning
+		 */
+		public String getSummary();
+	}
+
+}
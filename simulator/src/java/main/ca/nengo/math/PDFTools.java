@@ -27,6 +27,11 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.math;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Random;
 
 /**
@@ -36,7 +41,7 @@ import java.util.Random;
  */
 public class PDFTools {
 	
-	private static final Random ourRandom = new Random();
+	private static volatile Random ourRandom = new Random();
 
 	/**
 	 * Note: PDF treated as univariate (only first dimension considered). 
@@ -86,4 +91,35 @@ public class PDFTools {
 		ourRandom.setSeed(seed);
 	}
 	
+	/**
+	 * @return A copy of the random number generator used by random(), including its current position 
+	 * 		in the random sequence (eg for checkpointing a simulation) 
+	 */
+	public static synchronized Random getRandomState() {
+		return copy(ourRandom);
+	}
+	
+	/**
+	 * @param state A random number generator from getRandomState(), from which random() continues (a copy 
+	 * 		is made so that the given generator can be reused) 
+	 */
+	public static synchronized void setRandomState(Random state) {
+		ourRandom = copy(state);
+	}
+	
+	private static Random copy(Random random) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(random);
+			out.close();
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+			return (Random) in.readObject();
+		} catch (IOException e) {
+			throw new RuntimeException("Can't copy random number generator", e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("Can't copy random number generator", e);
+		}
+	}
+	
 }
@@ -0,0 +1,37 @@
+package ca.nengo.math.impl;
+
+import ca.nengo.math.Function;
+import ca.nengo.math.LinearApproximator;
+import ca.nengo.util.MU;
+
+/**
+ * Base implementation of LinearApproximator, for approximators that find coefficients for one
+ * target at a time.
+ */
+public abstract class AbstractLinearApproximator implements LinearApproximator {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Finds coefficients for each target in turn. Override this method where coefficients for many
+	 * targets can be found more efficiently together.
+	 *
+	 * @see ca.nengo.math.LinearApproximator#findCoefficients(ca.nengo.math.Function[])
+	 */
+	public float[][] findCoefficients(Function[] targets) {
+		float[][] coefficients = new float[targets.length][];
+		for (int j = 0; j < targets.length; j++) {
+			coefficients[j] = findCoefficients(targets[j]);
+		}
+		return MU.transpose(coefficients);
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearApproximator#clone()
+	 */
+	@Override
+	public LinearApproximator clone() throws CloneNotSupportedException {
+		return (LinearApproximator) super.clone();
+	}
+
+}
@@ -0,0 +1,154 @@
+package ca.nengo.math.impl;
+
+import ca.nengo.math.LinearSolver;
+
+/**
+ * Base implementation of LinearSolver.Solution, which keeps track of timing and conditioning.
+ */
+public abstract class AbstractLinearSolution implements LinearSolver.Solution {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String myMethod;
+	private final int myDimension;
+	private long myPrepareTime;
+	private long mySolveTime;
+	private double myConditionNumber;
+
+	/**
+	 * @param method Name of the solution method (for reporting)
+	 * @param dimension Dimension of the system
+	 */
+	public AbstractLinearSolution(String method, int dimension) {
+		myMethod = method;
+		myDimension = dimension;
+		myConditionNumber = Double.NaN;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#solve(double[])
+	 */
+	public double[] solve(double[] b) {
+		if (b.length != myDimension) {
+			throw new IllegalArgumentException("Expected right-hand side of length " + myDimension + ", was " + b.length);
+		}
+
+		long start = System.nanoTime();
+		double[] result = doSolve(b);
+		long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			mySolveTime += elapsed;
+		}
+		return result;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#solve(double[][])
+	 */
+	public double[][] solve(double[][] b) {
+		if (b.length != myDimension) {
+			throw new IllegalArgumentException("Expected " + myDimension + " rows of right-hand sides, was " + b.length);
+		}
+		if (myDimension == 0) {
+			return new double[0][];
+		}
+
+		long start = System.nanoTime();
+		double[][] result = doSolve(b);
+		long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			mySolveTime += elapsed;
+		}
+		return result;
+	}
+
+	/**
+	 * @param b Right-hand side of the system (of the correct length)
+	 * @return Solution of the system
+	 */
+	protected abstract double[] doSolve(double[] b);
+
+	/**
+	 * Solves for each column of b in turn. Override this method where many right-hand sides can be
+	 * solved for more efficiently together.
+	 *
+	 * @param b Right-hand sides of the system, one per column (with the correct number of rows)
+	 * @return Solutions of the system, one per column
+	 */
+	protected double[][] doSolve(double[][] b) {
+		int m = b.length > 0 ? b[0].length : 0;
+		double[][] result = new double[b.length][m];
+		double[] column = new double[b.length];
+		for (int j = 0; j < m; j++) {
+			for (int i = 0; i < b.length; i++) {
+				column[i] = b[i][j];
+			}
+			double[] x = doSolve(column);
+			for (int i = 0; i < b.length; i++) {
+				result[i][j] = x[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return Dimension of the system
+	 */
+	public int getDimension() {
+		return myDimension;
+	}
+
+	/**
+	 * @param startNanos System.nanoTime() at which preparation started
+	 */
+	protected void setPrepareStart(long startNanos) {
+		myPrepareTime = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#getPrepareTime()
+	 */
+	public long getPrepareTime() {
+		return myPrepareTime / 1000000;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#getSolveTime()
+	 */
+	public synchronized long getSolveTime() {
+		return mySolveTime / 1000000;
+	}
+
+	/**
+	 * @param conditionNumber Condition number (or estimate) of the system that is solved
+	 */
+	protected synchronized void setConditionNumber(double conditionNumber) {
+		myConditionNumber = conditionNumber;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#getConditionNumber()
+	 */
+	public synchronized double getConditionNumber() {
+		return myConditionNumber;
+	}
+
+	/**
+	 * @return Method-specific details for the summary (eg number of components used), or an empty String
+	 */
+	protected String getDetails() {
+		return "";
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver.Solution#getSummary()
+	 */
+	public String getSummary() {
+		String details = getDetails();
+		return myMethod + " of " + myDimension + "x" + myDimension + " system"
+			+ (details.length() > 0 ? " (" + details + ")" : "")
+			+ ", condition number " + (float) getConditionNumber()
+			+ ", prepared in " + getPrepareTime() + " ms";
+	}
+
+}
@@ -0,0 +1,198 @@
+package ca.nengo.math.impl;
+
+import ca.nengo.math.LinearSolver;
+
+/**
+ * <p>A LinearSolver that uses a Cholesky factorization of the regularized matrix G + rI, where r is
+ * the noise variance minSV plus a small multiple of the mean diagonal element (so that singular
+ * matrices can be factored even without noise). This is the fastest direct method for large
+ * well-regularized systems. The maximum number of singular values is ignored.</p>
+ */
+public class CholeskySolver implements LinearSolver {
+
+	private static final long serialVersionUID = 1L;
+
+	private float myRelativeRidge;
+
+	/**
+	 * Uses relative ridge 1e-8.
+	 */
+	public CholeskySolver() {
+		this(1e-8f);
+	}
+
+	/**
+	 * @param relativeRidge Multiple of the mean diagonal element that is added to the diagonal, in
+	 * 		addition to the noise variance
+	 */
+	public CholeskySolver(float relativeRidge) {
+		setRelativeRidge(relativeRidge);
+	}
+
+	/**
+	 * @return Multiple of the mean diagonal element that is added to the diagonal, in addition to
+	 * 		the noise variance
+	 */
+	public float getRelativeRidge() {
+		return myRelativeRidge;
+	}
+
+	/**
+	 * @param relativeRidge Multiple of the mean diagonal element that is added to the diagonal, in
+	 * 		addition to the noise variance
+	 */
+	public void setRelativeRidge(float relativeRidge) {
+		if (relativeRidge < 0) {
+			throw new IllegalArgumentException("Relative ridge must be non-negative");
+		}
+		myRelativeRidge = relativeRidge;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver#prepare(double[][], float, int)
+	 */
+	public Solution prepare(double[][] matrix, float minSV, int nSV) {
+		long start = System.nanoTime();
+		int n = matrix.length;
+
+		double trace = 0;
+		for (int i = 0; i < n; i++) {
+			trace += matrix[i][i];
+		}
+		double ridge = minSV + (n > 0 ? myRelativeRidge * trace / n : 0);
+
+		//lower triangle, row by row
+		double[][] L = new double[n][];
+		double maxPivot = 0;
+		double minPivot = Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			L[i] = new double[i+1];
+			for (int j = 0; j <= i; j++) {
+				double sum = (matrix[i][j] + matrix[j][i]) / 2;
+				if (i == j) {
+					sum += ridge;
+				}
+				double[] Li = L[i];
+				double[] Lj = L[j];
+				for (int k = 0; k < j; k++) {
+					sum -= Li[k] * Lj[k];
+				}
+
+				if (i == j) {
+					if (sum <= 0) {
+						throw new IllegalArgumentException("Matrix is not positive definite after regularization "
+								+ "(pivot " + sum + " at row " + i + "); try a larger relative ridge or more noise");
+					}
+					Li[i] = Math.sqrt(sum);
+					maxPivot = Math.max(maxPivot, Li[i]);
+					minPivot = Math.min(minPivot, Li[i]);
+				} else {
+					Li[j] = sum / Lj[j];
+				}
+			}
+		}
+
+		CholeskySolution result = new CholeskySolution(L, ridge);
+		if (n > 0) {
+			result.setConditionNumber((maxPivot / minPivot) * (maxPivot / minPivot)); //a lower bound
+		}
+		result.setPrepareStart(start);
+		return result;
+	}
+
+	@Override
+	public LinearSolver clone() throws CloneNotSupportedException {
+		return (LinearSolver) super.clone();
+	}
+
+	private static class CholeskySolution extends AbstractLinearSolution {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] myL;
+		private final double myRidge;
+
+		public CholeskySolution(double[][] L, double ridge) {
+			super("Cholesky factorization", L.length);
+			myL = L;
+			myRidge = ridge;
+		}
+
+		@Override
+		protected double[] doSolve(double[] b) {
+			int n = myL.length;
+
+			//L y = b
+			double[] y = new double[n];
+			for (int i = 0; i < n; i++) {
+				double[] Li = myL[i];
+				double sum = b[i];
+				for (int k = 0; k < i; k++) {
+					sum -= Li[k] * y[k];
+				}
+				y[i] = sum / Li[i];
+			}
+
+			//L' x = y
+			double[] x = new double[n];
+			for (int i = n-1; i >= 0; i--) {
+				double sum = y[i];
+				for (int k = i+1; k < n; k++) {
+					sum -= myL[k][i] * x[k];
+				}
+				x[i] = sum / myL[i][i];
+			}
+
+			return x;
+		}
+
+		@Override
+		protected double[][] doSolve(double[][] b) {
+			int n = myL.length;
+			int m = b[0].length;
+
+			//L Y = B, a row at a time
+			double[][] y = new double[n][];
+			for (int i = 0; i < n; i++) {
+				double[] Li = myL[i];
+				double[] yi = b[i].clone();
+				for (int k = 0; k < i; k++) {
+					double l = Li[k];
+					double[] yk = y[k];
+					for (int j = 0; j < m; j++) {
+						yi[j] -= l * yk[j];
+					}
+				}
+				for (int j = 0; j < m; j++) {
+					yi[j] /= Li[i];
+				}
+				y[i] = yi;
+			}
+
+			//L' X = Y
+			double[][] x = new double[n][];
+			for (int i = n-1; i >= 0; i--) {
+				double[] xi = y[i];
+				for (int k = i+1; k < n; k++) {
+					double l = myL[k][i];
+					double[] xk = x[k];
+					for (int j = 0; j < m; j++) {
+						xi[j] -= l * xk[j];
+					}
+				}
+				for (int j = 0; j < m; j++) {
+					xi[j] /= myL[i][i];
+				}
+				x[i] = xi;
+			}
+
+			return x;
+		}
+
+		@Override
+		protected String getDetails() {
+			return "ridge " + (float) myRidge;
+		}
+	}
+
+}
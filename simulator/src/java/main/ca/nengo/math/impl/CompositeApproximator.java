@@ -52,7 +52,7 @@ import ca.nengo.math.LinearApproximator;
  *
  * @author Bryan Tripp
  */
-public class CompositeApproximator implements LinearApproximator {
+public class CompositeApproximator extends AbstractLinearApproximator {
 
 	private static final long serialVersionUID = 1L;
 
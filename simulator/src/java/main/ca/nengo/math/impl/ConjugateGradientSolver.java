@@ -0,0 +1,201 @@
+package ca.nengo.math.impl;
+
+import Jama.Matrix;
+import ca.nengo.math.LinearSolver;
+
+/**
+ * <p>A LinearSolver that uses the conjugate gradient method on the regularized matrix G + rI, where r
+ * is the noise variance minSV. There is no factorization, so preparation is immediate, and each solution
+ * costs one matrix-vector product per iteration. This is a good choice when only a few right-hand sides
+ * are needed, or when the matrix is too large to factor. The maximum number of singular values is ignored.</p>
+ *
+ * <p>The condition number is estimated from the extreme eigenvalues of the Lanczos matrix implied by the
+ * iterations of the latest solve. This takes an eigendecomposition, so it is only done when the condition
+ * number is asked for.</p>
+ */
+public class ConjugateGradientSolver implements LinearSolver {
+
+	private static final long serialVersionUID = 1L;
+
+	private float myTolerance;
+	private int myMaxIterations;
+
+	/**
+	 * Uses tolerance 1e-6 and at most as many iterations as the dimension of the system.
+	 */
+	public ConjugateGradientSolver() {
+		this(1e-6f, 0);
+	}
+
+	/**
+	 * @param tolerance Norm of residual relative to norm of right-hand side at which iteration stops
+	 * @param maxIterations Maximum number of iterations (zero or less means the dimension of the system)
+	 */
+	public ConjugateGradientSolver(float tolerance, int maxIterations) {
+		myTolerance = tolerance;
+		myMaxIterations = maxIterations;
+	}
+
+	/**
+	 * @return Norm of residual relative to norm of right-hand side at which iteration stops
+	 */
+	public float getTolerance() {
+		return myTolerance;
+	}
+
+	/**
+	 * @param tolerance Norm of residual relative to norm of right-hand side at which iteration stops
+	 */
+	public void setTolerance(float tolerance) {
+		myTolerance = tolerance;
+	}
+
+	/**
+	 * @return Maximum number of iterations (zero or less means the dimension of the system)
+	 */
+	public int getMaxIterations() {
+		return myMaxIterations;
+	}
+
+	/**
+	 * @param maxIterations Maximum number of iterations (zero or less means the dimension of the system)
+	 */
+	public void setMaxIterations(int maxIterations) {
+		myMaxIterations = maxIterations;
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver#prepare(double[][], float, int)
+	 */
+	public Solution prepare(double[][] matrix, float minSV, int nSV) {
+		long start = System.nanoTime();
+		int maxIterations = (myMaxIterations > 0) ? myMaxIterations : matrix.length;
+		CGSolution result = new CGSolution(matrix, minSV, myTolerance, maxIterations);
+		result.setPrepareStart(start);
+		return result;
+	}
+
+	@Override
+	public LinearSolver clone() throws CloneNotSupportedException {
+		return (LinearSolver) super.clone();
+	}
+
+	private static class CGSolution extends AbstractLinearSolution {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] myMatrix;
+		private final double myRidge;
+		private final double myTolerance;
+		private final int myMaxIterations;
+		private int myIterations;
+		private transient double[] myAlphas; //CG coefficients of latest solve, until the condition number is estimated
+		private transient double[] myBetas;
+
+		public CGSolution(double[][] matrix, double ridge, double tolerance, int maxIterations) {
+			super("Conjugate gradient solution", matrix.length);
+			myMatrix = matrix;
+			myRidge = ridge;
+			myTolerance = tolerance;
+			myMaxIterations = maxIterations;
+		}
+
+		@Override
+		protected double[] doSolve(double[] b) {
+			int n = b.length;
+			double[] x = new double[n];
+			double[] r = b.clone();
+			double[] p = b.clone();
+			double[] Ap = new double[n];
+
+			double rr = dot(r, r);
+			double threshold = myTolerance * Math.sqrt(rr);
+			double[] alphas = new double[myMaxIterations];
+			double[] betas = new double[myMaxIterations];
+
+			int iterations = 0;
+			while (iterations < myMaxIterations && Math.sqrt(rr) > threshold && rr > 0) {
+				for (int i = 0; i < n; i++) {
+					double[] row = myMatrix[i];
+					double sum = myRidge * p[i];
+					for (int j = 0; j < n; j++) {
+						sum += row[j] * p[j];
+					}
+					Ap[i] = sum;
+				}
+
+				double alpha = rr / dot(p, Ap);
+				for (int i = 0; i < n; i++) {
+					x[i] += alpha * p[i];
+					r[i] -= alpha * Ap[i];
+				}
+
+				double rrNew = dot(r, r);
+				double beta = rrNew / rr;
+				for (int i = 0; i < n; i++) {
+					p[i] = r[i] + beta * p[i];
+				}
+				rr = rrNew;
+
+				alphas[iterations] = alpha;
+				betas[iterations] = beta;
+				iterations++;
+			}
+
+			synchronized (this) {
+				myIterations = iterations;
+				if (iterations > 0) {
+					myAlphas = alphas;
+					myBetas = betas;
+				}
+			}
+
+			return x;
+		}
+
+		@Override
+		public synchronized double getConditionNumber() {
+			if (myAlphas != null) {
+				setConditionNumber(estimateConditionNumber(myAlphas, myBetas, myIterations));
+				myAlphas = null;
+				myBetas = null;
+			}
+			return super.getConditionNumber();
+		}
+
+		//extreme eigenvalues of the Lanczos tridiagonal matrix that corresponds to the CG coefficients
+		private static double estimateConditionNumber(double[] alphas, double[] betas, int m) {
+			double[][] T = new double[m][m];
+			for (int j = 0; j < m; j++) {
+				T[j][j] = 1 / alphas[j] + (j > 0 ? betas[j-1] / alphas[j-1] : 0);
+				if (j+1 < m) {
+					T[j][j+1] = Math.sqrt(betas[j]) / alphas[j];
+					T[j+1][j] = T[j][j+1];
+				}
+			}
+
+			double[] values = new Matrix(T).eig().getRealEigenvalues();
+			double min = Double.MAX_VALUE;
+			double max = 0;
+			for (double value : values) {
+				min = Math.min(min, Math.abs(value));
+				max = Math.max(max, Math.abs(value));
+			}
+			return max / min;
+		}
+
+		private static double dot(double[] a, double[] b) {
+			double result = 0;
+			for (int i = 0; i < a.length; i++) {
+				result += a[i] * b[i];
+			}
+			return result;
+		}
+
+		@Override
+		protected synchronized String getDetails() {
+			return "ridge " + (float) myRidge + ", " + myIterations + " iterations in latest solve";
+		}
+	}
+
+}
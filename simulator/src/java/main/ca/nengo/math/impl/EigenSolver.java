@@ -0,0 +1,150 @@
+package ca.nengo.math.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import ca.nengo.math.LinearSolver;
+
+/**
+ * <p>A LinearSolver that uses a truncated eigendecomposition of the (symmetric) matrix, ie a
+ * pseudoinverse in which components with eigenvalues smaller than minSV are dropped. For a symmetric
+ * matrix this is equivalent to the SVD pseudoinverse, but it is considerably less work.</p>
+ */
+public class EigenSolver implements LinearSolver {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @see ca.nengo.math.LinearSolver#prepare(double[][], float, int)
+	 */
+	public Solution prepare(double[][] matrix, float minSV, int nSV) {
+		long start = System.nanoTime();
+		int n = matrix.length;
+
+		//symmetrize exactly, so that the symmetric algorithm is used
+		double[][] symmetric = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				symmetric[i][j] = (matrix[i][j] + matrix[j][i]) / 2;
+				symmetric[j][i] = symmetric[i][j];
+			}
+		}
+
+		EigenvalueDecomposition eig = new Matrix(symmetric).eig();
+		final double[] values = eig.getRealEigenvalues();
+		double[][] vectors = eig.getV().getArray();
+
+		//components in order of decreasing magnitude (as singular values)
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(Math.abs(values[b.intValue()]), Math.abs(values[a.intValue()]));
+			}
+		});
+
+		int k = 0;
+		while (k < n && Math.abs(values[order[k].intValue()]) > minSV && (nSV <= 0 || k < nSV)) {
+			k++;
+		}
+
+		double[][] basis = new double[k][n];
+		double[] inverseValues = new double[k];
+		for (int c = 0; c < k; c++) {
+			int index = order[c].intValue();
+			for (int i = 0; i < n; i++) {
+				basis[c][i] = vectors[i][index];
+			}
+			inverseValues[c] = 1d / values[index];
+		}
+
+		EigenSolution result = new EigenSolution(basis, inverseValues, n);
+		if (k > 0) {
+			result.setConditionNumber(Math.abs(values[order[0].intValue()] / values[order[k-1].intValue()]));
+		}
+		result.setPrepareStart(start);
+		return result;
+	}
+
+	@Override
+	public LinearSolver clone() throws CloneNotSupportedException {
+		return (LinearSolver) super.clone();
+	}
+
+	private static class EigenSolution extends AbstractLinearSolution {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] myBasis;
+		private final double[] myInverseValues;
+
+		public EigenSolution(double[][] basis, double[] inverseValues, int dimension) {
+			super("Eigendecomposition", dimension);
+			myBasis = basis;
+			myInverseValues = inverseValues;
+		}
+
+		@Override
+		protected double[] doSolve(double[] b) {
+			double[] result = new double[b.length];
+			for (int c = 0; c < myBasis.length; c++) {
+				double[] v = myBasis[c];
+				double projection = 0;
+				for (int i = 0; i < v.length; i++) {
+					projection += v[i] * b[i];
+				}
+				projection *= myInverseValues[c];
+				for (int i = 0; i < v.length; i++) {
+					result[i] += projection * v[i];
+				}
+			}
+			return result;
+		}
+
+		@Override
+		protected double[][] doSolve(double[][] b) {
+			int m = b[0].length;
+
+			//projections onto the basis, scaled by inverse eigenvalues
+			double[][] projections = new double[myBasis.length][m];
+			for (int c = 0; c < myBasis.length; c++) {
+				double[] v = myBasis[c];
+				double[] projection = projections[c];
+				for (int i = 0; i < v.length; i++) {
+					double vi = v[i];
+					double[] bi = b[i];
+					for (int j = 0; j < m; j++) {
+						projection[j] += vi * bi[j];
+					}
+				}
+				for (int j = 0; j < m; j++) {
+					projection[j] *= myInverseValues[c];
+				}
+			}
+
+			double[][] result = new double[b.length][m];
+			for (int c = 0; c < myBasis.length; c++) {
+				double[] v = myBasis[c];
+				double[] projection = projections[c];
+				for (int i = 0; i < v.length; i++) {
+					double vi = v[i];
+					double[] xi = result[i];
+					for (int j = 0; j < m; j++) {
+						xi[j] += vi * projection[j];
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		protected String getDetails() {
+			return myBasis.length + " components";
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package ca.nengo.math.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.nengo.math.Function;
+
+/**
+ * <p>Builds the "gamma" (Gram) matrix of a set of functions sampled at a set of evaluation points, with
+ * each point weighted by a cost function, ie G_ij = (1/M) sum_k v_i(x_k) v_j(x_k) c(x_k) over M points.
+ * This is the matrix that is inverted to find least-squares decoders (see WeightedCostApproximator).</p>
+ *
+ * <p>The cost function is evaluated once per point, and only the upper triangle is computed, since G is
+ * symmetric. The triangle is divided into blocks of rows and columns, and the products in each block are
+ * accumulated over blocks of evaluation points, so that the values involved stay in cache. Blocks are
+ * claimed dynamically by a number of threads (see setNumThreads(int)). Products are formed from the float
+ * values and accumulated in double precision.</p>
+ */
+public class GammaBuilder {
+
+	private static final int ourRowBlockSize = 32;
+	private static final int ourPointBlockSize = 512;
+
+	private static int ourNumThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param numThreads Number of threads over which to spread construction of gamma matrices
+	 * 		(default is the number of available processors)
+	 */
+	public static void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("At least one thread is needed");
+		}
+		ourNumThreads = numThreads;
+	}
+
+	/**
+	 * @return Number of threads over which construction of gamma matrices is spread
+	 */
+	public static int getNumThreads() {
+		return ourNumThreads;
+	}
+
+	/**
+	 * @param values Values of each function (first dimension) at each evaluation point (second dimension)
+	 * @param evalPoints Evaluation points
+	 * @param costFunction Weight of squared error at each evaluation point
+	 * @return The gamma matrix (functions x functions)
+	 */
+	public static double[][] build(float[][] values, float[][] evalPoints, Function costFunction) {
+		int nPoints = evalPoints.length;
+		float[] weights = new float[nPoints];
+		for (int k = 0; k < nPoints; k++) {
+			weights[k] = costFunction.map(evalPoints[k]);
+		}
+
+		return build(values, weights);
+	}
+
+	/**
+	 * @param values Values of each function (first dimension) at each evaluation point (second dimension)
+	 * @param weights Weight of squared error at each evaluation point
+	 * @return The gamma matrix (functions x functions)
+	 */
+	public static double[][] build(final float[][] values, float[] weights) {
+		final int n = values.length;
+		final int nPoints = weights.length;
+
+		final float[][] weighted = new float[n][];
+		for (int j = 0; j < n; j++) {
+			if (values[j].length != nPoints) {
+				throw new IllegalArgumentException("Expected " + nPoints + " values for each function");
+			}
+			weighted[j] = new float[nPoints];
+			for (int k = 0; k < nPoints; k++) {
+				weighted[j][k] = values[j][k] * weights[k];
+			}
+		}
+
+		//list blocks of the upper triangle
+		int nBlocks = (n + ourRowBlockSize - 1) / ourRowBlockSize;
+		final int[] blockRows = new int[nBlocks * (nBlocks + 1) / 2];
+		final int[] blockCols = new int[blockRows.length];
+		for (int bi = 0, b = 0; bi < nBlocks; bi++) {
+			for (int bj = bi; bj < nBlocks; bj++, b++) {
+				blockRows[b] = bi;
+				blockCols[b] = bj;
+			}
+		}
+
+		final double[][] result = new double[n][n];
+		final AtomicInteger next = new AtomicInteger(0);
+		Runnable worker = new Runnable() {
+			public void run() {
+				int b;
+				while ((b = next.getAndIncrement()) < blockRows.length) {
+					accumulateBlock(values, weighted, result, blockRows[b] * ourRowBlockSize, blockCols[b] * ourRowBlockSize);
+				}
+			}
+		};
+
+		int nThreads = Math.min(ourNumThreads, blockRows.length);
+		if (nThreads <= 1) {
+			worker.run();
+		} else {
+			runThreads(worker, nThreads);
+		}
+
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				result[i][j] = result[i][j] / nPoints;
+				result[j][i] = result[i][j];
+			}
+		}
+
+		return result;
+	}
+
+	//adds products of rows starting at i0 and j0 (upper triangle only) to the result, one block of points at a time
+	private static void accumulateBlock(float[][] values, float[][] weighted, double[][] result, int i0, int j0) {
+		int iEnd = Math.min(i0 + ourRowBlockSize, values.length);
+		int jEnd = Math.min(j0 + ourRowBlockSize, values.length);
+		int nPoints = values.length > 0 ? values[0].length : 0;
+
+		for (int k0 = 0; k0 < nPoints; k0 += ourPointBlockSize) {
+			int kEnd = Math.min(k0 + ourPointBlockSize, nPoints);
+			for (int i = i0; i < iEnd; i++) {
+				float[] a = values[i];
+				double[] row = result[i];
+				for (int j = Math.max(i, j0); j < jEnd; j++) {
+					float[] b = weighted[j];
+					double sum = 0;
+					for (int k = k0; k < kEnd; k++) {
+						sum += a[k] * b[k];
+					}
+					row[j] += sum;
+				}
+			}
+		}
+	}
+
+	private static void runThreads(Runnable worker, int nThreads) {
+		final Throwable[] error = new Throwable[1];
+		Thread[] threads = new Thread[nThreads];
+		for (int t = 0; t < nThreads; t++) {
+			threads[t] = new Thread(worker, "GammaBuilder-" + t);
+			threads[t].setDaemon(true);
+			threads[t].setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				public void uncaughtException(Thread thread, Throwable e) {
+					synchronized (error) {
+						if (error[0] == null) {
+							error[0] = e;
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted while building gamma matrix", e);
+		}
+
+		synchronized (error) {
+			if (error[0] != null) {
+				throw new RuntimeException("Error building gamma matrix", error[0]);
+			}
+		}
+	}
+
+}
@@ -40,7 +40,7 @@ import ca.nengo.util.MU;
  *
  * @author Bryan Tripp
  */
-public class GradientDescentApproximator implements LinearApproximator {
+public class GradientDescentApproximator extends AbstractLinearApproximator {
 
 	private static Logger ourLogger = Logger.getLogger(GradientDescentApproximator.class);
 	private static final long serialVersionUID = 1L;
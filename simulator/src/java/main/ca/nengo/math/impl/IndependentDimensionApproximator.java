@@ -42,7 +42,7 @@ import ca.nengo.util.impl.RandomHypersphereVG;
  *
  * @author Bryan Tripp
  */
-public class IndependentDimensionApproximator implements LinearApproximator {
+public class IndependentDimensionApproximator extends AbstractLinearApproximator {
 
 	private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,212 @@
+package ca.nengo.math.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+import ca.nengo.math.LinearSolver;
+
+/**
+ * <p>A LinearSolver that finds an explicit pseudoinverse of the matrix, as decoders were found before
+ * LinearSolvers were introduced. If an executable named pseudoInverse is found in the directory
+ * "external" under the working directory, the pseudoinverse is calculated by that program (eg on a
+ * cluster or GPU). Otherwise it is found from a truncated singular value decomposition.</p>
+ *
+ * <p>This is slower than the other solvers for a single matrix, but the inverse can be applied to
+ * any number of right-hand sides, and an external program can be substituted.</p>
+ */
+public class PseudoInverseSolver implements LinearSolver {
+
+	private static final long serialVersionUID = 1L;
+	private static Logger ourLogger = Logger.getLogger(PseudoInverseSolver.class);
+
+	/**
+	 * @return True if the external pseudoInverse program is present (see class description)
+	 */
+	public static boolean hasExternalProgram() {
+		return getExternalProgram().exists();
+	}
+
+	private static File getExternalProgram() {
+		return new File(new File(System.getProperty("user.dir"), "external"), "pseudoInverse");
+	}
+
+	/**
+	 * @see ca.nengo.math.LinearSolver#prepare(double[][], float, int)
+	 */
+	public Solution prepare(double[][] matrix, float minSV, int nSV) {
+		long start = System.nanoTime();
+		InverseSolution result = new InverseSolution("Pseudoinverse", pseudoInverse(matrix, minSV, nSV));
+		result.setPrepareStart(start);
+		return result;
+	}
+
+	/**
+	 * @param matrix Any matrix
+	 * @param minSV Smallest singular value to use
+	 * @param nSV Max number of singular values to use (zero or less means as many as possible)
+	 * @return The pseudoinverse of the given matrix, from the external program if it is present and
+	 * 		succeeds, otherwise from a truncated SVD
+	 */
+	public static double[][] pseudoInverse(double[][] matrix, float minSV, int nSV) {
+		if (hasExternalProgram()) {
+			try {
+				return externalPseudoInverse(matrix, minSV, nSV);
+			} catch (IOException e) {
+				ourLogger.warn("External pseudoinverse failed, using SVD", e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ourLogger.warn("Interrupted while waiting for external pseudoinverse, using SVD");
+			}
+		}
+
+		Matrix m = new Matrix(matrix);
+		SingularValueDecomposition svd = m.svd();
+		Matrix sInv = svd.getS().inverse();
+
+		int i = 0;
+		while (i < svd.getS().getRowDimension() && svd.getS().get(i, i) > minSV && (nSV <= 0 || i < nSV)) {
+			i++;
+		}
+		ourLogger.debug("Using " + i + " singular values for pseudo-inverse");
+
+		for (int j = i; j < sInv.getRowDimension(); j++) {
+			sInv.set(j, j, 0d);
+		}
+
+		return svd.getV().times(sInv).times(svd.getU().transpose()).getArray();
+	}
+
+	//matrices are exchanged with the program as big-endian floats, in files in the program's directory
+	private static double[][] externalPseudoInverse(double[][] matrix, float minSV, int nSV)
+			throws IOException, InterruptedException {
+		int n = matrix.length;
+		File program = getExternalProgram();
+		File path = program.getParentFile();
+		String filename = "matrix_" + new Random().nextLong();
+		File file = new File(path, filename);
+		File inverseFile = new File(path, filename + ".inv");
+
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(n * n * 4).order(ByteOrder.BIG_ENDIAN);
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					buffer.putFloat((float) matrix[i][j]);
+				}
+			}
+			buffer.flip();
+			FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+
+			Process process;
+			if (System.getProperty("os.name").startsWith("Windows")) {
+				process = Runtime.getRuntime().exec("cmd /c pseudoInverse.bat " + filename + " " + filename + ".inv"
+						+ " " + minSV + " " + nSV, null, path);
+			} else {
+				process = Runtime.getRuntime().exec(new String[]{program.getPath(), file.getPath(),
+						inverseFile.getPath(), String.valueOf(minSV), String.valueOf(nSV)});
+			}
+			process.waitFor();
+
+			InputStream errors = process.getErrorStream();
+			if (errors.available() > 0) {
+				byte[] message = new byte[errors.available()];
+				int length = errors.read(message);
+				ourLogger.warn("External pseudoinverse error: " + new String(message, 0, Math.max(length, 0)));
+			}
+			if (!inverseFile.exists()) {
+				throw new IOException("External pseudoinverse produced no output");
+			}
+
+			buffer.clear();
+			channel = new RandomAccessFile(inverseFile, "r").getChannel();
+			try {
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0) {
+						throw new IOException("External pseudoinverse output is truncated");
+					}
+				}
+			} finally {
+				channel.close();
+			}
+			buffer.flip();
+
+			double[][] result = new double[n][n];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					result[i][j] = buffer.getFloat();
+				}
+			}
+			return result;
+		} finally {
+			file.delete();
+			inverseFile.delete();
+		}
+	}
+
+	@Override
+	public LinearSolver clone() throws CloneNotSupportedException {
+		return (LinearSolver) super.clone();
+	}
+
+	/**
+	 * A Solution from an explicit (pseudo)inverse.
+	 */
+	static class InverseSolution extends AbstractLinearSolution {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] myInverse;
+
+		public InverseSolution(String method, double[][] inverse) {
+			super(method, inverse.length);
+			myInverse = inverse;
+		}
+
+		@Override
+		protected double[] doSolve(double[] b) {
+			double[] result = new double[b.length];
+			for (int i = 0; i < result.length; i++) {
+				for (int j = 0; j < b.length; j++) {
+					result[i] += myInverse[i][j] * b[j];
+				}
+			}
+			return result;
+		}
+
+		@Override
+		protected double[][] doSolve(double[][] b) {
+			int m = b[0].length;
+			double[][] result = new double[myInverse.length][m];
+			for (int i = 0; i < result.length; i++) {
+				double[] row = myInverse[i];
+				double[] xi = result[i];
+				for (int k = 0; k < b.length; k++) {
+					double a = row[k];
+					double[] bk = b[k];
+					for (int j = 0; j < m; j++) {
+						xi[j] += a * bk[j];
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+}
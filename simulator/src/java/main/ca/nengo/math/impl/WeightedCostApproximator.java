@@ -28,16 +28,12 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.math.impl;
 
-import java.io.FileNotFoundException;
-import java.util.Random;
-
 import org.apache.log4j.Logger;
 
-import Jama.Matrix;
-import Jama.SingularValueDecomposition;
 import ca.nengo.math.ApproximatorFactory;
 import ca.nengo.math.Function;
 import ca.nengo.math.LinearApproximator;
+import ca.nengo.math.LinearSolver;
 import ca.nengo.util.MU;
 import ca.nengo.util.Memory;
 
@@ -60,10 +56,15 @@ public class WeightedCostApproximator implements LinearApproximator {
 	private final float[][] myValues;
 	private float[][] myNoisyValues;
 	private Function myCostFunction;
+	private float[] myCosts;
 	private int mySignalLength;
 	private final boolean myQuiet;
 
-	private double[][] myGammaInverse;
+	private LinearSolver.Solution mySolution;
+	private double[][] myGammaInverse; //found directly on the GPU
+
+	private static LinearSolver ourSolver = PseudoInverseSolver.hasExternalProgram()
+			? new PseudoInverseSolver() : new EigenSolver();
 
 	private static boolean myUseGPU = false;
 	private static boolean canUseGPU;
@@ -97,6 +98,22 @@ public class WeightedCostApproximator implements LinearApproximator {
 		}
 	}
 
+	/**
+	 * @param solver Solver with which decoders are found from gamma matrices of subsequently created
+	 * 		WeightedCostApproximators (default EigenSolver, ie a truncated eigendecomposition, or
+	 * 		PseudoInverseSolver if the external pseudoInverse program is present)
+	 */
+	public static void setSolver(LinearSolver solver) {
+		ourSolver = solver;
+	}
+
+	/**
+	 * @return Solver with which decoders are found from gamma matrices
+	 */
+	public static LinearSolver getSolver() {
+		return ourSolver;
+	}
+
 	/**
 	 * @param use Use the GPU?
 	 */
@@ -270,12 +287,21 @@ public class WeightedCostApproximator implements LinearApproximator {
 		}else{
 			double[][] gamma = findGamma();
 			if(!myQuiet) {
-                Memory.report("before inverse");
+                Memory.report("before solve");
             }
 			
-			myGammaInverse = pseudoInverse(gamma, absNoiseSD*absNoiseSD, nSV);
+			if (getSolver() instanceof PseudoInverseSolver) {
+				long start = System.nanoTime();
+				PseudoInverseSolver.InverseSolution solution = new PseudoInverseSolver.InverseSolution(
+						"Pseudoinverse", pseudoInverse(gamma, absNoiseSD*absNoiseSD, nSV));
+				solution.setPrepareStart(start);
+				mySolution = solution;
+			} else {
+				mySolution = getSolver().prepare(gamma, absNoiseSD*absNoiseSD, nSV);
+			}
 			if(!myQuiet) {
-                Memory.report("after inverse");
+                Memory.report("after solve");
+                ourLogger.info(mySolution.getSummary());
             }
 
 		}
@@ -371,7 +397,9 @@ public class WeightedCostApproximator implements LinearApproximator {
 
 
 	/**
-	 * Override this method to use a different pseudoinverse implementation (eg clustered).
+	 * Finds the pseudoinverse of a gamma matrix if the solver is a PseudoInverseSolver (the default
+	 * if the external pseudoInverse program is present). Override this method to use a different
+	 * pseudoinverse implementation (eg clustered).
 	 *
 	 * @param matrix Any matrix
 	 * @param minSV Hint as to smallest singular value to use
@@ -379,144 +407,7 @@ public class WeightedCostApproximator implements LinearApproximator {
 	 * @return The pseudoinverse of the given matrix
 	 */
 	public double[][] pseudoInverse(double[][] matrix, float minSV, int nSV) {
-		double[][] result=null;
-
-		Random random=new Random();
-
-		Runtime runtime=Runtime.getRuntime();
-//		int hashCode=java.util.Arrays.hashCode(matrix);
-//		int testpos = 0;
-
-		String parent=System.getProperty("user.dir");
-		java.io.File path=new java.io.File(parent,"external");
-		String filename="matrix_"+random.nextLong();
-
-	 	try {
-			// TODO: separate this out into a helper method, so we can do this sort of thing for other calculations as well
-	 		java.io.File pinvfile = new java.io.File(path,"pseudoInverse");
-
-			if(pinvfile.exists())
-			{
-				java.io.File file=new java.io.File(path,filename);
-				if (file.canRead()) {
-                    file.delete();
-                }
-				java.io.File file2=new java.io.File(path,filename+".inv");
-				if (file2.canRead()) {
-                    file2.delete();
-                }
-
-				java.nio.channels.FileChannel channel=new java.io.RandomAccessFile(file,"rw").getChannel();
-	//			java.nio.ByteBuffer buffer=channel.map(java.nio.channels.FileChannel.MapMode.READ_WRITE, 0, matrix.length*matrix.length*4);
-				java.nio.ByteBuffer buffer= java.nio.ByteBuffer.allocate(matrix.length*matrix.length*4);
-				buffer.rewind();
-
-
-				buffer.order(java.nio.ByteOrder.BIG_ENDIAN);
-				for (double[] element : matrix) {
-					for (int j=0; j<matrix.length; j++) {
-						buffer.putFloat((float)(element[j]));
-					}
-				}
-				buffer.rewind();
-
-				channel.write(buffer);
-				channel.force(true);
-	            channel.close();
-	            
-	            Process process;
-				if (System.getProperty("os.name").startsWith("Windows")) {
-					process=runtime.exec("cmd /c pseudoInverse.bat "+filename+" "+filename+".inv"+" "+minSV+" "+nSV,null,path);
-					process.waitFor();
-				} else {
-					process=runtime.exec("external"+java.io.File.separatorChar+"pseudoInverse external/"+filename+" external/"+filename+".inv"+" "+minSV+" "+nSV,null,null);
-					process.waitFor();	
-				}
-				
-				java.io.InputStream s=process.getErrorStream();
-				if (s.available()>0) {
-					System.out.println("external error:");
-					while (s.available()>0) {
-						System.out.write(s.read());
-					}
-				}
-//				java.io.InputStream s2=process.getInputStream();
-//				if (s2.available()>0) {
-//					System.out.println("external output:");
-//					while (s2.available()>0) {
-//						System.out.write(s2.read());
-//					}
-//				}
-
-				// matrix file cleaned up in finally block
-				channel=new java.io.RandomAccessFile(file2,"r").getChannel();
-	//			buffer=channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, matrix.length*matrix.length*4);
-				buffer= java.nio.ByteBuffer.allocate(matrix.length*matrix.length*4);
-				channel.read(buffer);
-				buffer.rewind();
-
-				double[][] inv=new double[matrix.length][];
-
-				for (int i=0; i<matrix.length; i++) {
-					double[] row=new double[matrix.length];
-					for (int j=0; j<matrix.length; j++) {
-						row[j]=buffer.getFloat();
-					}
-					inv[i]=row;
-				}
-				result=inv;
-
-				// Close all file handles
-	            channel.close();
-
-	            // channel file cleaned up in finally block
-			}
-		} catch (FileNotFoundException e) {
-			System.err.println("File not found: " + e);
-		} catch (java.io.IOException e) {
-			//e.printStackTrace();
-            System.err.println("WeightedCostApproximator.pseudoInverse() - IO Exception: " + e);
-		} catch (InterruptedException e) {
-            System.err.println("WeightedCostApproximator.pseudoInverse() - Interrupted: " + e);
-			//e.printStackTrace();
-		} catch (Exception e){
-            System.err.println("WeightedCostApproximator.pseudoInverse() - Gen Exception: " + e);
-            //e.printStackTrace();
-        } finally {
-        	java.io.File file=new java.io.File(path,filename);
-			if (file.exists()) {
-                file.delete();
-            }
-			java.io.File file2=new java.io.File(path,filename+".inv");
-			if (file2.exists()) {
-                file2.delete();
-            }
-        }
-
-		if (result==null) {
-
-			Matrix m = new Matrix(matrix);
-			SingularValueDecomposition svd = m.svd();
-			Matrix sInv = svd.getS().inverse();
-
-			int i = 0;
-			while (i < svd.getS().getRowDimension() && svd.getS().get(i, i) > minSV && (nSV <= 0 || i < nSV)) {
-                i++;
-            }
-
-			if(!myQuiet) {
-                ourLogger.info("Using " + i + " singular values for pseudo-inverse");
-            }
-
-			for (int j = i; j < matrix.length; j++) {
-				sInv.set(j, j, 0d);
-			}
-
-			result = svd.getV().times(sInv).times(svd.getU().transpose()).getArray();
-
-		}
-
-		return result;
+		return PseudoInverseSolver.pseudoInverse(matrix, minSV, nSV);
 	}
 
 	/**
@@ -528,30 +419,28 @@ public class WeightedCostApproximator implements LinearApproximator {
 	 * @see ca.nengo.math.LinearApproximator#findCoefficients(ca.nengo.math.Function)
 	 */
     public float[] findCoefficients(Function target) {
+		return firstColumn(findCoefficients(new Function[]{target}));
+	}
+
+	/**
+	 * Finds coefficients for all targets together. UPSILON is found for all targets with one
+	 * matrix product, and GAMMA" UPSILON is then solved for all targets at once.
+	 *
+	 * @see ca.nengo.math.LinearApproximator#findCoefficients(ca.nengo.math.Function[])
+	 */
+	public float[][] findCoefficients(Function[] targets) {
     	if(mySignalLength != -1)
     		System.err.println("Warning, finding coefficients using a function on WeightedCostApproximator initialized with signals");
-    	
-		float[] targetValues = new float[myEvalPoints.length];
-		for (int i = 0; i < targetValues.length; i++) {
-			targetValues[i] = target.map(myEvalPoints[i]);
-		}
 
-		float[] upsilon = new float[myNoisyValues.length];
-		for (int i = 0; i < myNoisyValues.length; i++) {
-			for (int j = 0; j < myEvalPoints.length; j++) {
-				upsilon[i] += myNoisyValues[i][j] * targetValues[j] * myCostFunction.map(myEvalPoints[j]);
+		float[][] targetValues = new float[myEvalPoints.length][];
+		for (int k = 0; k < targetValues.length; k++) {
+			targetValues[k] = new float[targets.length];
+			for (int j = 0; j < targets.length; j++) {
+				targetValues[k][j] = targets[j].map(myEvalPoints[k]);
 			}
-			upsilon[i] = upsilon[i] / myEvalPoints.length;
 		}
 
-		float[] result = new float[myNoisyValues.length];
-		for (int i = 0; i < myNoisyValues.length; i++) {
-			for (int j = 0; j < myNoisyValues.length; j++) {
-				result[i] += myGammaInverse[i][j] * upsilon[j];
-			}
-		}
-
-		return result;
+		return solve(findUpsilon(targetValues));
 	}
     
     /**
@@ -562,63 +451,118 @@ public class WeightedCostApproximator implements LinearApproximator {
      * @return coefficients (weights on the output of each neuron)
      */
     public float[] findCoefficients(float[] targetSignal) {
+		return firstColumn(findCoefficients(new float[][]{targetSignal}));
+    }
+
+	/**
+	 * Finds coefficients for many target signals together (see findCoefficients(float[])), by solving
+	 * for all of them at once.
+	 *
+	 * @param targetSignals signals over time that the coefficients should fit to (first dimension
+	 * 		corresponds to the targets)
+	 * @return coefficients, with the first dimension corresponding to the component functions (eg
+	 * 		neurons) and the second to the targets
+	 */
+	public float[][] findCoefficients(float[][] targetSignals) {
     	if(mySignalLength == -1)
     		System.err.println("Warning, finding coefficients using a signal on WeightedCostApproximator initialized with points");
-    	if(targetSignal.length != mySignalLength)
-    	{
-    		System.err.println("Warning, finding coefficients with a different length target signal than evaluation signals (" + 
-    				targetSignal.length + " vs " + mySignalLength + ")");
-    		//could do some interpolation/subsampling to match them up, for now we'll just do the rough measure of 
-    		//chopping/repeating the end of the target signal
-    		float[] newSignal = new float[mySignalLength];
-    		for(int i=0; i < mySignalLength; i++)
-    			newSignal[i] = targetSignal[Math.min(i,targetSignal.length-1)];
-    		targetSignal = newSignal;
-    	}
-    	
-    	//repeat target signal however many times were used to generate the evalPoints (to match the number of evaluation signals)
-    	float[] targetValues = new float[myEvalPoints.length];
-    	int numRepeat = myEvalPoints.length/mySignalLength;
-    	for(int i=0; i < numRepeat; i++)
-    	{
-    		for(int j=0; j < mySignalLength; j++)
-    			targetValues[i*mySignalLength+j] = targetSignal[j];
-    	}
-    	
-    	float[] upsilon = new float[myNoisyValues.length];
-		for (int i = 0; i < myNoisyValues.length; i++) {
-			for (int j = 0; j < myEvalPoints.length; j++) {
-				upsilon[i] += myNoisyValues[i][j] * targetValues[j] * myCostFunction.map(myEvalPoints[j]);
-			}
-			upsilon[i] = upsilon[i] / myEvalPoints.length;
+
+		float[][] targetValues = new float[myEvalPoints.length][targetSignals.length];
+		for (int t = 0; t < targetSignals.length; t++) {
+			float[] targetSignal = targetSignals[t];
+	    	if(targetSignal.length != mySignalLength)
+	    	{
+	    		System.err.println("Warning, finding coefficients with a different length target signal than evaluation signals (" + 
+	    				targetSignal.length + " vs " + mySignalLength + ")");
+	    		//could do some interpolation/subsampling to match them up, for now we'll just do the rough measure of 
+	    		//chopping/repeating the end of the target signal
+	    		float[] newSignal = new float[mySignalLength];
+	    		for(int i=0; i < mySignalLength; i++)
+	    			newSignal[i] = targetSignal[Math.min(i,targetSignal.length-1)];
+	    		targetSignal = newSignal;
+	    	}
+
+	    	//repeat target signal however many times were used to generate the evalPoints (to match the number of evaluation signals)
+	    	int numRepeat = myEvalPoints.length/mySignalLength;
+	    	for(int i=0; i < numRepeat; i++)
+	    	{
+	    		for(int j=0; j < mySignalLength; j++)
+	    			targetValues[i*mySignalLength+j][t] = targetSignal[j];
+	    	}
 		}
 
-		float[] result = new float[myNoisyValues.length];
+		return solve(findUpsilon(targetValues));
+	}
+
+	//UPSILON_ij = < cost(x) a_i(x) t_j(x) >, given t_j at each eval point (first dimension)
+	private double[][] findUpsilon(float[][] targetValues) {
+		float[] costs = getCosts();
+		int nPoints = myEvalPoints.length;
+		int nTargets = nPoints > 0 ? targetValues[0].length : 0;
+
+		double[][] result = new double[myNoisyValues.length][nTargets];
 		for (int i = 0; i < myNoisyValues.length; i++) {
-			for (int j = 0; j < myNoisyValues.length; j++) {
-				result[i] += myGammaInverse[i][j] * upsilon[j];
+			float[] values = myNoisyValues[i];
+			double[] row = result[i];
+			for (int k = 0; k < nPoints; k++) {
+				double a = values[k] * costs[k];
+				float[] t = targetValues[k];
+				for (int j = 0; j < nTargets; j++) {
+					row[j] += a * t[j];
+				}
+			}
+			for (int j = 0; j < nTargets; j++) {
+				row[j] = row[j] / nPoints;
 			}
 		}
-
 		return result;
-    }
-
-	private double[][] findGamma() {
+	}
 
-		double[][] result = new double[myNoisyValues.length][];
-//		double[][] nativeResult = new double[myNoisyValues.length][];
+	//coefficients = GAMMA" UPSILON
+	private float[][] solve(double[][] upsilon) {
+		double[][] x = getSolution().solve(upsilon);
+		float[][] result = new float[x.length][];
+		for (int i = 0; i < x.length; i++) {
+			result[i] = new float[x[i].length];
+			for (int j = 0; j < x[i].length; j++) {
+				result[i][j] = (float) x[i][j];
+			}
+		}
+		return result;
+	}
 
+	private static float[] firstColumn(float[][] matrix) {
+		float[] result = new float[matrix.length];
 		for (int i = 0; i < result.length; i++) {
-			result[i] = new double[myNoisyValues.length];
-			for (int j = 0; j < result[i].length; j++) {
-				for (int k = 0; k < myEvalPoints.length; k++) {
-					result[i][j] += myNoisyValues[i][k] * myNoisyValues[j][k] * myCostFunction.map(myEvalPoints[k]);
-				}
-				result[i][j] = result[i][j] / myEvalPoints.length;
+			result[i] = matrix[i][0];
+		}
+		return result;
+	}
+
+	//cost function at each eval point (evaluated once)
+	private float[] getCosts() {
+		if (myCosts == null) {
+			float[] costs = new float[myEvalPoints.length];
+			for (int k = 0; k < costs.length; k++) {
+				costs[k] = myCostFunction.map(myEvalPoints[k]);
 			}
+			myCosts = costs;
 		}
+		return myCosts;
+	}
 
-		return result;
+	/**
+	 * @return Solution of the gamma matrix (which reports timing and conditioning; see LinearSolver.Solution)
+	 */
+	public LinearSolver.Solution getSolution() {
+		if (mySolution == null) {
+			mySolution = new PseudoInverseSolver.InverseSolution("Explicit inverse", myGammaInverse);
+		}
+		return mySolution;
+	}
+
+	private double[][] findGamma() {
+		return GammaBuilder.build(myNoisyValues, getCosts());
 	}
 
 	@Override
@@ -629,15 +573,17 @@ public class WeightedCostApproximator implements LinearApproximator {
 		result.myEvalPoints = MU.clone(myEvalPoints);
 		result.myNoisyValues = MU.clone(myNoisyValues);
 
-		result.myGammaInverse = new double[myGammaInverse.length][];
-		for (int i = 0; i < myGammaInverse.length; i++) {
-			result.myGammaInverse[i] = myGammaInverse[i].clone();
+		if (myGammaInverse != null) {
+			result.myGammaInverse = new double[myGammaInverse.length][];
+			for (int i = 0; i < myGammaInverse.length; i++) {
+				result.myGammaInverse[i] = myGammaInverse[i].clone();
+			}
 		}
+		//the Solution is not changed by solving, so it is shared
 
 		return result;
 	}
 
-
 	/**
 	 * An ApproximatorFactory that produces WeightedCostApproximators.
 	 *
@@ -0,0 +1,30 @@
+package ca.nengo.model;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * An object with dynamic state (eg membrane potentials, synaptic currents or learned weights) that
+ * can be saved in a simulation checkpoint, and restored later into the same object or into an
+ * identically structured copy. Only state that changes during a simulation is saved, not parameters.
+ * Objects that contain other Checkpointable objects need not save their state (see
+ * ca.nengo.sim.impl.CheckpointIO, which visits the nodes, origins and terminations of a network). Optional
+ * Checkpointable parts (eg Noise) can be saved with ca.nengo.util.CheckpointUtils.
+ */
+public interface Checkpointable {
+
+	/**
+	 * @param out Stream to which the current state is to be written
+	 * @throws IOException if the state can't be written
+	 */
+	public void saveState(ObjectOutput out) throws IOException;
+
+	/**
+	 * @param in Stream from which state that was written by saveState(...) is to be read
+	 * @throws IOException if the state can't be read
+	 * @throws ClassNotFoundException if the state includes an object of an unknown class
+	 */
+	public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException;
+
+}
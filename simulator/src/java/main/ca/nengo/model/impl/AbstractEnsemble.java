@@ -55,7 +55,7 @@ import ca.nengo.util.SpikePattern;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.VisiblyMutable;
 import ca.nengo.util.VisiblyMutableUtils;
-import ca.nengo.util.impl.SpikePatternImpl;
+import ca.nengo.util.impl.SpikeEventPattern;
 import ca.nengo.util.impl.TimeSeriesImpl;
 
 /**
@@ -72,7 +72,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 	private String myName;
 	private Map<String, List<Integer>> myStateNames; // for Probeable
 	private SimulationMode myMode;
-	private transient SpikePatternImpl mySpikePattern;
+	private transient SpikeEventPattern mySpikePattern;
 	private boolean myCollectSpikesFlag;
 	private int myCollectSpikesRatio = 1;
 	private String myDocumentation;
@@ -92,7 +92,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 	public AbstractEnsemble(String name, Node[] nodes) {
 		myName = name;
 		myNodes = nodes;
-		mySpikePattern = new SpikePatternImpl(nodes.length);
+		mySpikePattern = new SpikeEventPattern(nodes.length);
 		myCollectSpikesFlag = false;
 
 		init();
@@ -136,7 +136,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 	 */
     public void redefineNodes(Node[] nodes) {
 		myNodes=nodes;
-		mySpikePattern = new SpikePatternImpl(myNodes.length);
+		mySpikePattern = new SpikeEventPattern(myNodes.length);
 		//setupNodeRunners(numNodeRunners);
 
 		init();
@@ -202,9 +202,21 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 	 */
     public void run(float startTime, float endTime) throws SimulationException {
 		if (mySpikePattern == null) {
-			mySpikePattern = new SpikePatternImpl(myNodes.length);
+			mySpikePattern = new SpikeEventPattern(myNodes.length);
 		}
 
+		runNodes(startTime, endTime);
+	}
+
+	/**
+	 * Runs each Node in the Ensemble and collects spikes if requested. Subclasses may
+	 * override this to advance the Nodes in a different way (eg as a population).
+	 *
+	 * @param startTime simulation time of timestep onset
+	 * @param endTime simulation time of timestep end
+	 * @throws SimulationException if a Node can not be run
+	 */
+	protected void runNodes(float startTime, float endTime) throws SimulationException {
 		for (int i = 0; i < myNodes.length; i++) {
 			myNodes[i].run(startTime, endTime);
 
@@ -240,7 +252,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 		}
 
 
-		mySpikePattern = new SpikePatternImpl(myNodes.length);
+		mySpikePattern = new SpikeEventPattern(myNodes.length);
 	}
 
 	/**
@@ -357,7 +369,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 	public void setSpikePattern(float[] spikes, float endTime) {
 		if(myCollectSpikesFlag) {
 			if (mySpikePattern == null) {
-				mySpikePattern = new SpikePatternImpl(myNodes.length);
+				mySpikePattern = new SpikeEventPattern(myNodes.length);
 			}
 
 			for(int i = 0; i < myNodes.length; i++) {
@@ -623,7 +635,7 @@ public abstract class AbstractEnsemble implements Ensemble, Probeable, VisiblyMu
 		}
 		
 		if (mySpikePattern != null) {
-            result.mySpikePattern = (SpikePatternImpl) mySpikePattern.clone();
+            result.mySpikePattern = (SpikeEventPattern) mySpikePattern.clone();
         }
 		
 		// Currently, stateNames is never modified, and therefore does not need to be cloned
@@ -27,6 +27,10 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import org.apache.log4j.Logger;
 
 import ca.nengo.config.ConfigUtil;
@@ -35,6 +39,7 @@ import ca.nengo.config.Configuration;
 import ca.nengo.config.Property;
 import ca.nengo.config.impl.ConfigurationImpl;
 import ca.nengo.config.impl.SingleValuedPropertyImpl;
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.Ensemble;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
@@ -43,6 +48,7 @@ import ca.nengo.model.Origin;
 import ca.nengo.model.Resettable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.Units;
+import ca.nengo.util.CheckpointUtils;
 
 /**
  * A generic implementation of Origin. Nodes that contain an Origin of this type should call one
@@ -50,7 +56,7 @@ import ca.nengo.model.Units;
  *
  * @author Bryan Tripp
  */
-public class BasicOrigin implements Origin, Noise.Noisy, Resettable, Configurable {
+public class BasicOrigin implements Origin, Noise.Noisy, Resettable, Configurable, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -263,6 +269,35 @@ public class BasicOrigin implements Origin, Noise.Noisy, Resettable, Configurabl
 		myValues = new RealOutputImpl(new float[myDimension], myUnits, 0);
 	}
 
+	/**
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	public void saveState(ObjectOutput out) throws IOException {
+		out.writeObject(myValues);
+		CheckpointUtils.saveState(myNoise, out);
+		out.writeInt(myNoises == null ? 0 : myNoises.length);
+		if (myNoises != null) {
+			for (Noise noise : myNoises) {
+				CheckpointUtils.saveState(noise, out);
+			}
+		}
+	}
+
+	/**
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+		myValues = (InstantaneousOutput) in.readObject();
+		CheckpointUtils.restoreState(myNoise, in, myName);
+		int numNoises = in.readInt();
+		if (numNoises != (myNoises == null ? 0 : myNoises.length)) {
+			throw new IOException("Checkpoint doesn't match noise of origin " + myName);
+		}
+		for (int i = 0; i < numNoises; i++) {
+			CheckpointUtils.restoreState(myNoises[i], in, myName);
+		}
+	}
+
 	public void setRequiredOnCPU(boolean val){
 	    myRequiredOnCPU = val;
 	}
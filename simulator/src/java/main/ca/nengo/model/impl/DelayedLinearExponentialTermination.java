@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.SimulationException;
+import ca.nengo.model.SpikeOutput;
 import ca.nengo.model.Units;
 
 /**
@@ -46,4 +47,13 @@ public class DelayedLinearExponentialTermination extends LinearExponentialTermin
 		InstantaneousOutput v = myQueue.remove(0);
 		super.setValues(v);
 	}
+
+	/**
+	 * Queues the input like setValues(), since spikes must also be delayed.
+	 *
+	 * @see LinearExponentialTermination#setSpikeValues(SpikeOutput, int[], int)
+	 */
+	public void setSpikeValues(SpikeOutput values, int[] spiking, int n) throws SimulationException {
+		setValues(values);
+	}
 }
\ No newline at end of file
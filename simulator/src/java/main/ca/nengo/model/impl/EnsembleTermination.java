@@ -31,7 +31,9 @@ import ca.nengo.model.Network;
 import ca.nengo.model.Ensemble;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
+import ca.nengo.model.PreciseSpikeOutput;
 import ca.nengo.model.SimulationException;
+import ca.nengo.model.SpikeOutput;
 import ca.nengo.model.StructuralException;
 import ca.nengo.model.Termination;
 
@@ -47,6 +49,9 @@ import ca.nengo.model.Termination;
  * but here we deal with all branches (an Ensemble-level Termination).
  * In either case the spikes transmitted by the axons are the same.</p>
  *
+ * <p>Spike input is propagated event by event: the spiking axons are found once per step, and
+ * LinearExponentialTerminations onto each Node add up only their weights.</p>
+ *
  * TODO: test
  *
  * @author Bryan Tripp
@@ -58,6 +63,7 @@ public class EnsembleTermination implements Termination {
 	private Node myNode;
 	private String myName;
 	private Termination[] myNodeTerminations;
+	private transient int[] mySpiking; //indices of inputs that spiked, reused between steps
 
 	/**
 	 * @param node The parent Node
@@ -104,8 +110,35 @@ public class EnsembleTermination implements Termination {
 			throw new SimulationException("Input to this Termination must have dimension " + getDimensions());
 		}
 
+		if (values instanceof SpikeOutput && !(values instanceof PreciseSpikeOutput)) {
+			setSpikeValues((SpikeOutput) values);
+		} else {
+			for (Termination myNodeTermination : myNodeTerminations) {
+				myNodeTermination.setValues(values);
+			}
+		}
+	}
+
+	//finds the inputs that spiked once, so that each node termination only has to add their weights
+	private void setSpikeValues(SpikeOutput values) throws SimulationException {
+		boolean[] spikes = values.getValues();
+		if (mySpiking == null || mySpiking.length != spikes.length) {
+			mySpiking = new int[spikes.length];
+		}
+		int[] spiking = mySpiking;
+		int n = 0;
+		for (int i = 0; i < spikes.length; i++) {
+			if (spikes[i]) {
+				spiking[n++] = i;
+			}
+		}
+
 		for (Termination myNodeTermination : myNodeTerminations) {
-			myNodeTermination.setValues(values);
+			if (myNodeTermination instanceof LinearExponentialTermination) {
+				((LinearExponentialTermination) myNodeTermination).setSpikeValues(values, spiking, n);
+			} else {
+				myNodeTermination.setValues(values);
+			}
 		}
 	}
 
@@ -204,6 +237,7 @@ public class EnsembleTermination implements Termination {
 		EnsembleTermination result = (EnsembleTermination) super.clone();
 		result.myNode = node;
 		result.myName = myName;
+		result.mySpiking = null;
 
 		// get terminations for nodes in new ensemble
 		result.myNodeTerminations = myNodeTerminations.clone();
@@ -25,8 +25,12 @@ a recipient may use your version of this file under either the MPL or the GPL Li
 
 package ca.nengo.model.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Random;
 
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.PlasticNodeTermination;
@@ -49,7 +53,7 @@ import ca.nengo.model.StructuralException;
  *
  * @author Bryan Tripp
  */
-public class LinearExponentialTermination implements PlasticNodeTermination {
+public class LinearExponentialTermination implements PlasticNodeTermination, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -71,6 +75,9 @@ public class LinearExponentialTermination implements PlasticNodeTermination {
     // we know which precise spikes have and have not been dealt with
     private InstantaneousOutput myRawInput;
 
+    private float myExactTime; //time for which myExactDecay was last found
+    private float myExactDecay;
+
     /**
      * @param node The parent Node
      * @param name Name of the Termination (must be unique within the Neuron or Ensemble to
@@ -238,6 +245,42 @@ public class LinearExponentialTermination implements PlasticNodeTermination {
         myNetRealInput = (values instanceof RealOutput) ? combineReals((RealOutput) values, myWeights) : 0;
     }
 
+    /**
+     * Sets spike input, given the indices of the inputs that spiked. This has the same effect as
+     * setValues(values), but takes time proportional to the number of spikes rather than the number of
+     * inputs. An EnsembleTermination finds the spiking inputs once and passes them to the Termination
+     * onto each of its Nodes, so that spikes are propagated in O(spikes x fan-out) time.
+     *
+     * @param values Spike input (not PreciseSpikeOutput)
+     * @param spiking Indices of inputs that spiked, in ascending order
+     * @param n Number of elements of spiking that are used
+     * @throws SimulationException if the input has the wrong dimension
+     */
+    public void setSpikeValues(SpikeOutput values, int[] spiking, int n) throws SimulationException {
+        if (values.getDimension() != getDimensions()) {
+            throw new SimulationException("Input must have dimension " + getDimensions());
+        }
+
+        myRawInput = values;
+        myPreciseSpikeInputTimes = null;
+        myIntegrationTime = 0;
+        myNetRealInput = 0;
+
+        float result = 0;
+        if (myWeightProbabilities!=null) {
+            for (int i = 0; i < n; i++) {
+                if (random.nextFloat()<myWeightProbabilities[spiking[i]]) {
+                    result += myWeights[spiking[i]];
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                result += myWeights[spiking[i]];
+            }
+        }
+        myNetSpikeInput = result;
+    }
+
     /**
      * Updates net post-synaptic current for this Termination according to new inputs and exponential
      * dynamics applied to previous inputs.
@@ -290,6 +333,42 @@ public class LinearExponentialTermination implements PlasticNodeTermination {
         return myCurrent;
     }
 
+    /**
+     * Updates the post-synaptic current using the exact solution of the exponential dynamics over the
+     * given time, rather than the Euler step of updateCurrent(...), so that the time can be a whole
+     * network time step. Real-valued inputs are integrated and precise spikes applied over the same
+     * time. Spike inputs are not applied (see updateCurrent(true, 0, 0)).
+     *
+     * @param time Time over which to integrate inputs and decay the current
+     * @return Net synaptic current flowing into this termination at the end of the given time
+     */
+    public float updateCurrentExact(float time) {
+        if (time <= 0) {
+            return myCurrent;
+        }
+        if (time != myExactTime) {
+            myExactTime = time;
+            myExactDecay = (float) Math.exp(-time / myTauPSC);
+        }
+
+        myCurrent = myCurrent * myExactDecay + myNetRealInput * (1 - myExactDecay);
+
+        if (myPreciseSpikeInputTimes!=null) {
+            float endTime=myIntegrationTime+time;
+            float epsilon=0.0000001f;
+            for (int i=0; i<myPreciseSpikeInputTimes.length; i++) {
+                float spikeTime=myPreciseSpikeInputTimes[i];
+                if (spikeTime>myIntegrationTime && (spikeTime<=endTime+epsilon)
+                        && (myWeightProbabilities==null || random.nextFloat()<myWeightProbabilities[i])) {
+                    myCurrent+=myWeights[i]/myTauPSC * (float) Math.exp(-Math.max(0, endTime-spikeTime)/myTauPSC);
+                }
+            }
+            myIntegrationTime=endTime;
+        }
+
+        return myCurrent;
+    }
+
     /**
      *
      * @param integrationTime The amount of time covered by this integration step.
@@ -391,6 +470,38 @@ public class LinearExponentialTermination implements PlasticNodeTermination {
      */
     public void setTau(float tau) throws StructuralException {
         myTauPSC = tau;
+        myExactTime = 0;
+    }
+
+    /**
+     * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+     */
+    public void saveState(ObjectOutput out) throws IOException {
+        out.writeFloat(myCurrent);
+        out.writeFloat(myNetSpikeInput);
+        out.writeFloat(myNetRealInput);
+        out.writeObject(myPreciseSpikeInputTimes);
+        out.writeFloat(myIntegrationTime);
+        out.writeObject(myRawInput);
+        out.writeObject(myWeights);
+    }
+
+    /**
+     * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+     */
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        myCurrent = in.readFloat();
+        myNetSpikeInput = in.readFloat();
+        myNetRealInput = in.readFloat();
+        myPreciseSpikeInputTimes = (float[]) in.readObject();
+        myIntegrationTime = in.readFloat();
+        myRawInput = (InstantaneousOutput) in.readObject();
+        float[] weights = (float[]) in.readObject();
+        if (weights.length != myWeights.length) {
+            throw new IOException("Checkpoint has " + weights.length + " weights for termination " + myName
+                    + ", which has " + myWeights.length);
+        }
+        myWeights = weights;
     }
 
     @Override
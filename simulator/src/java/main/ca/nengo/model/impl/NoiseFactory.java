@@ -31,11 +31,16 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import ca.nengo.dynamics.DynamicalSystem;
 import ca.nengo.dynamics.Integrator;
 import ca.nengo.math.Function;
 import ca.nengo.math.PDF;
 import ca.nengo.math.impl.ConstantFunction;
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.Noise;
 import ca.nengo.model.Units;
 import ca.nengo.util.TimeSeries;
@@ -181,7 +186,7 @@ public class NoiseFactory {
 	 *
 	 * @author Bryan Tripp
 	 */
-	public static class NoiseImplPDF implements Noise {
+	public static class NoiseImplPDF implements Noise, Checkpointable {
 
 		private static final long serialVersionUID = 1L;
 
@@ -310,6 +315,36 @@ public class NoiseFactory {
 			return result;
 		}
 
+		/**
+		 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+		 */
+		public void saveState(ObjectOutput out) throws IOException {
+			out.writeFloat(myLastGenTime);
+			out.writeFloat(myLastDynamicsTime);
+			out.writeObject(myLastRawNoise);
+			out.writeObject(myCurrentRawNoise);
+			out.writeObject(myPDF); //may cache samples (eg GaussianPDF)
+			out.writeObject(myDynamics == null ? null : myDynamics.getState());
+		}
+
+		/**
+		 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+		 */
+		public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+			myLastGenTime = in.readFloat();
+			myLastDynamicsTime = in.readFloat();
+			myLastRawNoise = (float[]) in.readObject();
+			myCurrentRawNoise = (float[]) in.readObject();
+			myPDF = (PDF) in.readObject();
+			float[] state = (float[]) in.readObject();
+			if ((state == null) != (myDynamics == null)) {
+				throw new IOException("Checkpoint doesn't match noise dynamics");
+			}
+			if (myDynamics != null) {
+				myDynamics.setState(state);
+			}
+		}
+
 		@Override
 		public Noise clone() {
 			//must return an independent copy of this Noise since there may be a DynamicalSystem with state
@@ -82,6 +82,17 @@ public class RealOutputImpl implements RealOutput {
 		return myTime;
 	}
 
+	/**
+	 * Changes the time of this output, for use by classes that reuse a RealOutputImpl (and its
+	 * values array) from step to step rather than creating a new one (see
+	 * ca.nengo.util.Memory.setReuseBuffers(boolean)).
+	 *
+	 * @param time @see #getTime()
+	 */
+	public void setTime(float time) {
+		myTime = time;
+	}
+
 	@Override
 	public RealOutput clone() throws CloneNotSupportedException {
 		return new RealOutputImpl(myValues.clone(), myUnits, myTime);
@@ -460,12 +460,25 @@ public class DecodableEnsembleImpl extends PlasticEnsembleImpl implements Decoda
 		super.run(startTime, endTime);
 
 		for (DecodedOrigin o : myDecodedOrigins.values()) {
-            o.run(null, startTime, endTime);
+            runDecodedOrigin(o, startTime, endTime);
         }
 
 		setTime(endTime);
 	}
 
+	/**
+	 * Runs a DecodedOrigin after the Nodes have run. Subclasses that hold node outputs in
+	 * another form may override this to decode from it directly.
+	 *
+	 * @param origin The DecodedOrigin to run
+	 * @param startTime simulation time of timestep onset
+	 * @param endTime simulation time of timestep end
+	 * @throws SimulationException if the DecodedOrigin can not be run
+	 */
+	protected void runDecodedOrigin(DecodedOrigin origin, float startTime, float endTime) throws SimulationException {
+		origin.run(null, startTime, endTime);
+	}
+
 	/**
 	 * Allows subclasses to set the simulation time, which is used to support Probeable.
 	 * This is normally set in the run() method. Subclasses that override run() without
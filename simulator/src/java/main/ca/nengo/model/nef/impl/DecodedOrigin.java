@@ -27,6 +27,11 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.nef.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
 import org.apache.log4j.Logger;
 
 import ca.nengo.config.ConfigUtil;
@@ -40,6 +45,7 @@ import ca.nengo.math.Function;
 import ca.nengo.math.LinearApproximator;
 import ca.nengo.math.impl.FixedSignalFunction;
 import ca.nengo.math.impl.WeightedCostApproximator;
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.Noise;
@@ -56,7 +62,9 @@ import ca.nengo.model.nef.DecodableEnsemble;
 import ca.nengo.model.nef.ExpressModel;
 import ca.nengo.model.nef.NEFEnsemble;
 import ca.nengo.model.plasticity.ShortTermPlastic;
+import ca.nengo.util.CheckpointUtils;
 import ca.nengo.util.MU;
+import ca.nengo.util.Memory;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.VectorGenerator;
 import ca.nengo.util.impl.RandomHypersphereVG;
@@ -71,7 +79,7 @@ import ca.nengo.util.impl.TimeSeriesImpl;
  *
  * @author Bryan Tripp
  */
-public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeConfigurable, Noise.Noisy, Configurable, ShortTermPlastic {
+public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeConfigurable, Noise.Noisy, Configurable, ShortTermPlastic, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -94,6 +102,8 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 	private float myTime;
 	private boolean myRequiredOnCPU;
 	private ExpressModel myExpressModel;
+	private transient RealOutputImpl[] myOutputBuffers; //alternating outputs, used if Memory.getReuseBuffers()
+	private transient int myOutputBufferIndex;
 
 	/**
 	 * With this constructor, decoding vectors are generated using default settings.
@@ -296,6 +306,13 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 		return myNoise;
 	}
 
+	/**
+	 * @return Noise with which each dimension of output is corrupted (null if there is no noise)
+	 */
+	public Noise[] getNoises() {
+		return (myNoises == null) ? null : myNoises.clone();
+	}
+
 	/**
 	 * @see ca.nengo.model.Resettable#reset(boolean)
 	 */
@@ -316,34 +333,14 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 	}
 
 	private static float[][] findDecoders(Node[] nodes, Function[] functions, LinearApproximator approximator)  {
-		float[][] result = new float[nodes.length][];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = new float[functions.length];
-		}
-
-		for (int j = 0; j < functions.length; j++) {
-			float[] coeffs = approximator.findCoefficients(functions[j]);
-			for (int i = 0; i < nodes.length; i++) {
-				result[i][j] = coeffs[i];
-			}
-		}
-
+		float[][] result = approximator.findCoefficients(functions);
+		assert result.length == nodes.length;
 		return result;
 	}
 	
 	private static float[][] findDecoders(Node[] nodes, float[][] targetSignal, LinearApproximator approximator)  {
-		float[][] result = new float[nodes.length][];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = new float[targetSignal.length];
-		}
-
-		for (int j = 0; j < targetSignal.length; j++) {
-			float[] coeffs = ((WeightedCostApproximator)approximator).findCoefficients(targetSignal[j]);
-			for (int i = 0; i < nodes.length; i++) {
-				result[i][j] = coeffs[i];
-			}
-		}
-
+		float[][] result = ((WeightedCostApproximator)approximator).findCoefficients(targetSignal);
+		assert result.length == nodes.length;
 		return result;
 	}
 
@@ -464,10 +461,10 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 					" but state dimension is " + state.length);
 		}
 
-		float[] values = new float[myFunctions.length];
+		float[] values = newValues();
 		float stepSize = endTime - startTime;
 
-		mySTPHistory = new float[myNodes.length];
+		resetSTPHistory();
 		if (myMode == SimulationMode.DIRECT) {
 			for (int i = 0; i < values.length; i++) {
 				values[i] = myFunctions[i].map(state);
@@ -508,6 +505,73 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 			}
 		}
 		
+		setOutput(values, startTime, endTime);
+	}
+
+	/**
+	 * As run(float[], float, float) in DEFAULT, RATE and CONSTANT_RATE modes, but decodes from a packed
+	 * vector of node outputs rather than polling the Origin of each node. This is used by ensembles that
+	 * advance their nodes as a population.
+	 *
+	 * @param nodeOutput Output of the node Origin of each node in the most recent step
+	 * @param spikes True if nodeOutput contains spikes (1 or 0), false if it contains real values
+	 * @param startTime simulation time of timestep onset
+	 * @param endTime simulation time of timestep end
+	 * @throws SimulationException If there is not one output per node
+	 */
+	public void run(float[] nodeOutput, boolean spikes, float startTime, float endTime) throws SimulationException {
+		if (nodeOutput.length != myNodes.length) {
+			throw new SimulationException("Expected " + myNodes.length + " node outputs but received " + nodeOutput.length);
+		}
+
+		float[] values = newValues();
+		float spikeValue = 1f / (endTime - startTime);
+		boolean dynamic = mySTPDynamicsTemplate != null;
+
+		resetSTPHistory();
+		for (int i = 0; i < nodeOutput.length; i++) {
+			float val = spikes ? (nodeOutput[i] > 0 ? spikeValue : 0f) : nodeOutput[i];
+			if (val == 0 && !dynamic) {
+				continue;
+			}
+
+			float[] decoder = getDynamicDecoder(i, val, startTime, endTime);
+			for (int j = 0; j < values.length; j++) {
+				values[j] += val * decoder[j];
+			}
+		}
+
+		setOutput(values, startTime, endTime);
+	}
+
+	//zeroed array for output values of a new step; with buffer reuse this belongs to the next output buffer
+	private float[] newValues() {
+		if (!Memory.getReuseBuffers()) {
+			return new float[myFunctions.length];
+		}
+
+		if (myOutputBuffers == null || myOutputBuffers[0].getDimension() != myFunctions.length) {
+			myOutputBuffers = new RealOutputImpl[]{
+					new RealOutputImpl(new float[myFunctions.length], Units.UNK, 0),
+					new RealOutputImpl(new float[myFunctions.length], Units.UNK, 0)};
+		}
+
+		//buffers alternate, so that output of the previous step remains valid while this one runs
+		myOutputBufferIndex = 1 - myOutputBufferIndex;
+		float[] result = myOutputBuffers[myOutputBufferIndex].getValues();
+		Arrays.fill(result, 0f);
+		return result;
+	}
+
+	private void resetSTPHistory() {
+		if (Memory.getReuseBuffers() && mySTPHistory != null && mySTPHistory.length == myNodes.length) {
+			Arrays.fill(mySTPHistory, 0f);
+		} else {
+			mySTPHistory = new float[myNodes.length];
+		}
+	}
+
+	private void setOutput(float[] values, float startTime, float endTime) {
 		if (myNoise != null) {
 			for (int i = 0; i < values.length; i++) {
 				values[i] = myNoises[i].getValue(startTime, endTime, values[i]);
@@ -515,7 +579,12 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 		}
 
 		myTime = endTime;
-		myOutput = new RealOutputImpl(values, Units.UNK, endTime);
+		if (myOutputBuffers != null && myOutputBuffers[myOutputBufferIndex].getValues() == values) {
+			myOutputBuffers[myOutputBufferIndex].setTime(endTime);
+			myOutput = myOutputBuffers[myOutputBufferIndex];
+		} else {
+			myOutput = new RealOutputImpl(values, Units.UNK, endTime);
+		}
 	}
 
 	private float[] getDynamicDecoder(int i, float input, float startTime, float endTime) {
@@ -582,6 +651,48 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 		return myNode;
 	}
 
+	/**
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	public void saveState(ObjectOutput out) throws IOException {
+		out.writeObject(myOutput);
+		out.writeFloat(myTime);
+		out.writeObject(mySTPHistory);
+		CheckpointUtils.saveState(myNoise, out);
+		out.writeInt(myNoises == null ? 0 : myNoises.length);
+		for (int i = 0; myNoises != null && i < myNoises.length; i++) {
+			CheckpointUtils.saveState(myNoises[i], out);
+		}
+		out.writeInt(mySTPDynamics == null ? 0 : mySTPDynamics.length);
+		for (int i = 0; mySTPDynamics != null && i < mySTPDynamics.length; i++) {
+			out.writeObject(mySTPDynamics[i].getState());
+		}
+	}
+
+	/**
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+		myOutput = (RealOutput) in.readObject();
+		myTime = in.readFloat();
+		mySTPHistory = (float[]) in.readObject();
+		CheckpointUtils.restoreState(myNoise, in, myName);
+		int numNoises = in.readInt();
+		if (numNoises != (myNoises == null ? 0 : myNoises.length)) {
+			throw new IOException("Checkpoint doesn't match noise of origin " + myName);
+		}
+		for (int i = 0; i < numNoises; i++) {
+			CheckpointUtils.restoreState(myNoises[i], in, myName);
+		}
+		int numDynamics = in.readInt();
+		if (numDynamics != (mySTPDynamics == null ? 0 : mySTPDynamics.length)) {
+			throw new IOException("Checkpoint doesn't match short-term plasticity of origin " + myName);
+		}
+		for (int i = 0; i < numDynamics; i++) {
+			mySTPDynamics[i].setState((float[]) in.readObject());
+		}
+	}
+
 	@Override
 	public DecodedOrigin clone() throws CloneNotSupportedException {
 		return this.clone(myNode);
@@ -608,6 +719,7 @@ public class DecodedOrigin implements Origin, Resettable, SimulationMode.ModeCon
 			result.myNodes = de.getNodes();
 			result.myNode = de;
 			result.myOutput = (RealOutput) myOutput.clone();
+			result.myOutputBuffers = null;
             if (myNoise != null) {
 			    result.setNoise(myNoise.clone());
             }
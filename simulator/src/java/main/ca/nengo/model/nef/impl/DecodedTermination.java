@@ -24,6 +24,9 @@ a recipient may use your version of this file under either the MPL or the GPL Li
 
 package ca.nengo.model.nef.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
@@ -32,6 +35,8 @@ import ca.nengo.dynamics.Integrator;
 import ca.nengo.dynamics.LinearSystem;
 import ca.nengo.dynamics.impl.CanonicalModel;
 import ca.nengo.dynamics.impl.LTISystem;
+import ca.nengo.dynamics.impl.SimpleLTISystem;
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.Probeable;
@@ -44,6 +49,7 @@ import ca.nengo.model.Units;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.neuron.SynapticIntegrator;
 import ca.nengo.util.MU;
+import ca.nengo.util.Memory;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.impl.TimeSeriesImpl;
 
@@ -63,9 +69,13 @@ import ca.nengo.util.impl.TimeSeriesImpl;
  * because all inputs to a non-linear dynamical process must be taken into account before
  * the effect of any single input is known.</p>
  *
+ * <p>First-order LTI dynamics (eg the exponential PSC made by addDecodedTermination(...)) are
+ * updated exactly over each time step, for all dimensions at once, assuming that input is
+ * constant over the step. Other dynamics are solved numerically for each dimension.</p>
+ *
  * @author Bryan Tripp
  */
-public class DecodedTermination implements Termination, Resettable, Probeable {
+public class DecodedTermination implements Termination, Resettable, Probeable, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -95,6 +105,22 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 	private float[][] myInitialState;
 	private boolean myValuesSet;
 
+	//matrices of LTI dynamics, for stepping without allocation (null if dynamics are of another type)
+	private float[][] myA;
+	private float[][] myB;
+	private float[][] myC;
+	private float[][] myD;
+
+	//buffers reused from step to step
+	private transient float[] myDynamicsInputs;
+	private transient float myDecayStep = -1; //step size for which myDecay and myInputGain were found
+	private transient float myDecay;
+	private transient float myInputGain;
+	private transient float[] myDerivative;
+	private transient RealOutputImpl myInputBuffer;
+	private transient float[][] myOutputBuffers;
+	private transient int myOutputBufferIndex;
+
 	/**
 	 * @param node The parent Node
 	 * @param name The name of this Termination
@@ -139,7 +165,7 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 
 				//maintain state if there is state
 				if (myDynamics != null && myDynamics[i] != null) {
-					newDynamics[i].setState(myDynamics[i].getState());
+					newDynamics[i].setState(myDynamics[i].getState().clone());
 				}
 			} catch (CloneNotSupportedException e) {
 				throw new Error("The clone() operation is not supported by the given dynamics object");
@@ -147,6 +173,21 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 		}
 		myDynamics = newDynamics;
 
+		Class<?> c = myDynamicsTemplate.getClass();
+		if (c == LTISystem.class || c == SimpleLTISystem.class) {
+			LTISystem lti = (LTISystem) myDynamicsTemplate;
+			myA = lti.getA(0f);
+			myB = lti.getB(0f);
+			myC = lti.getC(0f);
+			myD = (c == LTISystem.class) ? lti.getD(0f) : null; //SimpleLTISystem has no passthrough
+		} else {
+			myA = null;
+			myB = null;
+			myC = null;
+			myD = null;
+		}
+		myDecayStep = -1;
+
 		//zero corresponding initial state if necessary
 		if (myInitialState == null || myInitialState[0].length != newDynamics[0].getState().length) {
 			initInitialState();
@@ -188,7 +229,20 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 		}
 
 		RealOutput ro = (RealOutput) values;
-		myInputValues = new RealOutputImpl(MU.sum(ro.getValues(), myStaticBias), ro.getUnits(), ro.getTime());
+		if (Memory.getReuseBuffers()) {
+			float[] input = ro.getValues();
+			if (myInputBuffer == null || myInputBuffer.getDimension() != input.length || myInputBuffer.getUnits() != ro.getUnits()) {
+				myInputBuffer = new RealOutputImpl(new float[input.length], ro.getUnits(), ro.getTime());
+			}
+			float[] biased = myInputBuffer.getValues();
+			for (int i = 0; i < biased.length; i++) {
+				biased[i] = input[i] + myStaticBias[i];
+			}
+			myInputBuffer.setTime(ro.getTime());
+			myInputValues = myInputBuffer;
+		} else {
+			myInputValues = new RealOutputImpl(MU.sum(ro.getValues(), myStaticBias), ro.getUnits(), ro.getTime());
+		}
 
 		if (!myValuesSet) {
             myValuesSet = true;
@@ -209,23 +263,29 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 			setValues(new RealOutputImpl(new float[getDimensions()], Units.UNK, 0.0f));
 		}
 
-		float[][] transform = getTransform();
-		if (myScalingTermination != null) {
-			float scale = myScalingTermination.getOutput()[0];
-			transform = MU.prod(transform, scale);
+		float[] dynamicsInputs = transformInput();
+		float[] result = Memory.getReuseBuffers() ? nextOutputBuffer() : new float[dynamicsInputs.length];
+
+		if (myA != null && myA.length == 1) {
+			stepExponential(dynamicsInputs, result, endTime-startTime);
+			myTime = endTime;
+			myOutputValues = result;
+			return;
 		}
-		float[] dynamicsInputs = MU.prod(transform, myInputValues.getValues());
-		float[] result = new float[dynamicsInputs.length];
 
 		for (int i = 0; i < myDynamics.length; i++) {
-			float[] inVal  = new float[]{dynamicsInputs[i]};
 			if(myTau <= endTime-startTime) {
+				float[] inVal  = new float[]{dynamicsInputs[i]};
 				TimeSeries inSeries = new TimeSeriesImpl(new float[]{startTime, endTime}, new float[][]{inVal, inVal}, myNullUnits);
 				TimeSeries outSeries = myIntegrator.integrate(myDynamics[i], inSeries);
 				result[i] = outSeries.getValues()[outSeries.getValues().length-1][0];
 			}
+			else if (myA != null) {
+				result[i] = stepLTI(i, dynamicsInputs[i], endTime-startTime);
+			}
 			else {
 				//save the overhead on the integration, and just do it all in one step
+				float[] inVal  = new float[]{dynamicsInputs[i]};
 				float[] dxdt = myDynamics[i].f(startTime, inVal);
 				myDynamics[i].setState(MU.sum(myDynamics[i].getState(), MU.prod(dxdt, endTime-startTime)));
 				result[i] = myDynamics[i].g(endTime, inVal)[0];
@@ -236,6 +296,92 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 		myOutputValues = result;
 	}
 
+	//maps input through the (scaled) transform, into a buffer that is reused between steps
+	private float[] transformInput() {
+		float[] input = myInputValues.getValues();
+		if (input.length != myTransform[0].length) {
+			throw new IllegalArgumentException("Dimension mismatch: " + myTransform[0].length +
+					" columns in transform and " + input.length + " elements in input");
+		}
+
+		if (myDynamicsInputs == null || myDynamicsInputs.length != myTransform.length) {
+			myDynamicsInputs = new float[myTransform.length];
+		}
+
+		boolean scaled = myScalingTermination != null;
+		float scale = scaled ? myScalingTermination.getOutput()[0] : 1f;
+		for (int i = 0; i < myTransform.length; i++) {
+			float[] row = myTransform[i];
+			float sum = 0f;
+			for (int j = 0; j < row.length; j++) {
+				sum += (scaled ? row[j] * scale : row[j]) * input[j];
+			}
+			myDynamicsInputs[i] = sum;
+		}
+
+		return myDynamicsInputs;
+	}
+
+	//one Euler step of LTI dynamics (as f(...), setState(...), g(...)), updating the state in place
+	//(state vectors are never shared -- see setDynamics(int) and resetInitialState())
+	private float stepLTI(int i, float u, float dt) {
+		float[] x = myDynamics[i].getState();
+		if (myDerivative == null || myDerivative.length != x.length) {
+			myDerivative = new float[x.length];
+		}
+
+		for (int k = 0; k < x.length; k++) {
+			float dxdt = 0f;
+			for (int j = 0; j < x.length; j++) {
+				dxdt += myA[k][j] * x[j];
+			}
+			myDerivative[k] = dxdt + myB[k][0] * u;
+		}
+		for (int k = 0; k < x.length; k++) {
+			x[k] = x[k] + myDerivative[k] * dt;
+		}
+
+		float y = 0f;
+		for (int k = 0; k < x.length; k++) {
+			y += myC[0][k] * x[k];
+		}
+		if (myD != null) {
+			y += myD[0][0] * u;
+		}
+		return y;
+	}
+
+	/*
+	 * Exact update of first-order dynamics dx/dt = ax + bu, y = cx + du over all dimensions, with input
+	 * held constant over the step (zero-order hold): x <- e^(a dt) x + (e^(a dt) - 1)/a * bu. Unlike the
+	 * Euler and Integrator paths, this is accurate for any step size relative to the time constant.
+	 */
+	private void stepExponential(float[] inputs, float[] result, float dt) {
+		if (dt != myDecayStep) {
+			float a = myA[0][0];
+			myDecay = (float) Math.exp(a * dt);
+			myInputGain = (a == 0) ? myB[0][0] * dt : (float) ((Math.exp(a * dt) - 1) / a) * myB[0][0];
+			myDecayStep = dt;
+		}
+
+		float c = myC[0][0];
+		float d = (myD == null) ? 0f : myD[0][0];
+		for (int i = 0; i < inputs.length; i++) {
+			float[] x = myDynamics[i].getState();
+			x[0] = myDecay * x[0] + myInputGain * inputs[i];
+			result[i] = c * x[0] + d * inputs[i];
+		}
+	}
+
+	//output buffers alternate, so that output of the previous step remains valid during this one
+	private float[] nextOutputBuffer() {
+		if (myOutputBuffers == null || myOutputBuffers[0].length != myOutputDimension) {
+			myOutputBuffers = new float[2][myOutputDimension];
+		}
+		myOutputBufferIndex = 1 - myOutputBufferIndex;
+		return myOutputBuffers[myOutputBufferIndex];
+	}
+
 	/**
 	 * This method should be called after run(...).
 	 *
@@ -277,7 +423,7 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 
 	private void resetInitialState() {
 		for (int i = 0; myDynamics != null && i < myDynamics.length; i++) {
-			float[] state = myInitialState != null ? myInitialState[i] : new float[myDynamics[i].getState().length];
+			float[] state = myInitialState != null ? myInitialState[i].clone() : new float[myDynamics[i].getState().length];
 			myDynamics[i].setState(state);
 		}
 	}
@@ -465,6 +611,43 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 			((SynapticIntegrator)myIntegrator).setNode(node);
 	}
 
+	/**
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	public void saveState(ObjectOutput out) throws IOException {
+		out.writeInt(myDynamics == null ? -1 : myDynamics.length);
+		for (int i = 0; myDynamics != null && i < myDynamics.length; i++) {
+			out.writeObject(myDynamics[i].getState());
+		}
+		out.writeObject(myInputValues);
+		out.writeObject(myOutputValues);
+		out.writeFloat(myTime);
+		out.writeBoolean(myValuesSet);
+	}
+
+	/**
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	public synchronized void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+		int numDynamics = in.readInt();
+		if (numDynamics >= 0) {
+			if (numDynamics != myOutputDimension) {
+				throw new IOException("Checkpoint has " + numDynamics + " dimensions for termination " + myName
+						+ ", which has " + myOutputDimension);
+			}
+			if (myDynamics == null) {
+				setDynamics(myOutputDimension);
+			}
+			for (int i = 0; i < numDynamics; i++) {
+				myDynamics[i].setState((float[]) in.readObject());
+			}
+		}
+		myInputValues = (RealOutput) in.readObject();
+		myOutputValues = (float[]) in.readObject();
+		myTime = in.readFloat();
+		myValuesSet = in.readBoolean();
+	}
+
 	@Override
 	public DecodedTermination clone() throws CloneNotSupportedException {
 		return this.clone(myNode);
@@ -482,6 +665,10 @@ public class DecodedTermination implements Termination, Resettable, Probeable {
 			if (myOutputValues != null) {
                 result.myOutputValues = myOutputValues.clone();
             }
+			result.myDynamicsInputs = null;
+			result.myDerivative = null;
+			result.myInputBuffer = null;
+			result.myOutputBuffers = null;
 			result.myScalingTermination = myScalingTermination; //refer to same copy
 			result.myStaticBias = myStaticBias.clone();
 			result.setNode(node);
@@ -0,0 +1,681 @@
+package ca.nengo.model.nef.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.channels.FileLock;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.log4j.Logger;
+
+import ca.nengo.dynamics.DynamicalSystem;
+import ca.nengo.math.Function;
+import ca.nengo.math.impl.IdentityFunction;
+import ca.nengo.model.Node;
+import ca.nengo.model.Noise;
+import ca.nengo.model.Origin;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.NEFEnsembleFactory;
+import ca.nengo.model.nef.NEFNode;
+import ca.nengo.model.neuron.Neuron;
+import ca.nengo.model.neuron.impl.LIFNeuronFactory;
+import ca.nengo.model.neuron.impl.SpikingNeuron;
+
+/**
+ * <p>A persistent cache of NEFEnsembles in a directory, which may be shared between processes. Entries are
+ * looked up by a Key, which is a SHA-256 digest of everything that determines the ensemble (eg factory
+ * parameters, seed, encoders and evaluation points). Use with
+ * NEFEnsembleFactoryImpl.make(String, int, float[], EnsembleCache, EnsembleCache.Key).</p>
+ *
+ * <p>Ensembles of LIF neurons (made by a LIFNeuronFactory) are stored compactly, as their encoders, evaluation
+ * points, neuron gains and biases, and the decoders and noise / short-term plasticity settings of the default
+ * X origin. These are reassembled with the factory on loading, without evaluating neuron responses or solving
+ * for decoders. Other ensembles, including those from factories that override the default origins, are stored
+ * with Java serialization.</p>
+ *
+ * <p>Each entry is written to a temporary file and then renamed, so that other processes never see partial
+ * entries, and entries carry their key and a checksum, so that damaged entries are discarded. When the total
+ * size of the entries exceeds a limit, the least recently used entries are deleted.</p>
+ */
+public class EnsembleCache {
+
+	/**
+	 * Extension of cache entries
+	 */
+	public static final String EXTENSION = "nec";
+
+	private static Logger ourLogger = Logger.getLogger(EnsembleCache.class);
+
+	private static final int MAGIC = 0x4E454332; //"NEC2"
+	private static final byte COMPACT = 0;
+	private static final byte SERIALIZED = 1;
+
+	private File myDirectory;
+	private long myMaxBytes;
+
+	/**
+	 * @param directory Directory in which entries are kept (created if necessary)
+	 * @param maxBytes Maximum total size of entries (bytes)
+	 */
+	public EnsembleCache(File directory, long maxBytes) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Can't create cache directory " + directory.getAbsolutePath());
+		}
+		myDirectory = directory;
+		myMaxBytes = maxBytes;
+	}
+
+	/**
+	 * @return Directory in which entries are kept
+	 */
+	public File getDirectory() {
+		return myDirectory;
+	}
+
+	/**
+	 * @return Maximum total size of entries (bytes)
+	 */
+	public long getMaxBytes() {
+		return myMaxBytes;
+	}
+
+	/**
+	 * @param maxBytes Maximum total size of entries (bytes)
+	 */
+	public void setMaxBytes(long maxBytes) {
+		myMaxBytes = maxBytes;
+	}
+
+	/**
+	 * @param key Key of an entry
+	 * @return True if an entry with the given key is stored
+	 */
+	public boolean contains(Key key) {
+		return getFile(key).exists();
+	}
+
+	/**
+	 * @param key Key of the ensemble
+	 * @param name Name of the loaded ensemble
+	 * @param factory Factory with which compactly stored ensembles are reassembled (this should be configured
+	 * 		as it was when the ensemble was stored, which is ensured if the configuration is part of the key)
+	 * @return The stored ensemble, or null if there is no usable entry with the given key
+	 */
+	public NEFEnsemble load(Key key, String name, NEFEnsembleFactoryImpl factory) {
+		File file = getFile(key);
+		if (!file.exists()) {
+			return null;
+		}
+
+		NEFEnsemble result = null;
+		try {
+			CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), new CRC32());
+			DataInputStream in = new DataInputStream(checked);
+			try {
+				if (in.readInt() != MAGIC || !in.readUTF().equals(key.toString())) {
+					throw new IOException("Unexpected header");
+				}
+				byte format = in.readByte();
+				if (format == COMPACT) {
+					result = readCompact(in, name, factory);
+				} else if (format == SERIALIZED) {
+					result = readSerialized(in, name);
+				} else {
+					throw new IOException("Unknown format " + format);
+				}
+
+				long checksum = checked.getChecksum().getValue();
+				if (in.readLong() != checksum) {
+					throw new IOException("Checksum mismatch");
+				}
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			ourLogger.warn("Discarding cache entry " + file.getName() + ": " + e);
+			file.delete();
+			return null;
+		}
+
+		file.setLastModified(System.currentTimeMillis());
+		return result;
+	}
+
+	/**
+	 * @param key Key of the ensemble
+	 * @param ensemble Ensemble to store
+	 * @throws IOException If the ensemble can't be stored
+	 */
+	public void store(Key key, NEFEnsemble ensemble) throws IOException {
+		File temp = File.createTempFile(key.toString() + "-", ".tmp", myDirectory);
+		try {
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp)), new CRC32());
+			DataOutputStream out = new DataOutputStream(checked);
+			try {
+				out.writeInt(MAGIC);
+				out.writeUTF(key.toString());
+				if (isCompact(ensemble)) {
+					out.writeByte(COMPACT);
+					writeCompact(out, (NEFEnsembleImpl) ensemble);
+				} else {
+					out.writeByte(SERIALIZED);
+					writeSerialized(out, ensemble);
+				}
+				out.flush();
+				out.writeLong(checked.getChecksum().getValue());
+			} finally {
+				out.close();
+			}
+
+			File file = getFile(key);
+			if (!temp.renameTo(file)) {
+				//on some platforms an existing entry must be removed first (another process may have stored it)
+				file.delete();
+				if (!temp.renameTo(file)) {
+					throw new IOException("Can't rename " + temp.getName() + " to " + file.getName());
+				}
+			}
+		} finally {
+			temp.delete();
+		}
+
+		evict();
+	}
+
+	/**
+	 * Deletes least recently used entries until their total size is within the limit.
+	 */
+	public void evict() {
+		File[] entries = myDirectory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith("." + EXTENSION);
+			}
+		});
+		if (entries == null) {
+			return;
+		}
+
+		long total = 0;
+		for (File entry : entries) {
+			total += entry.length();
+		}
+		if (total <= myMaxBytes) {
+			return;
+		}
+
+		RandomAccessFile lockFile = null;
+		FileLock lock = null;
+		try {
+			lockFile = new RandomAccessFile(new File(myDirectory, "cache.lock"), "rw");
+			lock = lockFile.getChannel().lock();
+
+			//times are read once, as other processes may touch entries while sorting
+			final Map<File, Long> times = new HashMap<File, Long>(entries.length * 2);
+			for (File entry : entries) {
+				times.put(entry, Long.valueOf(entry.lastModified()));
+			}
+			Arrays.sort(entries, new Comparator<File>() {
+				public int compare(File a, File b) {
+					return times.get(a).compareTo(times.get(b));
+				}
+			});
+			for (int i = 0; i < entries.length && total > myMaxBytes; i++) {
+				long length = entries[i].length();
+				if (entries[i].delete()) {
+					total -= length;
+				}
+			}
+		} catch (IOException e) {
+			ourLogger.warn("Can't evict cache entries", e);
+		} finally {
+			try {
+				if (lock != null) {
+					lock.release();
+				}
+				if (lockFile != null) {
+					lockFile.close();
+				}
+			} catch (IOException e) {
+				ourLogger.warn("Can't release cache lock", e);
+			}
+		}
+	}
+
+	private File getFile(Key key) {
+		return new File(myDirectory, key.toString() + "." + EXTENSION);
+	}
+
+	private static boolean isCompact(NEFEnsemble ensemble) {
+		if ( !(ensemble instanceof NEFEnsembleImpl)
+				|| !(ensemble.getEnsembleFactory() instanceof NEFEnsembleFactoryImpl)
+				|| !(((NEFEnsembleFactoryImpl) ensemble.getEnsembleFactory()).getNodeFactory() instanceof LIFNeuronFactory)
+				|| !hasStandardOrigins((NEFEnsembleFactoryImpl) ensemble.getEnsembleFactory())
+				|| getDefaultOrigin(ensemble) == null) {
+			return false;
+		}
+		for (Node node : ensemble.getNodes()) {
+			if ( !(node instanceof SpikingNeuron) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeCompact(DataOutputStream out, NEFEnsembleImpl ensemble) throws IOException {
+		Node[] nodes = ensemble.getNodes();
+		float[] radii = ensemble.getRadii();
+		out.writeInt(nodes.length);
+		out.writeInt(radii.length);
+		writeVector(out, radii);
+
+		writeMatrix(out, ensemble.getEncoders());
+
+		float[][] evalPoints = ensemble.getEvalPoints();
+		out.writeInt(evalPoints.length);
+		for (float[] point : evalPoints) {
+			for (int j = 0; j < point.length; j++) {
+				out.writeFloat(point[j] / radii[j]);
+			}
+		}
+
+		for (Node node : nodes) {
+			out.writeFloat(((SpikingNeuron) node).getScale());
+			out.writeFloat(((SpikingNeuron) node).getBias());
+		}
+
+		DecodedOrigin origin = getDefaultOrigin(ensemble);
+		writeMatrix(out, origin.getDecoders());
+		writeObject(out, new Object[]{origin.getNoises(), origin.getSTPDynamics()});
+	}
+
+	//true if the factory adds the default origins of NEFEnsembleFactoryImpl (which readCompact(...) restores)
+	private static boolean hasStandardOrigins(NEFEnsembleFactoryImpl factory) {
+		for (Class<?> c = factory.getClass(); c != NEFEnsembleFactoryImpl.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("addDefaultOrigins", NEFEnsemble.class);
+				return false;
+			} catch (NoSuchMethodException e) {
+				//not overridden here
+			}
+		}
+		return true;
+	}
+
+	//the X origin, if it is a DecodedOrigin
+	private static DecodedOrigin getDefaultOrigin(NEFEnsemble ensemble) {
+		try {
+			Origin origin = ensemble.getOrigin(NEFEnsemble.X);
+			return (origin instanceof DecodedOrigin) ? (DecodedOrigin) origin : null;
+		} catch (StructuralException e) {
+			return null;
+		}
+	}
+
+	private static NEFEnsemble readCompact(DataInputStream in, String name, NEFEnsembleFactoryImpl factory)
+			throws IOException, ClassNotFoundException, StructuralException, SimulationException {
+		int n = in.readInt();
+		int dim = in.readInt();
+		float[] radii = readVector(in, dim);
+		float[][] encoders = readMatrix(in, n, dim);
+		float[][] evalPoints = readMatrix(in, in.readInt(), dim);
+
+		NEFNode[] nodes = new NEFNode[n];
+		for (int i = 0; i < n; i++) {
+			Node node = factory.getNodeFactory().make("node" + i);
+			if ( !(node instanceof SpikingNeuron) ) {
+				throw new StructuralException("Can't restore gain and bias of " + node.getClass().getName());
+			}
+			((SpikingNeuron) node).setScale(in.readFloat());
+			((SpikingNeuron) node).setBias(in.readFloat());
+			nodes[i] = (NEFNode) node;
+		}
+
+		float[][] decoders = readMatrix(in, n, dim);
+		Object[] config = (Object[]) readObject(in);
+
+		NEFEnsemble result = factory.construct(name, nodes, encoders, factory.getApproximatorFactory(), evalPoints, radii);
+		Function[] functions = new Function[dim];
+		for (int i = 0; i < dim; i++) {
+			functions[i] = new IdentityFunction(dim, i);
+		}
+		DecodedOrigin origin = new DecodedOrigin(result, NEFEnsemble.X, nodes, Neuron.AXON, functions, decoders, 0);
+		if (config[0] != null) {
+			origin.setNoises((Noise[]) config[0]);
+		}
+		if (config[1] != null) {
+			origin.setSTPDynamics((DynamicalSystem) config[1]);
+		}
+		((NEFEnsembleImpl) result).addDecodedOrigin(origin);
+		return result;
+	}
+
+	private static void writeSerialized(DataOutputStream out, NEFEnsemble ensemble) throws IOException {
+		//the factory may not be serializable (as with FileManager)
+		NEFEnsembleFactory factory = ensemble.getEnsembleFactory();
+		ensemble.setEnsembleFactory(null);
+		try {
+			writeObject(out, ensemble);
+		} finally {
+			ensemble.setEnsembleFactory(factory);
+		}
+	}
+
+	private static NEFEnsemble readSerialized(DataInputStream in, String name) throws IOException, ClassNotFoundException, StructuralException {
+		NEFEnsemble result = (NEFEnsemble) readObject(in);
+		result.setName(name);
+		return result;
+	}
+
+	//Java serialization, preceded by the length of the serialized form
+	private static void writeObject(DataOutputStream out, Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(object);
+		oos.close();
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	private static Object readObject(DataInputStream in) throws IOException, ClassNotFoundException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return ois.readObject();
+		} finally {
+			ois.close();
+		}
+	}
+
+	private static void writeVector(DataOutputStream out, float[] vector) throws IOException {
+		for (float element : vector) {
+			out.writeFloat(element);
+		}
+	}
+
+	private static float[] readVector(DataInputStream in, int length) throws IOException {
+		float[] result = new float[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = in.readFloat();
+		}
+		return result;
+	}
+
+	private static void writeMatrix(DataOutputStream out, float[][] matrix) throws IOException {
+		for (float[] row : matrix) {
+			writeVector(out, row);
+		}
+	}
+
+	private static float[][] readMatrix(DataInputStream in, int rows, int columns) throws IOException {
+		float[][] result = new float[rows][];
+		for (int i = 0; i < rows; i++) {
+			result[i] = readVector(in, columns);
+		}
+		return result;
+	}
+
+	/**
+	 * A stable digest of everything that determines an ensemble. Parameters are added in order, and the
+	 * key is the SHA-256 digest of their values (so that eg matrices can be added without collisions).
+	 */
+	public static class Key implements Cloneable {
+
+		private MessageDigest myDigest;
+		private DataOutputStream myOutput;
+
+		/**
+		 * Creates an empty key.
+		 */
+		public Key() {
+			try {
+				init(MessageDigest.getInstance("SHA-256"));
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void init(MessageDigest digest) {
+			myDigest = digest;
+			myOutput = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), myDigest));
+		}
+
+		/**
+		 * @param value A String parameter
+		 * @return This key
+		 */
+		public Key add(String value) {
+			try {
+				myOutput.writeByte('s');
+				myOutput.writeUTF(value);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param value An integer parameter
+		 * @return This key
+		 */
+		public Key add(long value) {
+			try {
+				myOutput.writeByte('l');
+				myOutput.writeLong(value);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param value A real-valued parameter
+		 * @return This key
+		 */
+		public Key add(float value) {
+			try {
+				myOutput.writeByte('f');
+				myOutput.writeFloat(value);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param values A vector parameter
+		 * @return This key
+		 */
+		public Key add(float[] values) {
+			try {
+				myOutput.writeByte('v');
+				myOutput.writeInt(values.length);
+				writeVector(myOutput, values);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return this;
+		}
+
+		/**
+		 * @param values A matrix parameter (eg encoders or evaluation points)
+		 * @return This key
+		 */
+		public Key add(float[][] values) {
+			try {
+				myOutput.writeByte('m');
+				myOutput.writeInt(values.length);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			for (float[] row : values) {
+				add(row);
+			}
+			return this;
+		}
+
+		/**
+		 * Adds the values of an object's fields, and of the objects they refer to, so that configuration
+		 * objects (eg a PDF or a neuron factory) can be part of the key. Only the class names and the
+		 * primitive values are digested, so the key doesn't depend on other details of the classes.
+		 * Static, transient and synthetic fields are skipped. As with serialization, the objects must be
+		 * Serializable.
+		 *
+		 * @param value A configuration object
+		 * @return This key
+		 * @throws IllegalArgumentException If an object isn't Serializable, or its fields can't be read
+		 */
+		public Key addFields(Object value) {
+			try {
+				addValue(value, new IdentityHashMap<Object, Integer>());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return this;
+		}
+
+		private void addValue(Object value, Map<Object, Integer> visited) throws IOException {
+			if (value == null) {
+				myOutput.writeByte('n');
+			} else if (value instanceof String) {
+				add((String) value);
+			} else if (value instanceof Float) {
+				add(((Float) value).floatValue());
+			} else if (value instanceof Double) {
+				myOutput.writeByte('d');
+				myOutput.writeDouble(((Double) value).doubleValue());
+			} else if (value instanceof Number) {
+				add(((Number) value).longValue());
+			} else if (value instanceof Boolean) {
+				myOutput.writeByte('z');
+				myOutput.writeBoolean(((Boolean) value).booleanValue());
+			} else if (value instanceof Character) {
+				myOutput.writeByte('c');
+				myOutput.writeChar(((Character) value).charValue());
+			} else if (value instanceof Enum<?>) {
+				add(value.getClass().getName()).add(((Enum<?>) value).name());
+			} else if (value instanceof Class<?>) {
+				add(((Class<?>) value).getName());
+			} else if (visited.containsKey(value)) {
+				myOutput.writeByte('r'); //shared or cyclic reference
+				myOutput.writeInt(visited.get(value).intValue());
+			} else {
+				visited.put(value, Integer.valueOf(visited.size()));
+				if (value.getClass().isArray()) {
+					int length = Array.getLength(value);
+					myOutput.writeByte('a');
+					myOutput.writeInt(length);
+					for (int i = 0; i < length; i++) {
+						addValue(Array.get(value, i), visited);
+					}
+				} else if (value instanceof Serializable) {
+					add(value.getClass().getName());
+					for (Field field : getFields(value.getClass())) {
+						try {
+							addValue(field.get(value), visited);
+						} catch (IllegalAccessException e) {
+							throw new IllegalArgumentException("Can't read " + field, e);
+						}
+					}
+				} else {
+					throw new IllegalArgumentException(value.getClass().getName() + " is not Serializable");
+				}
+			}
+		}
+
+		//non-static, non-transient fields of a class and its superclasses, in a fixed order
+		private static List<Field> getFields(Class<?> type) {
+			List<Field> result = new ArrayList<Field>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				Field[] fields = c.getDeclaredFields();
+				Arrays.sort(fields, new Comparator<Field>() {
+					public int compare(Field a, Field b) {
+						return a.getName().compareTo(b.getName());
+					}
+				});
+				for (Field field : fields) {
+					int modifiers = field.getModifiers();
+					if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+						try {
+							field.setAccessible(true);
+						} catch (RuntimeException e) {
+							throw new IllegalArgumentException("Can't read " + field, e);
+						}
+						result.add(field);
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public Key clone() {
+			try {
+				Key result = (Key) super.clone();
+				result.init((MessageDigest) myDigest.clone());
+				return result;
+			} catch (CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * @return Hexadecimal digest of the parameters added so far
+		 */
+		@Override
+		public String toString() {
+			try {
+				byte[] digest = ((MessageDigest) myDigest.clone()).digest();
+				StringBuilder result = new StringBuilder(digest.length * 2);
+				for (byte b : digest) {
+					result.append(Character.forDigit((b >> 4) & 0xF, 16));
+					result.append(Character.forDigit(b & 0xF, 16));
+				}
+				return result.toString();
+			} catch (CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+}
@@ -29,6 +29,7 @@ package ca.nengo.model.nef.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 
 import org.apache.log4j.Logger;
 
@@ -192,6 +193,56 @@ public class NEFEnsembleFactoryImpl implements NEFEnsembleFactory, java.io.Seria
 		return result;
 	}
 
+	/**
+	 * Loads an ensemble from a cache, or makes it and stores it in the cache if there is no matching entry.
+	 * The factory's own configuration (its node, encoder, eval point and approximator factories, where
+	 * these are serializable), the number of nodes and the radii are added to the given key. The key
+	 * should identify anything else that determines the ensemble, eg a random seed, or the parameters of
+	 * factories that are not serializable.
+	 *
+	 * @param name Name of the ensemble
+	 * @param n Number of nodes
+	 * @param radii Radius of encoded region in each dimension
+	 * @param cache Cache of ensembles
+	 * @param key Key of the ensemble (not modified)
+	 * @return The loaded or new ensemble
+	 * @throws StructuralException if there is any error attempting to create the ensemble
+	 */
+	public NEFEnsemble make(String name, int n, float[] radii, EnsembleCache cache, EnsembleCache.Key key) throws StructuralException {
+		key = key.clone();
+		key.add(getClass().getName()).add(n).add(radii).add(getNumEvalPoints(radii.length));
+		addToKey(key, myNodeFactory);
+		addToKey(key, myEncoderFactory);
+		addToKey(key, myEvalPointFactory);
+		addToKey(key, myApproximatorFactory);
+
+		NEFEnsemble result = cache.load(key, name, this);
+		if (result == null) {
+			result = doMake(name, n, radii, 0);
+			try {
+				cache.store(key, result);
+			} catch (IOException e) {
+				ourLogger.error("Failed to store ensemble " + name + " in cache", e);
+			}
+		}
+
+		result.setEnsembleFactory(this);
+		return result;
+	}
+
+	private static void addToKey(EnsembleCache.Key key, Object component) {
+		key.add(component.getClass().getName());
+		if (component instanceof Serializable) {
+			EnsembleCache.Key fields = key.clone(); //so that a failure part way through doesn't change the key
+			try {
+				fields.addFields(component);
+				key.add(fields.toString());
+			} catch (IllegalArgumentException e) {
+				ourLogger.debug("Configuration of " + component.getClass().getName() + " is not part of cache key", e);
+			}
+		}
+	}
+
 	/**
 	 * @see ca.nengo.model.nef.NEFEnsembleFactory#setApproximatorFactory(ca.nengo.math.ApproximatorFactory)
 	 */
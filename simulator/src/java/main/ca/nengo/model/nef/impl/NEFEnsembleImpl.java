@@ -27,9 +27,11 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.nef.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -60,8 +62,11 @@ import ca.nengo.model.nef.NEFEnsemble;
 import ca.nengo.model.nef.NEFEnsembleFactory;
 import ca.nengo.model.nef.NEFNode;
 import ca.nengo.model.neuron.Neuron;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.impl.LIFNeuronFactory;
+import ca.nengo.model.neuron.impl.NeuronPopulation;
 import ca.nengo.model.neuron.impl.LIFSpikeGenerator;
+import ca.nengo.model.neuron.impl.LinearSynapticIntegrator;
 import ca.nengo.model.neuron.impl.SpikeGeneratorOrigin;
 import ca.nengo.model.neuron.impl.SpikingNeuron;
 import ca.nengo.model.plasticity.impl.BCMTermination;
@@ -117,6 +122,13 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 
 	private boolean myUseGPU;
 
+	private boolean myUsePopulation;
+	private transient NeuronPopulation myPopulation;
+	private transient float[] myScaledEncoders;
+	private transient float[] myState;
+	private transient float[] myRadialInput;
+	private transient boolean myPopulationRan;
+
 	/**
 	 * @param name Unique name of Ensemble
 	 * @param nodes Nodes that make up the Ensemble
@@ -177,6 +189,28 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		return myUseGPU && (getMode() == SimulationMode.DEFAULT || getMode() == SimulationMode.RATE);
 	}
 
+	/**
+	 * @param use If true, and the Nodes are spiking neurons with batchable SpikeGenerators (eg LIF, ALIF,
+	 * 		Izhikevich, Poisson or Gruber) and without node-level Terminations or noise, the Nodes are
+	 * 		advanced together as a NeuronPopulation (in DEFAULT, RATE and CONSTANT_RATE modes), which is
+	 * 		much faster for large ensembles. In this case Node-level states (eg voltage) are
+	 * 		not available to Probes, and parameter changes made directly on Nodes take effect after reset.
+	 */
+	public void setUsePopulation(boolean use) {
+		myUsePopulation = use;
+		if (!use) {
+			releasePopulation();
+		}
+	}
+
+	/**
+	 * @return Advancing Nodes as a population (see setUsePopulation)?
+	 */
+	public boolean getUsePopulation() {
+		return myUsePopulation && (getMode() == SimulationMode.DEFAULT
+				|| getMode() == SimulationMode.RATE || getMode() == SimulationMode.CONSTANT_RATE);
+	}
+
 	/**
 	 * @param radii A list of radii of encoded area along each dimension; uniform
 	 * 		radius along each dimension can be specified with a list of length 1
@@ -214,8 +248,10 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 
 
 		myRadii = radii;
+		releasePopulation();
 
 		myInverseRadii = new float[radii.length];
+		myScaledEncoders = null;
 		myRadiiAreOne = true;
 		for (int i = 0; i < radii.length; i++) {
 			myInverseRadii[i] = 1f / radii[i];
@@ -358,6 +394,16 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		float[] result = new float[evalPoints.length];
 
 		NEFNode node = (NEFNode) getNodes()[nodeIndex];
+		RateResponse response = getRateResponse(node, origin);
+		if (response != null) {
+			SpikingNeuron neuron = (SpikingNeuron) node;
+			for (int i = 0; i < result.length; i++) {
+				float radialInput = getRadialInput(evalPoints[i], nodeIndex);
+				result[i] = response.getRate(neuron.getBias() + neuron.getScale() * radialInput);
+			}
+			return result;
+		}
+
 		synchronized (node) {
 			SimulationMode mode = node.getMode();
 
@@ -382,6 +428,30 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		return result;
 	}
 	
+	/**
+	 * @param node A Node of this Ensemble
+	 * @param origin Name of Origin from which output is to be collected
+	 * @return The Node's SpikeGenerator, if the Node is a SpikingNeuron whose axon output in CONSTANT_RATE
+	 * 		mode is given directly by the generator's RateResponse (ie without noise or node-level
+	 * 		Terminations), otherwise null
+	 */
+	private static RateResponse getRateResponse(NEFNode node, String origin) {
+		if ( !origin.equals(Neuron.AXON) || !(node instanceof SpikingNeuron) ) {
+			return null;
+		}
+
+		SpikingNeuron neuron = (SpikingNeuron) node;
+		if ( !(neuron.getGenerator() instanceof RateResponse)
+				|| !((RateResponse) neuron.getGenerator()).getConstantRateModeSupported()
+				|| !(neuron.getIntegrator() instanceof LinearSynapticIntegrator)
+				|| neuron.getIntegrator().getTerminations().length > 0
+				|| neuron.getNoise() != null) {
+			return null;
+		}
+
+		return (RateResponse) neuron.getGenerator();
+	}
+
 	/**
 	 * Similar to getConstantOutputs, but uses a time series as input to each neuron rather than a single point.
 	 * 
@@ -494,6 +564,8 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		assert encoders[0].length == getDimension();
 
 		myEncoders = encoders;
+		myScaledEncoders = null;
+		releasePopulation();
 	}
 
 	/**
@@ -922,31 +994,24 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
     public void run(float startTime, float endTime) throws SimulationException {
 		synchronized (this) {
 			try{
-				float[] state = new float[myDimension];
-				Map<String, Float> bias = new HashMap<String, Float>(5);
+				if (myState == null || myState.length != myDimension) {
+					myState = new float[myDimension];
+				}
+				float[] state = myState;
+				Arrays.fill(state, 0f);
 
-				//run terminations and sum state ...
+				//run terminations and sum state (bias input is added to radial input below) ...
 				DecodedTermination[] dts = super.getDecodedTerminations();
 				for (DecodedTermination t : dts) {
 					t.run(startTime, endTime);
-					float[] output = t.getOutput();
 
-					boolean isModulatory = t.getModulatory();
 					//TODO: handle modulatory bias input
-					if (t instanceof BiasTermination) {
-						String baseName = ((BiasTermination) t).getBaseTerminationName();
-						if (!bias.containsKey(baseName)) {
-                            bias.put(baseName, new Float(0));
-                        }
-						if (!isModulatory) {
-                            bias.put(baseName, new Float(bias.get(baseName).floatValue() + output[0]));
-                        }
-					} else {
-						if (!isModulatory) {
-                            state = MU.sum(state, output);
-                        }
+					if ( !(t instanceof BiasTermination) && !t.getModulatory() ) {
+						float[] output = t.getOutput();
+						for (int i = 0; i < state.length; i++) {
+							state[i] += output[i];
+						}
 					}
-
 				}
 
 				if ( getMode().equals(SimulationMode.DIRECT) || getMode().equals(SimulationMode.EXPRESS)) {
@@ -967,11 +1032,15 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 					setTime(endTime);
 					// TODO Have plasticity work in DIRECT mode
 				} else {
-					//multiply state by encoders (cosine tuning), set radial input of each Neuron and run ...
-					Node[] nodes = getNodes();
-					for (int i = 0; i < nodes.length; i++) {
-						((NEFNode) nodes[i]).setRadialInput(getRadialInput(state, i) +
-						        getBiasInput(bias, myDecodedTerminations, i));
+					//multiply state by encoders (cosine tuning) for all Nodes at once ...
+					float[] radialInput = getRadialInputs(state, dts);
+
+					//... and run them as a population (in runNodes(...)) or set radial input of each Node
+					if (getPopulation() == null) {
+						Node[] nodes = getNodes();
+						for (int i = 0; i < nodes.length; i++) {
+							((NEFNode) nodes[i]).setRadialInput(radialInput[i]);
+						}
 					}
 					super.run(startTime, endTime);
 				}
@@ -982,17 +1051,154 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		}
 	}
 
-	// @param bias Bias input (related to avoidance of negative weights with interneurons)
-	private static float getBiasInput(Map<String, Float> bias, Map<String, DecodedTermination> dt, int node) {
-		float sumBias = 0;
-		Iterator<String> it = bias.keySet().iterator();
-		while (it.hasNext()) {
-			String baseName = it.next();
-			float netBias = bias.get(baseName).floatValue();
-			float biasEncoder = ((BiasTermination) dt.get(baseName+BIAS_SUFFIX)).getBiasEncoders()[node];
-			sumBias += netBias * biasEncoder;
+	/**
+	 * Runs Nodes as a NeuronPopulation if possible (see setUsePopulation), otherwise individually.
+	 *
+	 * @see ca.nengo.model.impl.AbstractEnsemble#runNodes(float, float)
+	 */
+	@Override
+	protected void runNodes(float startTime, float endTime) throws SimulationException {
+		myPopulationRan = false;
+		if (myPopulation == null) {
+			super.runNodes(startTime, endTime);
+		} else {
+			myPopulation.run(myRadialInput, startTime, endTime, getMode());
+			myPopulation.writeOutputs(endTime);
+			if (myPopulation.isSpiking()) {
+				setSpikePattern(myPopulation.getOutput(), endTime);
+			}
+			myPopulationRan = true;
+		}
+	}
+
+	/**
+	 * Decodes directly from the population output if Nodes were run as a NeuronPopulation.
+	 *
+	 * @see ca.nengo.model.nef.impl.DecodableEnsembleImpl#runDecodedOrigin(ca.nengo.model.nef.impl.DecodedOrigin, float, float)
+	 */
+	@Override
+	protected void runDecodedOrigin(DecodedOrigin origin, float startTime, float endTime) throws SimulationException {
+		if (myPopulationRan && myPopulation != null) {
+			origin.run(myPopulation.getOutput(), myPopulation.isSpiking(), startTime, endTime);
+		} else {
+			super.runDecodedOrigin(origin, startTime, endTime);
 		}
-		return sumBias;
+	}
+
+	/**
+	 * @return A NeuronPopulation that represents the Nodes of this ensemble, or null if the
+	 * 		population is not in use or the Nodes can not be represented that way
+	 */
+	private NeuronPopulation getPopulation() {
+		boolean usable = getUsePopulation();
+		for (DecodedOrigin o : myDecodedOrigins.values()) {
+			if (!Neuron.AXON.equals(o.getNodeOrigin())) {
+				usable = false; //only axon output is available from the population
+			}
+		}
+
+		if (!usable) {
+			if (myPopulation != null) {
+				releasePopulation();
+			}
+		} else if (myPopulation == null) {
+			Node[] nodes = getNodes();
+			if (NeuronPopulation.isSupported(nodes)) {
+				try {
+					myPopulation = new NeuronPopulation(nodes);
+				} catch (StructuralException e) {
+					return null;
+				}
+			}
+		}
+
+		return myPopulation;
+	}
+
+	/**
+	 * Discards the NeuronPopulation (if any), after copying its state back to the Nodes. Cached
+	 * encoders are kept, and are discarded only where the encoders or radii change.
+	 */
+	private void releasePopulation() {
+		if (myPopulation != null) {
+			myPopulation.writeState();
+		}
+		myPopulation = null;
+		myPopulationRan = false;
+	}
+
+	/**
+	 * @return Encoders as a flat array (row per Node), with the inverse radii folded in, so that
+	 * 		radial input is a single matrix-vector product with the state
+	 */
+	private float[] getScaledEncoders() {
+		if (myScaledEncoders == null) {
+			myScaledEncoders = new float[myEncoders.length * myDimension];
+			for (int i = 0; i < myEncoders.length; i++) {
+				for (int j = 0; j < myDimension; j++) {
+					myScaledEncoders[i*myDimension + j] = myEncoders[i][j] * myInverseRadii[j];
+				}
+			}
+		}
+		return myScaledEncoders;
+	}
+
+	/*
+	 * Radial input of each Node (into a buffer that is reused between steps), ie scaled encoders times
+	 * state, plus bias input (related to avoidance of negative weights with interneurons) from
+	 * BiasTerminations. Four rows are processed at a time, so that each state element is loaded once
+	 * per block.
+	 */
+	private float[] getRadialInputs(float[] state, DecodedTermination[] terminations) {
+		float[] encoders = getScaledEncoders();
+		int n = myEncoders.length;
+		int dim = myDimension;
+		if (myRadialInput == null || myRadialInput.length != n) {
+			myRadialInput = new float[n];
+		}
+		float[] input = myRadialInput;
+
+		int i = 0;
+		for (; i + 3 < n; i += 4) {
+			int o0 = i * dim;
+			int o1 = o0 + dim;
+			int o2 = o1 + dim;
+			int o3 = o2 + dim;
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (int j = 0; j < dim; j++) {
+				float x = state[j];
+				s0 += encoders[o0 + j] * x;
+				s1 += encoders[o1 + j] * x;
+				s2 += encoders[o2 + j] * x;
+				s3 += encoders[o3 + j] * x;
+			}
+			input[i] = s0;
+			input[i+1] = s1;
+			input[i+2] = s2;
+			input[i+3] = s3;
+		}
+		for (; i < n; i++) {
+			int offset = i * dim;
+			float sum = 0;
+			for (int j = 0; j < dim; j++) {
+				sum += encoders[offset + j] * state[j];
+			}
+			input[i] = sum;
+		}
+
+		for (DecodedTermination t : terminations) {
+			if (t instanceof BiasTermination && !t.getModulatory()) {
+				float netBias = t.getOutput()[0];
+				if (netBias != 0) {
+					float[] biasEncoders = ((BiasTermination) t).getBiasEncoders();
+					for (int k = 0; k < n; k++) {
+						input[k] += netBias * biasEncoders[k];
+					}
+				}
+			}
+		}
+
+		return input;
 	}
 
 	/**
@@ -1002,10 +1208,12 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 	 */
 	public float getRadialInput(float[] state, int node) {
 		//scale state to unit circle if necessary
-		if (!myRadiiAreOne) {
-            state = MU.prodElementwise(state, myInverseRadii);
-        }
-		return MU.prod(state, myEncoders[node]);
+		float[] encoder = myEncoders[node];
+		float result = 0;
+		for (int i = 0; i < encoder.length; i++) {
+			result += (myRadiiAreOne ? state[i] : state[i] * myInverseRadii[i]) * encoder[i];
+		}
+		return result;
 	}
 
 	/**
@@ -1046,6 +1254,8 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 	 */
 	@Override
     public void reset(boolean randomize) {
+		myPopulation = null; //state is discarded along with Node state
+		releasePopulation();
 		super.reset(randomize);
 
 		
@@ -1055,6 +1265,34 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		}
 	}
 
+	/**
+	 * Copies the state of the NeuronPopulation (if any) back to the Nodes first, so that it is saved 
+	 * with them. 
+	 * 
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	@Override
+	public void saveState(ObjectOutput out) throws IOException {
+		releasePopulation();
+		super.saveState(out);
+		out.writeObject(myDirectModeDynamics == null ? null : myDirectModeDynamics.getState());
+	}
+
+	/**
+	 * Discards the NeuronPopulation (if any), which is rebuilt from the restored Node state. 
+	 * 
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	@Override
+	public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+		releasePopulation();
+		super.restoreState(in);
+		float[] state = (float[]) in.readObject();
+		if (state != null && myDirectModeDynamics != null) {
+			myDirectModeDynamics.setState(state);
+		}
+	}
+
     public void setEnsembleFactory(NEFEnsembleFactory factory) {
 		myEnsembleFactory=factory;
 	}
@@ -1108,6 +1346,7 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
 		redefineNodes(nodes);
 
 		myEncoders = myEnsembleFactory.getEncoderFactory().genVectors(n, getDimension());
+		myScaledEncoders = null;
 
 
 		myDecodingApproximators.clear();
@@ -1184,9 +1423,25 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
         return py.toString();
     }
 
+	/**
+	 * Also discards any NeuronPopulation, since changes may affect it.
+	 *
+	 * @see ca.nengo.model.impl.AbstractEnsemble#fireVisibleChangeEvent()
+	 */
+	@Override
+	protected void fireVisibleChangeEvent() {
+		releasePopulation();
+		super.fireVisibleChangeEvent();
+	}
+
 	@Override
     public NEFEnsembleImpl clone() throws CloneNotSupportedException {
 		NEFEnsembleImpl result = (NEFEnsembleImpl) super.clone();
+		result.myPopulation = null;
+		result.myScaledEncoders = null;
+		result.myState = null;
+		result.myRadialInput = null;
+		result.myPopulationRan = false;
 
 		result.myEncoders = MU.clone(myEncoders);
 
@@ -1300,6 +1555,8 @@ public class NEFEnsembleImpl extends DecodableEnsembleImpl implements NEFEnsembl
             return;
         }
 
+		releasePopulation();
+
 		for (Node neuron : neurons) {
 			if(rand.nextFloat() < killrate)
 			{
@@ -0,0 +1,93 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "PopulationKernel.java". Description:
+"Advances the SpikeGenerators of a population of neurons together"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.model.neuron;
+
+import java.util.Properties;
+
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
+
+/**
+ * <p>Advances the SpikeGenerators of a population of neurons together. The parameters and state of
+ * the generators are copied into primitive arrays (one entry per neuron) when the kernel is made, and
+ * the whole population is advanced in one loop per step, without creating objects for each neuron.</p>
+ *
+ * <p>While a kernel is in use, the generators themselves are not updated. Their state is brought up to
+ * date by writeState(), eg before the neurons are run individually again.</p>
+ */
+public interface PopulationKernel {
+
+	/**
+	 * @return Number of neurons in the population
+	 */
+	public int getSize();
+
+	/**
+	 * Advances all neurons over one step, with driving current held constant over the step.
+	 *
+	 * @param current Driving current into each neuron (ie after scale and bias)
+	 * @param startTime Simulation time at start of step
+	 * @param endTime Simulation time at end of step
+	 * @param mode Simulation mode (the closest mode that the generators support is used)
+	 * @param output Array into which the output of each neuron is written: 1 (spike) or 0 (no spike)
+	 * 		if the result is true, otherwise firing rates (spikes/s)
+	 * @return True if the output is spikes, false if it is firing rates
+	 */
+	public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output);
+
+	/**
+	 * @return Names and descriptions of the state variables that are available from getState(...)
+	 */
+	public Properties listStates();
+
+	/**
+	 * @param stateName Name of a state variable (see listStates())
+	 * @return Value of the state variable for each neuron. This may be the array that the kernel
+	 * 		updates, so it should not be modified.
+	 * @throws SimulationException if the state name is unknown
+	 */
+	public float[] getState(String stateName) throws SimulationException;
+
+	/**
+	 * Copies the state of each neuron back to its SpikeGenerator.
+	 */
+	public void writeState();
+
+	/**
+	 * A SpikeGenerator that can be advanced with others of its class in a PopulationKernel.
+	 */
+	public interface Batchable extends SpikeGenerator {
+
+		/**
+		 * @param generators SpikeGenerators of the same class as this one (usually including this one)
+		 * @return A kernel that advances the given generators together
+		 * @throws StructuralException if the generators can not be advanced together
+		 */
+		public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException;
+
+	}
+
+}
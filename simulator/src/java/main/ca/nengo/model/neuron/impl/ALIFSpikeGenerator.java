@@ -39,10 +39,13 @@ import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.PreciseSpikeOutputImpl;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.TimeSeries1D;
@@ -65,7 +68,7 @@ import ca.nengo.util.impl.TimeSeries1DImpl;
  *
  * @author Bryan Tripp
  */
-public class ALIFSpikeGenerator implements SpikeGenerator, Probeable {
+public class ALIFSpikeGenerator implements PopulationKernel.Batchable, RateResponse, Probeable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -244,6 +247,23 @@ public class ALIFSpikeGenerator implements SpikeGenerator, Probeable {
 		return I > 1 ? 1f / ( myTauRef - myTauRC * ((float) Math.log(1f - 1f/I)) ) : 0;
 	}
 
+
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getConstantRateModeSupported()
+	 */
+	public boolean getConstantRateModeSupported() {
+		return true;
+	}
+
+	/**
+	 * As in CONSTANT_RATE mode, this is the unadapted rate.
+	 *
+	 * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+	 */
+	public float getRate(float current) {
+		return getOnsetRate(current);
+	}
+
 	/**
 	 * @param I driving current
 	 * @return Adapted firing rate given this current
@@ -431,4 +451,155 @@ public class ALIFSpikeGenerator implements SpikeGenerator, Probeable {
 			return new ALIFSpikeGenerator(myTauRef.sample()[0], myTauRC.sample()[0], myTauN.sample()[0], myIncN.sample()[0]);
 		}
 	}
+
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * Advances a population of ALIFSpikeGenerators together, with the same dynamics as run(...).
+	 */
+	public static class Kernel implements PopulationKernel {
+
+		private final ALIFSpikeGenerator[] myGenerators;
+		private final int mySize;
+
+		private final float[] myTauRef;
+		private final float[] myTauRC;
+		private final float[] myTauN;
+		private final float[] myIncN;
+
+		private final float[] myV;
+		private final float[] myN;
+		private final float[] myTimeSinceLastSpike;
+
+		/**
+		 * @param generators ALIFSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not an ALIFSpikeGenerator
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myGenerators = new ALIFSpikeGenerator[mySize];
+			myTauRef = new float[mySize];
+			myTauRC = new float[mySize];
+			myTauN = new float[mySize];
+			myIncN = new float[mySize];
+			myV = new float[mySize];
+			myN = new float[mySize];
+			myTimeSinceLastSpike = new float[mySize];
+
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof ALIFSpikeGenerator) ) {
+					throw new StructuralException("Expected ALIFSpikeGenerators");
+				}
+				ALIFSpikeGenerator generator = (ALIFSpikeGenerator) generators[i];
+				myGenerators[i] = generator;
+				myTauRef[i] = generator.myTauRef;
+				myTauRC[i] = generator.myTauRC;
+				myTauN[i] = generator.myTauN;
+				myIncN[i] = generator.myIncN;
+				myV[i] = generator.myV;
+				myN[i] = generator.myN;
+				myTimeSinceLastSpike[i] = generator.myTimeSinceLastSpike;
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			mode = SimulationMode.getClosestMode(mode, mySupportedModes);
+			float dt = endTime - startTime;
+
+			for (int i = 0; i < mySize; i++) {
+				float I_in = current[i];
+
+				float dN = - myN[i] / myTauN[i];
+				myN[i] = Math.max(0, myN[i] + dt*dN);
+
+				float I = I_in - G_N*myN[i];
+
+				if (mode == SimulationMode.RATE) {
+					float rate = I > 1 ? 1f / ( myTauRef[i] - myTauRC[i] * ((float) Math.log(1f - 1f/I)) ) : 0;
+					myN[i] += (rate * dt) * myIncN[i];
+					output[i] = rate;
+				} else if (mode == SimulationMode.CONSTANT_RATE) {
+					output[i] = I_in > 1 ? 1f / ( myTauRef[i] - myTauRC[i] * ((float) Math.log(1f - 1f/I_in)) ) : 0;
+				} else {
+					float t = myTimeSinceLastSpike[i] + dt;
+					float v = myV[i];
+
+					float dV = (1 / myTauRC[i]) * (I*R - v);
+					if (t < myTauRef[i]) {
+						dV = 0;
+					} else if (t < myTauRef[i]+dt) {
+						dV*=(t-myTauRef[i])/dt;
+					}
+
+					float prevV = v;
+					v = Math.max(0, v + dt*dV);
+
+					output[i] = 0;
+					if (v >= Vth) {
+						float spikeTime = (Vth-prevV)*dt/(v-prevV);
+						t = dt-spikeTime;
+						myN[i] += myIncN[i];
+						v = 0;
+						output[i] = 1;
+					}
+
+					myV[i] = v;
+					myTimeSinceLastSpike[i] = t;
+				}
+			}
+
+			return mode != SimulationMode.RATE && mode != SimulationMode.CONSTANT_RATE;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			Properties p = new Properties();
+			p.setProperty("V", "Membrane potential (arbitrary units)");
+			p.setProperty("N", "Concentration of adaptation-related ion (arbitrary units)");
+			return p;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			if (stateName.equals("V")) {
+				return myV;
+			} else if (stateName.equalsIgnoreCase("N")) {
+				return myN;
+			} else {
+				throw new SimulationException("The state name " + stateName + " is unknown.");
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+			for (int i = 0; i < mySize; i++) {
+				myGenerators[i].myV = myV[i];
+				myGenerators[i].myN = myN[i];
+				myGenerators[i].myTimeSinceLastSpike = myTimeSinceLastSpike[i];
+			}
+		}
+
+	}
+
 }
@@ -28,11 +28,18 @@ a recipient may use your version of this file under either the MPL or the GPL Li
 package ca.nengo.model.neuron.impl;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
+import ca.nengo.dynamics.BatchDynamicalSystem;
+import ca.nengo.dynamics.BatchIntegrator;
 import ca.nengo.dynamics.DynamicalSystem;
 import ca.nengo.dynamics.Integrator;
+import ca.nengo.dynamics.impl.BatchEulerIntegrator;
+import ca.nengo.dynamics.impl.BatchRK45Integrator;
+import ca.nengo.dynamics.impl.DynamicalSystemArray;
 import ca.nengo.dynamics.impl.EulerIntegrator;
+import ca.nengo.dynamics.impl.RK45Integrator;
 import ca.nengo.dynamics.impl.SimpleLTISystem;
 import ca.nengo.math.CurveFitter;
 import ca.nengo.math.Function;
@@ -42,9 +49,12 @@ import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
 import ca.nengo.model.SpikeOutput;
+import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.util.MU;
 import ca.nengo.util.TimeSeries;
@@ -56,7 +66,7 @@ import ca.nengo.util.impl.TimeSeriesImpl;
  *
  * @author Bryan Tripp
  */
-public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable {
+public class DynamicalSystemSpikeGenerator implements PopulationKernel.Batchable, RateResponse, Probeable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -106,8 +116,9 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 	}
 
 	/**
-	 * Creates a SpikeGenerator that supports CONSTANT_RATE mode. The rate for a given driving current is estimated by
+	 * Creates a SpikeGenerator that supports CONSTANT_RATE and RATE modes. The rate for a given driving current is estimated by
 	 * interpolating steady-state spike counts for simulations with different driving currents (given in the currents arg).
+	 * If getResponseCurveKey() is overridden, these simulations are run once for all generators with equal keys.
 	 *
 	 * @param dynamics A DynamicalSystem that defines the dynamics of spike generation.
 	 * @param integrator An integrator with which to simulate the DynamicalSystem
@@ -136,7 +147,7 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 		myDynamicsOutput = new TimeSeriesImpl(new float[]{0}, MU.uniform(1, dynamics.getOutputDimension(), 0), units);
 
 		myMode = SimulationMode.DEFAULT;
-		mySupportedModes = new SimulationMode[]{SimulationMode.DEFAULT, SimulationMode.CONSTANT_RATE};
+		mySupportedModes = new SimulationMode[]{SimulationMode.DEFAULT, SimulationMode.CONSTANT_RATE, SimulationMode.RATE};
 	}
 
 	/**
@@ -261,10 +272,33 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 	}
 
 	/**
-	 * @return True if this SpikeGenerator supports CONSTANT_RATE simulation mode
+	 * @return True if this SpikeGenerator supports CONSTANT_RATE (and RATE) simulation mode
 	 */
 	public boolean getConstantRateModeSupported() {
-		return mySupportedModes.length == 2;
+		return mySupportedModes.length > 1;
+	}
+
+	/**
+	 * Interpolates the tabulated steady-state rates (tabulating them first if the configuration has changed).
+	 *
+	 * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+	 */
+	public float getRate(float current) {
+		if (!myConstantRateFunctionOK) {
+			setConstantRateFunction();
+		}
+		return myConstantRateFunction.map(new float[]{current});
+	}
+
+	/**
+	 * Subclasses with fixed dynamics (eg HodgkinHuxleySpikeGenerator) can override this method so that
+	 * steady-state rates are tabulated once, and shared through the ResponseCurveCache.
+	 *
+	 * @return Parameters that determine the steady-state rates of this generator, or null if they
+	 * 		can not be shared with other generators (the default)
+	 */
+	protected List<?> getResponseCurveKey() {
+		return null;
 	}
 
 	private static DynamicalSystem getDefaultDynamics() {
@@ -280,6 +314,17 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 		//make sure currents are in ascending order
 		Arrays.sort(myCurrents);
 
+		List<?> key = getResponseCurveKey();
+		Function cached = (key == null) ? null : ResponseCurveCache.get(key);
+		if (cached != null) {
+			myConstantRateFunction = cached;
+			myConstantRateFunctionOK = true;
+			return;
+		}
+
+		//simulations start from the current state, which is restored afterwards
+		float[] state = myDynamics.getState().clone();
+		float lastSpikeTime = myLastSpikeTime;
 		SimulationMode mode = myMode;
 		myMode = SimulationMode.DEFAULT;
 		float dt = .001f;
@@ -295,6 +340,12 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 		myConstantRateFunction = result;
 		myConstantRateFunctionOK = true;
 		myMode = mode;
+		myDynamics.setState(state);
+		myLastSpikeTime = lastSpikeTime;
+
+		if (key != null) {
+			ResponseCurveCache.put(key, result);
+		}
 	}
 
 	private int countSpikes(float current, float dt, float time) {
@@ -316,10 +367,10 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 	 */
 	public InstantaneousOutput run(float[] time, float[] current) {
 		if (myMode.equals(SimulationMode.CONSTANT_RATE)) {
-			if (!myConstantRateFunctionOK) {
-                setConstantRateFunction();
-            }
-			float rate = myConstantRateFunction.map(new float[]{current[current.length-1]});
+			float rate = getRate(current[current.length-1]);
+			return new RealOutputImpl(new float[]{rate}, Units.SPIKES_PER_S, time[time.length-1]);
+		} else if (myMode.equals(SimulationMode.RATE)) {
+			float rate = getRate(MU.mean(current));
 			return new RealOutputImpl(new float[]{rate}, Units.SPIKES_PER_S, time[time.length-1]);
 		} else {
 			boolean spike = false;
@@ -388,8 +439,12 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 	@Override
 	public SpikeGenerator clone() throws CloneNotSupportedException {
 		DynamicalSystemSpikeGenerator result = (DynamicalSystemSpikeGenerator) super.clone();
-		result.myConstantRateFunction = myConstantRateFunction.clone();
-		result.myCurrents = myCurrents.clone();
+		if (myConstantRateFunction != null) {
+			result.myConstantRateFunction = myConstantRateFunction.clone();
+		}
+		if (myCurrents != null) {
+			result.myCurrents = myCurrents.clone();
+		}
 		result.myDynamics = myDynamics.clone();
 		result.myDynamicsOutput = myDynamicsOutput.clone();
 		result.myIntegrator = myIntegrator.clone();
@@ -400,4 +455,219 @@ public class DynamicalSystemSpikeGenerator implements SpikeGenerator, Probeable
 		return result;
 	}
 
+
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * <p>Advances a population of DynamicalSystemSpikeGenerators together, with the state of every neuron's
+	 * dynamics held in one matrix and advanced in place by a BatchIntegrator. If the dynamics implement
+	 * BatchDynamicalSystem.Batchable (eg Hodgkin-Huxley dynamics), the batch is evaluated natively; otherwise
+	 * each neuron's DynamicalSystem is evaluated in turn.</p>
+	 *
+	 * <p>The integrator is chosen from the first generator's Integrator: an EulerIntegrator gives a
+	 * BatchEulerIntegrator with the same step size (which matches individual generators), and any other
+	 * Integrator gives a BatchRK45Integrator (with the same tolerance, if it is an RK45Integrator). The
+	 * latter shares step size control across the population, so spike times agree closely but not exactly
+	 * with those of individual generators. Spikes are detected from the output at each step, as in run(...).</p>
+	 */
+	public static class Kernel implements PopulationKernel, BatchIntegrator.Observer {
+
+		private final DynamicalSystemSpikeGenerator[] myGenerators;
+		private final int mySize;
+		private final BatchDynamicalSystem mySystem;
+		private final BatchIntegrator myIntegrator;
+		private final SimulationMode[] mySupportedModes;
+
+		private final int[] myVDim;
+		private final float[] mySpikeThreshold;
+		private final float[] myMinIntraSpikeTime;
+		private final float[] myLastSpikeTime;
+
+		private final float[][] myState;
+		private final float[][] myInput;
+		private final float[][] myOutput;
+
+		//spike detection within a step (see step(...))
+		private final float[] myPreviousV;
+		private final float[] myStartV;
+		private final boolean[] mySpike;
+		private int myStepIndex;
+		private float myStartTime;
+
+		/**
+		 * @param generators DynamicalSystemSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not a DynamicalSystemSpikeGenerator, or if
+		 * 		their dynamics have different dimensions
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myGenerators = new DynamicalSystemSpikeGenerator[mySize];
+			myVDim = new int[mySize];
+			mySpikeThreshold = new float[mySize];
+			myMinIntraSpikeTime = new float[mySize];
+			myLastSpikeTime = new float[mySize];
+			myState = new float[mySize][];
+			myPreviousV = new float[mySize];
+			myStartV = new float[mySize];
+			mySpike = new boolean[mySize];
+
+			DynamicalSystem[] systems = new DynamicalSystem[mySize];
+			boolean batchable = true;
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof DynamicalSystemSpikeGenerator) ) {
+					throw new StructuralException("Expected DynamicalSystemSpikeGenerators");
+				}
+				DynamicalSystemSpikeGenerator generator = (DynamicalSystemSpikeGenerator) generators[i];
+				myGenerators[i] = generator;
+				myVDim[i] = generator.myVDim;
+				mySpikeThreshold[i] = generator.mySpikeThreshold;
+				myMinIntraSpikeTime[i] = generator.myMinIntraSpikeTime;
+				myLastSpikeTime[i] = generator.myLastSpikeTime;
+				myState[i] = generator.myDynamics.getState().clone();
+				systems[i] = generator.myDynamics;
+				batchable = batchable && systems[i] instanceof BatchDynamicalSystem.Batchable
+					&& systems[i].getClass() == systems[0].getClass();
+			}
+
+			try {
+				mySystem = batchable
+					? ((BatchDynamicalSystem.Batchable) systems[0]).makeBatch(systems)
+					: new DynamicalSystemArray(systems);
+			} catch (IllegalArgumentException e) {
+				throw new StructuralException(e);
+			}
+			if (mySystem.getInputDimension() != 1) {
+				throw new StructuralException("Expected dynamics with one input (driving current)");
+			}
+
+			Integrator integrator = myGenerators[0].myIntegrator;
+			if (integrator instanceof EulerIntegrator) {
+				myIntegrator = new BatchEulerIntegrator(((EulerIntegrator) integrator).getStepSize());
+			} else if (integrator instanceof RK45Integrator) {
+				myIntegrator = new BatchRK45Integrator(((RK45Integrator) integrator).getTolerance());
+			} else {
+				myIntegrator = new BatchRK45Integrator();
+			}
+
+			myInput = new float[mySize][1];
+			myOutput = new float[mySize][mySystem.getOutputDimension()];
+			mySupportedModes = myGenerators[0].mySupportedModes;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			mode = SimulationMode.getClosestMode(mode, mySupportedModes);
+
+			if (mode.equals(SimulationMode.CONSTANT_RATE) || mode.equals(SimulationMode.RATE)) {
+				for (int i = 0; i < mySize; i++) {
+					output[i] = myGenerators[i].getRate(current[i]);
+				}
+				return false;
+			}
+
+			for (int i = 0; i < mySize; i++) {
+				myInput[i][0] = current[i];
+				mySpike[i] = false;
+			}
+			myStepIndex = 0;
+			myStartTime = startTime;
+			myIntegrator.integrate(mySystem, myState, myInput, startTime, endTime, this);
+
+			for (int i = 0; i < mySize; i++) {
+				output[i] = mySpike[i] ? 1f : 0f;
+			}
+			return true;
+		}
+
+		/**
+		 * Detects spikes in the same way as DynamicalSystemSpikeGenerator.run(...), ie a rising threshold
+		 * crossing, or a rising potential above threshold at the start of the step if there has not been
+		 * a spike within the minimum intra-spike time. At most one spike per neuron is detected per step.
+		 *
+		 * @see ca.nengo.dynamics.BatchIntegrator.Observer#step(float, float[][])
+		 */
+		public void step(float t, float[][] state) {
+			mySystem.g(t, myInput, state, myOutput);
+
+			for (int i = 0; i < mySize; i++) {
+				float v = myOutput[i][myVDim[i]];
+				float threshold = mySpikeThreshold[i];
+
+				if (myStepIndex == 0) {
+					myStartV[i] = v;
+				} else if (!mySpike[i]) {
+					if (myStepIndex == 1 && myStartV[i] >= threshold && v > myStartV[i]
+							&& myStartTime > myLastSpikeTime[i] + myMinIntraSpikeTime[i]) {
+						mySpike[i] = true;
+						myLastSpikeTime[i] = myStartTime;
+					} else if (v >= threshold && myPreviousV[i] < threshold) {
+						mySpike[i] = true;
+						myLastSpikeTime[i] = t;
+					}
+				}
+				myPreviousV[i] = v;
+			}
+
+			myStepIndex++;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			Properties p = new Properties();
+			p.setProperty(DYNAMICS, "State of spike generation dynamics (one value per neuron for the given index)");
+			return p;
+		}
+
+		/**
+		 * @param stateName DYNAMICS followed by the index of a state variable (eg "dynamics0")
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			int index = -1;
+			if (stateName.startsWith(DYNAMICS)) {
+				try {
+					index = Integer.parseInt(stateName.substring(DYNAMICS.length()));
+				} catch (NumberFormatException e) {
+					index = -1;
+				}
+			}
+			if (index < 0 || index >= mySystem.getStateDimension()) {
+				throw new SimulationException("Unknown state: " + stateName);
+			}
+
+			float[] result = new float[mySize];
+			for (int i = 0; i < mySize; i++) {
+				result[i] = myState[i][index];
+			}
+			return result;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+			for (int i = 0; i < mySize; i++) {
+				myGenerators[i].myDynamics.setState(myState[i].clone());
+				myGenerators[i].myLastSpikeTime = myLastSpikeTime[i];
+			}
+		}
+
+	}
+
 }
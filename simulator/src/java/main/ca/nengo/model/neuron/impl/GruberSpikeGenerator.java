@@ -1,5 +1,7 @@
 package ca.nengo.model.neuron.impl;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import ca.nengo.dynamics.Integrator;
@@ -12,9 +14,12 @@ import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.impl.TimeSeries1DImpl;
@@ -27,7 +32,7 @@ import ca.nengo.util.impl.TimeSeriesImpl;
  *
  * @author Bryan Tripp
  */
-public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
+public class GruberSpikeGenerator implements PopulationKernel.Batchable, RateResponse, Probeable {
 
 	/**
 	 * String that is used for membrane potential
@@ -41,6 +46,9 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 	private static float Vf_h = -55;
 	private static float Vf_c = 25f; //this is published as 2.5
 
+	//the model has fixed parameters, so the steady-state potential is found once for all generators
+	private static final List<?> ourSteadyStateKey = Arrays.asList(GruberSpikeGenerator.class, MEMBRANE_POTENTIAL);
+
 	private GruberDynamics myDynamics;
 	private Integrator myIntegrator;
 	private float myDopamine;
@@ -66,6 +74,11 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 	}
 
 	private Function getSteadyStateVmFunction() {
+		Function cached = ResponseCurveCache.get(ourSteadyStateKey);
+		if (cached != null) {
+			return cached;
+		}
+
 		CurveFitter fitter = new LinearCurveFitter();
 
 		float[] current = new float[]{0f, .25f, .5f, .75f, 1f, 1.25f, 1.5f, 1.75f, 2f, 2.25f, 2.5f, 2.75f, 3f, 3.5f, 4f, 5f, 6f, 8f, 10f, 15f, 20f, 30f, 40f, 50f, 60f};
@@ -82,6 +95,7 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 		}
 
 		Function result = fitter.fit(current, Vm);
+		ResponseCurveCache.put(ourSteadyStateKey, result);
 //		Plotter.plot(result, 0, .1f, 60, "current -> Vm");
 //		Plotter.plot(current, rt, "current -> rt");
 		return result;
@@ -147,7 +161,22 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 		return result;
 	}
 
-	private float getRefreactoryTime(float Vm) {
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getConstantRateModeSupported()
+	 */
+	public boolean getConstantRateModeSupported() {
+		return true;
+	}
+
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+	 */
+	public float getRate(float current) {
+		float Vm = mySteadyStateVmFunction.map(new float[]{current});
+		return (Vm > Vf) ? 1f / getRefreactoryTime(Vm) : 0;
+	}
+
+	private static float getRefreactoryTime(float Vm) {
 		return 0.05f * 1f / (1f + (float) Math.exp((Vm - Vf_h)/Vf_c));
 	}
 
@@ -198,7 +227,152 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 		throw new CloneNotSupportedException();
 	}
 
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * Advances a population of GruberSpikeGenerators together. Membrane potential is integrated
+	 * with fixed-step RK4 (at most 0.1ms per step) rather than the adaptive RK45Integrator used
+	 * by run(...), so results agree closely but not exactly with individual generators. As in
+	 * run(...), at most one spike is allowed per step.
+	 */
+	public static class Kernel implements PopulationKernel {
 
+		private static final float ourMaxTimeStep = .0001f;
+		private static final SimulationMode[] ourSupportedModes
+			= new SimulationMode[]{SimulationMode.DEFAULT, SimulationMode.RATE, SimulationMode.CONSTANT_RATE};
+
+		private final GruberSpikeGenerator[] myGenerators;
+		private final int mySize;
+		private final float[] myDopamine;
+		private final Function[] mySteadyStateVmFunctions;
+		private final float[] myVm;
+		private final float[] myLastSpikeTime;
+		private final float[] myArg;
+
+		/**
+		 * @param generators GruberSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not a GruberSpikeGenerator
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myGenerators = new GruberSpikeGenerator[mySize];
+			myDopamine = new float[mySize];
+			mySteadyStateVmFunctions = new Function[mySize];
+			myVm = new float[mySize];
+			myLastSpikeTime = new float[mySize];
+			myArg = new float[1];
+
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof GruberSpikeGenerator) ) {
+					throw new StructuralException("Expected GruberSpikeGenerators");
+				}
+				GruberSpikeGenerator generator = (GruberSpikeGenerator) generators[i];
+				myGenerators[i] = generator;
+				myDopamine[i] = generator.myDopamine;
+				mySteadyStateVmFunctions[i] = generator.mySteadyStateVmFunction;
+				myVm[i] = generator.myDynamics.getState()[0];
+				myLastSpikeTime[i] = generator.myLastSpikeTime;
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			mode = SimulationMode.getClosestMode(mode, ourSupportedModes);
+			float len = endTime - startTime;
+			int steps = Math.max(1, (int) Math.ceil((len - 1e-7) / ourMaxTimeStep));
+			float h = len / steps;
+
+			for (int i = 0; i < mySize; i++) {
+				float I = current[i];
+				float mu = myDopamine[i];
+
+				if (mode.equals(SimulationMode.CONSTANT_RATE)) {
+					myArg[0] = I;
+					float Vm = mySteadyStateVmFunctions[i].map(myArg);
+					myVm[i] = Vm;
+					output[i] = (Vm > Vf) ? 1f / getRefreactoryTime(Vm) : 0;
+					continue;
+				}
+
+				float Vm = myVm[i];
+				boolean spike = isSpike(i, Vm, startTime);
+				float rate = (Vm > Vf) ? 1f / getRefreactoryTime(Vm) : 0;
+				for (int j = 0; j < steps; j++) {
+					float k1 = GruberDynamics.dVm(Vm, I, mu);
+					float k2 = GruberDynamics.dVm(Vm + h/2*k1, I, mu);
+					float k3 = GruberDynamics.dVm(Vm + h/2*k2, I, mu);
+					float k4 = GruberDynamics.dVm(Vm + h*k3, I, mu);
+					Vm += h/6 * (k1 + 2*k2 + 2*k3 + k4);
+					if (!spike) {
+						spike = isSpike(i, Vm, startTime + (j+1)*h);
+					}
+				}
+				myVm[i] = Vm;
+
+				if (mode.equals(SimulationMode.RATE)) {
+					output[i] = rate;
+				} else {
+					output[i] = spike ? 1f : 0f;
+				}
+			}
+
+			return mode.equals(SimulationMode.DEFAULT);
+		}
+
+		//records a spike time if neuron i spikes with the given potential at the given time
+		private boolean isSpike(int i, float Vm, float time) {
+			if (Vm > Vf && time - myLastSpikeTime[i] >= getRefreactoryTime(Vm)) {
+				myLastSpikeTime[i] = time;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			Properties p = new Properties();
+			p.setProperty(MEMBRANE_POTENTIAL, "Membrane potential (mV)");
+			return p;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			if (stateName.equals(MEMBRANE_POTENTIAL)) {
+				return myVm;
+			} else {
+				throw new SimulationException("State name " + stateName + " is unknown");
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+			for (int i = 0; i < mySize; i++) {
+				myGenerators[i].myDynamics.setState(new float[]{myVm[i]});
+				myGenerators[i].myLastSpikeTime = myLastSpikeTime[i];
+			}
+		}
+
+	}
 
 	/**
 	 * Implements dynamics of Gruber et al. bistable model of medium spiny neuron.
@@ -245,10 +419,16 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 		 * @see ca.nengo.dynamics.impl.AbstractDynamicalSystem#f(float, float[])
 		 */
 		public float[] f(float t, float[] u) {
-			float I_s = u[0];
-			float mu = u[1];
-			float Vm = getState()[0];
+			return new float[]{dVm(getState()[0], u[0], u[1])};
+		}
 
+		/**
+		 * @param Vm Membrane potential (mV)
+		 * @param I_s Driving current
+		 * @param mu Dopamine concentration
+		 * @return Rate of change of membrane potential (mV/s)
+		 */
+		public static float dVm(float Vm, float I_s, float mu) {
 		    float L_Kir2 = 1f / (1f + (float) Math.exp(-(Vm-VKir2_h)/VKir2_c));
 		    float L_Ksi = 1f / (1f + (float) Math.exp(-(Vm-VKsi_h)/VKsi_c));
 		    float L_LCa = 1f / (1f + (float) Math.exp(-(Vm-VLCa_h)/VLCa_c));
@@ -262,9 +442,7 @@ public class GruberSpikeGenerator implements SpikeGenerator, Probeable {
 		    float I_LCa = P_LCa * (4f*(Vm/1000f)*F*F/(R*T)) * ( (Ca_i - Ca_o*x) / (1f - x) ) / 700f; //TODO: 700 factor is to match published plot
 		    float I_L = g_L * (Vm - E_K);
 
-		    float dVm = -(1000/Cm) * (mu*(I_Kir2 + I_LCa) + I_Ksi + I_L - I_s);
-
-		    return new float[]{dVm};
+		    return -(1000/Cm) * (mu*(I_Kir2 + I_LCa) + I_Ksi + I_L - I_s);
 		}
 
 		/**
@@ -31,6 +31,11 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.neuron.impl;
 
+import java.util.Arrays;
+import java.util.List;
+
+import ca.nengo.dynamics.BatchDynamicalSystem;
+import ca.nengo.dynamics.DynamicalSystem;
 import ca.nengo.dynamics.impl.AbstractDynamicalSystem;
 import ca.nengo.dynamics.impl.RK45Integrator;
 import ca.nengo.model.Node;
@@ -57,12 +62,42 @@ public class HodgkinHuxleySpikeGenerator extends DynamicalSystemSpikeGenerator {
 		super(new HodgkinHuxleySystem(new float[4]), new RK45Integrator(), 0, 30f, .002f);
 	}
 
+	/**
+	 * Makes the dynamic system, with support for CONSTANT_RATE and RATE modes. Steady-state rates are
+	 * found by simulation once for each distinct configuration, and shared by all generators with that
+	 * configuration.
+	 *
+	 * @param currentRange Range of driving currents at which to simulate to find steady-state firing rates
+	 * @param transientTime Simulation time to ignore before counting spikes when finding steady-state rates
+	 */
+	public HodgkinHuxleySpikeGenerator(float[] currentRange, float transientTime) {
+		super(new HodgkinHuxleySystem(new float[4]), new RK45Integrator(), 0, 30f, .002f, currentRange, transientTime);
+	}
+
+	/**
+	 * Hodgkin-Huxley dynamics have fixed parameters, so generators with the same integrator type and
+	 * spike detection settings have the same steady-state rates (the integrator's own settings are assumed
+	 * to be the same).
+	 *
+	 * @see ca.nengo.model.neuron.impl.DynamicalSystemSpikeGenerator#getResponseCurveKey()
+	 */
+	@Override
+	protected List<?> getResponseCurveKey() {
+		if ( !(getDynamics() instanceof HodgkinHuxleySystem) ) {
+			return null;
+		}
+
+		float[] range = getCurrentRange();
+		return Arrays.asList(HodgkinHuxleySystem.class, getIntegrator().getClass(), getVoltageDim(),
+				getSpikeThreshold(), getMinIntraSpikeTime(), range[0], range[1], getTransientTime());
+	}
+
 	/**
 	 * Hodgkin-Huxley spiking dynamics.
 	 *
 	 * @author Bryan Tripp
 	 */
-	public static class HodgkinHuxleySystem extends AbstractDynamicalSystem {
+	public static class HodgkinHuxleySystem extends AbstractDynamicalSystem implements BatchDynamicalSystem.Batchable {
 
 		private static final long serialVersionUID = 1L;
 	    private static float G_Na = 120f;
@@ -88,10 +123,13 @@ public class HodgkinHuxleySpikeGenerator extends DynamicalSystemSpikeGenerator {
 		}
 
 		public float[] f(float t, float[] u) {
+			float[] result = new float[4];
+			derivative(u[0], getState(), result);
+			return result;
+		}
 
-			float I_inj = u[0];
-
-			float[] state = getState();
+		//writes dV, dm, dh, dn into the given array
+		private static void derivative(float I_inj, float[] state, float[] result) {
 			float V = state[0];
 			float m = state[1];
 			float h = state[2];
@@ -104,12 +142,17 @@ public class HodgkinHuxleySpikeGenerator extends DynamicalSystemSpikeGenerator {
 		    float alpha_n = (10f-V) / (100f * ((float) Math.exp((10d-V)/10d) - 1f));
 		    float beta_n = 0.125f * (float) Math.exp(-V/80d);
 
-		    return new float[] { // dV, dm, dh, dn
-				    1000 * ((G_Na * (m*m*m) * h * (E_Na - V) + G_K * (n*n*n*n) * (E_K - V) + G_m * (V_rest - V) + I_inj) / C_m),
-				    1000 * (alpha_m * (1-m) - beta_m * m),
-				    1000 * (alpha_h * (1-h) - beta_h * h),
-				    1000 * (alpha_n * (1-n) - beta_n * n)
-		    };
+		    result[0] = 1000 * ((G_Na * (m*m*m) * h * (E_Na - V) + G_K * (n*n*n*n) * (E_K - V) + G_m * (V_rest - V) + I_inj) / C_m);
+		    result[1] = 1000 * (alpha_m * (1-m) - beta_m * m);
+		    result[2] = 1000 * (alpha_h * (1-h) - beta_h * h);
+		    result[3] = 1000 * (alpha_n * (1-n) - beta_n * n);
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem.Batchable#makeBatch(ca.nengo.dynamics.DynamicalSystem[])
+		 */
+		public BatchDynamicalSystem makeBatch(DynamicalSystem[] systems) {
+			return new HodgkinHuxleyBatch(systems.length);
 		}
 
 		/**
@@ -135,6 +178,71 @@ public class HodgkinHuxleySpikeGenerator extends DynamicalSystemSpikeGenerator {
 
 	}
 
+	/**
+	 * Hodgkin-Huxley spiking dynamics of a batch of neurons, evaluated without allocation.
+	 * Output is the state, as in HodgkinHuxleySystem.
+	 */
+	public static class HodgkinHuxleyBatch implements BatchDynamicalSystem {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int mySize;
+
+		/**
+		 * @param size Number of neurons in the batch
+		 */
+		public HodgkinHuxleyBatch(int size) {
+			mySize = size;
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#getStateDimension()
+		 */
+		public int getStateDimension() {
+			return 4;
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#getInputDimension()
+		 */
+		public int getInputDimension() {
+			return 1;
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#getOutputDimension()
+		 */
+		public int getOutputDimension() {
+			return 4;
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#f(float, float[][], float[][], float[][])
+		 */
+		public void f(float t, float[][] u, float[][] x, float[][] dxdt) {
+			for (int i = 0; i < mySize; i++) {
+				HodgkinHuxleySystem.derivative(u[i][0], x[i], dxdt[i]);
+			}
+		}
+
+		/**
+		 * @see ca.nengo.dynamics.BatchDynamicalSystem#g(float, float[][], float[][], float[][])
+		 */
+		public void g(float t, float[][] u, float[][] x, float[][] y) {
+			for (int i = 0; i < mySize; i++) {
+				System.arraycopy(x[i], 0, y[i], 0, 4);
+			}
+		}
+
+	}
+
 	/**
 	 * A factory of neurons with linear synaptic integration and Hodgkin-Huxley spike
 	 * generation.
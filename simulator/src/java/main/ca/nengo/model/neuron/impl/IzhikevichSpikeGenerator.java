@@ -44,9 +44,11 @@ import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.PopulationKernel;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.TimeSeries1D;
@@ -65,7 +67,7 @@ import ca.nengo.util.impl.TimeSeries1DImpl;
  *
  * @author Hussein, Bryan
  */
-public class IzhikevichSpikeGenerator implements SpikeGenerator, Probeable {
+public class IzhikevichSpikeGenerator implements PopulationKernel.Batchable, Probeable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -446,4 +448,162 @@ public class IzhikevichSpikeGenerator implements SpikeGenerator, Probeable {
 		return result;
 	}
 
+
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * Advances a population of IzhikevichSpikeGenerators together, with the same dynamics as run(...).
+	 * State is held in double precision, as it is in the generators.
+	 */
+	public static class Kernel implements PopulationKernel {
+
+		private final IzhikevichSpikeGenerator[] myGenerators;
+		private final int mySize;
+
+		private final double[] myA;
+		private final double[] myB;
+		private final double[] myC;
+		private final double[] myD;
+
+		private final double[] myVoltage;
+		private final double[] myRecovery;
+		private final float[] mySpikeRate;
+
+		private final float[] myVoltageState; //float copies for getState(...)
+		private final float[] myRecoveryState;
+
+		/**
+		 * @param generators IzhikevichSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not an IzhikevichSpikeGenerator
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myGenerators = new IzhikevichSpikeGenerator[mySize];
+			myA = new double[mySize];
+			myB = new double[mySize];
+			myC = new double[mySize];
+			myD = new double[mySize];
+			myVoltage = new double[mySize];
+			myRecovery = new double[mySize];
+			mySpikeRate = new float[mySize];
+			myVoltageState = new float[mySize];
+			myRecoveryState = new float[mySize];
+
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof IzhikevichSpikeGenerator) ) {
+					throw new StructuralException("Expected IzhikevichSpikeGenerators");
+				}
+				IzhikevichSpikeGenerator generator = (IzhikevichSpikeGenerator) generators[i];
+				myGenerators[i] = generator;
+				myA[i] = generator.myA;
+				myB[i] = generator.myB;
+				myC[i] = generator.myC;
+				myD[i] = generator.myD;
+				myVoltage[i] = generator.myVoltage;
+				myRecovery[i] = generator.myRecovery;
+				mySpikeRate[i] = generator.mySpikeRate;
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			mode = SimulationMode.getClosestMode(mode, ourSupportedModes);
+			float len = endTime - startTime;
+			int steps = (int) Math.ceil((len - 1e-5) / myMaxTimeStep);
+			float dt = len / steps;
+
+			for (int i = 0; i < mySize; i++) {
+				double I = current[i];
+				double v = myVoltage[i];
+				double u = myRecovery[i];
+				double a = myA[i];
+				double b = myB[i];
+
+				boolean spiking = false;
+				for (int j = 0; j < steps; j++) {
+					if (v >= Vth) {
+						spiking = true;
+						v = myC[i];
+						u = u + myD[i];
+					}
+					v += 500 * dt * (0.04*v*v + 5*v + 140 - u + I);
+					v += 500 * dt * (0.04*v*v + 5*v + 140 - u + I);
+					u += 1000 * dt * (a*(b*v - u));
+				}
+				myVoltage[i] = v;
+				myRecovery[i] = u;
+
+				if (mode == SimulationMode.RATE) {
+					float spikeRate = spiking ? 1f/len : 0f;
+					mySpikeRate[i] = mySpikeRate[i]*0.99f + spikeRate*0.01f;
+					output[i] = mySpikeRate[i];
+				} else {
+					output[i] = spiking ? 1f : 0f;
+				}
+			}
+
+			return mode != SimulationMode.RATE;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			Properties p = new Properties();
+			p.setProperty(V, "Membrane potential (arbitrary units)");
+			p.setProperty(U, "Recovery variable (arbitrary units)");
+			return p;
+		}
+
+		/**
+		 * Values are copied to float precision when this method is called.
+		 *
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			double[] state;
+			float[] result;
+			if (stateName.equals(V)) {
+				state = myVoltage;
+				result = myVoltageState;
+			} else if (stateName.equals(U)) {
+				state = myRecovery;
+				result = myRecoveryState;
+			} else {
+				throw new SimulationException("The state name " + stateName + " is unknown.");
+			}
+
+			for (int i = 0; i < mySize; i++) {
+				result[i] = (float) state[i];
+			}
+			return result;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+			for (int i = 0; i < mySize; i++) {
+				myGenerators[i].myVoltage = myVoltage[i];
+				myGenerators[i].myRecovery = myRecovery[i];
+				myGenerators[i].mySpikeRate = mySpikeRate[i];
+			}
+		}
+
+	}
+
 }
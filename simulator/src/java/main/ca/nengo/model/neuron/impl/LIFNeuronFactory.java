@@ -35,8 +35,6 @@ import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.NodeFactory;
 import ca.nengo.model.neuron.Neuron;
-import ca.nengo.model.neuron.SpikeGenerator;
-import ca.nengo.model.neuron.SynapticIntegrator;
 
 /**
  * A factory for leaky-integrate-and-fire neurons. 
@@ -53,6 +51,7 @@ public class LIFNeuronFactory implements NodeFactory {
 	private float myTauRef;
 	private PDF myMaxRate;
 	private PDF myIntercept;
+	private boolean myExact;
 	
 	private static float ourMaxTimeStep = .00025f;
 	private static Units ourCurrentUnits = Units.ACU;
@@ -133,6 +132,22 @@ public class LIFNeuronFactory implements NodeFactory {
 		myIntercept = intercept;
 	}
 
+	/**
+	 * @return True if neurons are made with exact synaptic and membrane integration
+	 */
+	public boolean getExact() {
+		return myExact;
+	}
+
+	/**
+	 * @param exact True if neurons are to be made with exact synaptic and membrane integration, in one
+	 * 		step per network time step (see LIFSpikeGenerator.setExact(...) and
+	 * 		LinearSynapticIntegrator.setExact(...))
+	 */
+	public void setExact(boolean exact) {
+		myExact = exact;
+	}
+
 	/**
 	 * @see ca.nengo.model.impl.NodeFactory#make(String)
 	 */
@@ -153,8 +168,10 @@ public class LIFNeuronFactory implements NodeFactory {
 		
 		float bias = 1f - scale * intercept;
 		
-		SynapticIntegrator integrator = new LinearSynapticIntegrator(ourMaxTimeStep, ourCurrentUnits);
-		SpikeGenerator generator = new LIFSpikeGenerator(ourMaxTimeStep, myTauRC, myTauRef);
+		LinearSynapticIntegrator integrator = new LinearSynapticIntegrator(ourMaxTimeStep, ourCurrentUnits);
+		LIFSpikeGenerator generator = new LIFSpikeGenerator(ourMaxTimeStep, myTauRC, myTauRef);
+		integrator.setExact(myExact);
+		generator.setExact(myExact);
 		
 		return new ExpandableSpikingNeuron(integrator, generator, scale, bias, name);		
 	}
@@ -0,0 +1,51 @@
+package ca.nengo.model.neuron.impl;
+
+import ca.nengo.model.Node;
+import ca.nengo.model.StructuralException;
+
+/**
+ * <p>A population of LIF neurons whose parameters and state are held in flat primitive arrays
+ * (one entry per neuron), so that the whole population can be advanced in one loop without
+ * allocating objects for each neuron.</p>
+ *
+ * <p>This is a NeuronPopulation of SpikingNeurons with LIFSpikeGenerators, which are advanced by an
+ * LIFSpikeGenerator.Kernel. Integration is the same as in LIFSpikeGenerator, with the input current
+ * held constant over each step (as it is for a neuron without node-level Terminations).</p>
+ */
+public class LIFPopulation extends NeuronPopulation {
+
+	/**
+	 * @param nodes Neurons to be represented (see isSupported(...))
+	 * @throws StructuralException If the nodes can not be represented as an LIFPopulation
+	 */
+	public LIFPopulation(Node[] nodes) throws StructuralException {
+		super(check(nodes));
+	}
+
+	private static Node[] check(Node[] nodes) throws StructuralException {
+		if (!isSupported(nodes)) {
+			throw new StructuralException("LIFPopulation requires SpikingNeurons with LIFSpikeGenerators, "
+					+ "and without noise or node-level Terminations");
+		}
+		return nodes;
+	}
+
+	/**
+	 * @param nodes A list of Nodes
+	 * @return True if all the Nodes are SpikingNeurons with LIFSpikeGenerators, LinearSynapticIntegrators
+	 * 		without Terminations, and no Noise (ie neurons that the population can advance exactly as
+	 * 		they would advance themselves)
+	 */
+	public static boolean isSupported(Node[] nodes) {
+		return NeuronPopulation.isSupported(nodes)
+			&& ((SpikingNeuron) nodes[0]).getGenerator() instanceof LIFSpikeGenerator;
+	}
+
+	/**
+	 * @return Membrane voltage of each neuron (live array)
+	 */
+	public float[] getVoltage() {
+		return ((LIFSpikeGenerator.Kernel) getKernel()).getVoltage();
+	}
+
+}
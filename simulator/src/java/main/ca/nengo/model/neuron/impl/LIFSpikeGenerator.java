@@ -27,19 +27,27 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.neuron.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Properties;
 
 import ca.nengo.math.PDF;
 import ca.nengo.math.impl.IndicatorPDF;
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.PreciseSpikeOutputImpl;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
+import ca.nengo.util.Memory;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.TimeSeries1D;
 import ca.nengo.util.impl.TimeSeries1DImpl;
@@ -53,9 +61,19 @@ import ca.nengo.util.impl.TimeSeries1DImpl;
  * of the model, although transformations may be needed if it is desired to
  * convert to more realistic parameter ranges. </p>
  *
+ * <p>By default the model is integrated with Euler steps no longer than a maximum time step. In exact
+ * mode (see setExact(...)) the membrane equation is instead solved analytically between the given
+ * input times, and spike times are found from the solution. If a synaptic time constant is set (see
+ * setTauPSC(...)), the current between input times is taken to relax exponentially with that time
+ * constant toward a constant asymptote, as the current from an exponential synapse does over a step
+ * with constant input, and the membrane equation has a closed-form solution in two exponentials.
+ * Otherwise the current is taken to vary linearly between input times. In exact mode, voltage
+ * history only has the voltage at the end of the latest run, and arrays for it are created only when
+ * the history is requested (eg by a Probe).</p>
+ *
  * @author Bryan Tripp
  */
-public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
+public class LIFSpikeGenerator implements PopulationKernel.Batchable, RateResponse, Probeable, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -76,6 +94,10 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 	private float[] myTime;
 	private float[] myVoltageHistory;
 
+	private boolean myExact;
+	private float myTauPSC; //time constant of exponential input current in exact mode (0 for linear)
+	private float myEndTime; //end of latest exact run
+
 	private SimulationMode myMode;
 	private SimulationMode[] mySupportedModes;
 
@@ -163,8 +185,41 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		myTauRef = tauRef;
 	}
 
+	/**
+	 * @return True if the membrane equation is solved exactly, rather than with Euler steps
+	 */
+	public boolean getExact() {
+		return myExact;
+	}
+
+	/**
+	 * @param exact True if the membrane equation is to be solved exactly between input times, rather
+	 * 		than with Euler steps no longer than the maximum time step
+	 */
+	public void setExact(boolean exact) {
+		myExact = exact;
+	}
+
+	/**
+	 * @return Time constant (s) with which the input current relaxes exponentially between input times
+	 * 		in exact mode, or 0 if the current is taken to vary linearly
+	 */
+	public float getTauPSC() {
+		return myTauPSC;
+	}
+
+	/**
+	 * @param tauPSC Time constant (s) with which the input current relaxes exponentially between input
+	 * 		times in exact mode (eg the time constant of a single exponential synapse that drives the
+	 * 		neuron), or 0 if the current is to be taken to vary linearly
+	 */
+	public void setTauPSC(float tauPSC) {
+		myTauPSC = Math.max(0, tauPSC);
+	}
+
 	public void reset(boolean randomize) {
 		myTimeSinceLastSpike = myTauRef;
+		myEndTime = 0;
 		myVoltage = myInitialVoltage;
 		myTime = ourNullTime;
 		myVoltageHistory = ourNullVoltageHistory;
@@ -180,10 +235,12 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		if (myMode.equals(SimulationMode.CONSTANT_RATE) || myMode.equals(SimulationMode.RATE)) {
 			result = new RealOutputImpl(new float[]{doConstantRateRun(time[0], current[0])}, Units.SPIKES_PER_S, time[time.length-1]);
 		} else if (myMode.equals(SimulationMode.PRECISE)) {
-			result = new PreciseSpikeOutputImpl(new float[]{doPreciseSpikingRun(time, current)}, Units.SPIKES, time[time.length-1]);
+			float spikeTime = myExact ? doExactSpikingRun(time, current) : doPreciseSpikingRun(time, current);
+			result = new PreciseSpikeOutputImpl(new float[]{spikeTime}, Units.SPIKES, time[time.length-1]);
 		} else {
 			//result = new SpikeOutputImpl(new boolean[]{doSpikingRun(time, current)}, Units.SPIKES, time[time.length-1]);
-			result = new SpikeOutputImpl(new boolean[]{doPreciseSpikingRun(time, current)>=0}, Units.SPIKES, time[time.length-1]);
+			float spikeTime = myExact ? doExactSpikingRun(time, current) : doPreciseSpikingRun(time, current);
+			result = new SpikeOutputImpl(new boolean[]{spikeTime>=0}, Units.SPIKES, time[time.length-1]);
 		}
 
 		return result;
@@ -248,8 +305,10 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		int steps = (int) Math.ceil(len / myMaxTimeStep);
 		float dt = len / steps;
 
-		myTime = new float[steps];
-		myVoltageHistory = new float[steps];
+		if (!Memory.getReuseBuffers() || myTime.length != steps) {
+			myTime = new float[steps];
+			myVoltageHistory = new float[steps];
+		}
 //		mySpikeTimes = new ArrayList(10);
 
 		int inputIndex = 0;
@@ -286,6 +345,164 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		return spikeTimeFromLastTimeStep;
 	}
 
+	//solves the membrane equation between input times, returning the time of the latest spike (or -1)
+	private float doExactSpikingRun(float[] time, float[] current) {
+		if (time.length < 2) {
+			throw new IllegalArgumentException("Arg time must have length at least 2");
+		}
+		if (time.length != current.length) {
+			throw new IllegalArgumentException("Args time and current must have equal length");
+		}
+
+		myTime = ourNullTime;
+		myVoltageHistory = ourNullVoltageHistory;
+		myPreviousVoltage = myVoltage;
+
+		float spikeTimeFromLastTimeStep = -1;
+		for (int i = 0; i < time.length - 1; i++) {
+			float len = time[i+1] - time[i];
+
+			//current over the interval is a + b*s + e*exp(-s/tauPSC)
+			double a, b, e;
+			if (myTauPSC > 0 && len > 0) {
+				double decay = Math.exp(-len / myTauPSC);
+				a = (current[i+1] - current[i] * decay) / (1 - decay);
+				b = 0;
+				e = current[i] - a;
+			} else {
+				a = current[i];
+				b = len > 0 ? (current[i+1] - current[i]) / len : 0;
+				e = 0;
+			}
+
+			float start = 0; //offset into interval
+			while (start < len) {
+				float refractory = myTauRef - myTimeSinceLastSpike;
+				if (refractory >= len - start) {
+					myTimeSinceLastSpike += len - start;
+					break;
+				} else if (refractory > 0) {
+					myTimeSinceLastSpike = myTauRef;
+					start += refractory;
+				}
+
+				double aStart = a + b * start;
+				double eStart = (e == 0) ? 0 : e * Math.exp(-start / myTauPSC);
+				float t = len - start;
+				double V = solve(myVoltage, aStart, b, eStart, t);
+				double tCrossed = t; //a time by which threshold has been crossed
+				if (V < Vth) {
+					//with falling current, V can cross threshold and fall back within the interval
+					tCrossed = findPeak(myVoltage, aStart, b, eStart, t);
+					if (tCrossed < 0) {
+						myVoltage = (float) Math.max(0, V);
+						myTimeSinceLastSpike += t;
+						break;
+					}
+					V = solve(myVoltage, aStart, b, eStart, tCrossed);
+				}
+
+				float dSpike = (float) findThreshold(myVoltage, aStart, b, eStart, tCrossed, V);
+				start += dSpike;
+				spikeTimeFromLastTimeStep = time[i] - time[0] + start;
+				myVoltage = 0;
+				myTimeSinceLastSpike = 0;
+			}
+		}
+
+		myEndTime = time[time.length-1];
+		return spikeTimeFromLastTimeStep;
+	}
+
+	//membrane voltage after time t, from initial voltage V0, with current a + b*t + e*exp(-t/tauPSC) (R = 1)
+	private double solve(double V0, double a, double b, double e, double t) {
+		double c = a - b * myTauRC;
+		return c + b*t + (V0 - c) * Math.exp(-t / myTauRC) + synapticResponse(e, t);
+	}
+
+	//time derivative of solve(...)
+	private double solveDerivative(double V0, double a, double b, double e, double t) {
+		double c = a - b * myTauRC;
+		return b - (V0 - c) * Math.exp(-t / myTauRC) / myTauRC + synapticResponseDerivative(e, t);
+	}
+
+	//membrane response from rest to current e*exp(-t/tauPSC)
+	private double synapticResponse(double e, double t) {
+		if (e == 0) {
+			return 0;
+		}
+		double decayRC = Math.exp(-t / myTauRC);
+		if (Math.abs(myTauPSC - myTauRC) < 1e-6 * myTauRC) {
+			return e * t / myTauRC * decayRC;
+		}
+		return e * myTauPSC / (myTauPSC - myTauRC) * (Math.exp(-t / myTauPSC) - decayRC);
+	}
+
+	private double synapticResponseDerivative(double e, double t) {
+		if (e == 0) {
+			return 0;
+		}
+		double decayRC = Math.exp(-t / myTauRC);
+		if (Math.abs(myTauPSC - myTauRC) < 1e-6 * myTauRC) {
+			return e / myTauRC * (1 - t / myTauRC) * decayRC;
+		}
+		return e * myTauPSC / (myTauPSC - myTauRC) * (decayRC / myTauRC - Math.exp(-t / myTauPSC) / myTauPSC);
+	}
+
+	//time of a voltage maximum within (0, t) that is at or above threshold, or -1 if there is none
+	private double findPeak(double V0, double a, double b, double e, double t) {
+		//current is monotonic, and V can not rise above both V0 and the current
+		double end = a + b*t + (e == 0 ? 0 : e * Math.exp(-t / myTauPSC));
+		if (Math.max(V0, Math.max(a + e, end)) < Vth) {
+			return -1;
+		}
+
+		//dV/dt has at most one root, which is a maximum if dV/dt falls through it
+		if (solveDerivative(V0, a, b, e, 0) <= 0 || solveDerivative(V0, a, b, e, t) >= 0) {
+			return -1;
+		}
+		double low = 0;
+		double high = t;
+		for (int i = 0; i < 30; i++) {
+			double mid = (low + high) / 2;
+			if (solveDerivative(V0, a, b, e, mid) > 0) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		double peak = (low + high) / 2;
+		return (solve(V0, a, b, e, peak) >= Vth) ? peak : -1;
+	}
+
+	//time at which voltage reaches threshold, given that it is above threshold (V) after time t
+	private double findThreshold(double V0, double a, double b, double e, double t, double V) {
+		if (b == 0 && e == 0) {
+			double result = myTauRC * Math.log((a - V0) / (a - Vth));
+			return (result > 0) ? Math.min(t, result) : 0;
+		}
+
+		//Newton's method from linear interpolation, kept within a bracket of the crossing by bisection
+		double low = 0;
+		double high = t;
+		double result = (V > V0) ? (Vth - V0) * t / (V - V0) : t;
+		for (int i = 0; i < 10; i++) {
+			double f = solve(V0, a, b, e, result) - Vth;
+			if (Math.abs(f) < 1e-7) {
+				break;
+			} else if (f < 0) {
+				low = result;
+			} else {
+				high = result;
+			}
+
+			double df = solveDerivative(V0, a, b, e, result);
+			double next = result - f / df;
+			result = (df > 0 && next > low && next < high) ? next : (low + high) / 2;
+		}
+		return result;
+	}
+
 	/**
 	 * @return membrane voltage
 	 */
@@ -293,6 +510,25 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		return myVoltage;
 	}
 
+	/**
+	 * @return Time since the most recent spike (s)
+	 */
+	float getTimeSinceLastSpike() {
+		return myTimeSinceLastSpike;
+	}
+
+	/**
+	 * Overwrites the dynamic state, eg with state that has been advanced elsewhere (see Kernel).
+	 *
+	 * @param voltage New membrane voltage
+	 * @param timeSinceLastSpike New time since the most recent spike (s)
+	 */
+	void setState(float voltage, float timeSinceLastSpike) {
+		myVoltage = voltage;
+		myPreviousVoltage = voltage;
+		myTimeSinceLastSpike = timeSinceLastSpike;
+	}
+
 	//Note that no voltage history is available after a constant-rate run.
 	private float doConstantRateRun(float time, float current) {
 		myTime = ourNullTime;
@@ -302,6 +538,21 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		return current > 1 ? 1f / ( myTauRef - myTauRC * ((float) Math.log(1 - 1/current)) ) : 0;
 	}
 
+
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getConstantRateModeSupported()
+	 */
+	public boolean getConstantRateModeSupported() {
+		return true;
+	}
+
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+	 */
+	public float getRate(float current) {
+		return constantRateRun(current);
+	}
+
 	/**
 	 * @param current Given current
 	 * @return Result of solving for activity given current
@@ -316,7 +567,9 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 	public TimeSeries getHistory(String stateName) throws SimulationException {
 		TimeSeries1D result = null;
 
-		if (stateName.equals("V")) {
+		if (stateName.equals("V") && myExact && !myMode.equals(SimulationMode.CONSTANT_RATE) && !myMode.equals(SimulationMode.RATE)) {
+			result = new TimeSeries1DImpl(new float[]{myEndTime}, new float[]{myVoltage}, Units.AVU);
+		} else if (stateName.equals("V")) {
 			result = new TimeSeries1DImpl(myTime, myVoltageHistory, Units.AVU);
 		} else {
 			throw new SimulationException("The state name " + stateName + " is unknown.");
@@ -348,6 +601,24 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 		myMode = SimulationMode.getClosestMode(mode, mySupportedModes);
 	}
 
+	/**
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	public void saveState(ObjectOutput out) throws IOException {
+		out.writeFloat(myVoltage);
+		out.writeFloat(myTimeSinceLastSpike);
+		out.writeFloat(myPreviousVoltage);
+	}
+
+	/**
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	public void restoreState(ObjectInput in) throws IOException {
+		myVoltage = in.readFloat();
+		myTimeSinceLastSpike = in.readFloat();
+		myPreviousVoltage = in.readFloat();
+	}
+
 	@Override
 	public SpikeGenerator clone() throws CloneNotSupportedException {
 		LIFSpikeGenerator result = (LIFSpikeGenerator) super.clone();
@@ -371,6 +642,7 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 
 		private PDF myTauRC;
 		private PDF myTauRef;
+		private boolean myExact;
 
 		/**
 		 * Set reasonable defaults
@@ -408,11 +680,238 @@ public class LIFSpikeGenerator implements SpikeGenerator, Probeable {
 			myTauRC = tauRC;
 		}
 
+		/**
+		 * @return True if the spike generators produced here solve the membrane equation exactly
+		 */
+		public boolean getExact() {
+			return myExact;
+		}
+
+		/**
+		 * @param exact True if the spike generators produced here are to solve the membrane equation
+		 * 		exactly (see LIFSpikeGenerator.setExact(...))
+		 */
+		public void setExact(boolean exact) {
+			myExact = exact;
+		}
+
 		/**
 		 * @see ca.nengo.model.neuron.impl.SpikeGeneratorFactory#make()
 		 */
 		public SpikeGenerator make() {
-			return new LIFSpikeGenerator(ourMaxTimeStep, myTauRC.sample()[0], myTauRef.sample()[0]);
+			LIFSpikeGenerator result = new LIFSpikeGenerator(ourMaxTimeStep, myTauRC.sample()[0], myTauRef.sample()[0]);
+			result.setExact(myExact);
+			return result;
+		}
+
+	}
+
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * Advances a population of LIFSpikeGenerators together (in DEFAULT, RATE and CONSTANT_RATE modes).
+	 * Generators in exact mode are advanced with the analytic solution over the whole step (one
+	 * multiply-add per neuron between spikes), and others with the same Euler steps as
+	 * doPreciseSpikingRun(...).
+	 */
+	public static class Kernel implements PopulationKernel {
+
+		private final LIFSpikeGenerator[] myGenerators;
+		private final int mySize;
+
+		private final float[] myTauRC;
+		private final float[] myTauRef;
+		private final float[] myMaxTimeStep;
+		private final boolean[] myExact;
+		private final float[] myDecay; //exp(-len/tauRC) for exact neurons
+		private float myDecayLength; //step length for which myDecay was found
+
+		private final float[] myVoltage;
+		private final float[] myTimeSinceLastSpike;
+
+		/**
+		 * @param generators LIFSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not an LIFSpikeGenerator
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myGenerators = new LIFSpikeGenerator[mySize];
+			myTauRC = new float[mySize];
+			myTauRef = new float[mySize];
+			myMaxTimeStep = new float[mySize];
+			myExact = new boolean[mySize];
+			myDecay = new float[mySize];
+			myVoltage = new float[mySize];
+			myTimeSinceLastSpike = new float[mySize];
+
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof LIFSpikeGenerator) ) {
+					throw new StructuralException("Expected LIFSpikeGenerators");
+				}
+				LIFSpikeGenerator generator = (LIFSpikeGenerator) generators[i];
+				myGenerators[i] = generator;
+				myTauRC[i] = generator.myTauRC;
+				myTauRef[i] = generator.myTauRef;
+				myMaxTimeStep[i] = generator.myMaxTimeStep;
+				myExact[i] = generator.myExact;
+				myVoltage[i] = generator.myVoltage;
+				myTimeSinceLastSpike[i] = generator.myTimeSinceLastSpike;
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			if (mode == SimulationMode.CONSTANT_RATE || mode == SimulationMode.RATE) {
+				for (int i = 0; i < mySize; i++) {
+					output[i] = current[i] > 1 ? 1f / ( myTauRef[i] - myTauRC[i] * ((float) Math.log(1 - 1/current[i])) ) : 0;
+				}
+				return false;
+			} else {
+				runSpiking(current, endTime - startTime, output);
+				return true;
+			}
+		}
+
+		private void runSpiking(float[] current, float len, float[] output) {
+			final float[] voltage = myVoltage;
+			final float[] timeSinceLastSpike = myTimeSinceLastSpike;
+
+			if (len != myDecayLength) {
+				myDecayLength = len;
+				for (int i = 0; i < mySize; i++) {
+					myDecay[i] = (float) Math.exp(-len / myTauRC[i]);
+				}
+			}
+
+			for (int i = 0; i < mySize; i++) {
+				if (myExact[i]) {
+					output[i] = runExact(i, current[i], len) ? 1f : 0f;
+					continue;
+				}
+
+				int steps = (int) Math.ceil(len / myMaxTimeStep[i]);
+				float dt = len / steps;
+				float I = current[i];
+				float inverseTauRC = 1f / myTauRC[i];
+				float tauRef = myTauRef[i];
+
+				float v = voltage[i];
+				float t = timeSinceLastSpike[i];
+				boolean spiked = false;
+				for (int j = 0; j < steps; j++) {
+					float dV = inverseTauRC * (I - v);
+					t = t + dt;
+					if (t < tauRef) {
+						dV = 0;
+					} else if (t < tauRef + dt) {
+						dV *= (t - tauRef) / dt;
+					}
+
+					float previous = v;
+					v = Math.max(0, v + dt*dV);
+
+					if (v >= 1) {
+						float dSpike = (1 - previous) * dt / (v - previous);
+						t = dt - dSpike;
+						v = 0;
+						spiked = true;
+					}
+				}
+
+				voltage[i] = v;
+				timeSinceLastSpike[i] = t;
+				output[i] = spiked ? 1f : 0f;
+			}
+		}
+
+		//advances one neuron with the exact solution for constant current (as in doExactSpikingRun(...))
+		private boolean runExact(int i, float current, float len) {
+			float tauRC = myTauRC[i];
+			float tauRef = myTauRef[i];
+			float v = myVoltage[i];
+			float t = myTimeSinceLastSpike[i];
+			boolean spiked = false;
+
+			float start = 0;
+			while (start < len) {
+				float refractory = tauRef - t;
+				if (refractory >= len - start) {
+					t += len - start;
+					break;
+				} else if (refractory > 0) {
+					t = tauRef;
+					start += refractory;
+				}
+
+				float remaining = len - start;
+				float decay = (start == 0) ? myDecay[i] : (float) Math.exp(-remaining / tauRC);
+				float next = current + (v - current) * decay;
+				if (next < 1) {
+					v = Math.max(0, next);
+					t += remaining;
+					break;
+				}
+
+				float dSpike = tauRC * (float) Math.log((current - v) / (current - 1));
+				start += (dSpike > 0) ? Math.min(remaining, dSpike) : 0;
+				v = 0;
+				t = 0;
+				spiked = true;
+			}
+
+			myVoltage[i] = v;
+			myTimeSinceLastSpike[i] = t;
+			return spiked;
+		}
+
+		/**
+		 * @return Membrane voltage of each neuron (live array)
+		 */
+		public float[] getVoltage() {
+			return myVoltage;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			Properties p = new Properties();
+			p.setProperty("V", "membrane potential (arbitrary units)");
+			return p;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			if (stateName.equals("V")) {
+				return myVoltage;
+			} else {
+				throw new SimulationException("The state name " + stateName + " is unknown.");
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+			for (int i = 0; i < mySize; i++) {
+				myGenerators[i].setState(myVoltage[i], myTimeSinceLastSpike[i]);
+			}
 		}
 
 	}
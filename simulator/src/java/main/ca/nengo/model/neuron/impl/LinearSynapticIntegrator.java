@@ -30,6 +30,7 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.neuron.impl;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -43,6 +44,7 @@ import ca.nengo.model.impl.DelayedLinearExponentialTermination;
 import ca.nengo.model.impl.LinearExponentialTermination;
 import ca.nengo.model.neuron.ExpandableSynapticIntegrator;
 import ca.nengo.model.neuron.SynapticIntegrator;
+import ca.nengo.util.Memory;
 import ca.nengo.util.TimeSeries1D;
 import ca.nengo.util.impl.TimeSeries1DImpl;
 
@@ -59,6 +61,11 @@ import ca.nengo.util.impl.TimeSeries1DImpl;
  * and rate inputs, with minimal impact and without the need to modify synaptic
  * weights. </p>
  *
+ * <p>In exact mode (see setExact(...)), each run(...) is one step in which the exponential dynamics
+ * are solved exactly, rather than several Euler steps no longer than the maximum time step. If all
+ * Terminations have the same time constant (see getTauPSC()), the current then relaxes exponentially
+ * with that time constant over each run(...), except for precise spikes that arrive within it.</p>
+ *
  * @author Bryan Tripp
  */
 public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
@@ -71,6 +78,8 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 	private float myMaxTimeStep;
 	private Units myCurrentUnits;
 	private Map<String, LinearExponentialTermination> myTerminations;
+	private boolean myExact;
+	private transient TimeSeries1DImpl myResult; //reused if Memory.getReuseBuffers()
 
 	/**
 	 * @param maxTimeStep Maximum length of integration time step. Shorter steps may be used to better match
@@ -95,14 +104,25 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 	 */
 	public TimeSeries1D run(float startTime, float endTime) {
 		float len = endTime - startTime;
-		int steps = (int) Math.ceil(len / myMaxTimeStep);
+		int steps = myExact ? 1 : (int) Math.ceil(len / myMaxTimeStep);
 		float dt = len / steps;
 
-		float[] times = new float[steps+1];
-		float[] currents = new float[steps+1];
+		float[] times;
+		float[] currents;
+		boolean reuse = Memory.getReuseBuffers() && myResult != null && myResult.getTimes().length == steps+1;
+		if (reuse) {
+			times = myResult.getTimes();
+			currents = myResult.getValues1D();
+		} else {
+			times = new float[steps+1];
+			currents = new float[steps+1];
+		}
 
 		times[0] = startTime;
 		if (myTerminations.size() == 0) {
+			if (reuse) {
+				Arrays.fill(currents, 0f);
+			}
 			for (int i = 1; i <= steps; i++) {
 				times[i] = startTime + i * dt;
 			}
@@ -116,11 +136,14 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 
 			for (int i = 1; i <= steps; i++) {
 				times[i] = startTime + i * dt;
-				currents[i] = update(myTerminations.values(), false, dt, dt);
+				currents[i] = myExact ? updateExact(myTerminations.values(), dt) : update(myTerminations.values(), false, dt, dt);
 			}
 		}
 
-		return new TimeSeries1DImpl(times, currents, myCurrentUnits);
+		if (!reuse) {
+			myResult = new TimeSeries1DImpl(times, currents, myCurrentUnits);
+		}
+		return myResult;
 	}
 
 	//update current in all Terminations
@@ -139,6 +162,20 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 		return result;
 	}
 
+	//update current in all Terminations with exact dynamics
+	private static float updateExact(Collection<LinearExponentialTermination> terminations, float time) {
+		float result = 0f;
+
+		for (LinearExponentialTermination t : terminations) {
+			float current = t.updateCurrentExact(time);
+			if (!t.getModulatory()) {
+				result += current;
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * @see ca.nengo.model.Resettable#reset(boolean)
 	 */
@@ -163,6 +200,40 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 		myMaxTimeStep = maxTimeStep * ourTimeStepCorrection; //increased slightly because float/float != integer
 	}
 
+	/**
+	 * @return True if the synaptic dynamics are solved exactly over each run(...), rather than in steps
+	 * 		no longer than the maximum time step
+	 */
+	public boolean getExact() {
+		return myExact;
+	}
+
+	/**
+	 * @param exact True if the synaptic dynamics are to be solved exactly over each run(...), rather than
+	 * 		in steps no longer than the maximum time step
+	 */
+	public void setExact(boolean exact) {
+		myExact = exact;
+	}
+
+	/**
+	 * @return The time constant shared by all non-modulatory Terminations, or 0 if there are none or their
+	 * 		time constants differ
+	 */
+	public float getTauPSC() {
+		float result = 0;
+		for (LinearExponentialTermination t : myTerminations.values()) {
+			if (t.getModulatory()) {
+				continue;
+			} else if (result == 0) {
+				result = t.getTau();
+			} else if (t.getTau() != result) {
+				return 0;
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @return Units that current is expressed in
 	 */
@@ -240,6 +311,7 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 	@Override
 	public LinearSynapticIntegrator clone() throws CloneNotSupportedException {
 		LinearSynapticIntegrator result = (LinearSynapticIntegrator) super.clone();
+		result.myResult = null;
 
 		result.myTerminations = new HashMap<String, LinearExponentialTermination>(10);
 		for (LinearExponentialTermination oldTerm : myTerminations.values()) {
@@ -258,6 +330,7 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 
 		private Units myUnits;
 		private float myMaxTimeStep;
+		private boolean myExact;
 
 		/**
 		 * Set defaults
@@ -297,11 +370,28 @@ public class LinearSynapticIntegrator implements ExpandableSynapticIntegrator {
 			myMaxTimeStep = maxTimeStep;
 		}
 
+		/**
+		 * @return True if the synaptic integrators produced here solve their dynamics exactly
+		 */
+		public boolean getExact() {
+			return myExact;
+		}
+
+		/**
+		 * @param exact True if the synaptic integrators produced here are to solve their dynamics exactly
+		 * 		(see LinearSynapticIntegrator.setExact(...))
+		 */
+		public void setExact(boolean exact) {
+			myExact = exact;
+		}
+
 		/**
 		 * @see ca.nengo.model.neuron.impl.SynapticIntegratorFactory#make()
 		 */
 		public SynapticIntegrator make() {
-			return new LinearSynapticIntegrator(myMaxTimeStep, myUnits);
+			LinearSynapticIntegrator result = new LinearSynapticIntegrator(myMaxTimeStep, myUnits);
+			result.setExact(myExact);
+			return result;
 		}
 
 	}
@@ -0,0 +1,201 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "NeuronPopulation.java". Description:
+"A population of spiking neurons that are advanced together by a PopulationKernel"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.model.neuron.impl;
+
+import ca.nengo.model.Node;
+import ca.nengo.model.Origin;
+import ca.nengo.model.RealOutput;
+import ca.nengo.model.SimulationMode;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.RealOutputImpl;
+import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.Neuron;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.SpikeGenerator;
+
+/**
+ * <p>A population of SpikingNeurons that are advanced together. The bias and scale of each neuron are
+ * held in flat arrays, and the SpikeGenerators are advanced by a PopulationKernel, so that the whole
+ * population is advanced without creating objects for each neuron.</p>
+ *
+ * <p>The neurons must have SpikeGenerators of one class that implements PopulationKernel.Batchable
+ * (eg LIF, ALIF, Izhikevich, Poisson and Gruber generators), and input current is held constant over
+ * each step (as it is for a neuron without node-level Terminations). Neuron objects are not updated
+ * while the population runs, except through writeOutputs(...) and writeState().</p>
+ */
+public class NeuronPopulation {
+
+	private final Origin[] myAxons;
+	private final int mySize;
+
+	private final float[] myBias;
+	private final float[] myScale;
+	private final float[] myCurrent;
+
+	private final PopulationKernel myKernel;
+	private final float[] myOutput;
+	private boolean mySpiking;
+
+	/**
+	 * @param nodes Neurons to be represented (see isSupported(...))
+	 * @throws StructuralException If the nodes can not be represented as a NeuronPopulation
+	 */
+	public NeuronPopulation(Node[] nodes) throws StructuralException {
+		if (!isSupported(nodes)) {
+			throw new StructuralException("NeuronPopulation requires SpikingNeurons with batchable SpikeGenerators "
+					+ "of the same class, and without noise or node-level Terminations");
+		}
+
+		mySize = nodes.length;
+		myAxons = new Origin[mySize];
+		myBias = new float[mySize];
+		myScale = new float[mySize];
+		myCurrent = new float[mySize];
+		myOutput = new float[mySize];
+		mySpiking = true;
+
+		SpikeGenerator[] generators = new SpikeGenerator[mySize];
+		for (int i = 0; i < mySize; i++) {
+			SpikingNeuron neuron = (SpikingNeuron) nodes[i];
+			myAxons[i] = neuron.getOrigin(Neuron.AXON);
+			myBias[i] = neuron.getBias();
+			myScale[i] = neuron.getScale();
+			generators[i] = neuron.getGenerator();
+		}
+
+		myKernel = ((PopulationKernel.Batchable) generators[0]).makeKernel(generators);
+	}
+
+	/**
+	 * @param nodes A list of Nodes
+	 * @return True if all the Nodes are SpikingNeurons with batchable SpikeGenerators of the same class,
+	 * 		LinearSynapticIntegrators without Terminations, and no Noise (ie neurons that the population
+	 * 		can advance as they would advance themselves)
+	 */
+	public static boolean isSupported(Node[] nodes) {
+		if (nodes.length == 0 || !(nodes[0] instanceof SpikingNeuron)) {
+			return false;
+		}
+
+		Class<?> generatorClass = ((SpikingNeuron) nodes[0]).getGenerator().getClass();
+		for (Node node : nodes) {
+			if ( !(node instanceof SpikingNeuron) ) {
+				return false;
+			}
+
+			SpikingNeuron neuron = (SpikingNeuron) node;
+			if ( !(neuron.getGenerator() instanceof PopulationKernel.Batchable)
+					|| neuron.getGenerator().getClass() != generatorClass
+					|| !(neuron.getIntegrator() instanceof LinearSynapticIntegrator)
+					|| neuron.getIntegrator().getTerminations().length > 0
+					|| neuron.getNoise() != null) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return Number of neurons in the population
+	 */
+	public int getSize() {
+		return mySize;
+	}
+
+	/**
+	 * @return The kernel that advances the SpikeGenerators (eg for access to their state)
+	 */
+	public PopulationKernel getKernel() {
+		return myKernel;
+	}
+
+	/**
+	 * Advances all neurons over one step.
+	 *
+	 * @param radialInput Radial input to each neuron (ie encoded input, before scale and bias are applied)
+	 * @param startTime Simulation time at start of step
+	 * @param endTime Simulation time at end of step
+	 * @param mode SimulationMode.DEFAULT for spiking output, or SimulationMode.RATE or
+	 * 		SimulationMode.CONSTANT_RATE for firing rate output (if supported by the SpikeGenerators)
+	 */
+	public void run(float[] radialInput, float startTime, float endTime, SimulationMode mode) {
+		if (radialInput.length != mySize) {
+			throw new IllegalArgumentException("Expected " + mySize + " inputs, was given " + radialInput.length);
+		}
+
+		for (int i = 0; i < mySize; i++) {
+			myCurrent[i] = myBias[i] + myScale[i] * radialInput[i];
+		}
+		mySpiking = myKernel.run(myCurrent, startTime, endTime, mode, myOutput);
+	}
+
+	/**
+	 * @return Output of each neuron in the most recent step; either 1 (spike) or 0 (no spike) if
+	 * 		isSpiking(), otherwise firing rates (spikes/s). The array is reused in subsequent steps.
+	 */
+	public float[] getOutput() {
+		return myOutput;
+	}
+
+	/**
+	 * @return True if the most recent step produced spikes, false if it produced rates
+	 */
+	public boolean isSpiking() {
+		return mySpiking;
+	}
+
+	/**
+	 * Copies the output of the most recent step to the axon Origin of each neuron, so that
+	 * Node-level Origins (and Ensemble Origins composed of them) reflect the population.
+	 * In spiking mode, neurons share two output objects.
+	 *
+	 * @param time Simulation time at end of step
+	 */
+	public void writeOutputs(float time) {
+		if (mySpiking) {
+			SpikeOutputImpl spike = new SpikeOutputImpl(new boolean[]{true}, Units.SPIKES, time);
+			SpikeOutputImpl noSpike = new SpikeOutputImpl(new boolean[]{false}, Units.SPIKES, time);
+			for (int i = 0; i < mySize; i++) {
+				myAxons[i].setValues(myOutput[i] > 0 ? spike : noSpike);
+			}
+		} else {
+			for (int i = 0; i < mySize; i++) {
+				RealOutput rate = new RealOutputImpl(new float[]{myOutput[i]}, Units.SPIKES_PER_S, time);
+				myAxons[i].setValues(rate);
+			}
+		}
+	}
+
+	/**
+	 * Copies the state of each neuron back to its SpikeGenerator, eg before neurons are run
+	 * individually again.
+	 */
+	public void writeState() {
+		myKernel.writeState();
+	}
+
+}
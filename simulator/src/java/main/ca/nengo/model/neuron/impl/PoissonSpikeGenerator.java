@@ -25,6 +25,8 @@ a recipient may use your version of this file under either the MPL or the GPL Li
 
 package ca.nengo.model.neuron.impl;
 
+import java.util.Properties;
+
 import ca.nengo.math.Function;
 import ca.nengo.math.PDF;
 import ca.nengo.math.PDFTools;
@@ -34,6 +36,7 @@ import ca.nengo.math.impl.PoissonPDF;
 import ca.nengo.math.impl.SigmoidFunction;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
+import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
 import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
@@ -41,6 +44,8 @@ import ca.nengo.model.impl.NodeFactory;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
 import ca.nengo.model.neuron.Neuron;
+import ca.nengo.model.neuron.PopulationKernel;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.model.neuron.SynapticIntegrator;
 import ca.nengo.util.MU;
@@ -53,7 +58,7 @@ import ca.nengo.util.MU;
  *
  * @author Bryan Tripp
  */
-public class PoissonSpikeGenerator implements SpikeGenerator {
+public class PoissonSpikeGenerator implements PopulationKernel.Batchable, RateResponse {
 
 	private static final long serialVersionUID = 1L;
 
@@ -95,6 +100,20 @@ public class PoissonSpikeGenerator implements SpikeGenerator {
 		myRateFunction = function;
 	}
 
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getConstantRateModeSupported()
+	 */
+	public boolean getConstantRateModeSupported() {
+		return true;
+	}
+
+	/**
+	 * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+	 */
+	public float getRate(float current) {
+		return myRateFunction.map(new float[]{current});
+	}
+
 	/**
 	 * @see ca.nengo.model.neuron.SpikeGenerator#run(float[], float[])
 	 */
@@ -403,4 +422,95 @@ public class PoissonSpikeGenerator implements SpikeGenerator {
 		}
 
 	}
+
+	/**
+	 * @see ca.nengo.model.neuron.PopulationKernel.Batchable#makeKernel(ca.nengo.model.neuron.SpikeGenerator[])
+	 */
+	public PopulationKernel makeKernel(SpikeGenerator[] generators) throws StructuralException {
+		return new Kernel(generators);
+	}
+
+	/**
+	 * Advances a population of PoissonSpikeGenerators together. Draws one random number per
+	 * neuron per step, treating the current as constant over the step.
+	 */
+	public static class Kernel implements PopulationKernel {
+
+		private final int mySize;
+		private final Function[] myRateFunctions;
+		private final float[] myArg;
+
+		/**
+		 * @param generators PoissonSpikeGenerators to advance together
+		 * @throws StructuralException if any of the generators is not a PoissonSpikeGenerator
+		 */
+		public Kernel(SpikeGenerator[] generators) throws StructuralException {
+			mySize = generators.length;
+			myRateFunctions = new Function[mySize];
+			myArg = new float[1];
+
+			for (int i = 0; i < mySize; i++) {
+				if ( !(generators[i] instanceof PoissonSpikeGenerator) ) {
+					throw new StructuralException("Expected PoissonSpikeGenerators");
+				}
+				myRateFunctions[i] = ((PoissonSpikeGenerator) generators[i]).getRateFunction();
+			}
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getSize()
+		 */
+		public int getSize() {
+			return mySize;
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#run(float[], float, float, ca.nengo.model.SimulationMode, float[])
+		 */
+		public boolean run(float[] current, float startTime, float endTime, SimulationMode mode, float[] output) {
+			mode = SimulationMode.getClosestMode(mode, ourSupportedModes);
+			float len = endTime - startTime;
+
+			for (int i = 0; i < mySize; i++) {
+				myArg[0] = current[i];
+				float rate = myRateFunctions[i].map(myArg);
+
+				if (mode.equals(SimulationMode.CONSTANT_RATE)) {
+					output[i] = rate;
+				} else if (mode.equals(SimulationMode.RATE)) {
+					output[i] = new PoissonPDF(len * rate).sample()[0] / len;
+				} else {
+					output[i] = (PDFTools.random() > Math.exp(-rate*len)) ? 1f : 0f;
+				}
+			}
+
+			return mode.equals(SimulationMode.DEFAULT);
+		}
+
+		/**
+		 * A Poisson process is stateless, so there are no states.
+		 *
+		 * @see ca.nengo.model.neuron.PopulationKernel#listStates()
+		 */
+		public Properties listStates() {
+			return new Properties();
+		}
+
+		/**
+		 * @see ca.nengo.model.neuron.PopulationKernel#getState(java.lang.String)
+		 */
+		public float[] getState(String stateName) throws SimulationException {
+			throw new SimulationException("The state name " + stateName + " is unknown.");
+		}
+
+		/**
+		 * This method does nothing, because a Poisson process is stateless.
+		 *
+		 * @see ca.nengo.model.neuron.PopulationKernel#writeState()
+		 */
+		public void writeState() {
+		}
+
+	}
+
 }
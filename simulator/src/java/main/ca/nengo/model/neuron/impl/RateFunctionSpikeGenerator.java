@@ -34,6 +34,7 @@ import ca.nengo.model.SimulationMode;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
+import ca.nengo.model.neuron.RateResponse;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.util.MU;
 
@@ -49,7 +50,7 @@ import ca.nengo.util.MU;
  * @author Bryan Tripp
  */
 
-public class RateFunctionSpikeGenerator implements SpikeGenerator {
+public class RateFunctionSpikeGenerator implements RateResponse {
 
     private static final long serialVersionUID = 1L;
 
@@ -98,6 +99,20 @@ public class RateFunctionSpikeGenerator implements SpikeGenerator {
         myRateFunction = function;
     }
 
+    /**
+     * @see ca.nengo.model.neuron.RateResponse#getConstantRateModeSupported()
+     */
+    public boolean getConstantRateModeSupported() {
+        return true;
+    }
+
+    /**
+     * @see ca.nengo.model.neuron.RateResponse#getRate(float)
+     */
+    public float getRate(float current) {
+        return myRateFunction.map(new float[]{current});
+    }
+
     /**
      * @see ca.nengo.model.neuron.SpikeGenerator#run(float[], float[])
      */
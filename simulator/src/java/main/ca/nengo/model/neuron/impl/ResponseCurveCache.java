@@ -0,0 +1,83 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "ResponseCurveCache.java". Description:
+"Shared store of response curves that are expensive to find"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.model.neuron.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.nengo.math.Function;
+
+/**
+ * <p>Shared store of response curves (eg maps from driving current to firing rate) that are expensive
+ * to find, such as those found by simulating a DynamicalSystem at a range of currents. Curves are keyed
+ * by a list of the parameters that determine them, so that each neuron type or distinct parameter set
+ * is tabulated once, rather than once per neuron.</p>
+ *
+ * <p>Callers must not modify curves that they get from the cache.</p>
+ */
+public final class ResponseCurveCache {
+
+	/**
+	 * Maximum number of curves held (least recently used curves are dropped first)
+	 */
+	public static final int MAX_SIZE = 100;
+
+	private static final Map<List<?>, Function> ourCurves = new LinkedHashMap<List<?>, Function>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<?>, Function> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	private ResponseCurveCache() {
+	}
+
+	/**
+	 * @param key Parameters that determine a curve (list elements must implement equals(...) and hashCode())
+	 * @return The curve that was stored with an equal key, or null if there is none
+	 */
+	public static synchronized Function get(List<?> key) {
+		return ourCurves.get(key);
+	}
+
+	/**
+	 * @param key Parameters that determine the curve (list elements must implement equals(...) and hashCode())
+	 * @param curve Curve to share with other callers with equal keys
+	 */
+	public static synchronized void put(List<?> key, Function curve) {
+		ourCurves.put(key, curve);
+	}
+
+	/**
+	 * Removes all curves, eg after a change to the model of a neuron type.
+	 */
+	public static synchronized void clear() {
+		ourCurves.clear();
+	}
+
+}
@@ -27,6 +27,11 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.neuron.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.Ensemble;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
@@ -46,7 +51,7 @@ import ca.nengo.model.neuron.SpikeGenerator;
  * 
  * @author Bryan Tripp
  */
-public class SpikeGeneratorOrigin implements Origin {
+public class SpikeGeneratorOrigin implements Origin, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -143,6 +148,22 @@ public class SpikeGeneratorOrigin implements Origin {
         }
     }
 
+    /**
+     * Saves the most recent output (the state of the SpikeGenerator is saved with its Neuron).
+     *
+     * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+     */
+    public void saveState(ObjectOutput out) throws IOException {
+        out.writeObject(myOutput);
+    }
+
+    /**
+     * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+     */
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        myOutput = (InstantaneousOutput) in.readObject();
+    }
+
     @Override
     public SpikeGeneratorOrigin clone() throws CloneNotSupportedException {
         SpikeGeneratorOrigin result = (SpikeGeneratorOrigin) super.clone();
@@ -27,11 +27,15 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.neuron.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.Noise;
@@ -49,6 +53,8 @@ import ca.nengo.model.nef.NEFNode;
 import ca.nengo.model.neuron.Neuron;
 import ca.nengo.model.neuron.SpikeGenerator;
 import ca.nengo.model.neuron.SynapticIntegrator;
+import ca.nengo.util.CheckpointUtils;
+import ca.nengo.util.Memory;
 import ca.nengo.util.ScriptGenException;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.TimeSeries1D;
@@ -61,7 +67,7 @@ import ca.nengo.util.impl.TimeSeries1DImpl;
  *
  * @author Bryan Tripp
  */
-public class SpikingNeuron implements Neuron, Probeable, NEFNode {
+public class SpikingNeuron implements Neuron, Probeable, NEFNode, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -125,7 +131,10 @@ public class SpikingNeuron implements Neuron, Probeable, NEFNode {
 		TimeSeries1D current = myIntegrator.run(startTime, endTime);
 
 		float[] integratorOutput = current.getValues1D();
-		float[] generatorInput = new float[integratorOutput.length];
+
+		//with buffer reuse, the integrator returns the same times from step to step, and we can overwrite our last input
+		boolean reuse = Memory.getReuseBuffers() && myCurrent.getTimes() == current.getTimes();
+		float[] generatorInput = reuse ? myCurrent.getValues1D() : new float[integratorOutput.length];
 		
 		for (int i = 0; i < integratorOutput.length; i++) {
 			myUnscaledCurrent = (myRadialInput + integratorOutput[i]);
@@ -135,7 +144,15 @@ public class SpikingNeuron implements Neuron, Probeable, NEFNode {
 			}
 		}
 
-		myCurrent = new TimeSeries1DImpl(current.getTimes(), generatorInput, Units.UNK);
+		if (!reuse) {
+			myCurrent = new TimeSeries1DImpl(current.getTimes(), generatorInput, Units.UNK);
+		}
+
+		//in exact mode, an LIF generator solves for the exponential synaptic current within the step
+		if (myGenerator instanceof LIFSpikeGenerator && myIntegrator instanceof LinearSynapticIntegrator
+				&& ((LIFSpikeGenerator) myGenerator).getExact() && ((LinearSynapticIntegrator) myIntegrator).getExact()) {
+			((LIFSpikeGenerator) myGenerator).setTauPSC(myNoise == null ? ((LinearSynapticIntegrator) myIntegrator).getTauPSC() : 0);
+		}
 
 		mySpikeOrigin.run(myCurrent.getTimes(), generatorInput);
 		myCurrentOrigin.setValues(startTime, endTime, new float[]{myUnscaledCurrent});
@@ -368,10 +385,33 @@ public class SpikingNeuron implements Neuron, Probeable, NEFNode {
 		VisiblyMutableUtils.changed(this, myListeners);
 	}
 
+	/**
+	 * Saves the state of the SpikeGenerator and Noise, if they have state (the state of Origins and 
+	 * Terminations is saved separately).
+	 *
+	 * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+	 */
+	public void saveState(ObjectOutput out) throws IOException {
+		out.writeFloat(myUnscaledCurrent);
+		out.writeFloat(myRadialInput);
+		CheckpointUtils.saveState(myGenerator, out);
+		CheckpointUtils.saveState(myNoise, out);
+	}
+
+	/**
+	 * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+	 */
+	public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+		myUnscaledCurrent = in.readFloat();
+		myRadialInput = in.readFloat();
+		CheckpointUtils.restoreState(myGenerator, in, myName);
+		CheckpointUtils.restoreState(myNoise, in, myName);
+	}
+
 	@Override
 	public SpikingNeuron clone() throws CloneNotSupportedException {
 		SpikingNeuron result = (SpikingNeuron) super.clone();
-		result.myCurrent = (TimeSeries1D) myCurrent.clone();
+		result.myCurrent = new TimeSeries1DImpl(myCurrent.getTimes().clone(), myCurrent.getValues1D().clone(), myCurrent.getUnits1D());
 
 		result.myCurrentOrigin = (BasicOrigin) myCurrentOrigin.clone();
 
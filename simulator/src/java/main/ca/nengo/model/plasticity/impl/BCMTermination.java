@@ -30,6 +30,10 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import ca.nengo.math.impl.IndicatorPDF;
 import ca.nengo.model.Node;
 import ca.nengo.model.PlasticNodeTermination;
@@ -126,4 +130,16 @@ public class BCMTermination extends PlasticEnsembleTermination {
     public PlasticEnsembleTermination clone() throws CloneNotSupportedException {
     	throw new CloneNotSupportedException("BCMTermination not cloneable yet.");
     }
+
+    @Override
+    public void saveState(ObjectOutput out) throws IOException {
+        super.saveState(out);
+        out.writeObject(myTheta);
+    }
+
+    @Override
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.restoreState(in);
+        myTheta = (float[]) in.readObject();
+    }
 }
\ No newline at end of file
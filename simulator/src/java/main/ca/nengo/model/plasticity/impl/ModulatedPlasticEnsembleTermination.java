@@ -27,6 +27,9 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Arrays;
 
 import ca.nengo.model.InstantaneousOutput;
@@ -126,4 +129,18 @@ public abstract class ModulatedPlasticEnsembleTermination extends PlasticEnsembl
     	result.myModInput = (myModInput != null) ? myModInput.clone() : null;
     	return result;
     }
+
+    @Override
+    public void saveState(ObjectOutput out) throws IOException {
+        super.saveState(out);
+        out.writeObject(myModInput);
+        out.writeObject(myFilteredModInput);
+    }
+
+    @Override
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.restoreState(in);
+        myModInput = (float[]) in.readObject();
+        myFilteredModInput = (float[]) in.readObject();
+    }
 }
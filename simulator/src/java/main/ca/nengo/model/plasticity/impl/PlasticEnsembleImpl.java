@@ -27,11 +27,15 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.Origin;
@@ -56,7 +60,7 @@ import ca.nengo.util.impl.LearningTask;
  *
  * @author Trevor Bekolay
  */
-public class PlasticEnsembleImpl extends EnsembleImpl implements TaskSpawner {
+public class PlasticEnsembleImpl extends EnsembleImpl implements TaskSpawner, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -176,6 +180,22 @@ public class PlasticEnsembleImpl extends EnsembleImpl implements TaskSpawner {
         myLastPlasticityTime = 0.0f;
     }
 
+    /**
+     * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+     */
+    public void saveState(ObjectOutput out) throws IOException {
+        out.writeFloat(myLastPlasticityTime);
+        out.writeBoolean(myLearning);
+    }
+
+    /**
+     * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+     */
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        myLastPlasticityTime = in.readFloat();
+        myLearning = in.readBoolean();
+    }
+
     /**
      * @see ca.nengo.util.TaskSpawner#getTasks
      */
@@ -27,8 +27,12 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Arrays;
 
+import ca.nengo.model.Checkpointable;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.PlasticNodeTermination;
@@ -56,7 +60,7 @@ import ca.nengo.model.nef.NEFEnsemble;
  * @author Trevor Bekolay
  * @author Jonathan Lai
  */
-public abstract class PlasticEnsembleTermination extends EnsembleTermination {
+public abstract class PlasticEnsembleTermination extends EnsembleTermination implements Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -341,4 +345,31 @@ public abstract class PlasticEnsembleTermination extends EnsembleTermination {
         result.saveTransform();
         return result;
     }
+
+    /**
+     * Saves filtered activities used by the learning rule (weights are saved with the node-level
+     * Terminations). Subclasses with additional state should extend this.
+     *
+     * @see ca.nengo.model.Checkpointable#saveState(java.io.ObjectOutput)
+     */
+    public void saveState(ObjectOutput out) throws IOException {
+        out.writeFloat(myLastTime);
+        out.writeBoolean(myLearning);
+        out.writeObject(myOutput);
+        out.writeObject(myFilteredOutput);
+        out.writeObject(myInput);
+        out.writeObject(myFilteredInput);
+    }
+
+    /**
+     * @see ca.nengo.model.Checkpointable#restoreState(java.io.ObjectInput)
+     */
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        myLastTime = in.readFloat();
+        myLearning = in.readBoolean();
+        myOutput = (float[]) in.readObject();
+        myFilteredOutput = (float[]) in.readObject();
+        myInput = (float[]) in.readObject();
+        myFilteredInput = (float[]) in.readObject();
+    }
 }
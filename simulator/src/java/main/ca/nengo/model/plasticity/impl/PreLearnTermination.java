@@ -27,6 +27,10 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.PlasticNodeTermination;
 import ca.nengo.model.SpikeOutput;
@@ -125,4 +129,18 @@ public class PreLearnTermination extends ModulatedPlasticEnsembleTermination  {
         PreLearnTermination result = (PreLearnTermination) super.clone();
         return result;
     }
+
+    @Override
+    public void saveState(ObjectOutput out) throws IOException {
+        super.saveState(out);
+        out.writeFloat(myLastTime);
+        out.writeObject(myInSpiking);
+    }
+
+    @Override
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.restoreState(in);
+        myLastTime = in.readFloat();
+        myInSpiking = (boolean[]) in.readObject();
+    }
 }
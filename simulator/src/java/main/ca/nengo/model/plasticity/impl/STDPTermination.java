@@ -30,6 +30,10 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.Node;
 import ca.nengo.model.SpikeOutput;
@@ -232,4 +236,32 @@ public class STDPTermination extends PlasticEnsembleTermination {
         result.myPostSpiking = myPostSpiking.clone();
         return result;
     }
+
+    @Override
+    public void saveState(ObjectOutput out) throws IOException {
+        super.saveState(out);
+        out.writeFloat(myLastTime);
+        out.writeObject(myPreSpikeHistory);
+        out.writeObject(myPostSpikeHistory);
+        out.writeObject(myPreSpiking);
+        out.writeObject(myPostSpiking);
+        out.writeObject(myPostTrace1);
+        out.writeObject(myPostTrace2);
+        out.writeObject(myPreTrace1);
+        out.writeObject(myPreTrace2);
+    }
+
+    @Override
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.restoreState(in);
+        myLastTime = in.readFloat();
+        myPreSpikeHistory = (float[][]) in.readObject();
+        myPostSpikeHistory = (float[][]) in.readObject();
+        myPreSpiking = (boolean[]) in.readObject();
+        myPostSpiking = (boolean[]) in.readObject();
+        myPostTrace1 = (float[]) in.readObject();
+        myPostTrace2 = (float[]) in.readObject();
+        myPreTrace1 = (float[]) in.readObject();
+        myPreTrace2 = (float[]) in.readObject();
+    }
 }
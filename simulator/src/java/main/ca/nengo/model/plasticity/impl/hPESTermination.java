@@ -27,6 +27,10 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.model.plasticity.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import ca.nengo.math.impl.IndicatorPDF;
 import ca.nengo.model.Node;
 import ca.nengo.model.PlasticNodeTermination;
@@ -161,4 +165,16 @@ public class hPESTermination extends PESTermination  {
     	throw new CloneNotSupportedException("hPESTermination not cloneable yet.");
     }
 
+
+    @Override
+    public void saveState(ObjectOutput out) throws IOException {
+        super.saveState(out);
+        out.writeObject(myTheta);
+    }
+
+    @Override
+    public void restoreState(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.restoreState(in);
+        myTheta = (float[]) in.readObject();
+    }
 }
\ No newline at end of file
@@ -155,6 +155,22 @@ public interface Simulator extends VisiblyMutable, Cloneable {
 	 * @return List of Probes that have been added to this Simulator.  
 	 */
 	public Probe[] getProbes();
+
+	/**
+	 * Captures the dynamic state of the network (eg membrane potentials, synaptic currents, filter
+	 * states and learned weights), but not its structure or parameters.
+	 *
+	 * @return A checkpoint that can be passed to restore(byte[])
+	 * @throws SimulationException if the state can't be captured
+	 */
+	public byte[] checkpoint() throws SimulationException;
+
+	/**
+	 * @param checkpoint Dynamic state from checkpoint(), of this network or of an identically
+	 * 		structured one (eg a copy that was saved and loaded)
+	 * @throws SimulationException if the checkpoint doesn't match the network
+	 */
+	public void restore(byte[] checkpoint) throws SimulationException;
 	
 	/**
 	 * @param listener A Simulator listener to be added
@@ -0,0 +1,173 @@
+package ca.nengo.sim.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ca.nengo.math.PDFTools;
+import ca.nengo.model.Checkpointable;
+import ca.nengo.model.Ensemble;
+import ca.nengo.model.Network;
+import ca.nengo.model.Node;
+import ca.nengo.model.Origin;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.Termination;
+import ca.nengo.util.CheckpointUtils;
+
+/**
+ * <p>Writes and reads simulation checkpoints (see Simulator.checkpoint()).</p>
+ *
+ * <p>The Nodes of a Network are visited recursively (including the Nodes of Ensembles), and the state
+ * of each Checkpointable Node, Origin and Termination is written, along with the state of the shared
+ * random number generator (see PDFTools). Nodes of Networks, and Origins and Terminations, are
+ * identified by name, so a checkpoint can be restored into a copy of the Network (eg one that was
+ * saved and loaded) in which they are ordered differently. Nodes of Ensembles are identified by index.</p>
+ */
+public class CheckpointIO {
+
+	/**
+	 * First four bytes of a checkpoint
+	 */
+	public static final int MAGIC = 0x4E43484B; //"NCHK"
+
+	/**
+	 * Version of the checkpoint format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * @param network A Network
+	 * @return The dynamic state of the Network
+	 * @throws IOException if some state can't be written
+	 */
+	public static byte[] write(Network network) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeObject(PDFTools.getRandomState());
+		saveNode(network, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param network A Network with the same structure as the one from which the checkpoint was written
+	 * @param checkpoint Dynamic state from write(Network)
+	 * @throws IOException if the checkpoint is invalid or doesn't match the Network
+	 * @throws ClassNotFoundException if the checkpoint includes an object of an unknown class
+	 */
+	public static void read(Network network, byte[] checkpoint) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(checkpoint));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a simulation checkpoint");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported checkpoint version " + version);
+		}
+		Random random = (Random) in.readObject();
+		restoreNode(network, in);
+		PDFTools.setRandomState(random);
+		in.close();
+	}
+
+	private static void saveNode(Node node, ObjectOutput out) throws IOException {
+		//own state first, so that eg an Ensemble can copy cached state back to its Nodes
+		CheckpointUtils.saveState(node, out);
+
+		if (node instanceof Network) {
+			Node[] nodes = ((Network) node).getNodes();
+			out.writeInt(nodes.length);
+			for (Node child : nodes) {
+				out.writeUTF(child.getName());
+				saveNode(child, out);
+			}
+		} else if (node instanceof Ensemble) {
+			Node[] nodes = ((Ensemble) node).getNodes();
+			out.writeInt(nodes.length);
+			for (Node child : nodes) {
+				saveNode(child, out);
+			}
+		} else {
+			out.writeInt(0);
+		}
+
+		List<Origin> origins = new ArrayList<Origin>();
+		for (Origin origin : node.getOrigins()) {
+			if (origin instanceof Checkpointable) {
+				origins.add(origin);
+			}
+		}
+		out.writeInt(origins.size());
+		for (Origin origin : origins) {
+			out.writeUTF(origin.getName());
+			((Checkpointable) origin).saveState(out);
+		}
+
+		List<Termination> terminations = new ArrayList<Termination>();
+		for (Termination termination : node.getTerminations()) {
+			if (termination instanceof Checkpointable) {
+				terminations.add(termination);
+			}
+		}
+		out.writeInt(terminations.size());
+		for (Termination termination : terminations) {
+			out.writeUTF(termination.getName());
+			((Checkpointable) termination).saveState(out);
+		}
+	}
+
+	private static void restoreNode(Node node, ObjectInput in) throws IOException, ClassNotFoundException {
+		CheckpointUtils.restoreState(node, in, node.getName());
+
+		int numNodes = in.readInt();
+		try {
+			if (node instanceof Network) {
+				for (int i = 0; i < numNodes; i++) {
+					restoreNode(((Network) node).getNode(in.readUTF()), in);
+				}
+			} else if (node instanceof Ensemble) {
+				Node[] nodes = ((Ensemble) node).getNodes();
+				if (nodes.length != numNodes) {
+					throw new IOException("Checkpoint has " + numNodes + " nodes for ensemble " + node.getName()
+							+ ", which has " + nodes.length);
+				}
+				for (Node child : nodes) {
+					restoreNode(child, in);
+				}
+			} else if (numNodes != 0) {
+				throw new IOException("Checkpoint has child nodes for " + node.getName());
+			}
+
+			int numOrigins = in.readInt();
+			for (int i = 0; i < numOrigins; i++) {
+				String name = in.readUTF();
+				restorePart(node.getOrigin(name), in, node.getName() + "." + name);
+			}
+
+			int numTerminations = in.readInt();
+			for (int i = 0; i < numTerminations; i++) {
+				String name = in.readUTF();
+				restorePart(node.getTermination(name), in, node.getName() + "." + name);
+			}
+		} catch (StructuralException e) {
+			throw new IOException("Checkpoint doesn't match network: " + e.getMessage(), e);
+		}
+	}
+
+	private static void restorePart(Object part, ObjectInput in, String name) throws IOException, ClassNotFoundException {
+		if (!(part instanceof Checkpointable)) {
+			throw new IOException("Checkpoint has state for " + name + ", which has none");
+		}
+		((Checkpointable) part).restoreState(in);
+	}
+
+}
@@ -28,6 +28,7 @@ a recipient may use your version of this file under either the MPL or the GPL Li
  */
 package ca.nengo.sim.impl;
 
+import java.io.IOException;
 import java.lang.System;
 
 import java.util.ArrayList;
@@ -56,6 +57,7 @@ import ca.nengo.util.ThreadTask;
 import ca.nengo.util.VisiblyMutable;
 import ca.nengo.util.VisiblyMutableUtils;
 import ca.nengo.util.impl.NodeThreadPool;
+import ca.nengo.util.impl.ProbeCollector;
 import ca.nengo.util.impl.ProbeImpl;
 
 /**
@@ -79,6 +81,7 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
     private boolean myDisplayProgress;
     private transient List<VisiblyMutable.Listener> myChangeListeners;
     private transient NodeThreadPool myNodeThreadPool;
+    private transient ProbeCollector myProbeCollector;
 
     /**
      * Collection of Simulator
@@ -152,6 +155,10 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
   			((SocketUDPNode) it.next()).initialize();
     	}
     	
+        if(ProbeCollector.isAsynchronous()){
+            myProbeCollector = new ProbeCollector(myProbes, ProbeCollector.getMaxLag());
+        }
+
         if(NodeThreadPool.isMultithreading()){
             makeNodeThreadPool(interactive);
         }
@@ -229,6 +236,10 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
             time += thisStepSize;
         }
 
+        if (myProbeCollector != null) {
+            myProbeCollector.flush(); //so that probe data are complete when listeners are notified
+        }
+
         fireSimulatorEvent(new SimulatorEvent(1f, SimulatorEvent.Type.FINISHED));
 
         if(topLevel)
@@ -244,6 +255,10 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
     	
         if(myNodeThreadPool != null){
             myNodeThreadPool.step(startTime, endTime);
+
+            if (myProbeCollector != null) {
+                myProbeCollector.collect(endTime);
+            }
         }else{
             for (Projection myProjection : myProjections) {
                 InstantaneousOutput values = myProjection.getOrigin().getValues();
@@ -271,9 +286,13 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
                 myTask.run(startTime, endTime);
             }
             
-            Iterator<Probe> it = myProbes.iterator();
-            while (it.hasNext()) {
-                it.next().collect(endTime);
+            if (myProbeCollector != null) {
+                myProbeCollector.collect(endTime);
+            } else {
+                Iterator<Probe> it = myProbes.iterator();
+                while (it.hasNext()) {
+                    it.next().collect(endTime);
+                }
             }
         }
     }
@@ -290,6 +309,12 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
             myNodeThreadPool.kill();
             myNodeThreadPool = null;
         }
+
+        if (myProbeCollector != null) {
+            ProbeCollector collector = myProbeCollector;
+            myProbeCollector = null;
+            collector.close();
+        }
     }
 
     /**
@@ -424,9 +449,43 @@ public class LocalSimulator implements Simulator, java.io.Serializable {
     public Probe[] getProbes() {
         return myProbes.toArray(new Probe[0]);
     }
+
+    /**
+     * @see ca.nengo.sim.Simulator#checkpoint()
+     */
+    public synchronized byte[] checkpoint() throws SimulationException {
+        checkInitialized();
+        try {
+            return CheckpointIO.write(myNetwork);
+        } catch (IOException e) {
+            throw new SimulationException("Can't write checkpoint", e);
+        }
+    }
+
+    /**
+     * @see ca.nengo.sim.Simulator#restore(byte[])
+     */
+    public synchronized void restore(byte[] checkpoint) throws SimulationException {
+        checkInitialized();
+        try {
+            CheckpointIO.read(myNetwork, checkpoint);
+        } catch (IOException e) {
+            throw new SimulationException("Can't restore checkpoint", e);
+        } catch (ClassNotFoundException e) {
+            throw new SimulationException("Can't restore checkpoint", e);
+        }
+    }
+
+    private void checkInitialized() throws SimulationException {
+        if (myNetwork == null) {
+            throw new SimulationException("Simulator has not been initialized with a network");
+        }
+    }
     
     public void makeNodeThreadPool(boolean interactive) {
-        myNodeThreadPool = new NodeThreadPool(myNetwork, myProbeTasks, interactive);
+        //with a ProbeCollector, probes are collected after each step rather than by the pool's threads
+        List<ThreadTask> probeTasks = (myProbeCollector != null) ? new ArrayList<ThreadTask>(0) : myProbeTasks;
+        myNodeThreadPool = new NodeThreadPool(myNetwork, probeTasks, interactive);
     }
     
     public NodeThreadPool getNodeThreadPool() {
@@ -0,0 +1,393 @@
+/*
+The contents of this file are subject to the Mozilla Public License Version 1.1
+(the "License"); you may not use this file except in compliance with the License.
+You may obtain a copy of the License at http://www.mozilla.org/MPL/
+
+Software distributed under the License is distributed on an "AS IS" basis, WITHOUT
+WARRANTY OF ANY KIND, either express or implied. See the License for the specific
+language governing rights and limitations under the License.
+
+The Original Code is "StreamingProbeWriter.java". Description:
+"Streams samples collected by probes to a file"
+
+The Initial Developer of the Original Code is Bryan Tripp & Centre for Theoretical Neuroscience, University of Waterloo. Copyright (C) 2006-2008. All Rights Reserved.
+
+Alternatively, the contents of this file may be used under the terms of the GNU
+Public License license (the GPL License), in which case the provisions of GPL
+License are applicable  instead of those above. If you wish to allow use of your
+version of this file only under the terms of the GPL License and not to allow
+others to use your version of this file under the MPL, indicate your decision
+by deleting the provisions above and replace  them with the notice and other
+provisions required by the GPL License.  If you do not delete the provisions above,
+a recipient may use your version of this file under either the MPL or the GPL License.
+*/
+
+package ca.nengo.sim.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ca.nengo.model.Node;
+import ca.nengo.sim.SimulatorEvent;
+import ca.nengo.sim.SimulatorListener;
+import ca.nengo.util.Probe;
+
+/**
+ * <p>Writes samples collected by any number of probes to one file, as they are collected.</p>
+ *
+ * <p>Unlike WriteToDiskSimulatorListener, this class doesn't read the probes' history. It listens
+ * for individual samples (see Probe.Listener), copies them into batches, and hands full batches to
+ * a background thread that writes them. The queue of batches is bounded, so if the disk can't keep
+ * up, the simulation waits rather than using more memory.</p>
+ *
+ * <p>In CSV format each sample is a line: probe name, time, values. In binary format (big-endian, as
+ * written by DataOutputStream) the file starts with the int 0x4E505257, a version int (1), the number
+ * of probes and their names (UTF), followed by records of: probe index (int), time (float), dimension
+ * (int) and values (floats).</p>
+ *
+ * <p>As a SimulatorListener, the file is opened (and overwritten) when a simulation starts, and closed
+ * when it finishes. open() and close() can also be called directly.</p>
+ *
+ * Example usage (Python syntax):
+ *   writer = StreamingProbeWriter(File("output/probes.csv"), StreamingProbeWriter.Format.CSV)
+ *   writer.addProbe(network.simulator.addProbe("error", "X", True))
+ *   network.simulator.addSimulatorListener(writer)
+ */
+public class StreamingProbeWriter implements SimulatorListener, Probe.Listener {
+
+	/**
+	 * File formats
+	 */
+	public enum Format {
+		CSV, BINARY
+	}
+
+	public static final int BINARY_MAGIC = 0x4E505257;
+	public static final int BINARY_VERSION = 1;
+
+	private static final int ourDefaultBatchSize = 4096;
+	private static final int ourDefaultQueueCapacity = 16;
+
+	private final File myFile;
+	private final Format myFormat;
+	private final int myBatchSize;
+	private final int myQueueCapacity;
+	private final List<Probe> myProbes;
+	private final List<String> myNames;
+	private final Map<Probe, Integer> myIndices; //of probes in myProbes
+
+	private BlockingQueue<Batch> myQueue;
+	private Batch myBatch;
+	private Thread myWriterThread;
+	private volatile IOException myError;
+
+	/**
+	 * @param file The file to write to. If it already exists, it will be overwritten.
+	 * @param format Format of the file
+	 */
+	public StreamingProbeWriter(File file, Format format) {
+		this(file, format, ourDefaultBatchSize, ourDefaultQueueCapacity);
+	}
+
+	/**
+	 * @param file The file to write to. If it already exists, it will be overwritten.
+	 * @param format Format of the file
+	 * @param batchSize Number of samples handed to the writer thread at once
+	 * @param queueCapacity Number of batches that may wait to be written before collecting threads
+	 * 		have to wait
+	 */
+	public StreamingProbeWriter(File file, Format format, int batchSize, int queueCapacity) {
+		if (batchSize < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("Batch size and queue capacity must be positive");
+		}
+		myFile = file;
+		myFormat = format;
+		myBatchSize = batchSize;
+		myQueueCapacity = queueCapacity;
+		myProbes = new ArrayList<Probe>();
+		myNames = new ArrayList<String>();
+		myIndices = new IdentityHashMap<Probe, Integer>();
+	}
+
+	/**
+	 * @param probe A probe whose samples are to be written. Must be added before the file is opened.
+	 */
+	public synchronized void addProbe(Probe probe) {
+		if (myQueue != null) {
+			throw new IllegalStateException("Probes can't be added while the file is open");
+		}
+		if (myIndices.containsKey(probe)) {
+			return;
+		}
+		myIndices.put(probe, Integer.valueOf(myProbes.size()));
+		myProbes.add(probe);
+		myNames.add(getName(probe));
+		probe.addListener(this);
+	}
+
+	/**
+	 * @param probe A probe whose samples are no longer to be written
+	 */
+	public synchronized void removeProbe(Probe probe) {
+		if (myQueue != null) {
+			throw new IllegalStateException("Probes can't be removed while the file is open");
+		}
+		Integer index = myIndices.remove(probe);
+		if (index != null) {
+			myProbes.remove(index.intValue());
+			myNames.remove(index.intValue());
+			for (int i = index.intValue(); i < myProbes.size(); i++) {
+				myIndices.put(myProbes.get(i), Integer.valueOf(i));
+			}
+			probe.removeListener(this);
+		}
+	}
+
+	/**
+	 * @return The probes whose samples are written
+	 */
+	public synchronized Probe[] getProbes() {
+		return myProbes.toArray(new Probe[0]);
+	}
+
+	private static String getName(Probe probe) {
+		String name = (probe.getTarget() instanceof Node) ? ((Node) probe.getTarget()).getName() + ":" : "";
+		if (probe.getEnsembleName() != null) {
+			name = probe.getEnsembleName() + ":" + name;
+		}
+		return name + probe.getStateName();
+	}
+
+	/**
+	 * Opens the file (overwriting it) and starts the writer thread. Does nothing if already open.
+	 *
+	 * @throws IOException If the file can't be opened
+	 */
+	public synchronized void open() throws IOException {
+		if (myQueue != null) {
+			return;
+		}
+
+		final OutputStream stream = new BufferedOutputStream(new FileOutputStream(myFile), 1 << 16);
+		final String[] names = myNames.toArray(new String[0]);
+		final BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(myQueueCapacity);
+		myError = null;
+
+		myWriterThread = new Thread("StreamingProbeWriter " + myFile.getName()) {
+			public void run() {
+				try {
+					writeAll(queue, stream, names);
+				} catch (IOException e) {
+					myError = e;
+					System.err.println("IO Exception in StreamingProbeWriter: " + e);
+					drain(queue);
+				} catch (InterruptedException e) {
+					myError = new IOException("Writer thread was interrupted");
+				} finally {
+					try {
+						stream.close();
+					} catch (IOException e) {
+						if (myError == null) {
+							myError = e;
+						}
+					}
+				}
+			}
+		};
+		myWriterThread.setDaemon(true);
+		myWriterThread.start();
+
+		myQueue = queue;
+		myBatch = new Batch(myBatchSize);
+	}
+
+	/**
+	 * Writes any samples not yet written and closes the file. Does nothing if not open.
+	 *
+	 * @throws IOException If there was an error writing the file
+	 */
+	public synchronized void close() throws IOException {
+		if (myQueue == null) {
+			return;
+		}
+
+		try {
+			if (myBatch.size() > 0) {
+				myQueue.put(myBatch);
+			}
+			myQueue.put(Batch.END);
+			myWriterThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			myWriterThread.interrupt();
+			throw new IOException("Interrupted while closing " + myFile);
+		} finally {
+			myQueue = null;
+			myBatch = null;
+			myWriterThread = null;
+		}
+
+		if (myError != null) {
+			throw myError;
+		}
+	}
+
+	/**
+	 * Hands samples collected so far to the writer thread (they will be written soon, but may not be
+	 * on disk when this method returns).
+	 */
+	public synchronized void flush() {
+		if (myQueue != null && myBatch.size() > 0) {
+			enqueue();
+		}
+	}
+
+	/**
+	 * @see ca.nengo.util.Probe.Listener#sampleCollected(ca.nengo.util.Probe, float, float[])
+	 */
+	public synchronized void sampleCollected(Probe probe, float time, float[] values) {
+		if (myQueue == null) {
+			return;
+		}
+
+		Integer index = myIndices.get(probe);
+		if (index != null) {
+			myBatch.add(index.intValue(), time, values);
+			if (myBatch.size() >= myBatchSize) {
+				enqueue();
+			}
+		}
+	}
+
+	//a batch can't be kept after an interrupt (it has a fixed capacity), so its loss is reported on close()
+	private void enqueue() {
+		try {
+			myQueue.put(myBatch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (myError == null) {
+				myError = new IOException("Interrupted while queueing samples; " + myBatch.size()
+						+ " samples were not written to " + myFile);
+			}
+		}
+		myBatch = new Batch(myBatchSize);
+	}
+
+	/**
+	 * @see ca.nengo.sim.SimulatorListener#processEvent(ca.nengo.sim.SimulatorEvent)
+	 */
+	public void processEvent(SimulatorEvent event) {
+		try {
+			if (event.getType() == SimulatorEvent.Type.STARTED) {
+				close(); //in case the last run didn't finish
+				open();
+			} else if (event.getType() == SimulatorEvent.Type.FINISHED) {
+				close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("IO Exception in StreamingProbeWriter: " + e);
+		}
+	}
+
+	private void writeAll(BlockingQueue<Batch> queue, OutputStream stream, String[] names) throws IOException, InterruptedException {
+		DataOutputStream data = new DataOutputStream(stream);
+		StringBuilder line = new StringBuilder();
+
+		if (myFormat == Format.BINARY) {
+			data.writeInt(BINARY_MAGIC);
+			data.writeInt(BINARY_VERSION);
+			data.writeInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				data.writeUTF(names[i]);
+			}
+		}
+
+		Batch batch;
+		while ((batch = queue.take()) != Batch.END) {
+			int offset = 0;
+			for (int r = 0; r < batch.size(); r++) {
+				int dimension = batch.myDimensions[r];
+				if (myFormat == Format.BINARY) {
+					data.writeInt(batch.myProbes[r]);
+					data.writeFloat(batch.myData[offset]);
+					data.writeInt(dimension);
+					for (int i = 1; i <= dimension; i++) {
+						data.writeFloat(batch.myData[offset + i]);
+					}
+				} else {
+					line.setLength(0);
+					line.append(names[batch.myProbes[r]]).append(',').append(batch.myData[offset]);
+					for (int i = 1; i <= dimension; i++) {
+						line.append(',').append(batch.myData[offset + i]);
+					}
+					line.append('\n');
+					for (int i = 0; i < line.length(); i++) {
+						data.write(line.charAt(i)); //names are assumed to be ASCII
+					}
+				}
+				offset += dimension + 1;
+			}
+		}
+		data.flush();
+	}
+
+	//after an error, keeps taking batches so that collecting threads don't wait forever
+	private static void drain(BlockingQueue<Batch> queue) {
+		try {
+			while (queue.take() != Batch.END) {
+			}
+		} catch (InterruptedException e) {
+		}
+	}
+
+	/**
+	 * Samples packed into primitive arrays: for each sample, a probe index and dimension, and in the
+	 * data array, the time followed by the values.
+	 */
+	private static class Batch {
+
+		static final Batch END = new Batch(0);
+
+		private int[] myProbes;
+		private int[] myDimensions;
+		private float[] myData;
+		private int mySize;
+		private int myDataSize;
+
+		public Batch(int capacity) {
+			myProbes = new int[capacity];
+			myDimensions = new int[capacity];
+			myData = new float[capacity * 2];
+		}
+
+		public int size() {
+			return mySize;
+		}
+
+		public void add(int probe, float time, float[] values) {
+			if (myDataSize + values.length + 1 > myData.length) {
+				float[] data = new float[Math.max(2 * myData.length, myDataSize + values.length + 1)];
+				System.arraycopy(myData, 0, data, 0, myDataSize);
+				myData = data;
+			}
+			myProbes[mySize] = probe;
+			myDimensions[mySize] = values.length;
+			myData[myDataSize++] = time;
+			System.arraycopy(values, 0, myData, myDataSize, values.length);
+			myDataSize += values.length;
+			mySize++;
+		}
+	}
+
+}
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.Calendar;
 
 import ca.nengo.util.Probe;
+import ca.nengo.util.TimeSeries;
 import ca.nengo.sim.SimulatorEvent;
 import ca.nengo.sim.SimulatorListener;
 
@@ -45,7 +46,8 @@ import ca.nengo.sim.SimulatorListener;
  * a long period of time, and it is likely that the amount of data being stored
  * will cause issues with the proper running of Nengo. By attaching a
  * WriteToDiskSimulatorListener to a simulator instance, progress is saved to disk
- * after each recordInterval.
+ * after each recordInterval. To write many probes, or samples at every step, to one
+ * file with less overhead, see StreamingProbeWriter.
  * 
  * Example usage (Python syntax):
  *   probe_error = network.getSimulator().addProbe("error",error.X,True)
@@ -91,10 +93,12 @@ public class WriteToDiskSimulatorListener implements SimulatorListener {
 	        	myStartTime = Calendar.getInstance().getTimeInMillis();
 	        	myWriter = new BufferedWriter(new FileWriter(myFile));
 	        } else if (event.getType() == SimulatorEvent.Type.STEP_TAKEN) {
-	            float[] times = myTargetProbe.getData().getTimes();
+	            //only samples since the last written interval, rather than the whole history
+	            TimeSeries recent = myTargetProbe.getData(myLastInterval, Float.POSITIVE_INFINITY);
+	            float[] times = recent.getTimes();
 	            
-	            if (times[times.length - 1] >= myLastInterval) {
-	                float[][] data = myTargetProbe.getData().getValues();
+	            if (times.length > 0 && times[times.length - 1] >= myLastInterval) {
+	                float[][] data = recent.getValues();
 	
 	                myWriter.write(Float.toString(times[times.length-1]));
 	                for (int i=0; i < data[0].length; i++) {
@@ -0,0 +1,46 @@
+package ca.nengo.util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import ca.nengo.model.Checkpointable;
+
+/**
+ * Utility methods for saving and restoring the state of Checkpointable parts of model objects.
+ */
+public class CheckpointUtils {
+
+	/**
+	 * Writes the state of an object if it is Checkpointable, preceded by a flag, so that objects with
+	 * optional Checkpointable parts (eg Noise) can save them.
+	 *
+	 * @param o An object, which may be null or not Checkpointable
+	 * @param out Stream to which the state is to be written
+	 * @throws IOException if the state can't be written
+	 */
+	public static void saveState(Object o, ObjectOutput out) throws IOException {
+		out.writeBoolean(o instanceof Checkpointable);
+		if (o instanceof Checkpointable) {
+			((Checkpointable) o).saveState(out);
+		}
+	}
+
+	/**
+	 * @param o An object, the state of which was written by saveState(Object, ObjectOutput)
+	 * @param in Stream from which the state is to be read
+	 * @param name Name of the object, for error messages
+	 * @throws IOException if the state can't be read, or the object doesn't match the checkpoint
+	 * @throws ClassNotFoundException if the state includes an object of an unknown class
+	 */
+	public static void restoreState(Object o, ObjectInput in, String name) throws IOException, ClassNotFoundException {
+		boolean hasState = (o instanceof Checkpointable);
+		if (in.readBoolean() != hasState) {
+			throw new IOException("Checkpoint doesn't match network at " + name);
+		}
+		if (hasState) {
+			((Checkpointable) o).restoreState(in);
+		}
+	}
+
+}
@@ -30,13 +30,39 @@ package ca.nengo.util;
 import org.apache.log4j.Logger;
 
 /**
- * Internal tools for checking memory usage. 
+ * Internal tools for checking and managing memory usage. 
  *  
  * @author Bryan Tripp
  */
 public class Memory {
 	
 	private static Logger ourLogger = Logger.getLogger(Memory.class);
+	
+	private static volatile boolean ourReuseBuffers = false;
+
+	/**
+	 * <p>Turns buffer reuse on or off. When it is on, classes in the simulation step loop
+	 * (eg DecodedTermination, DecodedOrigin, SpikingNeuron) write their output into preallocated
+	 * buffers rather than allocating new arrays and output objects at each step, so that a
+	 * steady-state step creates little or no garbage.</p>
+	 *
+	 * <p>Model semantics are unchanged, but output objects and arrays obtained from these classes
+	 * (eg via Origin.getValues()) are only valid until the next step or two. Probes copy collected
+	 * data in this mode. Other code that keeps references to outputs across steps should
+	 * copy them as well.</p>
+	 *
+	 * @param reuse True if step buffers should be reused (default false)
+	 */
+	public static void setReuseBuffers(boolean reuse) {
+		ourReuseBuffers = reuse;
+	}
+
+	/**
+	 * @return True if step buffers are reused (see setReuseBuffers(boolean))
+	 */
+	public static boolean getReuseBuffers() {
+		return ourReuseBuffers;
+	}
 
 	/**
 	 * Prints a message to the console regarding current memory usage. 
@@ -91,6 +91,13 @@ public interface Probe {
 	 */
 	public TimeSeries getData();
 
+	/**
+	 * @param startTime Start of a time window
+	 * @param endTime End of the time window
+	 * @return Collected data since last reset() with times in [startTime, endTime)
+	 */
+	public TimeSeries getData(float startTime, float endTime);
+
 	/**
 	 * @return The object about which state history is to be collected
 	 */
@@ -116,4 +123,44 @@ public interface Probe {
 	 * @return The probe task that is runs this probe. 
 	 */
 	public ProbeTask getProbeTask();
+
+	/**
+	 * @param listener Listener to be notified of each sample as it is collected
+	 */
+	public void addListener(Listener listener);
+
+	/**
+	 * @param listener Listener to remove
+	 */
+	public void removeListener(Listener listener);
+
+	/**
+	 * Sets a pipeline of filters through which collected samples pass before they are stored (and
+	 * before listeners are notified), eg to smooth, decimate or summarize the data as it is collected
+	 * rather than afterwards. Resets the filters.
+	 *
+	 * @param filters Filters to apply, in order (none to store raw samples)
+	 */
+	public void setFilters(SampleFilter... filters);
+
+	/**
+	 * @return Filters applied to collected samples, in order
+	 */
+	public SampleFilter[] getFilters();
+
+	/**
+	 * A listener for samples collected by a Probe.
+	 */
+	public static interface Listener {
+
+		/**
+		 * Called by the thread that collects the sample, which may differ between probes. The arrays
+		 * may be reused by the target after this call returns, so they must be copied if kept.
+		 *
+		 * @param probe The probe that collected the sample
+		 * @param time Time of the sample
+		 * @param values Values of the sample
+		 */
+		public void sampleCollected(Probe probe, float time, float[] values);
+	}
 }
@@ -0,0 +1,40 @@
+package ca.nengo.util;
+
+import java.io.Serializable;
+
+import ca.nengo.model.Resettable;
+import ca.nengo.model.Units;
+
+/**
+ * A stage in a pipeline that processes samples as a Probe collects them (eg filtering or decimating
+ * them), so that only the processed signal needs to be stored. A stage may emit zero, one or more
+ * samples for each sample it receives. Stages have state, so each Probe needs its own instances.
+ */
+public interface SampleFilter extends Resettable, Serializable {
+
+	/**
+	 * @param time Time of a sample
+	 * @param values Values of the sample (must not be modified or kept)
+	 * @param sink Receives the samples emitted by this stage
+	 */
+	public void process(float time, float[] values, Sink sink);
+
+	/**
+	 * @param inputUnits Units of each dimension of the samples received by this stage
+	 * @return Units of each dimension of the samples emitted by this stage
+	 */
+	public Units[] getOutputUnits(Units[] inputUnits);
+
+	/**
+	 * Receives samples emitted by a SampleFilter.
+	 */
+	public static interface Sink {
+
+		/**
+		 * @param time Time of the sample
+		 * @param values Values of the sample (may be reused by the emitting stage after this call)
+		 */
+		public void accept(float time, float[] values);
+	}
+
+}
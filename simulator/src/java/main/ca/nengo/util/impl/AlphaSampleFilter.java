@@ -0,0 +1,81 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SampleFilter;
+
+/**
+ * An alpha-function filter (two identical first-order low-pass filters in series) applied to each
+ * dimension of a Probe's samples. Like ExponentialSampleFilter, it is updated exactly for the time
+ * between samples, and its state starts at zero.
+ */
+public class AlphaSampleFilter implements SampleFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	private final float myTau;
+	private float[] myFirst;
+	private float[] mySecond;
+	private float[] myOutput;
+	private float myLastTime;
+
+	/**
+	 * @param tau Time constant of the filter (s)
+	 */
+	public AlphaSampleFilter(float tau) {
+		if (tau <= 0) {
+			throw new IllegalArgumentException("Time constant must be positive");
+		}
+		myTau = tau;
+	}
+
+	/**
+	 * @return Time constant of the filter (s)
+	 */
+	public float getTau() {
+		return myTau;
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#process(float, float[], ca.nengo.util.SampleFilter.Sink)
+	 */
+	public void process(float time, float[] values, Sink sink) {
+		if (myFirst == null || myFirst.length != values.length) {
+			myFirst = new float[values.length];
+			mySecond = new float[values.length];
+			myOutput = new float[values.length];
+			myLastTime = time;
+		}
+
+		//exact update of the cascade for a step input over dt: the second stage's response
+		//to its own input, plus its response to the first stage's initial state
+		float dt = time - myLastTime;
+		float decay = (float) Math.exp(-dt / myTau);
+		float coupling = dt / myTau * decay;
+		for (int i = 0; i < values.length; i++) {
+			float first = myFirst[i];
+			myFirst[i] = decay * first + (1 - decay) * values[i];
+			mySecond[i] = decay * mySecond[i] + coupling * first + (1 - decay - coupling) * values[i];
+		}
+		myLastTime = time;
+
+		System.arraycopy(mySecond, 0, myOutput, 0, mySecond.length);
+		sink.accept(time, myOutput);
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#getOutputUnits(ca.nengo.model.Units[])
+	 */
+	public Units[] getOutputUnits(Units[] inputUnits) {
+		return inputUnits;
+	}
+
+	/**
+	 * @see ca.nengo.model.Resettable#reset(boolean)
+	 */
+	public void reset(boolean randomize) {
+		myFirst = null;
+		mySecond = null;
+		myOutput = null;
+	}
+
+}
@@ -0,0 +1,64 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SampleFilter;
+
+/**
+ * Passes on one sample per period and drops the rest. To avoid aliasing, this is usually preceded
+ * by a low-pass filter (eg ExponentialSampleFilter).
+ */
+public class DecimatingSampleFilter implements SampleFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	private final float myPeriod;
+	private float myNextTime;
+	private boolean myStarted;
+
+	/**
+	 * @param period Minimum time between samples that are passed on (s)
+	 */
+	public DecimatingSampleFilter(float period) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive");
+		}
+		myPeriod = period;
+	}
+
+	/**
+	 * @return Minimum time between samples that are passed on (s)
+	 */
+	public float getPeriod() {
+		return myPeriod;
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#process(float, float[], ca.nengo.util.SampleFilter.Sink)
+	 */
+	public void process(float time, float[] values, Sink sink) {
+		//a small tolerance, so that rounding in the sample times doesn't skip a sample
+		if (!myStarted || time >= myNextTime - myPeriod * 1e-3f) {
+			sink.accept(time, values);
+			myNextTime = myStarted ? myNextTime + myPeriod : time + myPeriod;
+			if (myNextTime <= time) {
+				myNextTime = time + myPeriod; //after a gap in the samples
+			}
+			myStarted = true;
+		}
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#getOutputUnits(ca.nengo.model.Units[])
+	 */
+	public Units[] getOutputUnits(Units[] inputUnits) {
+		return inputUnits;
+	}
+
+	/**
+	 * @see ca.nengo.model.Resettable#reset(boolean)
+	 */
+	public void reset(boolean randomize) {
+		myStarted = false;
+	}
+
+}
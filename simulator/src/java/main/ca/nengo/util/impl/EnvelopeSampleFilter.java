@@ -0,0 +1,105 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SampleFilter;
+
+/**
+ * Summarizes the samples in each period by their minimum, mean and maximum. At the end of each period
+ * it emits one sample with three times as many dimensions as its input: the minimum of each
+ * dimension, then the mean of each dimension, then the maximum of each dimension.
+ */
+public class EnvelopeSampleFilter implements SampleFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	private final float myPeriod;
+	private float myEndTime;
+	private float myLastTime = Float.NaN; //time of previous sample (NaN if none)
+	private int myCount;
+	private float[] myMin;
+	private float[] myMax;
+	private double[] mySum;
+	private float[] myOutput;
+
+	/**
+	 * @param period Length of time summarized by each output sample (s)
+	 */
+	public EnvelopeSampleFilter(float period) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive");
+		}
+		myPeriod = period;
+	}
+
+	/**
+	 * @return Length of time summarized by each output sample (s)
+	 */
+	public float getPeriod() {
+		return myPeriod;
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#process(float, float[], ca.nengo.util.SampleFilter.Sink)
+	 */
+	public void process(float time, float[] values, Sink sink) {
+		int dim = values.length;
+		if (myMin == null || myMin.length != dim) {
+			myMin = new float[dim];
+			myMax = new float[dim];
+			mySum = new double[dim];
+			myOutput = new float[3 * dim];
+			myCount = 0;
+		}
+
+		if (myCount == 0) {
+			for (int i = 0; i < dim; i++) {
+				myMin[i] = values[i];
+				myMax[i] = values[i];
+				mySum[i] = 0;
+			}
+			myEndTime = time + myPeriod;
+		}
+
+		for (int i = 0; i < dim; i++) {
+			myMin[i] = Math.min(myMin[i], values[i]);
+			myMax[i] = Math.max(myMax[i], values[i]);
+			mySum[i] += values[i];
+		}
+		float interval = Float.isNaN(myLastTime) ? 0 : time - myLastTime;
+		myCount++;
+		myLastTime = time;
+
+		//the period ends if the next sample (assuming regular sampling) would be in the next period;
+		//the tolerance keeps rounding in the sample times from moving a sample between periods
+		if (time + interval >= myEndTime - myPeriod * 1e-3f) {
+			for (int i = 0; i < dim; i++) {
+				myOutput[i] = myMin[i];
+				myOutput[dim + i] = (float) (mySum[i] / myCount);
+				myOutput[2 * dim + i] = myMax[i];
+			}
+			myCount = 0;
+			sink.accept(time, myOutput);
+		}
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#getOutputUnits(ca.nengo.model.Units[])
+	 */
+	public Units[] getOutputUnits(Units[] inputUnits) {
+		Units[] result = new Units[3 * inputUnits.length];
+		for (int i = 0; i < 3; i++) {
+			System.arraycopy(inputUnits, 0, result, i * inputUnits.length, inputUnits.length);
+		}
+		return result;
+	}
+
+	/**
+	 * @see ca.nengo.model.Resettable#reset(boolean)
+	 */
+	public void reset(boolean randomize) {
+		myMin = null;
+		myCount = 0;
+		myLastTime = Float.NaN;
+	}
+
+}
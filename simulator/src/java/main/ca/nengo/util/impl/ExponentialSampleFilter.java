@@ -0,0 +1,72 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SampleFilter;
+
+/**
+ * A first-order low-pass filter (like a post-synaptic current) applied to each dimension of a Probe's
+ * samples. The filter is updated exactly for the time between samples, so it is accurate at any
+ * sampling rate. The state starts at zero, so the first sample emitted is zero.
+ */
+public class ExponentialSampleFilter implements SampleFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	private final float myTau;
+	private float[] myState;
+	private float[] myOutput;
+	private float myLastTime;
+
+	/**
+	 * @param tau Time constant of the filter (s)
+	 */
+	public ExponentialSampleFilter(float tau) {
+		if (tau <= 0) {
+			throw new IllegalArgumentException("Time constant must be positive");
+		}
+		myTau = tau;
+	}
+
+	/**
+	 * @return Time constant of the filter (s)
+	 */
+	public float getTau() {
+		return myTau;
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#process(float, float[], ca.nengo.util.SampleFilter.Sink)
+	 */
+	public void process(float time, float[] values, Sink sink) {
+		if (myState == null || myState.length != values.length) {
+			myState = new float[values.length];
+			myOutput = new float[values.length];
+			myLastTime = time;
+		}
+
+		float decay = (float) Math.exp(-(time - myLastTime) / myTau);
+		for (int i = 0; i < values.length; i++) {
+			myState[i] = decay * myState[i] + (1 - decay) * values[i];
+		}
+		myLastTime = time;
+
+		System.arraycopy(myState, 0, myOutput, 0, myState.length);
+		sink.accept(time, myOutput);
+	}
+
+	/**
+	 * @see ca.nengo.util.SampleFilter#getOutputUnits(ca.nengo.model.Units[])
+	 */
+	public Units[] getOutputUnits(Units[] inputUnits) {
+		return inputUnits;
+	}
+
+	/**
+	 * @see ca.nengo.model.Resettable#reset(boolean)
+	 */
+	public void reset(boolean randomize) {
+		myState = null;
+		myOutput = null;
+	}
+
+}
@@ -0,0 +1,190 @@
+package ca.nengo.util.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.nengo.model.Ensemble;
+import ca.nengo.model.Node;
+import ca.nengo.model.Termination;
+
+/**
+ * <p>Assigns nodes to the java threads of a NodeThreadPool by cost, and lets threads that run out of
+ * work take nodes from other threads' queues during a step.</p>
+ *
+ * <p>Costs are first estimated from the number of neurons and termination dimensions of each node.
+ * While the simulation runs, the time taken by each node is measured, and nodes are periodically
+ * reassigned using the measured times. Each thread's queue is ordered from most to least costly, so
+ * that threads stealing work near the end of a step take small nodes.</p>
+ *
+ * <p>The queue of each thread has an atomic head, from which the owner and any stealing threads claim
+ * nodes, so each node is run exactly once per step.</p>
+ */
+public class NodeLoadBalancer {
+
+	/**
+	 * Number of steps between reassignments of nodes using measured times
+	 */
+	public static final int REBALANCE_INTERVAL = 200;
+
+	private static final float ourSmoothing = 0.1f;
+
+	private final Node[] myNodes;
+	private final int myNumThreads;
+	private final float[] myCosts;
+	private final float[] myTimes; //smoothed measured run times (ns), written by whichever thread runs a node
+	private int[][] myQueues;
+	private final AtomicInteger[] myHeads;
+	private int myStepsSinceRebalance;
+
+	/**
+	 * @param nodes Nodes to be run
+	 * @param numThreads Number of threads that run them
+	 */
+	public NodeLoadBalancer(Node[] nodes, int numThreads) {
+		myNodes = nodes;
+		myNumThreads = numThreads;
+
+		myCosts = new float[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			myCosts[i] = estimateCost(nodes[i]);
+		}
+		myTimes = new float[nodes.length];
+
+		myHeads = new AtomicInteger[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			myHeads[i] = new AtomicInteger(0);
+		}
+
+		myQueues = partition(myCosts, numThreads);
+		myStepsSinceRebalance = 0;
+	}
+
+	/**
+	 * @param node A node
+	 * @return Estimated relative cost of running the node for one step. Ensembles cost in proportion
+	 * 		to their number of neurons times their total input dimension (for encoding) plus one (for
+	 * 		the neuron update). Other nodes cost in proportion to their input dimension.
+	 */
+	public static float estimateCost(Node node) {
+		int dimensions = 0;
+		Termination[] terminations = node.getTerminations();
+		for (int i = 0; terminations != null && i < terminations.length; i++) {
+			dimensions += terminations[i].getDimensions();
+		}
+
+		int neurons = 0;
+		if (node instanceof Ensemble) {
+			Node[] children = ((Ensemble) node).getNodes();
+			neurons = children == null ? 0 : children.length;
+		}
+
+		return 1f + (float) Math.max(neurons, 1) * (1 + dimensions);
+	}
+
+	/**
+	 * Assigns items to queues, most costly first, each to the queue with the lowest total cost so far.
+	 *
+	 * @param costs Cost of each item
+	 * @param numQueues Number of queues
+	 * @return Indices of the items in each queue, from most to least costly
+	 */
+	public static int[][] partition(final float[] costs, int numQueues) {
+		Integer[] order = new Integer[costs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Float.compare(costs[b.intValue()], costs[a.intValue()]);
+			}
+		});
+
+		double[] loads = new double[numQueues];
+		int[] counts = new int[numQueues];
+		int[] assignment = new int[costs.length];
+		for (int i = 0; i < order.length; i++) {
+			int lightest = 0;
+			for (int q = 1; q < numQueues; q++) {
+				if (loads[q] < loads[lightest]) {
+					lightest = q;
+				}
+			}
+			assignment[i] = lightest;
+			loads[lightest] += costs[order[i].intValue()];
+			counts[lightest]++;
+		}
+
+		int[][] result = new int[numQueues][];
+		for (int q = 0; q < numQueues; q++) {
+			result[q] = new int[counts[q]];
+			counts[q] = 0;
+		}
+		for (int i = 0; i < order.length; i++) {
+			int q = assignment[i];
+			result[q][counts[q]++] = order[i].intValue();
+		}
+		return result;
+	}
+
+	/**
+	 * @param thread Index of a thread
+	 * @return Indices of the nodes currently assigned to the thread
+	 */
+	public int[] getQueue(int thread) {
+		return myQueues[thread];
+	}
+
+	/**
+	 * Prepares the queues for a step, reassigning nodes according to their measured run times
+	 * every REBALANCE_INTERVAL steps. Must be called while no thread is running nodes.
+	 */
+	public void startStep() {
+		if (++myStepsSinceRebalance >= REBALANCE_INTERVAL) {
+			myStepsSinceRebalance = 0;
+			System.arraycopy(myTimes, 0, myCosts, 0, myTimes.length);
+			myQueues = partition(myCosts, myNumThreads);
+		}
+
+		for (int i = 0; i < myNumThreads; i++) {
+			myHeads[i].set(0);
+		}
+	}
+
+	/**
+	 * Claims the next node to be run by a thread, from its own queue if any remain there, otherwise
+	 * from the queue of another thread.
+	 *
+	 * @param thread Index of the claiming thread
+	 * @return Index of the claimed node, or -1 if all nodes have been claimed in this step
+	 */
+	public int claim(int thread) {
+		for (int i = 0; i < myNumThreads; i++) {
+			int victim = (thread + i) % myNumThreads;
+			int[] queue = myQueues[victim];
+			if (myHeads[victim].get() < queue.length) {
+				int position = myHeads[victim].getAndIncrement();
+				if (position < queue.length) {
+					return queue[position];
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param node Index of a node
+	 * @param nanos Time taken to run the node in the last step (ns)
+	 */
+	public void recordTime(int node, long nanos) {
+		myTimes[node] = myTimes[node] == 0 ? nanos : (1 - ourSmoothing) * myTimes[node] + ourSmoothing * nanos;
+	}
+
+	/**
+	 * @return The nodes run by the threads
+	 */
+	public Node[] getNodes() {
+		return myNodes;
+	}
+
+}
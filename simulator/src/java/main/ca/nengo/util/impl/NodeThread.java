@@ -35,6 +35,7 @@ public class NodeThread extends Thread {
 	private int myEndIndexInTasks;
 
 	private boolean myCollectTimings;
+	private int myIndexInPool = -1;
 
 	private double myAverageTimeOnProjectionsPerStep;
 	private double myAverageTimeOnNodesPerStep;
@@ -72,20 +73,6 @@ public class NodeThread extends Thread {
 	
 	
 
-	public void waitForPool() {
-		try {
-			myNodeThreadPool.threadWait();
-		} catch (Exception e) {
-		}
-	}
-
-	public void finished() {
-		try {
-			myNodeThreadPool.threadFinished();
-		} catch (Exception e) {
-		}
-	}
-
 	// might have to make these protected?
 	protected void runProjections(float startTime, float endTime) throws SimulationException{
 		
@@ -99,6 +86,11 @@ public class NodeThread extends Thread {
 	
 	protected void runNodes(float startTime, float endTime) throws SimulationException{
 		
+		NodeLoadBalancer balancer = myNodeThreadPool.getLoadBalancer();
+		if (balancer != null && myIndexInPool >= 0) {
+			runBalancedNodes(balancer, startTime, endTime);
+			return;
+		}
 		
 		for (int i = myStartIndexInNodes; i < myEndIndexInNodes; i++) {
 			if (myNodes[i] instanceof SocketUDPNode && ((SocketUDPNode)myNodes[i]).isReceiver()) {
@@ -115,6 +107,31 @@ public class NodeThread extends Thread {
     	myDeferredSocketNodes.clear();
 	}
 	
+	/**
+	 * Runs nodes claimed from the pool's load balancer (first this thread's own, then any left
+	 * to other threads) until none remain, recording the time each one takes.
+	 */
+	private void runBalancedNodes(NodeLoadBalancer balancer, float startTime, float endTime) throws SimulationException{
+		
+		Node[] nodes = balancer.getNodes();
+		int i;
+		while ((i = balancer.claim(myIndexInPool)) >= 0) {
+			if (nodes[i] instanceof SocketUDPNode && ((SocketUDPNode)nodes[i]).isReceiver()) {
+				myDeferredSocketNodes.add(nodes[i]);
+				continue;
+			}
+			long start = System.nanoTime();
+			nodes[i].run(startTime, endTime);
+			balancer.recordTime(i, System.nanoTime() - start);
+		}
+		
+		Iterator<Node> it = myDeferredSocketNodes.iterator();
+		while (it.hasNext()) {
+			it.next().run(startTime, endTime);
+		}
+		myDeferredSocketNodes.clear();
+	}
+	
 	protected void runTasks(float startTime, float endTime) throws SimulationException {
 		
 		for (int i = myStartIndexInTasks; i < myEndIndexInTasks; i++) {
@@ -126,7 +143,7 @@ public class NodeThread extends Thread {
 		try {
 			float startTime, endTime;
 
-			waitForPool();
+			myNodeThreadPool.threadWait();
 
 			while (true) {
 				startTime = myNodeThreadPool.getStartTime();
@@ -140,7 +157,7 @@ public class NodeThread extends Thread {
 				
 				projectionInterval = myCollectTimings ? new Date().getTime() - projectionInterval : 0;
 
-				finished();
+				myNodeThreadPool.projectionsFinished();
 				
 				nodeInterval = myCollectTimings ? new Date().getTime() : 0;
 
@@ -148,7 +165,7 @@ public class NodeThread extends Thread {
 				
 				nodeInterval = myCollectTimings ? new Date().getTime() - nodeInterval : 0;
 
-				finished();
+				myNodeThreadPool.nodesFinished();
 				
 				taskInterval = myCollectTimings ? new Date().getTime() : 0;
 
@@ -156,7 +173,7 @@ public class NodeThread extends Thread {
                 
                 taskInterval = myCollectTimings ? new Date().getTime() - taskInterval : 0;
 
-                finished();
+                myNodeThreadPool.threadFinished();
                 
                 if(myCollectTimings){
 	                myAverageTimeOnProjectionsPerStep = (myAverageTimeOnProjectionsPerStep * myNumSteps + projectionInterval) / (myNumSteps + 1);
@@ -166,17 +183,16 @@ public class NodeThread extends Thread {
 	                myNumSteps++;
                 }
                 
-				// This is the means of getting out of the loop. The pool will interrupt
-				// this thread at the appropriate time.
-				if (Thread.currentThread().isInterrupted() || myNodeThreadPool.getRunFinished()) {
-					kill();
-					return;
-				}
+				// The means of getting out of the loop is an InterruptedException from the pool, 
+				// which is thrown when the pool is killed.
+				myNodeThreadPool.threadWait();
 			}
+		} catch (InterruptedException e) {
+			kill();
 		} catch (Exception e) {
 			e.printStackTrace();
-			myNodeThreadPool.kill();
-			finished();
+			myNodeThreadPool.threadFailed(e);
+			kill();
 		}
 	}
 	
@@ -196,6 +212,14 @@ public class NodeThread extends Thread {
 		this.myCollectTimings = myCollectTimings;
 	}
 	
+	/**
+	 * @param index Index of this thread among the pool's java threads, used to claim nodes when the
+	 * 		pool balances load
+	 */
+	public void setIndexInPool(int index) {
+		myIndexInPool = index;
+	}
+	
 	public double getMyAverageTimeOnProjectionsPerStep() {
 		return myAverageTimeOnProjectionsPerStep;
 	}
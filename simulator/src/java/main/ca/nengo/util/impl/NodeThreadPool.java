@@ -4,11 +4,14 @@ package ca.nengo.util.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import ca.nengo.model.Network;
 import ca.nengo.model.Node;
+import ca.nengo.model.Origin;
 import ca.nengo.model.Projection;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.impl.NetworkArrayImpl;
@@ -19,6 +22,18 @@ import ca.nengo.util.ThreadTask;
  * A pool of threads for running nodes in. All interaction with the threads
  * is done through this class.
  *
+ * Threads are synchronized with PhaseBarriers rather than a shared monitor. Each step
+ * starts and ends with a barrier that includes the stepping thread, and threads also meet
+ * between the projection, node and task phases. The barrier after the projection phase is
+ * left out if every projection connects nodes that run in the same thread (each thread
+ * then runs its own projections before its nodes), and the barrier after the node phase
+ * is left out if there are no tasks.
+ *
+ * If load balancing is on, nodes are assigned to threads by estimated and measured cost
+ * rather than in equal-count slices, and threads that finish their own nodes early take
+ * nodes from other threads (see NodeLoadBalancer). The projection phase is then always
+ * followed by a barrier, since a node may run in a different thread than its projections.
+ *
  * @author Eric Crawford
  */
 public class NodeThreadPool {
@@ -31,21 +46,22 @@ public class NodeThreadPool {
 	protected int myCurrentNumJavaThreads;
 	protected int myNumThreads;
 	protected NodeThread[] myThreads;
-	protected Object myLock;
+	protected PhaseBarrier myStepBarrier; //all threads and the stepping thread, at the start and end of each step
+	protected PhaseBarrier myPhaseBarrier; //all threads, between phases
+	protected boolean myFuseProjections; //no barrier between projections and nodes
+	protected NodeLoadBalancer myLoadBalancer; //null unless balancing load
 
 	protected Node[] myNodes;
 	protected Projection[] myProjections;
     protected ThreadTask[] myTasks;
 
-	protected volatile int numThreadsComplete;
-	protected volatile int numThreadsWaiting;
-
-	protected volatile boolean threadsRunning;
 	protected volatile boolean runFinished;
+	protected volatile Throwable myError;
 	protected float myStartTime;
 	protected float myEndTime;
 	
 	protected static boolean myCollectTimings;
+	protected static boolean myBalanceLoad;
 	protected long myRunStartTime;
 	protected double myAverageTimePerStep;
 	protected int myNumSteps;
@@ -80,6 +96,25 @@ public class NodeThreadPool {
 		myCollectTimings = collectTimings;
 	}
 	
+	public static boolean isBalancingLoad() {
+		return myBalanceLoad;
+	}
+
+	/**
+	 * @param balanceLoad If true, nodes are assigned to threads by cost, and idle threads take nodes
+	 * 		from busy ones during each step. Takes effect when the next pool is created.
+	 */
+	public static void setBalanceLoad(boolean balanceLoad) {
+		myBalanceLoad = balanceLoad;
+	}
+
+	/**
+	 * @return Balancer that assigns nodes to the java threads, or null if load balancing is off
+	 */
+	public NodeLoadBalancer getLoadBalancer(){
+		return myLoadBalancer;
+	}
+
 	public float getStartTime(){
 		return myStartTime;
 	}
@@ -106,8 +141,8 @@ public class NodeThreadPool {
 	 * and calls the initialization function of the gpu thread's NEFGPUInterface. Starts the GPU thread.
 	 * 
 	 * 2. Creates the appropriate number of java threads and assigns to each a fair number of
-	 * projections, nodes and tasks from those that remain after the GPU data has been dealt with.
-	 * Starts the Java threads.
+	 * projections, nodes and tasks from those that remain after the GPU data has been dealt with
+	 * (nodes are assigned by cost if load balancing is on). Starts the Java threads.
 	 * 
 	 * 3. Initializes synchronization primitives and variables for collecting timing data if applicable.
 	 * 
@@ -115,8 +150,6 @@ public class NodeThreadPool {
 	 */
 	protected void initialize(Network network, List<ThreadTask> threadTasks, boolean interactive){
 		
-		myLock = new Object();
-		
 		Node[] nodes = network.getNodes();
 		Projection[] projections = network.getProjections();
 		
@@ -129,10 +162,8 @@ public class NodeThreadPool {
 		myProjections = projList.toArray(new Projection[0]);
 		myTasks = taskList.toArray(new ThreadTask[0]);
 		
-		threadsRunning = false;
 		runFinished = false;
-		numThreadsWaiting = 0;
-		numThreadsComplete = 0;
+		myError = null;
 		
 		boolean useGPU = NEFGPUInterface.getUseGPU();
 		
@@ -159,7 +190,6 @@ public class NodeThreadPool {
 				gpuThread.setName("GPUThread0");
 
 				gpuThread.setPriority(Thread.MAX_PRIORITY);
-				gpuThread.start();
 
 				numNonJavaThreads += 1;
 			}
@@ -171,9 +201,12 @@ public class NodeThreadPool {
 		myNumThreads = myCurrentNumJavaThreads + numNonJavaThreads;
 
 		myThreads = new NodeThread[myNumThreads];
+		myStepBarrier = new PhaseBarrier(myNumThreads + 1);
+		myPhaseBarrier = new PhaseBarrier(myNumThreads);
 
 		if(useGPU){
 			myThreads[myNumThreads-1] = gpuThread;
+			gpuThread.start();
 		}
 
 		//In the remaining nodes (non-GPU nodes), DO break down the NetworkArrays, we don't want to call the 
@@ -182,26 +215,42 @@ public class NodeThreadPool {
 		myNodes = collectNodes(myNodes, true).toArray(new Node[0]);
 
 		int nodesPerJavaThread = (int) Math.ceil((float) myNodes.length / (float) myCurrentNumJavaThreads);
-		int projectionsPerJavaThread = (int) Math.ceil((float) myProjections.length / (float) myCurrentNumJavaThreads);
         int tasksPerJavaThread = (int) Math.ceil((float) myTasks.length / (float) myCurrentNumJavaThreads);
         
-		int nodeOffset = 0, projectionOffset = 0, taskOffset = 0;
-		int nodeStartIndex, nodeEndIndex, projectionStartIndex, projectionEndIndex, taskStartIndex, taskEndIndex;
+		int nodeOffset = 0, taskOffset = 0;
+		int[] nodeStartIndex = new int[myCurrentNumJavaThreads];
+		int[] nodeEndIndex = new int[myCurrentNumJavaThreads];
+		int taskStartIndex, taskEndIndex;
 		
-		// Evenly distribute projections, nodes and tasks to the java threads.
+		// Evenly distribute nodes to the java threads, by count or by cost.
+		Map<Node, Integer> nodeThreads = new IdentityHashMap<Node, Integer>(myNodes.length * 2);
+		myLoadBalancer = myBalanceLoad ? new NodeLoadBalancer(myNodes, myCurrentNumJavaThreads) : null;
 		for(int i = 0; i < myCurrentNumJavaThreads; i++){
 
-			nodeStartIndex = nodeOffset;
-			nodeEndIndex = myNodes.length - nodeOffset >= nodesPerJavaThread ?
+			if (myLoadBalancer != null) {
+				for (int j : myLoadBalancer.getQueue(i)) {
+					nodeThreads.put(myNodes[j], Integer.valueOf(i));
+				}
+				continue;
+			}
+
+			nodeStartIndex[i] = Math.min(nodeOffset, myNodes.length);
+			nodeEndIndex[i] = myNodes.length - nodeOffset >= nodesPerJavaThread ?
 					nodeOffset + nodesPerJavaThread : myNodes.length;
 
 			nodeOffset += nodesPerJavaThread;
 
-			projectionStartIndex = projectionOffset;
-			projectionEndIndex = myProjections.length - projectionOffset >= projectionsPerJavaThread ?
-					projectionOffset + projectionsPerJavaThread : myProjections.length;
+			for (int j = nodeStartIndex[i]; j < nodeEndIndex[i]; j++) {
+				nodeThreads.put(myNodes[j], Integer.valueOf(i));
+			}
+		}
 
-			projectionOffset += projectionsPerJavaThread;
+		Projection[][] threadProjections = distributeProjections(nodeThreads);
+		myFuseProjections = myFuseProjections && !useGPU //the GPU thread's inputs aren't known here
+				&& myLoadBalancer == null; //nodes may be run by other threads than their projections
+
+		// Evenly distribute tasks to the java threads.
+		for(int i = 0; i < myCurrentNumJavaThreads; i++){
 
 			taskStartIndex = taskOffset;
 			taskEndIndex = myTasks.length - taskOffset >= tasksPerJavaThread ?
@@ -209,11 +258,12 @@ public class NodeThreadPool {
 
 			taskOffset += tasksPerJavaThread;
 
-			myThreads[i] = new NodeThread(this, myNodes, nodeStartIndex,
-					nodeEndIndex, myProjections, projectionStartIndex,
-					projectionEndIndex, myTasks, taskStartIndex, taskEndIndex);
+			myThreads[i] = new NodeThread(this, myNodes, nodeStartIndex[i],
+					nodeEndIndex[i], threadProjections[i], 0,
+					threadProjections[i].length, myTasks, taskStartIndex, taskEndIndex);
 			
 			myThreads[i].setCollectTimings(myCollectTimings);
+			myThreads[i].setIndexInPool(i);
 			myThreads[i].setName("JavaThread" + i);
 
 			myThreads[i].setPriority(Thread.MAX_PRIORITY);
@@ -225,11 +275,54 @@ public class NodeThreadPool {
 		myNumSteps = 0;
 	}
 
+	/**
+	 * Projections connecting nodes that run in the same thread are run by that thread. The others
+	 * are distributed evenly over the java threads, and if there are any, all projections must be
+	 * run before any thread runs its nodes.
+	 * 
+	 * @param nodeThreads Index of the thread in which each node runs
+	 * @return Projections to be run by each java thread
+	 */
+	private Projection[][] distributeProjections(Map<Node, Integer> nodeThreads) {
+		List<List<Projection>> local = new ArrayList<List<Projection>>(myCurrentNumJavaThreads);
+		for (int i = 0; i < myCurrentNumJavaThreads; i++) {
+			local.add(new ArrayList<Projection>());
+		}
+		List<Projection> shared = new ArrayList<Projection>();
+
+		for (Projection projection : myProjections) {
+			Integer originThread = getThread(projection.getOrigin(), nodeThreads);
+			Integer terminationThread = nodeThreads.get(projection.getTermination().getNode());
+			if (originThread != null && originThread.equals(terminationThread)) {
+				local.get(originThread.intValue()).add(projection);
+			} else {
+				shared.add(projection);
+			}
+		}
+		myFuseProjections = shared.isEmpty();
+
+		int projectionsPerJavaThread = (int) Math.ceil((float) shared.size() / (float) myCurrentNumJavaThreads);
+		Projection[][] result = new Projection[myCurrentNumJavaThreads][];
+		for (int i = 0; i < myCurrentNumJavaThreads; i++) {
+			List<Projection> projections = local.get(i);
+			int start = Math.min(i * projectionsPerJavaThread, shared.size());
+			int end = Math.min(start + projectionsPerJavaThread, shared.size());
+			projections.addAll(shared.subList(start, end));
+			result[i] = projections.toArray(new Projection[0]);
+		}
+		return result;
+	}
+
+	private static Integer getThread(Origin origin, Map<Node, Integer> nodeThreads) {
+		return origin.getNode() == null ? null : nodeThreads.get(origin.getNode());
+	}
+
 	/**
 	 * Tell the threads in the current thread pool to take a step. The step consists of three
 	 * phases: projections, nodes, tasks. All threads must complete a stage before any thread begins
 	 * the next stage, so, for example, all threads must finish processing all of their projections 
-	 * before any thread starts processing its nodes.
+	 * before any thread starts processing its nodes (except where projections are run by the threads
+	 * of the nodes they connect; see class documentation).
 	 * 
 	 * @author Eric Crawford
 	 */
@@ -240,24 +333,18 @@ public class NodeThreadPool {
 		
 		long stepInterval = myCollectTimings ? new Date().getTime() : 0;
 		
+		if (myLoadBalancer != null) {
+			myLoadBalancer.startStep(); //the threads are all waiting for the step to start
+		}
+		
 		try
 		{
-			int oldPriority = Thread.currentThread().getPriority();
-			Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-
-			// start the projection processing, wait for it to finish
-			startThreads();
-
-			// start the node processing, wait for it to finish
-			startThreads();
-			
-			// start the task processing, wait for it to finish
-			startThreads();
-
-			Thread.currentThread().setPriority(oldPriority);
+			// start the threads, and wait for them to finish all phases
+			myStepBarrier.await();
+			myStepBarrier.await();
 		}
-		catch(Exception e) {
-			throw new SimulationException(e);
+		catch(InterruptedException e) {
+			throw new SimulationException(myError != null ? myError : e);
 		}
 		
 		if(myCollectTimings){
@@ -269,78 +356,74 @@ public class NodeThreadPool {
 	}
 
 	/**
-	 * Tells the threads to run for one phase (projections, nodes or tasks). 
-	 * The threads should be waiting on myLock at the time this is called.
+	 * Called by the threads in this pool to wait for the start of a step.
 	 * 
-	 * @author Eric Crawford
+	 * @throws InterruptedException if the pool has been killed
 	 */
-	private void startThreads() throws InterruptedException {
-		synchronized(myLock){
-			if(runFinished)
-				throw new InterruptedException();
-			
-			numThreadsComplete = 0;
-			threadsRunning = true;
-			myLock.notifyAll();  //release all the threads from the threadWait() loop
-			
-			while(threadsRunning || numThreadsWaiting < myThreads.length) 
-				myLock.wait();  //we don't want the stepthread to be able to continue (and start threads) until all the threads are waiting to be started
+	public void threadWait() throws InterruptedException{
+		myStepBarrier.await();
+	}
+
+	/**
+	 * Called by the threads in this pool when they have run their projections.
+	 * 
+	 * @throws InterruptedException if the pool has been killed
+	 */
+	public void projectionsFinished() throws InterruptedException{
+		if (!myFuseProjections) {
+			myPhaseBarrier.await();
 		}
 	}
 
 	/**
-	 * Called by the threads in this node pool. Called once they finish a phase (projections, nodes or tasks).
-	 * Forces them to wait on myLock.
+	 * Called by the threads in this pool when they have run their nodes.
 	 * 
-	 * @author Eric Crawford
+	 * @throws InterruptedException if the pool has been killed
 	 */
-	public void threadWait() throws InterruptedException{
-		synchronized(myLock){
-			numThreadsWaiting++;
-			if(numThreadsWaiting == myThreads.length)
-				myLock.notifyAll(); //all the threads are done the step and in a waiting state, so free the stepthread
-			
-			while(!threadsRunning) {
-                myLock.wait();
-            }
+	public void nodesFinished() throws InterruptedException{
+		if (myTasks.length > 0) {
+			myPhaseBarrier.await();
 		}
 	}
 
 	/**
-	 * Called by the threads in this pool to signal that they are done a phase. 
+	 * Called by the threads in this pool to signal that they are done a step. 
 	 * 
-	 * @author Eric Crawford
+	 * @throws InterruptedException if the pool has been killed
 	 */
 	public void threadFinished() throws InterruptedException{
-		
-		synchronized(myLock){
-			numThreadsComplete++;
+		myStepBarrier.await();
+	}
 
-			if(numThreadsComplete == myThreads.length){
-				threadsRunning = false;
-				numThreadsWaiting=0;
-				myLock.notifyAll(); //this is to move the threads into the threadwait loop
-			}
-			else{
-				while(threadsRunning) //threads wait here when they are finished, but others are still running (i.e. wait here until end of one step)
-					myLock.wait();
-			}
-	
-			threadWait(); //threads wait here when they're all finished (i.e. wait here between steps)
+	/**
+	 * Called by a thread in this pool if it fails. Stops the run, so that the failure is reported
+	 * by step(...).
+	 * 
+	 * @param error The cause of the failure
+	 */
+	public void threadFailed(Throwable error) {
+		if (myError == null) {
+			myError = error;
 		}
+		kill();
 	}
 
 	/**
-	 * Kill the threads in the pool by interrupting them. Each thread will handle
-	 * the interrupt signal by ending its run method, which kills it.
+	 * Kill the threads in the pool by breaking the barriers they wait at and interrupting them. 
+	 * Each thread will handle this by ending its run method, which kills it.
 	 * 
 	 * @author Eric Crawford
 	 */
 	public void kill(){
-		synchronized(myLock)
+		synchronized(this)
 		{
+			if (runFinished) {
+				return;
+			}
 			runFinished = true;
 
+			myStepBarrier.breakBarrier();
+			myPhaseBarrier.breakBarrier();
 			for(int i = 0; i < myThreads.length; i++){
 				myThreads[i].interrupt();
 			}
@@ -356,8 +439,6 @@ public class NodeThreadPool {
 				
 				System.out.print(timingOutput.toString());
 			}
-
-			myLock.notifyAll();
 		}
 		
 		
@@ -0,0 +1,122 @@
+package ca.nengo.util.impl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A reusable barrier for a fixed number of threads, used by NodeThreadPool to separate the phases of a
+ * simulation step. There is no shared monitor: arrivals are counted atomically, and waiting threads spin
+ * briefly (steps are often shorter than the time needed to wake a thread) and then park until the last
+ * thread arrives.</p>
+ *
+ * <p>The barrier can be broken (eg if the simulation is stopped or a thread fails), after which all
+ * waiting and arriving threads get an InterruptedException.</p>
+ */
+public class PhaseBarrier {
+
+	private static final int ourDefaultSpins = Runtime.getRuntime().availableProcessors() > 1 ? 5000 : 0;
+
+	private final int myParties;
+	private final int mySpins;
+	private final AtomicInteger myArrived;
+	private final ConcurrentLinkedQueue<Thread> myWaiters;
+	private volatile int myGeneration;
+	private volatile boolean myBroken;
+
+	/**
+	 * @param parties Number of threads that must arrive before any may proceed
+	 */
+	public PhaseBarrier(int parties) {
+		this(parties, ourDefaultSpins);
+	}
+
+	/**
+	 * @param parties Number of threads that must arrive before any may proceed
+	 * @param spins Number of times a waiting thread checks for release before parking
+	 */
+	public PhaseBarrier(int parties, int spins) {
+		if (parties < 1) {
+			throw new IllegalArgumentException("A barrier needs at least one party");
+		}
+		myParties = parties;
+		mySpins = spins;
+		myArrived = new AtomicInteger(0);
+		myWaiters = new ConcurrentLinkedQueue<Thread>();
+	}
+
+	/**
+	 * @return Number of threads that must arrive before any may proceed
+	 */
+	public int getParties() {
+		return myParties;
+	}
+
+	/**
+	 * Waits until all parties have arrived.
+	 *
+	 * @throws InterruptedException If the barrier is broken, or the thread is interrupted while waiting
+	 * 		(which also breaks the barrier, since the other threads can no longer proceed)
+	 */
+	public void await() throws InterruptedException {
+		if (myBroken) {
+			throw new InterruptedException("Barrier is broken");
+		}
+
+		int generation = myGeneration;
+		if (myArrived.incrementAndGet() == myParties) {
+			myArrived.set(0);
+			myGeneration = generation + 1;
+			wakeWaiters();
+			return;
+		}
+
+		for (int i = 0; i < mySpins; i++) {
+			if (myGeneration != generation) {
+				return;
+			}
+		}
+
+		//a release may drain waiters that have already moved on to the next generation, so a
+		//waiter registers again each time it is woken (extra wake-ups are harmless)
+		Thread current = Thread.currentThread();
+		while (true) {
+			myWaiters.add(current);
+			if (myGeneration != generation) {
+				return;
+			}
+			if (myBroken) {
+				throw new InterruptedException("Barrier is broken");
+			}
+			if (Thread.interrupted()) {
+				breakBarrier();
+				throw new InterruptedException();
+			}
+			LockSupport.park(this);
+		}
+	}
+
+	/**
+	 * Releases all waiting threads with an InterruptedException, and makes subsequent calls to await()
+	 * fail in the same way.
+	 */
+	public void breakBarrier() {
+		myBroken = true;
+		wakeWaiters();
+	}
+
+	/**
+	 * @return True if the barrier has been broken
+	 */
+	public boolean isBroken() {
+		return myBroken;
+	}
+
+	private void wakeWaiters() {
+		Thread waiter;
+		while ((waiter = myWaiters.poll()) != null) {
+			LockSupport.unpark(waiter);
+		}
+	}
+
+}
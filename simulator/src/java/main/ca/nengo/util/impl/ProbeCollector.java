@@ -0,0 +1,254 @@
+package ca.nengo.util.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.Units;
+import ca.nengo.util.Probe;
+import ca.nengo.util.TimeSeries;
+
+/**
+ * <p>Collects Probe data in a background thread, so that storing, filtering and streaming samples
+ * doesn't add to the time taken by each simulation step.</p>
+ *
+ * <p>At the end of each step, the state of each probed target is copied into a frame buffer (this
+ * part must happen between steps, because targets overwrite their state in the next step). The
+ * frame is then handed to the collector thread, which passes the samples to the probes while the
+ * next step runs. There are maxLag frames, which are reused, so the simulation only waits for the
+ * collector if it falls that many steps behind.</p>
+ *
+ * <p>Probe data may therefore lag the simulation by up to maxLag steps until flush() is called.
+ * Probes other than ProbeImpl are collected synchronously.</p>
+ */
+public class ProbeCollector {
+
+	private static boolean ourAsynchronous = false;
+	private static int ourMaxLag = 2;
+
+	private final ProbeImpl[] myProbes;
+	private final Probe[] mySynchronousProbes;
+	private final Frame[] myFrames;
+	private final Thread myThread;
+
+	private long myNumWritten; //frames filled by the simulation thread
+	private long myNumRead; //frames drained by the collector thread
+	private boolean myClosed;
+	private volatile Throwable myError;
+
+	/**
+	 * @param asynchronous If true, simulators that are initialized after this call collect Probe data
+	 * 		in a background thread (default false)
+	 */
+	public static void setAsynchronous(boolean asynchronous) {
+		ourAsynchronous = asynchronous;
+	}
+
+	/**
+	 * @return True if simulators collect Probe data in a background thread
+	 */
+	public static boolean isAsynchronous() {
+		return ourAsynchronous;
+	}
+
+	/**
+	 * @param maxLag Number of steps by which the collector thread may fall behind the simulation
+	 * 		before the simulation waits for it (default 2)
+	 */
+	public static void setMaxLag(int maxLag) {
+		if (maxLag < 1) {
+			throw new IllegalArgumentException("Maximum lag must be at least one step");
+		}
+		ourMaxLag = maxLag;
+	}
+
+	/**
+	 * @return Number of steps by which the collector thread may fall behind the simulation
+	 */
+	public static int getMaxLag() {
+		return ourMaxLag;
+	}
+
+	/**
+	 * Starts a collector thread.
+	 *
+	 * @param probes Probes to collect
+	 * @param maxLag Number of steps by which the collector thread may fall behind the simulation
+	 */
+	public ProbeCollector(List<Probe> probes, int maxLag) {
+		List<ProbeImpl> asynchronous = new ArrayList<ProbeImpl>(probes.size());
+		List<Probe> synchronous = new ArrayList<Probe>();
+		for (Probe probe : probes) {
+			if (probe instanceof ProbeImpl) {
+				asynchronous.add((ProbeImpl) probe);
+			} else {
+				synchronous.add(probe);
+			}
+		}
+		myProbes = asynchronous.toArray(new ProbeImpl[0]);
+		mySynchronousProbes = synchronous.toArray(new Probe[0]);
+
+		myFrames = new Frame[Math.max(1, maxLag)];
+		for (int i = 0; i < myFrames.length; i++) {
+			myFrames[i] = new Frame(myProbes.length);
+		}
+
+		myThread = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "Probe collector");
+		myThread.setDaemon(true);
+		myThread.start();
+	}
+
+	/**
+	 * Called by the simulation thread at the end of each step. Copies the state of each probed
+	 * target, waiting first if the collector thread is maxLag steps behind.
+	 *
+	 * @param time Simulation time at the end of the step
+	 * @throws SimulationException If collection failed in the collector thread
+	 */
+	public void collect(float time) throws SimulationException {
+		for (int i = 0; i < mySynchronousProbes.length; i++) {
+			mySynchronousProbes[i].collect(time);
+		}
+
+		long written;
+		synchronized (this) {
+			while (myNumWritten - myNumRead >= myFrames.length && myError == null) {
+				await();
+			}
+			checkError();
+			written = myNumWritten;
+		}
+
+		//the collector thread doesn't touch this frame until myNumWritten is incremented
+		Frame frame = myFrames[(int) (written % myFrames.length)];
+		for (int i = 0; i < myProbes.length; i++) {
+			frame.copy(i, myProbes[i].readTarget(time));
+		}
+
+		synchronized (this) {
+			myNumWritten++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until the collector thread has passed all copied samples to the probes.
+	 *
+	 * @throws SimulationException If collection failed in the collector thread
+	 */
+	public synchronized void flush() throws SimulationException {
+		while (myNumRead < myNumWritten && myError == null) {
+			await();
+		}
+		checkError();
+	}
+
+	/**
+	 * Flushes, then stops the collector thread.
+	 *
+	 * @throws SimulationException If collection failed in the collector thread
+	 */
+	public void close() throws SimulationException {
+		try {
+			flush();
+		} finally {
+			synchronized (this) {
+				myClosed = true;
+				notifyAll();
+			}
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				long read;
+				synchronized (this) {
+					while (myNumRead == myNumWritten && !myClosed) {
+						wait();
+					}
+					if (myNumRead == myNumWritten) {
+						return; //closed
+					}
+					read = myNumRead;
+				}
+
+				Frame frame = myFrames[(int) (read % myFrames.length)];
+				for (int i = 0; i < myProbes.length; i++) {
+					if (frame.mySampled[i]) {
+						myProbes[i].collect(frame.myTimes[i], frame.myValues[i], frame.myUnits[i]);
+					}
+				}
+
+				synchronized (this) {
+					myNumRead++;
+					notifyAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			//stop collecting
+		} catch (Throwable e) {
+			synchronized (this) {
+				myError = e;
+				notifyAll();
+			}
+		}
+	}
+
+	private void await() throws SimulationException {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			throw new SimulationException("Interrupted while waiting for probe collector", e);
+		}
+	}
+
+	private void checkError() throws SimulationException {
+		if (myError != null) {
+			throw new SimulationException("Probe collection failed", myError);
+		}
+	}
+
+	//state of each probed target at the end of one step (arrays are reused between steps)
+	private static class Frame {
+
+		private final boolean[] mySampled;
+		private final float[][] myTimes;
+		private final float[][][] myValues;
+		private final Units[][] myUnits;
+
+		public Frame(int probes) {
+			mySampled = new boolean[probes];
+			myTimes = new float[probes][];
+			myValues = new float[probes][][];
+			myUnits = new Units[probes][];
+		}
+
+		public void copy(int probe, TimeSeries data) {
+			mySampled[probe] = (data != null);
+			if (data == null) {
+				return;
+			}
+
+			float[] times = data.getTimes();
+			float[][] values = data.getValues();
+			if (myTimes[probe] == null || myTimes[probe].length != times.length) {
+				myTimes[probe] = new float[times.length];
+				myValues[probe] = new float[times.length][];
+			}
+			System.arraycopy(times, 0, myTimes[probe], 0, times.length);
+			for (int i = 0; i < times.length; i++) {
+				if (myValues[probe][i] == null || myValues[probe][i].length != values[i].length) {
+					myValues[probe][i] = new float[values[i].length];
+				}
+				System.arraycopy(values[i], 0, myValues[probe][i], 0, values[i].length);
+			}
+			myUnits[probe] = data.getUnits();
+		}
+	}
+
+}
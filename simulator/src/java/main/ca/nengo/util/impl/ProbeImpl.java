@@ -24,19 +24,31 @@ a recipient may use your version of this file under either the MPL or the GPL Li
 
 package ca.nengo.util.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import ca.nengo.model.Node;
 import ca.nengo.model.Probeable;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.Units;
+import ca.nengo.util.Memory;
 import ca.nengo.util.Probe;
+import ca.nengo.util.SampleFilter;
 import ca.nengo.util.TimeSeries;
 
 /**
  * <p>Collects information from <code>Probeable</code> objects.</p> 
  * 
+ * <p>Recorded history is kept in a SampleStore, so that long recordings don't need large copies as 
+ * they grow, and getData() returns a read-only view rather than a copy. The store can optionally be 
+ * kept off the Java heap (see setOffHeapStorage(boolean)).</p>
+ * 
+ * <p>Samples can be filtered as they are collected (see setFilters(SampleFilter...)), so that eg a 
+ * smoothed or decimated signal is stored instead of every raw sample.</p>
+ * 
  * @author Bryan Tripp
  */
 public class ProbeImpl implements Probe, java.io.Serializable {
@@ -45,13 +57,35 @@ public class ProbeImpl implements Probe, java.io.Serializable {
 	private Probeable myTarget;
 	private String myStateName;
 	private boolean myRecord;
-	private float[] myTimes;
-	private List<float[]> myValues;
+	private SampleStore myStore; //recorded samples (created on first doCollect() in record mode)
+	private float[] myTimes; //most recent samples if not recording
+	private float[][] myValues;
 	private Units[] myUnits;
 	private float mySamplingPeriod = -1;
 	private float myLastSampleTime = -100000;
 	private String myEnsembleName = null;
 	private ProbeTask myProbeTask;
+	private transient volatile CopyOnWriteArrayList<Probe.Listener> myListeners;
+	private SampleFilter[] myFilters = new SampleFilter[0];
+	private transient SampleFilter.Sink myPipeline; //first stage of filter pipeline (built when needed)
+	private transient Output myOutput;
+	
+	private static boolean ourOffHeapStorage = false;
+	
+	/**
+	 * @param offHeap If true, probes that are connected or reset after this call record their data 
+	 * 		outside the Java heap (default false)
+	 */
+	public static void setOffHeapStorage(boolean offHeap) {
+		ourOffHeapStorage = offHeap;
+	}
+	
+	/**
+	 * @return True if probes record their data outside the Java heap
+	 */
+	public static boolean getOffHeapStorage() {
+		return ourOffHeapStorage;
+	}
 
 	/**
 	 * @see ca.nengo.util.Probe#connect(java.lang.String, ca.nengo.model.Probeable, java.lang.String, boolean)
@@ -83,79 +117,241 @@ public class ProbeImpl implements Probe, java.io.Serializable {
 	 */
 	public void reset() {
 		myUnits = null; //will be reset on first doCollect()
-		myTimes = new float[1000];
-		myValues = new ArrayList<float[]>(1000);
+		myStore = null; //a new store, so that views of the old data remain valid
+		myTimes = new float[0];
+		myValues = new float[0][];
+		for (int i = 0; i < myFilters.length; i++) {
+			myFilters[i].reset(false);
+		}
+	}
+	
+	/**
+	 * @see ca.nengo.util.Probe#setFilters(ca.nengo.util.SampleFilter[])
+	 */
+	public void setFilters(SampleFilter... filters) {
+		myFilters = filters.clone();
+		myPipeline = null;
+		for (int i = 0; i < myFilters.length; i++) {
+			myFilters[i].reset(false);
+		}
+	}
+	
+	/**
+	 * @see ca.nengo.util.Probe#getFilters()
+	 */
+	public SampleFilter[] getFilters() {
+		return myFilters.clone();
 	}
 	
 	/**
 	 * @see ca.nengo.util.Probe#collect(float)
 	 */
 	public void collect(float time) {
-		if (mySamplingPeriod > 0) { 
-			if (time >= myLastSampleTime + mySamplingPeriod) {
-				doCollect();
-				myLastSampleTime = time;
-			}
-		} else {
-			doCollect();
+		TimeSeries stepData = readTarget(time);
+		if (stepData != null) {
+			//target may overwrite its buffers in the next step
+			doCollect(stepData.getTimes(), stepData.getValues(), stepData.getUnits(), Memory.getReuseBuffers());
 		}
 	}
 	
-	private void doCollect() {
+	/**
+	 * Reads the target's state, if a sample is due at the given time. Together with
+	 * collect(float[], float[][], Units[]), this splits collect(float) into a part that must run
+	 * between simulation steps and a part that can run later in another thread (see ProbeCollector).
+	 *
+	 * @param time Simulation time
+	 * @return The target's recent history (which may be overwritten in the next step), or null if
+	 * 		no sample is due at this time (see setSamplingRate(float))
+	 */
+	public TimeSeries readTarget(float time) {
+		if (mySamplingPeriod > 0) { 
+			if (time < myLastSampleTime + mySamplingPeriod) {
+				return null;
+			}
+			myLastSampleTime = time;
+		}
+		
 		if (myTarget == null) {
 			throw new IllegalStateException("This Recorder has not been connected to a Probeable");
 		}
 		
-		TimeSeries stepData;
 		try {
-			stepData = myTarget.getHistory(myStateName);
+			return myTarget.getHistory(myStateName);
 		} catch (SimulationException e) {
 			throw new RuntimeException("Target appears not to have the state " 
 					+ myStateName + ", although this problem should have been detected on connect()", e);
 		}
-		
-		float[] times = stepData.getTimes();
-		float[][] values = stepData.getValues();
+	}
+	
+	/**
+	 * Collects samples that were read earlier with readTarget(float). The arrays are copied if kept,
+	 * so the caller may reuse them.
+	 *
+	 * @param times Times of the samples
+	 * @param values Values of the samples
+	 * @param units Units of each dimension of the samples
+	 */
+	public void collect(float[] times, float[][] values, Units[] units) {
+		doCollect(times, values, units, true);
+	}
+	
+	private void doCollect(float[] times, float[][] values, Units[] units, boolean copy) {
 		int len = times.length;		
 		
-		if (myRecord) {
-			if (myValues.size() + len >= myTimes.length) {
-				grow();
-			}		
-			System.arraycopy(times, 0, myTimes, myValues.size(), len); //don't move this to after the values update			
-		} else {
-			myTimes = times;
-			myValues = new ArrayList<float[]>(10);
+		if (myUnits == null) {
+			myUnits = units;
 		}
 		
-		for (int i = 0; i < len; i++) {
-			myValues.add(values[i]);
+		if (myFilters.length > 0) {
+			if (myPipeline == null) {
+				myOutput = new Output();
+				SampleFilter.Sink next = myOutput;
+				for (int i = myFilters.length - 1; i >= 0; i--) {
+					next = new Stage(myFilters[i], next);
+				}
+				myPipeline = next;
+			}
+			
+			myOutput.myLatestTimes.clear();
+			myOutput.myLatestValues.clear();
+			for (int i = 0; i < len; i++) {
+				myPipeline.accept(times[i], values[i]);
+			}
+			if (!myRecord && myOutput.myLatestTimes.size() > 0) {
+				myTimes = new float[myOutput.myLatestTimes.size()];
+				for (int i = 0; i < myTimes.length; i++) {
+					myTimes[i] = myOutput.myLatestTimes.get(i).floatValue();
+				}
+				myValues = myOutput.myLatestValues.toArray(new float[0][]);
+			}
+			return;
 		}
 		
-		if (myUnits == null) {
-			myUnits = stepData.getUnits();
+		if (myRecord) {
+			for (int i = 0; i < len; i++) {
+				if (myStore == null) {
+					myStore = new SampleStore(values[i].length, ourOffHeapStorage);
+				}
+				myStore.append(times[i], values[i]); //copies, so buffer reuse doesn't matter here
+			}
+		} else {
+			myTimes = copy ? times.clone() : times;
+			myValues = new float[len][];
+			for (int i = 0; i < len; i++) {
+				myValues[i] = copy ? values[i].clone() : values[i];
+			}
+		}
+		
+		if (myListeners != null) {
+			for (Probe.Listener listener : myListeners) {
+				for (int i = 0; i < len; i++) {
+					listener.sampleCollected(this, times[i], values[i]);
+				}
+			}
 		}
-	}
-	
-	private void grow() {
-		float[] newTimes = new float[myTimes.length + 1000];
-		System.arraycopy(myTimes, 0, newTimes, 0, myTimes.length);
-		myTimes = newTimes;
 	}
 	
 	/**
 	 * @see ca.nengo.util.Probe#getData()
 	 */
 	public TimeSeries getData() {
-		float[] times = new float[myValues.size()];
-		System.arraycopy(myTimes, 0, times, 0, myValues.size());
+		if (myRecord && myStore != null) {
+			return myStore.getView(getUnits(), getName());
+		}
+		
+		float[] times = myRecord ? new float[0] : myTimes;
+		float[][] values = myRecord ? new float[0][] : myValues;
+		
+		TimeSeriesImpl result = new TimeSeriesImpl(times, values, getUnits());
+		result.setName(getName());
+		return result;
+	}
+	
+	/**
+	 * @see ca.nengo.util.Probe#getData(float, float)
+	 */
+	public TimeSeries getData(float startTime, float endTime) {
+		if (myRecord && myStore != null) {
+			return myStore.getView(startTime, endTime, getUnits(), getName());
+		}
+		
+		TimeSeries data = getData();
+		float[] times = data.getTimes();
+		int from = 0;
+		while (from < times.length && times[from] < startTime) {
+			from++;
+		}
+		int to = from;
+		while (to < times.length && times[to] < endTime) {
+			to++;
+		}
+		
+		float[] windowTimes = new float[to - from];
+		System.arraycopy(times, from, windowTimes, 0, windowTimes.length);
+		float[][] windowValues = new float[to - from][];
+		System.arraycopy(data.getValues(), from, windowValues, 0, windowValues.length);
 		
-		float[][] values = myValues.toArray(new float[0][]);
+		TimeSeriesImpl result = new TimeSeriesImpl(windowTimes, windowValues, getUnits());
+		result.setName(getName());
+		return result;
+	}
+	
+	private Units[] getUnits() {
+		if (myUnits == null) {
+			return new Units[]{Units.UNK};
+		}
 		
-		TimeSeriesImpl result = new TimeSeriesImpl(times, values, (myUnits == null) ? new Units[]{Units.UNK} : myUnits);
-		result.setName(((myTarget instanceof Node) ? ((Node) myTarget).getName()+":" : "") + myStateName);
+		Units[] result = myUnits;
+		for (int i = 0; i < myFilters.length; i++) {
+			result = myFilters[i].getOutputUnits(result);
+		}
 		return result;
 	}
+	
+	//reads probes saved by this version, or by earlier versions that kept samples in a List
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		myTarget = (Probeable) fields.get("myTarget", null);
+		myStateName = (String) fields.get("myStateName", null);
+		myRecord = fields.get("myRecord", false);
+		myStore = (SampleStore) fields.get("myStore", null);
+		myTimes = (float[]) fields.get("myTimes", null);
+		myUnits = (Units[]) fields.get("myUnits", null);
+		mySamplingPeriod = fields.get("mySamplingPeriod", -1f);
+		myLastSampleTime = fields.get("myLastSampleTime", -100000f);
+		myEnsembleName = (String) fields.get("myEnsembleName", null);
+		myProbeTask = (ProbeTask) fields.get("myProbeTask", null);
+		myFilters = (SampleFilter[]) fields.get("myFilters", null);
+		if (myFilters == null) { //saved before filters were added
+			myFilters = new SampleFilter[0];
+		}
+
+		Object values = fields.get("myValues", null);
+		if (values instanceof List<?>) {
+			float[][] samples = ((List<?>) values).toArray(new float[0][]);
+			float[] times = new float[samples.length];
+			System.arraycopy(myTimes, 0, times, 0, samples.length); //old times array had spare capacity
+			if (myRecord) {
+				for (int i = 0; i < samples.length; i++) {
+					if (myStore == null) {
+						myStore = new SampleStore(samples[i].length, ourOffHeapStorage);
+					}
+					myStore.append(times[i], samples[i]);
+				}
+				myTimes = new float[0];
+				myValues = new float[0][];
+			} else {
+				myTimes = times;
+				myValues = samples;
+			}
+		} else {
+			myValues = (float[][]) values;
+		}
+	}
+
+	private String getName() {
+		return ((myTarget instanceof Node) ? ((Node) myTarget).getName()+":" : "") + myStateName;
+	}
 
 	/**
 	 * @see ca.nengo.util.Probe#setSamplingRate(float)
@@ -201,4 +397,64 @@ public class ProbeImpl implements Probe, java.io.Serializable {
 	public ProbeTask getProbeTask(){
 		return myProbeTask;
 	}
+
+	/**
+	 * @see ca.nengo.util.Probe#addListener(ca.nengo.util.Probe.Listener)
+	 */
+	public synchronized void addListener(Probe.Listener listener) {
+		if (myListeners == null) {
+			myListeners = new CopyOnWriteArrayList<Probe.Listener>();
+		}
+		myListeners.add(listener);
+	}
+
+	/**
+	 * @see ca.nengo.util.Probe#removeListener(ca.nengo.util.Probe.Listener)
+	 */
+	public synchronized void removeListener(Probe.Listener listener) {
+		if (myListeners != null) {
+			myListeners.remove(listener);
+		}
+	}
+	
+	//passes samples from one filter to the next
+	private static class Stage implements SampleFilter.Sink {
+		
+		private final SampleFilter myFilter;
+		private final SampleFilter.Sink myNext;
+		
+		public Stage(SampleFilter filter, SampleFilter.Sink next) {
+			myFilter = filter;
+			myNext = next;
+		}
+		
+		public void accept(float time, float[] values) {
+			myFilter.process(time, values, myNext);
+		}
+	}
+	
+	//stores samples that come out of the filter pipeline
+	private class Output implements SampleFilter.Sink {
+		
+		private final List<Float> myLatestTimes = new ArrayList<Float>(); //samples from latest step, if not recording
+		private final List<float[]> myLatestValues = new ArrayList<float[]>();
+		
+		public void accept(float time, float[] values) {
+			if (myRecord) {
+				if (myStore == null) {
+					myStore = new SampleStore(values.length, ourOffHeapStorage);
+				}
+				myStore.append(time, values);
+			} else {
+				myLatestTimes.add(Float.valueOf(time));
+				myLatestValues.add(values.clone());
+			}
+			
+			if (myListeners != null) {
+				for (Probe.Listener listener : myListeners) {
+					listener.sampleCollected(ProbeImpl.this, time, values);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,368 @@
+package ca.nengo.util.impl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.TimeSeries;
+
+/**
+ * <p>Append-only storage for fixed-dimension samples (a time and a vector of values per sample), used
+ * by ProbeImpl to record simulation history.</p>
+ *
+ * <p>Samples are packed into primitive float chunks, which may be on the Java heap or off-heap (direct
+ * buffers, which don't count against the heap limit). Each new chunk is twice the size of the last,
+ * up to a maximum, so growing never copies recorded data. Recorded samples are never modified, so
+ * getData() can return a read-only view of the samples recorded so far without copying them.</p>
+ */
+public class SampleStore implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int ourFirstChunkFloats = 1 << 12;
+	private static final int ourMaxChunkFloats = 1 << 22;
+
+	private final int myDimension;
+	private final boolean myOffHeap;
+	private transient FloatBuffer[] myChunks;
+	private transient int[] myChunkStarts; //index of first sample in each chunk, and after the last sample
+	private transient int mySize;
+
+	/**
+	 * @param dimension Number of values per sample
+	 * @param offHeap If true, samples are stored in direct buffers outside the Java heap
+	 */
+	public SampleStore(int dimension, boolean offHeap) {
+		myDimension = dimension;
+		myOffHeap = offHeap;
+		clear();
+	}
+
+	/**
+	 * Removes all samples (views obtained before this call are not affected).
+	 */
+	public void clear() {
+		myChunks = new FloatBuffer[0];
+		myChunkStarts = new int[]{0};
+		mySize = 0;
+	}
+
+	/**
+	 * @return Number of values per sample
+	 */
+	public int getDimension() {
+		return myDimension;
+	}
+
+	/**
+	 * @return True if samples are stored outside the Java heap
+	 */
+	public boolean isOffHeap() {
+		return myOffHeap;
+	}
+
+	/**
+	 * @return Number of samples stored
+	 */
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * @param time Time of the new sample (samples must be appended in order of time)
+	 * @param values Values of the new sample (copied)
+	 */
+	public void append(float time, float[] values) {
+		if (values.length != myDimension) {
+			throw new IllegalArgumentException("Expected " + myDimension + " values but got " + values.length);
+		}
+
+		FloatBuffer chunk = myChunks.length == 0 ? null : myChunks[myChunks.length - 1];
+		if (chunk == null || chunk.remaining() < myDimension + 1) {
+			chunk = addChunk(chunk);
+		}
+		chunk.put(time);
+		chunk.put(values);
+		mySize++;
+		myChunkStarts[myChunkStarts.length - 1] = mySize;
+	}
+
+	//chunks and starts are replaced rather than modified, so that views can keep the arrays they were made with
+	private FloatBuffer addChunk(FloatBuffer last) {
+		int sampleFloats = myDimension + 1;
+		int floats = last == null ? ourFirstChunkFloats : Math.min(2 * last.capacity(), ourMaxChunkFloats);
+		int samples = Math.max(1, floats / sampleFloats);
+
+		FloatBuffer chunk;
+		if (myOffHeap) {
+			chunk = ByteBuffer.allocateDirect(samples * sampleFloats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		} else {
+			chunk = FloatBuffer.wrap(new float[samples * sampleFloats]);
+		}
+
+		FloatBuffer[] chunks = new FloatBuffer[myChunks.length + 1];
+		System.arraycopy(myChunks, 0, chunks, 0, myChunks.length);
+		chunks[myChunks.length] = chunk;
+
+		int[] starts = new int[myChunkStarts.length + 1];
+		System.arraycopy(myChunkStarts, 0, starts, 0, myChunkStarts.length);
+		starts[starts.length - 1] = mySize;
+
+		myChunks = chunks;
+		myChunkStarts = starts;
+		return chunk;
+	}
+
+	/**
+	 * @param index Index of a sample
+	 * @return Time of the sample
+	 */
+	public float getTime(int index) {
+		checkRange(index, index + 1);
+		return getTime(myChunks, myChunkStarts, myDimension, index);
+	}
+
+	/**
+	 * @param time A time
+	 * @return Index of the first sample at or after the given time, or size() if there is none
+	 */
+	public int indexOf(float time) {
+		int low = 0;
+		int high = mySize;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getTime(myChunks, myChunkStarts, myDimension, mid) < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param from Index of first sample
+	 * @param to Index after last sample
+	 * @return Times of the samples
+	 */
+	public float[] getTimes(int from, int to) {
+		checkRange(from, to);
+		return getTimes(myChunks, myChunkStarts, myDimension, from, to);
+	}
+
+	/**
+	 * @param from Index of first sample
+	 * @param to Index after last sample
+	 * @return Values of the samples
+	 */
+	public float[][] getValues(int from, int to) {
+		checkRange(from, to);
+		return getValues(myChunks, myChunkStarts, myDimension, from, to);
+	}
+
+	/**
+	 * @param units Units of each dimension
+	 * @param name Name of the view
+	 * @return A read-only view of the samples stored so far (later samples are not included)
+	 */
+	public TimeSeries getView(Units[] units, String name) {
+		return new View(this, 0, mySize, units, name);
+	}
+
+	/**
+	 * @param startTime Start of a time window
+	 * @param endTime End of the time window
+	 * @param units Units of each dimension
+	 * @param name Name of the view
+	 * @return A read-only view of the samples stored so far with times in [startTime, endTime)
+	 */
+	public TimeSeries getView(float startTime, float endTime, Units[] units, String name) {
+		int from = indexOf(startTime);
+		int to = Math.max(from, indexOf(endTime));
+		return new View(this, from, to, units, name);
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > mySize || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " with " + mySize + " samples");
+		}
+	}
+
+	private static int findChunk(int[] starts, int index) {
+		int low = 0;
+		int high = starts.length - 2;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	private static float getTime(FloatBuffer[] chunks, int[] starts, int dimension, int index) {
+		int chunk = findChunk(starts, index);
+		return chunks[chunk].get((index - starts[chunk]) * (dimension + 1));
+	}
+
+	private static float[] getTimes(FloatBuffer[] chunks, int[] starts, int dimension, int from, int to) {
+		float[] result = new float[to - from];
+		int chunk = findChunk(starts, from);
+		for (int i = from; i < to; i++) {
+			while (i >= starts[chunk + 1]) {
+				chunk++;
+			}
+			result[i - from] = chunks[chunk].get((i - starts[chunk]) * (dimension + 1));
+		}
+		return result;
+	}
+
+	private static float[][] getValues(FloatBuffer[] chunks, int[] starts, int dimension, int from, int to) {
+		float[][] result = new float[to - from][];
+		int chunk = findChunk(starts, from);
+		FloatBuffer buffer = to > from ? chunks[chunk].duplicate() : null;
+		for (int i = from; i < to; i++) {
+			if (i >= starts[chunk + 1]) {
+				while (i >= starts[chunk + 1]) {
+					chunk++;
+				}
+				buffer = chunks[chunk].duplicate();
+			}
+			buffer.position((i - starts[chunk]) * (dimension + 1) + 1);
+			result[i - from] = new float[dimension];
+			buffer.get(result[i - from]);
+		}
+		return result;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(mySize);
+		float[] times = getTimes(0, mySize);
+		float[][] values = getValues(0, mySize);
+		for (int i = 0; i < mySize; i++) {
+			out.writeFloat(times[i]);
+			for (int j = 0; j < myDimension; j++) {
+				out.writeFloat(values[i][j]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		clear();
+		int size = in.readInt();
+		float[] values = new float[myDimension];
+		for (int i = 0; i < size; i++) {
+			float time = in.readFloat();
+			for (int j = 0; j < myDimension; j++) {
+				values[j] = in.readFloat();
+			}
+			append(time, values);
+		}
+	}
+
+	/**
+	 * A read-only TimeSeries backed by a range of a SampleStore's chunks. Times and values are copied
+	 * out of the chunks the first time they are asked for.
+	 */
+	private static class View implements TimeSeries {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FloatBuffer[] myChunks;
+		private final int[] myChunkStarts;
+		private final int myDimension;
+		private final int myFrom;
+		private final int myTo;
+		private final Units[] myUnits;
+		private final String[] myLabels;
+		private final String myName;
+		private float[] myTimes;
+		private float[][] myValues;
+
+		public View(SampleStore store, int from, int to, Units[] units, String name) {
+			myChunks = store.myChunks;
+			myChunkStarts = store.myChunkStarts.clone();
+			myDimension = store.myDimension;
+			myFrom = from;
+			myTo = to;
+			myUnits = units;
+			myName = name;
+
+			myLabels = new String[units.length];
+			for (int i = 0; i < myLabels.length; i++) {
+				myLabels[i] = String.valueOf(i+1);
+			}
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getName()
+		 */
+		public String getName() {
+			return myName;
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getTimes()
+		 */
+		public synchronized float[] getTimes() {
+			if (myTimes == null) {
+				myTimes = SampleStore.getTimes(myChunks, myChunkStarts, myDimension, myFrom, myTo);
+			}
+			return myTimes;
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getDimension()
+		 */
+		public int getDimension() {
+			return myUnits.length;
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getValues()
+		 */
+		public synchronized float[][] getValues() {
+			if (myValues == null) {
+				myValues = SampleStore.getValues(myChunks, myChunkStarts, myDimension, myFrom, myTo);
+			}
+			return myValues;
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getUnits()
+		 */
+		public Units[] getUnits() {
+			return myUnits;
+		}
+
+		/**
+		 * @see ca.nengo.util.TimeSeries#getLabels()
+		 */
+		public String[] getLabels() {
+			return myLabels;
+		}
+
+		@Override
+		public TimeSeries clone() throws CloneNotSupportedException {
+			TimeSeriesImpl result = new TimeSeriesImpl(getTimes().clone(), getValues().clone(), myUnits.clone(), myLabels.clone());
+			result.setName(myName);
+			return result;
+		}
+
+		private Object writeReplace() throws java.io.ObjectStreamException {
+			TimeSeriesImpl result = new TimeSeriesImpl(getTimes(), getValues(), myUnits, myLabels);
+			result.setName(myName);
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,245 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.util.SpikePattern;
+
+/**
+ * <p>A SpikePattern that records spikes as an append-only stream of events, rather than an array per
+ * neuron. Spikes that occur at the same time (typically those in one simulation step) share one
+ * entry in a table of times, and each spike adds only the index of its neuron to a packed array,
+ * so memory use is proportional to the number of spikes rather than the number of neurons.</p>
+ *
+ * <p>Optionally, the neuron indices of each step are delta-encoded as variable-length integers, which
+ * typically takes one or two bytes per spike instead of four.</p>
+ *
+ * <p>Per-neuron spike times are built from the events when getSpikeTimes(int) is first called after
+ * spikes have been added. Spikes can be read (eg by a plot) while a simulation adds them.</p>
+ */
+public class SpikeEventPattern implements SpikePattern {
+
+	private static final long serialVersionUID = 1L;
+
+	private static boolean ourCompressByDefault = false;
+
+	private final int myNumNeurons;
+	private final boolean myCompressed;
+
+	private float[] myStepTimes; //time of each step with spikes
+	private int[] myStepStarts; //index of the first event of each step (in myNeurons or myBytes)
+	private int myNumSteps;
+
+	private int[] myNeurons; //neuron of each event, if not compressed
+	private byte[] myBytes; //zigzag varint neuron deltas within each step, if compressed
+	private int myNumEvents;
+	private int mySize; //number of ints or bytes used
+	private int myLastNeuron;
+
+	private transient int[] myViewStarts; //index in myViewTimes of each neuron's first spike
+	private transient float[] myViewTimes;
+	private transient int myViewEvents; //number of events when the views were built
+
+	/**
+	 * @param compress If true, new patterns made with SpikeEventPattern(int) store neuron indices as
+	 * 		delta-encoded varints (default false)
+	 */
+	public static void setCompressByDefault(boolean compress) {
+		ourCompressByDefault = compress;
+	}
+
+	/**
+	 * @return True if new patterns made with SpikeEventPattern(int) are compressed
+	 */
+	public static boolean getCompressByDefault() {
+		return ourCompressByDefault;
+	}
+
+	/**
+	 * @param neurons Number of neurons in the Ensemble that this SpikePattern belongs to
+	 */
+	public SpikeEventPattern(int neurons) {
+		this(neurons, ourCompressByDefault);
+	}
+
+	/**
+	 * @param neurons Number of neurons in the Ensemble that this SpikePattern belongs to
+	 * @param compress If true, neuron indices are stored as delta-encoded varints
+	 */
+	public SpikeEventPattern(int neurons, boolean compress) {
+		myNumNeurons = neurons;
+		myCompressed = compress;
+
+		myStepTimes = new float[16];
+		myStepStarts = new int[16];
+		if (compress) {
+			myBytes = new byte[64];
+		} else {
+			myNeurons = new int[64];
+		}
+	}
+
+	/**
+	 * @param neuron Index of neuron
+	 * @param time Spike time
+	 */
+	public synchronized void addSpike(int neuron, float time) {
+		if (neuron < 0 || neuron >= myNumNeurons) {
+			throw new IndexOutOfBoundsException("Neuron " + neuron + " in pattern of " + myNumNeurons + " neurons");
+		}
+
+		if (myNumSteps == 0 || myStepTimes[myNumSteps - 1] != time) {
+			if (myNumSteps == myStepTimes.length) {
+				myStepTimes = grow(myStepTimes);
+				myStepStarts = grow(myStepStarts);
+			}
+			myStepTimes[myNumSteps] = time;
+			myStepStarts[myNumSteps] = mySize;
+			myNumSteps++;
+			myLastNeuron = 0;
+		}
+
+		if (myCompressed) {
+			if (mySize + 5 > myBytes.length) {
+				myBytes = grow(myBytes);
+			}
+			int delta = neuron - myLastNeuron;
+			int zigzag = (delta << 1) ^ (delta >> 31);
+			while ((zigzag & ~0x7F) != 0) {
+				myBytes[mySize++] = (byte) ((zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+			myBytes[mySize++] = (byte) zigzag;
+			myLastNeuron = neuron;
+		} else {
+			if (mySize == myNeurons.length) {
+				myNeurons = grow(myNeurons);
+			}
+			myNeurons[mySize++] = neuron;
+		}
+		myNumEvents++;
+	}
+
+	/**
+	 * @return Total number of spikes recorded
+	 */
+	public synchronized int getNumSpikes() {
+		return myNumEvents;
+	}
+
+	/**
+	 * @return True if neuron indices are stored as delta-encoded varints
+	 */
+	public boolean isCompressed() {
+		return myCompressed;
+	}
+
+	/**
+	 * @see ca.nengo.util.SpikePattern#getNumNeurons()
+	 */
+	public int getNumNeurons() {
+		return myNumNeurons;
+	}
+
+	/**
+	 * @see ca.nengo.util.SpikePattern#getSpikeTimes(int)
+	 */
+	public float[] getSpikeTimes(int neuron) {
+		int[] starts;
+		float[] times;
+		synchronized (this) {
+			if (myViewStarts == null || myViewEvents != myNumEvents) {
+				buildViews();
+			}
+			starts = myViewStarts;
+			times = myViewTimes;
+		}
+
+		float[] result = new float[starts[neuron + 1] - starts[neuron]];
+		System.arraycopy(times, starts[neuron], result, 0, result.length);
+		return result;
+	}
+
+	//groups the events by neuron, in two passes over the events (count, then fill); call with lock held
+	private void buildViews() {
+		final int[] starts = new int[myNumNeurons + 1];
+		visitEvents(new EventVisitor() {
+			public void visit(int neuron, float time) {
+				starts[neuron + 1]++;
+			}
+		});
+		for (int i = 0; i < myNumNeurons; i++) {
+			starts[i + 1] += starts[i];
+		}
+
+		final float[] times = new float[myNumEvents];
+		final int[] positions = new int[myNumNeurons];
+		System.arraycopy(starts, 0, positions, 0, myNumNeurons);
+		visitEvents(new EventVisitor() {
+			public void visit(int neuron, float time) {
+				times[positions[neuron]++] = time;
+			}
+		});
+
+		myViewStarts = starts;
+		myViewTimes = times;
+		myViewEvents = myNumEvents;
+	}
+
+	private void visitEvents(EventVisitor visitor) {
+		int position = 0;
+		for (int step = 0; step < myNumSteps; step++) {
+			int end = step + 1 < myNumSteps ? myStepStarts[step + 1] : mySize;
+			float time = myStepTimes[step];
+			int neuron = 0;
+			while (position < end) {
+				if (myCompressed) {
+					int zigzag = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = myBytes[position++];
+						zigzag |= (b & 0x7F) << shift;
+						shift += 7;
+					} while ((b & 0x80) != 0);
+					neuron += (zigzag >>> 1) ^ -(zigzag & 1);
+				} else {
+					neuron = myNeurons[position++];
+				}
+				visitor.visit(neuron, time);
+			}
+		}
+	}
+
+	private static interface EventVisitor {
+		public void visit(int neuron, float time);
+	}
+
+	private static float[] grow(float[] array) {
+		float[] result = new float[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] result = new int[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private static byte[] grow(byte[] array) {
+		byte[] result = new byte[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	@Override
+	public synchronized SpikePattern clone() throws CloneNotSupportedException {
+		SpikeEventPattern result = (SpikeEventPattern) super.clone();
+		result.myStepTimes = myStepTimes.clone();
+		result.myStepStarts = myStepStarts.clone();
+		result.myNeurons = myNeurons == null ? null : myNeurons.clone();
+		result.myBytes = myBytes == null ? null : myBytes.clone();
+		result.myViewStarts = null;
+		result.myViewTimes = null;
+		return result;
+	}
+
+}
@@ -0,0 +1,43 @@
+package ca.nengo.dynamics.impl;
+
+import ca.nengo.dynamics.BatchIntegrator;
+import ca.nengo.dynamics.DynamicalSystem;
+import ca.nengo.dynamics.impl.RK45IntegratorTest.VanderPol;
+import ca.nengo.model.Units;
+import ca.nengo.util.TimeSeries;
+import ca.nengo.util.impl.TimeSeriesImpl;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for BatchEulerIntegrator.
+ */
+public class BatchEulerIntegratorTest extends TestCase {
+
+	public void testIntegrate() {
+		float[][] state = new float[][]{new float[]{.1f, .1f}, new float[]{1f, 0f}};
+		DynamicalSystem[] systems = new DynamicalSystem[state.length];
+		for (int i = 0; i < systems.length; i++) {
+			systems[i] = new VanderPol(state[i].clone());
+		}
+
+		final int[] steps = new int[1];
+		BatchEulerIntegrator integrator = new BatchEulerIntegrator(.01f);
+		integrator.integrate(new DynamicalSystemArray(systems), state, new float[2][0], 0f, 1f, new BatchIntegrator.Observer() {
+			public void step(float t, float[][] x) {
+				steps[0]++;
+			}
+		});
+		assertEquals(101, steps[0]);
+
+		//results are the same as with EulerIntegrator
+		TimeSeries empty = new TimeSeriesImpl(new float[]{0, 1f}, new float[][]{new float[0], new float[0]}, new Units[]{});
+		float[][] initial = new float[][]{new float[]{.1f, .1f}, new float[]{1f, 0f}};
+		for (int i = 0; i < state.length; i++) {
+			TimeSeries result = new EulerIntegrator(.01f).integrate(new VanderPol(initial[i]), empty);
+			float[] expected = result.getValues()[result.getValues().length - 1];
+			assertEquals(expected[0], state[i][0], 0f);
+			assertEquals(expected[1], state[i][1], 0f);
+		}
+	}
+
+}
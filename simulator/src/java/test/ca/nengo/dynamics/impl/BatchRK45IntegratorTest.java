@@ -0,0 +1,58 @@
+package ca.nengo.dynamics.impl;
+
+import ca.nengo.TestUtil;
+import ca.nengo.dynamics.BatchIntegrator;
+import ca.nengo.dynamics.DynamicalSystem;
+import ca.nengo.dynamics.impl.RK45IntegratorTest.VanderPol;
+import ca.nengo.model.Units;
+import ca.nengo.util.TimeSeries;
+import ca.nengo.util.impl.TimeSeriesImpl;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for BatchRK45Integrator.
+ */
+public class BatchRK45IntegratorTest extends TestCase {
+
+	public void testIntegrate() {
+		float[][] state = new float[][]{new float[]{.1f, .1f}, new float[]{1f, 0f}, new float[]{-.5f, .2f}};
+		DynamicalSystem[] systems = new DynamicalSystem[state.length];
+		for (int i = 0; i < systems.length; i++) {
+			systems[i] = new VanderPol(state[i].clone());
+		}
+		float[][] input = new float[state.length][0];
+
+		final int[] steps = new int[1];
+		final float[] lastTime = new float[]{-1};
+		new BatchRK45Integrator().integrate(new DynamicalSystemArray(systems), state, input, 0f, 10f, new BatchIntegrator.Observer() {
+			public void step(float t, float[][] x) {
+				assertTrue(t > lastTime[0]);
+				lastTime[0] = t;
+				steps[0]++;
+			}
+		});
+		assertTrue(steps[0] > 1);
+		assertEquals(10f, lastTime[0], 1e-5f);
+
+		//compare with separate integration of each system
+		TimeSeries empty = new TimeSeriesImpl(new float[]{0, 10f}, new float[][]{new float[0], new float[0]}, new Units[]{});
+		float[][] expectedState = new float[][]{new float[]{.1f, .1f}, new float[]{1f, 0f}, new float[]{-.5f, .2f}};
+		for (int i = 0; i < state.length; i++) {
+			TimeSeries result = new RK45Integrator().integrate(new VanderPol(expectedState[i]), empty);
+			float[] expected = result.getValues()[result.getValues().length - 1];
+			TestUtil.assertClose(expected[0], state[i][0], .005f);
+			TestUtil.assertClose(expected[1], state[i][1], .005f);
+		}
+	}
+
+	public void testClone() throws CloneNotSupportedException {
+		BatchRK45Integrator integrator = new BatchRK45Integrator(1e-4f);
+		BatchRK45Integrator copy = (BatchRK45Integrator) integrator.clone();
+		assertEquals(1e-4f, copy.getTolerance(), 0f);
+
+		float[][] state = new float[][]{new float[]{1f, 0f}};
+		copy.integrate(new DynamicalSystemArray(new DynamicalSystem[]{new VanderPol()}), state, new float[1][0], 0f, 1f, null);
+		assertTrue(state[0][0] < 1f);
+	}
+
+}
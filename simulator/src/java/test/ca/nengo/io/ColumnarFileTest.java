@@ -0,0 +1,81 @@
+package ca.nengo.io;
+
+import java.io.File;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SpikePattern;
+import ca.nengo.util.TimeSeries;
+import ca.nengo.util.impl.SpikePatternImpl;
+import ca.nengo.util.impl.TimeSeriesImpl;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for ColumnarFile.
+ */
+public class ColumnarFileTest extends TestCase {
+
+	private File myFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		myFile = new File("./columnar_file_test." + ColumnarFile.EXTENSION);
+	}
+
+	protected void tearDown() throws Exception {
+		myFile.delete();
+		super.tearDown();
+	}
+
+	public void testTimeSeries() throws Exception {
+		int n = 1000;
+		float[] times = new float[n];
+		float[][] values = new float[n][];
+		for (int i = 0; i < n; i++) {
+			times[i] = i * .001f;
+			values[i] = new float[]{i, -i, 2 * i};
+		}
+		TimeSeriesImpl series = new TimeSeriesImpl(times, values, new Units[]{Units.mV, Units.UNK, Units.S});
+		series.setName("test");
+		series.setLabel(1, "second");
+
+		new FileManager().saveColumnar(series, myFile);
+		assertTrue(ColumnarFile.isColumnar(myFile));
+
+		MappedTimeSeries mapped = (MappedTimeSeries) new FileManager().load(myFile);
+		assertEquals("test", mapped.getName());
+		assertEquals(n, mapped.getNumSamples());
+		assertEquals(3, mapped.getDimension());
+		assertEquals(Units.mV, mapped.getUnits()[0]);
+		assertEquals("second", mapped.getLabels()[1]);
+		assertEquals(times[500], mapped.getTimes()[500]);
+		assertEquals(-500f, mapped.getValues()[500][1]);
+
+		TimeSeries window = mapped.getWindow(times[100], times[200], new int[]{2});
+		assertEquals(100, window.getTimes().length);
+		assertEquals(1, window.getDimension());
+		assertEquals(Units.S, window.getUnits()[0]);
+		assertEquals(200f, window.getValues()[0][0]);
+		assertEquals(398f, window.getValues()[99][0]);
+	}
+
+	public void testSpikePattern() throws Exception {
+		SpikePatternImpl pattern = new SpikePatternImpl(3);
+		for (int i = 0; i < 200; i++) {
+			pattern.addSpike(0, i * .01f);
+		}
+		pattern.addSpike(2, .5f);
+
+		new FileManager().saveColumnar(pattern, myFile);
+		MappedSpikePattern mapped = (MappedSpikePattern) ColumnarFile.open(myFile);
+
+		assertEquals(3, mapped.getNumNeurons());
+		assertEquals(200, mapped.getSpikeTimes(0).length);
+		assertEquals(0, mapped.getSpikeTimes(1).length);
+		assertEquals(.5f, mapped.getSpikeTimes(2)[0]);
+		assertEquals(10, mapped.getSpikeTimes(0, .995f, 1.095f).length);
+
+		SpikePattern copy = mapped.clone();
+		assertEquals(pattern.getSpikeTimes(0)[150], copy.getSpikeTimes(0)[150]);
+	}
+
+}
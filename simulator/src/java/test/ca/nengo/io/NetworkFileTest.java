@@ -0,0 +1,108 @@
+package ca.nengo.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.nengo.model.Network;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.NEFEnsembleFactory;
+import ca.nengo.model.nef.impl.DecodedOrigin;
+import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for NetworkFile.
+ */
+public class NetworkFileTest extends TestCase {
+
+	private File myFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		myFile = new File("./network_file_test." + NetworkFile.EXTENSION);
+	}
+
+	protected void tearDown() throws Exception {
+		myFile.delete();
+		super.tearDown();
+	}
+
+	public void testNetwork() throws Exception {
+		Network network = new NetworkImpl();
+		network.setName("test");
+		NEFEnsembleFactory factory = new NEFEnsembleFactoryImpl();
+		NEFEnsemble a = factory.make("A", 100, 2);
+		NEFEnsemble b = factory.make("B", 100, 2);
+		network.addNode(a);
+		network.addNode(b);
+		b.addDecodedTermination("input", new float[][]{{1, 0}, {0, 1}}, .005f, false);
+		network.addProjection(a.getOrigin(NEFEnsemble.X), b.getTermination("input"));
+
+		new FileManager().saveCompact(network, myFile);
+		assertTrue(NetworkFile.isNetworkFile(myFile));
+		assertFalse(ColumnarFile.isColumnar(myFile));
+
+		Network loaded = (Network) new FileManager().load(myFile);
+		assertEquals("test", loaded.getName());
+		assertEquals(1, loaded.getProjections().length);
+
+		NEFEnsemble loadedA = (NEFEnsemble) loaded.getNode("A");
+		assertEquals(100, loadedA.getNodes().length);
+		assertArrayEquals(a.getEncoders(), loadedA.getEncoders());
+		assertArrayEquals(((DecodedOrigin) a.getOrigin(NEFEnsemble.X)).getDecoders(),
+				((DecodedOrigin) loadedA.getOrigin(NEFEnsemble.X)).getDecoders());
+		assertSame(loadedA.getOrigin(NEFEnsemble.X), loaded.getProjections()[0].getOrigin());
+
+		loaded.getSimulator().run(0f, .01f, .001f);
+	}
+
+	public void testArrays() throws Exception {
+		float[] shared = new float[1000];
+		for (int i = 0; i < shared.length; i++) {
+			shared[i] = i * .5f;
+		}
+		double[] doubles = new double[100];
+		doubles[99] = Math.PI;
+		int[] small = new int[]{1, 2, 3};
+		Object[] graph = new Object[]{shared, "text", shared, doubles, small, new byte[5000]};
+
+		NetworkFile.write(graph, myFile);
+		Object[] result = (Object[]) NetworkFile.read(myFile);
+
+		float[] loaded = (float[]) result[0];
+		assertSame(loaded, result[2]);
+		assertEquals(499.5f, loaded[999]);
+		assertEquals("text", result[1]);
+		assertEquals(Math.PI, ((double[]) result[3])[99]);
+		assertEquals(3, ((int[]) result[4])[2]);
+		assertEquals(5000, ((byte[]) result[5]).length);
+	}
+
+	public void testClassLoader() throws Exception {
+		NetworkFile.write(new ArrayList<Object>(), myFile);
+
+		final List<String> requested = new ArrayList<String>();
+		ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				requested.add(name);
+				return super.loadClass(name, resolve);
+			}
+		};
+		assertTrue(NetworkFile.read(myFile, loader) instanceof ArrayList);
+		assertTrue(requested.contains(ArrayList.class.getName()));
+	}
+
+	private static void assertArrayEquals(float[][] expected, float[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, actual[i].length);
+			for (int j = 0; j < expected[i].length; j++) {
+				assertEquals(expected[i][j], actual[i][j]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package ca.nengo.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import ca.nengo.math.Function;
+import ca.nengo.math.impl.ConstantFunction;
+import ca.nengo.model.Network;
+import ca.nengo.model.Origin;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.FunctionInput;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import ca.nengo.model.neuron.Neuron;
+
+/**
+ * Unit tests for StepLog.
+ */
+public class StepLogTest extends TestCase {
+
+	private File myDirectory;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		myDirectory = new File("testStepLog");
+	}
+
+	protected void tearDown() throws Exception {
+		File[] files = myDirectory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			files[i].delete();
+		}
+		myDirectory.delete();
+		super.tearDown();
+	}
+
+	public void testLog() throws Exception {
+		Network network = new NetworkImpl();
+		FunctionInput input = new FunctionInput("input", new Function[]{new ConstantFunction(1, 1), new ConstantFunction(1, 2)}, Units.UNK);
+		network.addNode(input);
+		NEFEnsemble ensemble = new NEFEnsembleFactoryImpl().make("A", 10, 1);
+		network.addNode(ensemble);
+
+		StepLog log = new StepLog("test", myDirectory, "%(name)s-run", .01f);
+		log.addEntry(new StepLog.OriginEntry("input", new Origin[]{input.getOrigin(FunctionInput.ORIGIN_NAME)}, 0));
+		log.addEntry(new StepLog.OriginEntry("filtered", new Origin[]{input.getOrigin(FunctionInput.ORIGIN_NAME)}, .01f));
+		log.addEntry(new StepLog.SpikeCountEntry("spikes", new Origin[]{ensemble.getOrigin(Neuron.AXON)}, 1));
+		network.addStepListener(log);
+		network.getSimulator().addSimulatorListener(log);
+
+		network.getSimulator().run(0f, .1f, .001f);
+		log.close();
+		File file = new File(myDirectory, "test-run.csv");
+		assertEquals(file, log.getFile());
+
+		List<String> lines = readLines(file);
+		assertEquals("time,input,filtered,spikes", lines.get(0));
+		assertEquals(11, lines.size());
+		String[] fields = lines.get(1).split(",");
+		assertEquals("0.000", fields[0]);
+		assertEquals("1.000;2.000", fields[1]);
+		assertEquals("1.000;2.000", fields[2]);
+		assertEquals(5, fields[3].split(";").length);
+		assertEquals("0.010", lines.get(2).split(",")[0]);
+
+		//a second run appends to the same file with a new header
+		network.getSimulator().run(0f, .05f, .001f);
+		log.close();
+		lines = readLines(file);
+		assertEquals(11 + 6, lines.size());
+		assertEquals("time,input,filtered,spikes", lines.get(11));
+	}
+
+	public void testSkipTicks() throws Exception {
+		Network network = new NetworkImpl();
+		FunctionInput input = new FunctionInput("input", new Function[]{new ConstantFunction(1, 1)}, Units.UNK);
+		network.addNode(input);
+
+		StepLog log = new StepLog("test", myDirectory, "ticks", 1f);
+		log.addEntry(new StepLog.OriginEntry("input", new Origin[]{input.getOrigin(FunctionInput.ORIGIN_NAME)}, 0));
+		log.setSkipTicks(4);
+		network.addStepListener(log);
+
+		network.getSimulator().run(0f, .02f, .001f);
+		log.close();
+		assertEquals(1 + 5, readLines(log.getFile()).size());
+	}
+
+	public void testFlush() throws Exception {
+		Network network = new NetworkImpl();
+		FunctionInput input = new FunctionInput("input", new Function[]{new ConstantFunction(1, 1)}, Units.UNK);
+		network.addNode(input);
+
+		StepLog log = new StepLog("test", myDirectory, "flush", .001f);
+		log.addEntry(new StepLog.OriginEntry("input", new Origin[]{input.getOrigin(FunctionInput.ORIGIN_NAME)}, 0));
+		log.setSkipTicks(1);
+		network.addStepListener(log);
+
+		network.getSimulator().run(0f, .02f, .001f);
+		log.flush();
+		assertEquals(1 + 20, readLines(log.getFile()).size());
+
+		//the file stays open
+		network.getSimulator().run(.02f, .04f, .001f);
+		log.flush();
+		assertEquals(1 + 40, readLines(log.getFile()).size());
+		log.close();
+
+		StepLog autoLog = new StepLog("test", myDirectory, "auto", .001f);
+		autoLog.addEntry(new StepLog.OriginEntry("input", new Origin[]{input.getOrigin(FunctionInput.ORIGIN_NAME)}, 0));
+		autoLog.setSkipTicks(1);
+		autoLog.setAutoFlush(true);
+		network.removeStepListener(log);
+		network.addStepListener(autoLog);
+		network.getSimulator().run(0f, .02f, .001f);
+		long end = System.currentTimeMillis() + 5000;
+		File file = autoLog.getFile();
+		while ((!file.exists() || readLines(file).size() < 1 + 20) && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals(1 + 20, readLines(file).size());
+		autoLog.close();
+	}
+
+	private static List<String> readLines(File file) throws Exception {
+		List<String> result = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				result.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,127 @@
+package ca.nengo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.impl.SpikePatternImpl;
+import ca.nengo.util.impl.TimeSeriesImpl;
+
+import com.jmatio.io.MatFileReader;
+import com.jmatio.types.MLDouble;
+
+/**
+ * Unit tests for StreamingMatlabExporter.
+ */
+public class StreamingMatlabExporterTest extends TestCase {
+
+	private File myFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		myFile = new File("testSME.mat");
+	}
+
+	protected void tearDown() throws Exception {
+		myFile.delete();
+		super.tearDown();
+	}
+
+	public void testAppend() throws Exception {
+		StreamingMatlabExporter exporter = new StreamingMatlabExporter(myFile, false, 5);
+		for (int run = 0; run < 2; run++) {
+			exporter.open();
+			for (int i = 0; i < 10; i++) {
+				int t = run * 10 + i;
+				exporter.add("x", t * .001f, new float[]{t, -t});
+			}
+			exporter.add("y", new TimeSeriesImpl(new float[]{run}, new float[][]{new float[]{run * 2}}, Units.uniform(Units.UNK, 1)));
+			exporter.close();
+		}
+
+		//a new exporter appends to the same variables
+		exporter = new StreamingMatlabExporter(myFile, true, 5);
+		SpikePatternImpl spikes = new SpikePatternImpl(3);
+		spikes.addSpike(2, .5f);
+		exporter.add("spikes", spikes);
+		exporter.add("y", 2f, new float[]{4});
+		exporter.close();
+		assertFalse(new File(myFile.getPath() + ".part").exists());
+
+		MatFileReader reader = new MatFileReader(myFile);
+		double[][] x = ((MLDouble) reader.getMLArray("x")).getArray();
+		assertEquals(2, x.length);
+		assertEquals(20, x[0].length);
+		for (int t = 0; t < 20; t++) {
+			assertEquals(t, x[0][t], 0);
+			assertEquals(-t, x[1][t], 0);
+		}
+		double[][] times = ((MLDouble) reader.getMLArray("x_time")).getArray();
+		assertEquals(1, times.length);
+		assertEquals(19 * .001f, (float) times[0][19], 0);
+
+		double[][] y = ((MLDouble) reader.getMLArray("y")).getArray();
+		assertEquals(3, y[0].length);
+		assertEquals(4, y[0][2], 0);
+
+		double[][] events = ((MLDouble) reader.getMLArray("spikes")).getArray();
+		assertEquals(3, events[0][0], 0);
+		assertEquals(.5f, (float) events[1][0], 0);
+	}
+
+	public void testAppendInPlace() throws Exception {
+		StreamingMatlabExporter exporter = new StreamingMatlabExporter(myFile, false, 4);
+		exporter.add("before", 0f, new float[]{7});
+		exporter.close();
+
+		//a file that is replaced rather than extended in place is no longer the one open here
+		RandomAccessFile open = new RandomAccessFile(myFile, "r");
+		for (int run = 0; run < 3; run++) {
+			for (int i = 0; i < 10; i++) {
+				int t = run * 10 + i;
+				exporter.add("x", t, new float[]{t, 2*t, 3*t});
+			}
+			if (run == 1) {
+				exporter.add("z", 0f, new float[]{5}); //after the grown variables, so moved in the next run
+			}
+			exporter.close();
+			assertEquals(myFile.length(), open.length());
+		}
+		open.close();
+		assertFalse(new File(myFile.getPath() + ".tmp").exists());
+
+		MatFileReader reader = new MatFileReader(myFile);
+		assertEquals(7, ((MLDouble) reader.getMLArray("before")).getArray()[0][0], 0);
+		assertEquals(5, ((MLDouble) reader.getMLArray("z")).getArray()[0][0], 0);
+		double[][] x = ((MLDouble) reader.getMLArray("x")).getArray();
+		double[][] times = ((MLDouble) reader.getMLArray("x_time")).getArray();
+		assertEquals(3, x.length);
+		assertEquals(30, x[0].length);
+		for (int t = 0; t < 30; t++) {
+			assertEquals(3*t, x[2][t], 0);
+			assertEquals(t, times[0][t], 0);
+		}
+	}
+
+	public void testAppendToOtherFile() throws Exception {
+		MatlabExporter other = new MatlabExporter();
+		other.add("a", new float[][]{new float[]{1, 2}});
+		other.write(myFile);
+
+		StreamingMatlabExporter exporter = new StreamingMatlabExporter(myFile, true, 100);
+		exporter.add("b", 0f, new float[]{3});
+		try {
+			exporter.add("a", 0f, new float[]{1, 2});
+			fail("Should have thrown exception");
+		} catch (IOException e) {} // exception is expected
+		exporter.close();
+
+		MatFileReader reader = new MatFileReader(myFile);
+		assertEquals(2, ((MLDouble) reader.getMLArray("a")).getArray()[0][1], 0);
+		assertEquals(3, ((MLDouble) reader.getMLArray("b")).getArray()[0][0], 0);
+	}
+
+}
@@ -0,0 +1,56 @@
+package ca.nengo.math.impl;
+
+import java.util.Random;
+
+import ca.nengo.math.Function;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for GammaBuilder.
+ */
+public class GammaBuilderTest extends TestCase {
+
+	public void testBuild() {
+		Random random = new Random(1);
+		float[][] values = new float[70][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = new float[600];
+			for (int k = 0; k < values[i].length; k++) {
+				values[i][k] = random.nextFloat() * 100f;
+			}
+		}
+
+		float[][] evalPoints = new float[600][];
+		for (int k = 0; k < evalPoints.length; k++) {
+			evalPoints[k] = new float[]{random.nextFloat() * 2f - 1f};
+		}
+		Function cost = new AbstractFunction(1) {
+			private static final long serialVersionUID = 1L;
+			public float map(float[] from) {
+				return 1f + from[0] * from[0];
+			}
+		};
+
+		int numThreads = GammaBuilder.getNumThreads();
+		try {
+			for (int t = 1; t <= 3; t++) {
+				GammaBuilder.setNumThreads(t);
+				double[][] gamma = GammaBuilder.build(values, evalPoints, cost);
+				for (int i = 0; i < values.length; i++) {
+					for (int j = 0; j < values.length; j++) {
+						double expected = 0;
+						for (int k = 0; k < evalPoints.length; k++) {
+							expected += (double) values[i][k] * values[j][k] * cost.map(evalPoints[k]);
+						}
+						expected = expected / evalPoints.length;
+						assertEquals(expected, gamma[i][j], Math.abs(expected) * 1e-5);
+						assertEquals(gamma[i][j], gamma[j][i], 0);
+					}
+				}
+			}
+		} finally {
+			GammaBuilder.setNumThreads(numThreads);
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package ca.nengo.math.impl;
+
+import java.util.Random;
+
+import ca.nengo.math.LinearSolver;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the LinearSolver implementations.
+ */
+public class LinearSolverTest extends TestCase {
+
+	public void testWellConditioned() {
+		double[][] matrix = makeMatrix(20, 1);
+		for (int i = 0; i < matrix.length; i++) {
+			matrix[i][i] += 1;
+		}
+		double[] x = new double[matrix.length];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = i - 10;
+		}
+		double[] b = times(matrix, x);
+
+		LinearSolver[] solvers = new LinearSolver[]{new EigenSolver(), new CholeskySolver(0f), new ConjugateGradientSolver(1e-10f, 0)};
+		for (LinearSolver solver : solvers) {
+			LinearSolver.Solution solution = solver.prepare(matrix, 0f, -1);
+			double[] result = solution.solve(b);
+			for (int i = 0; i < x.length; i++) {
+				assertEquals(x[i], result[i], 1e-6);
+			}
+			assertTrue(solution.getConditionNumber() >= 1);
+			assertTrue(solution.getSummary().length() > 0);
+		}
+	}
+
+	public void testMatchesPseudoInverse() {
+		double[][] matrix = makeMatrix(15, 2);
+		double[] b = new double[matrix.length];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = Math.sin(i);
+		}
+
+		float minSV = .1f;
+		WeightedCostApproximator approximator = new WeightedCostApproximator(new float[][]{new float[]{0}},
+				new float[][]{new float[]{0}}, new ConstantFunction(1, 1f), 0f, -1, true);
+		double[] expected = times(approximator.pseudoInverse(matrix, minSV, -1), b);
+		double[] result = new EigenSolver().prepare(matrix, minSV, -1).solve(b);
+		for (int i = 0; i < b.length; i++) {
+			assertEquals(expected[i], result[i], 1e-6);
+		}
+
+		result = new PseudoInverseSolver().prepare(matrix, minSV, -1).solve(b);
+		for (int i = 0; i < b.length; i++) {
+			assertEquals(expected[i], result[i], 1e-6);
+		}
+	}
+
+	public void testSolveMany() {
+		double[][] matrix = makeMatrix(12, 2);
+		double[][] b = new double[matrix.length][3];
+		for (int i = 0; i < b.length; i++) {
+			for (int j = 0; j < b[i].length; j++) {
+				b[i][j] = Math.cos(i + 5 * j);
+			}
+		}
+
+		LinearSolver[] solvers = new LinearSolver[]{new EigenSolver(), new CholeskySolver(), new ConjugateGradientSolver(),
+				new PseudoInverseSolver()};
+		for (LinearSolver solver : solvers) {
+			LinearSolver.Solution solution = solver.prepare(matrix, .01f, -1);
+			double[][] result = solution.solve(b);
+			for (int j = 0; j < b[0].length; j++) {
+				double[] column = new double[b.length];
+				for (int i = 0; i < b.length; i++) {
+					column[i] = b[i][j];
+				}
+				double[] expected = solution.solve(column);
+				for (int i = 0; i < b.length; i++) {
+					assertEquals(expected[i], result[i][j], 1e-9 * (1 + Math.abs(expected[i])));
+				}
+			}
+		}
+	}
+
+	public void testNotPositiveDefinite() {
+		double[][] matrix = new double[][]{new double[]{1, 0}, new double[]{0, -1}};
+		try {
+			new CholeskySolver(0f).prepare(matrix, 0f, -1);
+			fail("Should have thrown exception");
+		} catch (IllegalArgumentException e) {} //exception is expected
+	}
+
+	//symmetric positive semi-definite matrix with eigenvalues spread over 'decades' orders of magnitude
+	private static double[][] makeMatrix(int n, int decades) {
+		Random random = new Random(3);
+		double[][] a = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			double scale = Math.pow(10, -decades * (double) i / n);
+			for (int j = 0; j < n; j++) {
+				a[i][j] = random.nextGaussian() * scale;
+			}
+		}
+		double[][] result = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				for (int k = 0; k < n; k++) {
+					result[i][j] += a[k][i] * a[k][j];
+				}
+			}
+		}
+		return result;
+	}
+
+	private static double[] times(double[][] matrix, double[] x) {
+		double[] result = new double[matrix.length];
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < x.length; j++) {
+				result[i] += matrix[i][j] * x[j];
+			}
+		}
+		return result;
+	}
+
+}
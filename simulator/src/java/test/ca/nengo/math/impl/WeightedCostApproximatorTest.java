@@ -105,6 +105,61 @@ public class WeightedCostApproximatorTest extends TestCase {
 		
 	}
 	
+	public void testFindCoefficientsBatch() {
+		float[][] evalPoints = new float[200][];
+		for (int i = 0; i < evalPoints.length; i++) {
+			evalPoints[i] = new float[]{-1f + 2f * i / (float) evalPoints.length};
+		}
+		float[][] values = new float[20][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = new float[evalPoints.length];
+			for (int j = 0; j < evalPoints.length; j++) {
+				values[i][j] = Math.max(0f, (i % 2 == 0 ? 1f : -1f) * evalPoints[j][0] * (50f + 5f * i) + 10f * i - 100f);
+			}
+		}
+
+		LinearApproximator approximator = new WeightedCostApproximator.Factory(.1f).getApproximator(evalPoints, values);
+		Function[] targets = new Function[]{new IdentityFunction(1, 0), new Polynomial(new float[]{0f, 0f, 1f}), new ConstantFunction(1, .5f)};
+		float[][] coefficients = approximator.findCoefficients(targets);
+		assertEquals(values.length, coefficients.length);
+
+		for (int j = 0; j < targets.length; j++) {
+			float[] expected = approximator.findCoefficients(targets[j]);
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(expected[i], coefficients[i][j], 1e-6f * (1f + Math.abs(expected[i])));
+			}
+		}
+	}
+
+	public void testFindCoefficientsSignals() {
+		int length = 50;
+		float[][][] evalSignals = new float[2][1][length];
+		for (int t = 0; t < length; t++) {
+			evalSignals[0][0][t] = (float) Math.sin(.2 * t);
+			evalSignals[1][0][t] = (float) Math.cos(.1 * t);
+		}
+		float[][][] values = new float[10][2][length];
+		for (int i = 0; i < values.length; i++) {
+			for (int s = 0; s < 2; s++) {
+				for (int t = 0; t < length; t++) {
+					values[i][s][t] = Math.max(0f, (i % 2 == 0 ? 1f : -1f) * evalSignals[s][0][t] * (20f + i) + i);
+				}
+			}
+		}
+
+		WeightedCostApproximator approximator = new WeightedCostApproximator(evalSignals, values, new ConstantFunction(1, 1f), .1f, -1, true);
+		float[][] targets = new float[][]{evalSignals[0][0], evalSignals[1][0]};
+		float[][] coefficients = approximator.findCoefficients(targets);
+		assertEquals(values.length, coefficients.length);
+
+		for (int j = 0; j < targets.length; j++) {
+			float[] expected = approximator.findCoefficients(targets[j]);
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(expected[i], coefficients[i][j], 1e-6f * (1f + Math.abs(expected[i])));
+			}
+		}
+	}
+
 	public static void main(String[] args)
 	{
 		WeightedCostApproximatorTest t = new WeightedCostApproximatorTest();
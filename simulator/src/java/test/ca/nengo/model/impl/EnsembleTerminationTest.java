@@ -3,9 +3,13 @@
  */
 package ca.nengo.model.impl;
 
+import java.util.Random;
+
 import ca.nengo.TestUtil;
+import ca.nengo.model.SpikeOutput;
 import ca.nengo.model.StructuralException;
 import ca.nengo.model.Termination;
+import ca.nengo.model.Units;
 import ca.nengo.model.impl.EnsembleTermination;
 import ca.nengo.model.impl.LinearExponentialTermination;
 import junit.framework.TestCase;
@@ -73,4 +77,36 @@ public class EnsembleTerminationTest extends TestCase {
 		TestUtil.assertClose(ourTau*2, myNodeTerminations[0].getTau(), ourTolerance);
 	}
 
+	/**
+	 * Test method for {@link ca.nengo.model.impl.EnsembleTermination#setValues(ca.nengo.model.InstantaneousOutput)}.
+	 * @throws Exception 
+	 */
+	public void testSetSpikeValues() throws Exception {
+		Random random = new Random(1);
+		int n = 20;
+		LinearExponentialTermination[] sparse = new LinearExponentialTermination[5];
+		LinearExponentialTermination[] dense = new LinearExponentialTermination[sparse.length];
+		for (int i = 0; i < sparse.length; i++) {
+			float[] weights = new float[n];
+			for (int j = 0; j < n; j++) {
+				weights[j] = random.nextFloat() - .5f;
+			}
+			sparse[i] = new LinearExponentialTermination(null, "test", weights, ourTau);
+			dense[i] = new LinearExponentialTermination(null, "test", weights, ourTau);
+		}
+		EnsembleTermination termination = new EnsembleTermination(null, "test", sparse);
+
+		boolean[] spikes = new boolean[n];
+		spikes[2] = true;
+		spikes[7] = true;
+		spikes[19] = true;
+		SpikeOutput input = new SpikeOutputImpl(spikes, Units.SPIKES, 0);
+		termination.setValues(input);
+		for (int i = 0; i < sparse.length; i++) {
+			dense[i].setValues(input);
+			assertSame(input, sparse[i].getInput());
+			assertEquals(dense[i].updateCurrent(true, .001f, 0), sparse[i].updateCurrent(true, .001f, 0), ourTolerance);
+		}
+	}
+
 }
@@ -0,0 +1,56 @@
+package ca.nengo.model.nef.impl;
+
+import ca.nengo.TestUtil;
+import ca.nengo.dynamics.impl.CanonicalModel;
+import ca.nengo.dynamics.impl.EulerIntegrator;
+import ca.nengo.dynamics.impl.LTISystem;
+import ca.nengo.dynamics.impl.SimpleLTISystem;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.RealOutputImpl;
+import ca.nengo.util.MU;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for DecodedTermination.
+ */
+public class DecodedTerminationTest extends TestCase {
+
+	public void testExponentialStep() throws StructuralException, SimulationException {
+		float tau = .005f;
+		SimpleLTISystem dynamics = new SimpleLTISystem(new float[]{-1f/tau}, new float[][]{new float[]{1f}},
+				new float[][]{new float[]{1f/tau}}, new float[]{0f}, new Units[]{Units.UNK});
+		DecodedTermination termination = new DecodedTermination(null, "test", MU.I(3), dynamics, new EulerIntegrator(tau/10f));
+		termination.setValues(new RealOutputImpl(new float[]{1f, -2f, 0f}, Units.UNK, 0f));
+
+		float dt = .001f;
+		for (int i = 1; i <= 20; i++) {
+			termination.run((i-1) * dt, i * dt);
+			float expected = 1f - (float) Math.exp(-i * dt / tau); //step response of exponential PSC
+			float[] output = termination.getOutput();
+			TestUtil.assertClose(expected, output[0], 1e-4f);
+			TestUtil.assertClose(-2f * expected, output[1], 1e-4f);
+			assertEquals(0f, output[2]);
+		}
+
+		//larger steps than the time constant are still exact
+		termination.reset(false);
+		termination.setValues(new RealOutputImpl(new float[]{1f, -2f, 0f}, Units.UNK, 0f));
+		termination.run(0f, .01f);
+		TestUtil.assertClose(1f - (float) Math.exp(-2), termination.getOutput()[0], 1e-4f);
+	}
+
+	public void testHigherOrderDynamics() throws StructuralException, SimulationException {
+		//second-order dynamics fall back to Euler integration
+		LTISystem dynamics = CanonicalModel.getRealization(new float[]{0f, 10000f}, new float[]{200f, 10000f}, 0f);
+		DecodedTermination termination = new DecodedTermination(null, "test", MU.I(1), dynamics, new EulerIntegrator(.0001f));
+		termination.setValues(new RealOutputImpl(new float[]{1f}, Units.UNK, 0f));
+
+		for (int i = 0; i < 1000; i++) {
+			termination.run(i * .001f, (i+1) * .001f);
+		}
+		TestUtil.assertClose(1f, termination.getOutput()[0], 1e-3f);
+	}
+
+}
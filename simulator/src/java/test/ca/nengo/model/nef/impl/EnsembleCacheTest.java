@@ -0,0 +1,189 @@
+package ca.nengo.model.nef.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import ca.nengo.math.impl.IndicatorPDF;
+import ca.nengo.model.Node;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.impl.NoiseFactory;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.neuron.impl.LIFNeuronFactory;
+import ca.nengo.model.neuron.impl.SpikingNeuron;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for EnsembleCache.
+ */
+public class EnsembleCacheTest extends TestCase {
+
+	private File myDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		myDirectory = File.createTempFile("ensembleCache", "");
+		myDirectory.delete();
+		myDirectory.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = myDirectory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			files[i].delete();
+		}
+		myDirectory.delete();
+		super.tearDown();
+	}
+
+	public void testKey() {
+		EnsembleCache.Key a = new EnsembleCache.Key().add("test").add(1).add(new float[][]{new float[]{1f, 2f}});
+		EnsembleCache.Key b = new EnsembleCache.Key().add("test").add(1).add(new float[][]{new float[]{1f, 2f}});
+		assertEquals(a.toString(), b.toString());
+		assertEquals(64, a.toString().length());
+
+		EnsembleCache.Key c = a.clone().add(2);
+		assertFalse(a.toString().equals(c.toString()));
+		assertEquals(a.toString(), b.toString());
+
+		//same values, different structure
+		assertFalse(new EnsembleCache.Key().add(new float[]{1f, 2f}).toString().equals(
+				new EnsembleCache.Key().add(new float[][]{new float[]{1f}, new float[]{2f}}).toString()));
+	}
+
+	public void testKeyFields() {
+		String a = new EnsembleCache.Key().addFields(new LIFNeuronFactory(.02f, .002f, new IndicatorPDF(200, 400), new IndicatorPDF(-1, 1))).toString();
+		String b = new EnsembleCache.Key().addFields(new LIFNeuronFactory(.02f, .002f, new IndicatorPDF(200, 400), new IndicatorPDF(-1, 1))).toString();
+		String c = new EnsembleCache.Key().addFields(new LIFNeuronFactory(.02f, .002f, new IndicatorPDF(200, 300), new IndicatorPDF(-1, 1))).toString();
+		assertEquals(a, b);
+		assertFalse(a.equals(c));
+
+		try {
+			new EnsembleCache.Key().addFields(new Object());
+			fail("Should have thrown exception");
+		} catch (IllegalArgumentException e) {} //exception is expected
+	}
+
+	public void testMake() throws StructuralException {
+		EnsembleCache cache = new EnsembleCache(myDirectory, 100000000L);
+		NEFEnsembleFactoryImpl factory = new NEFEnsembleFactoryImpl();
+		EnsembleCache.Key key = new EnsembleCache.Key().add("seed").add(1);
+		float[] radii = new float[]{1f, 2f};
+
+		NEFEnsemble made = factory.make("a", 50, radii, cache, key);
+		assertEquals(1, countEntries());
+
+		NEFEnsemble loaded = factory.make("b", 50, radii, cache, key);
+		assertEquals("b", loaded.getName());
+		assertEquals(1, countEntries());
+		assertEquals(factory, loaded.getEnsembleFactory());
+
+		assertEquals(made.getEncoders(), loaded.getEncoders());
+		assertEquals(((DecodedOrigin) made.getOrigin(NEFEnsemble.X)).getDecoders(),
+				((DecodedOrigin) loaded.getOrigin(NEFEnsemble.X)).getDecoders());
+		for (int i = 0; i < made.getNodes().length; i++) {
+			SpikingNeuron a = (SpikingNeuron) made.getNodes()[i];
+			SpikingNeuron b = (SpikingNeuron) loaded.getNodes()[i];
+			assertEquals(a.getScale(), b.getScale(), 0f);
+			assertEquals(a.getBias(), b.getBias(), 0f);
+		}
+
+		//a different key (or ensemble size) is a different entry
+		factory.make("c", 51, radii, cache, key);
+		assertEquals(2, countEntries());
+	}
+
+	public void testOriginConfig() throws StructuralException, IOException {
+		EnsembleCache cache = new EnsembleCache(myDirectory, 100000000L);
+		NEFEnsembleFactoryImpl factory = new NEFEnsembleFactoryImpl();
+		EnsembleCache.Key key = new EnsembleCache.Key().add("noise");
+		NEFEnsemble made = factory.make("a", 20, new float[]{1f});
+		((DecodedOrigin) made.getOrigin(NEFEnsemble.X)).setNoise(NoiseFactory.makeRandomNoise(1000f, new IndicatorPDF(-.1f, .1f)));
+		cache.store(key, made);
+
+		NEFEnsemble loaded = cache.load(key, "b", factory);
+		assertNotNull(((DecodedOrigin) loaded.getOrigin(NEFEnsemble.X)).getNoise());
+
+		//default origins of other factories are kept as they were made
+		factory = new NoisyFactory();
+		key = new EnsembleCache.Key().add("noisy factory");
+		factory.make("a", 20, new float[]{1f}, cache, key);
+		loaded = factory.make("b", 20, new float[]{1f}, cache, key);
+		assertEquals("b", loaded.getName());
+		assertNotNull(((DecodedOrigin) loaded.getOrigin(NEFEnsemble.X)).getNoise());
+	}
+
+	public void testDamagedEntry() throws StructuralException, IOException {
+		EnsembleCache cache = new EnsembleCache(myDirectory, 100000000L);
+		NEFEnsembleFactoryImpl factory = new NEFEnsembleFactoryImpl();
+		EnsembleCache.Key key = new EnsembleCache.Key().add("damaged");
+		NEFEnsemble made = factory.make("a", 20, new float[]{1f}, cache, key);
+
+		File entry = myDirectory.listFiles()[0];
+		RandomAccessFile file = new RandomAccessFile(entry, "rw");
+		file.seek(file.length() / 2);
+		int b = file.read();
+		file.seek(file.length() / 2);
+		file.write(~b);
+		file.close();
+
+		//damaged entry is discarded and replaced
+		NEFEnsemble loaded = factory.make("a", 20, new float[]{1f}, cache, key);
+		assertFalse(equal(made.getEncoders(), loaded.getEncoders()));
+		assertEquals(1, countEntries());
+	}
+
+	public void testEvict() throws StructuralException {
+		EnsembleCache cache = new EnsembleCache(myDirectory, 100000000L);
+		NEFEnsembleFactoryImpl factory = new NEFEnsembleFactoryImpl();
+		for (int i = 0; i < 3; i++) {
+			factory.make("a", 20, new float[]{1f}, cache, new EnsembleCache.Key().add(i));
+		}
+		assertEquals(3, countEntries());
+
+		long size = myDirectory.listFiles()[0].length();
+		cache.setMaxBytes(2 * size);
+		cache.evict();
+		assertEquals(2, countEntries());
+	}
+
+	private static class NoisyFactory extends NEFEnsembleFactoryImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void addDefaultOrigins(NEFEnsemble ensemble) throws StructuralException {
+			super.addDefaultOrigins(ensemble);
+			((DecodedOrigin) ensemble.getOrigin(NEFEnsemble.X)).setNoise(NoiseFactory.makeRandomNoise(1000f, new IndicatorPDF(-.1f, .1f)));
+		}
+	}
+
+	private int countEntries() {
+		int result = 0;
+		for (File file : myDirectory.listFiles()) {
+			if (file.getName().endsWith("." + EnsembleCache.EXTENSION)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static void assertEquals(float[][] expected, float[][] actual) {
+		assertTrue(equal(expected, actual));
+	}
+
+	private static boolean equal(float[][] a, float[][] b) {
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int i = 0; i < a.length; i++) {
+			if (!java.util.Arrays.equals(a[i], b[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -3,26 +3,32 @@
  */
 package ca.nengo.model.nef.impl;
 
+import ca.nengo.TestUtil;
 import ca.nengo.math.Function;
 import ca.nengo.math.impl.AbstractFunction;
 //import ca.nengo.math.impl.ConstantFunction;
 import ca.nengo.model.Network;
 import ca.nengo.model.Node;
 import ca.nengo.model.Projection;
+import ca.nengo.model.RealOutput;
 import ca.nengo.model.SimulationException;
+import ca.nengo.model.SimulationMode;
 import ca.nengo.model.StructuralException;
 import ca.nengo.model.Units;
 import ca.nengo.model.impl.FunctionInput;
 import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.nef.NEFEnsemble;
 import ca.nengo.model.nef.NEFEnsembleFactory;
 import ca.nengo.model.nef.impl.BiasOrigin;
 //import ca.nengo.model.nef.impl.DecodedOrigin;
 //import ca.nengo.model.nef.impl.DecodedTermination;
 import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import ca.nengo.model.neuron.Neuron;
 import ca.nengo.model.neuron.impl.SpikingNeuron;
 import ca.nengo.plot.Plotter;
 import ca.nengo.util.MU;
+import ca.nengo.util.Memory;
 import ca.nengo.util.Probe;
 import ca.nengo.util.TimeSeries;
 import ca.nengo.util.impl.TimeSeriesImpl;
@@ -307,6 +313,86 @@ public class NEFEnsembleImplTest extends TestCase {
 		return numDead;
 	}
 	
+	public void testUsePopulation() throws StructuralException, SimulationException, CloneNotSupportedException {
+		NEFEnsembleFactoryImpl ef = new NEFEnsembleFactoryImpl();
+		NEFEnsembleImpl population = (NEFEnsembleImpl) ef.make("population", 100, 2);
+		NEFEnsembleImpl individual = population.clone();
+		population.setUsePopulation(true);
+		assertTrue(population.getUsePopulation());
+		assertFalse(individual.getUsePopulation());
+
+		float[][] transform = MU.I(2);
+		population.addDecodedTermination("input", transform, .005f, false);
+		individual.addDecodedTermination("input", transform, .005f, false);
+		((DecodedTermination) population.getTermination("input")).setValues(new RealOutputImpl(new float[]{.5f, -.3f}, Units.UNK, 0));
+		((DecodedTermination) individual.getTermination("input")).setValues(new RealOutputImpl(new float[]{.5f, -.3f}, Units.UNK, 0));
+
+		float stepSize = .001f;
+		for (int i = 0; i < 200; i++) {
+			population.run(i * stepSize, (i+1) * stepSize);
+			individual.run(i * stepSize, (i+1) * stepSize);
+
+			float[] expected = ((RealOutput) individual.getOrigin(NEFEnsemble.X).getValues()).getValues();
+			float[] actual = ((RealOutput) population.getOrigin(NEFEnsemble.X).getValues()).getValues();
+			for (int j = 0; j < expected.length; j++) {
+				TestUtil.assertClose(actual[j], expected[j], 1e-3f);
+			}
+		}
+	}
+
+	public void testReuseBuffers() throws StructuralException, SimulationException, CloneNotSupportedException {
+		NEFEnsembleFactoryImpl ef = new NEFEnsembleFactoryImpl();
+		NEFEnsembleImpl reusing = (NEFEnsembleImpl) ef.make("reusing", 50, 2);
+		NEFEnsembleImpl allocating = reusing.clone();
+
+		float[][] transform = MU.I(2);
+		reusing.addDecodedTermination("input", transform, .005f, false);
+		allocating.addDecodedTermination("input", transform, .005f, false);
+
+		float stepSize = .001f;
+		try {
+			for (int i = 0; i < 100; i++) {
+				RealOutput input = new RealOutputImpl(new float[]{.5f, -.3f + .005f * i}, Units.UNK, i * stepSize);
+
+				Memory.setReuseBuffers(true);
+				reusing.getTermination("input").setValues(input);
+				reusing.run(i * stepSize, (i+1) * stepSize);
+
+				Memory.setReuseBuffers(false);
+				allocating.getTermination("input").setValues(input);
+				allocating.run(i * stepSize, (i+1) * stepSize);
+
+				float[] expected = ((RealOutput) allocating.getOrigin(NEFEnsemble.X).getValues()).getValues();
+				float[] actual = ((RealOutput) reusing.getOrigin(NEFEnsemble.X).getValues()).getValues();
+				for (int j = 0; j < expected.length; j++) {
+					assertEquals(expected[j], actual[j], 0f);
+				}
+			}
+		} finally {
+			Memory.setReuseBuffers(false);
+		}
+	}
+
+	public void testGetConstantOutputs() throws StructuralException, SimulationException {
+		NEFEnsembleFactoryImpl ef = new NEFEnsembleFactoryImpl();
+		NEFEnsembleImpl ensemble = (NEFEnsembleImpl) ef.make("ensemble", 20, 1);
+		float[][] evalPoints = new float[][]{new float[]{-1f}, new float[]{0f}, new float[]{.5f}, new float[]{1f}};
+		float[][] outputs = ensemble.getConstantOutputs(evalPoints, Neuron.AXON);
+
+		//compare with running each neuron in CONSTANT_RATE mode
+		Node[] nodes = ensemble.getNodes();
+		for (int i = 0; i < nodes.length; i++) {
+			SpikingNeuron neuron = (SpikingNeuron) nodes[i];
+			neuron.setMode(SimulationMode.CONSTANT_RATE);
+			for (int j = 0; j < evalPoints.length; j++) {
+				neuron.setRadialInput(ensemble.getRadialInput(evalPoints[j], i));
+				neuron.run(0f, 0f);
+				float expected = ((RealOutput) neuron.getOrigin(Neuron.AXON).getValues()).getValues()[0];
+				assertEquals(expected, outputs[i][j], 0f);
+			}
+		}
+	}
+
 	public void testAddDecodedSignalOrigin() throws StructuralException
 	{
 		NEFEnsembleFactoryImpl ef = new NEFEnsembleFactoryImpl();
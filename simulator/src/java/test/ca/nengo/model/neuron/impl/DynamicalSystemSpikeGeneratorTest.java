@@ -0,0 +1,79 @@
+package ca.nengo.model.neuron.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ca.nengo.model.InstantaneousOutput;
+import ca.nengo.model.RealOutput;
+import ca.nengo.model.SimulationMode;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for DynamicalSystemSpikeGenerator.
+ */
+public class DynamicalSystemSpikeGeneratorTest extends TestCase {
+
+	private static int ourRuns;
+
+	protected void tearDown() throws Exception {
+		ResponseCurveCache.clear();
+		super.tearDown();
+	}
+
+	public void testRateModes() {
+		DynamicalSystemSpikeGenerator generator = new DynamicalSystemSpikeGenerator();
+		assertTrue(generator.getConstantRateModeSupported());
+		float[] state = generator.getDynamics().getState().clone();
+
+		generator.setMode(SimulationMode.CONSTANT_RATE);
+		assertEquals(SimulationMode.CONSTANT_RATE, generator.getMode());
+		float rate = ((RealOutput) generator.run(new float[]{0, .001f}, new float[]{.5f, .5f})).getValues()[0];
+		assertEquals(generator.getRate(.5f), rate, 0f);
+
+		generator.setMode(SimulationMode.RATE);
+		assertEquals(SimulationMode.RATE, generator.getMode());
+		rate = ((RealOutput) generator.run(new float[]{0, .001f}, new float[]{.5f, .5f})).getValues()[0];
+		assertEquals(generator.getRate(.5f), rate, 0f);
+
+		//tabulating again after a change in configuration doesn't change the state
+		generator.setTransientTime(.1f);
+		generator.getRate(.5f);
+		float[] after = generator.getDynamics().getState();
+		for (int i = 0; i < state.length; i++) {
+			assertEquals(state[i], after[i], 0f);
+		}
+	}
+
+	public void testSharedCurve() {
+		ourRuns = 0;
+		DynamicalSystemSpikeGenerator first = new KeyedGenerator();
+		assertTrue(ourRuns > 0);
+
+		ourRuns = 0;
+		DynamicalSystemSpikeGenerator second = new KeyedGenerator();
+		assertEquals(0, ourRuns);
+		assertEquals(first.getRate(.7f), second.getRate(.7f), 0f);
+
+		//a different configuration has its own curve
+		second.setTransientTime(.2f);
+		second.getRate(.7f);
+		assertTrue(ourRuns > 0);
+	}
+
+	private static class KeyedGenerator extends DynamicalSystemSpikeGenerator {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public InstantaneousOutput run(float[] time, float[] current) {
+			ourRuns++;
+			return super.run(time, current);
+		}
+
+		@Override
+		protected List<?> getResponseCurveKey() {
+			return Arrays.asList(KeyedGenerator.class, getTransientTime());
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package ca.nengo.model.neuron.impl;
+
+import ca.nengo.TestUtil;
+import ca.nengo.model.Node;
+import ca.nengo.model.RealOutput;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.SimulationMode;
+import ca.nengo.model.SpikeOutput;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.NoiseFactory;
+import ca.nengo.model.neuron.Neuron;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for LIFPopulation.
+ */
+public class LIFPopulationTest extends TestCase {
+
+	public void testIsSupported() throws StructuralException {
+		Node[] nodes = makeNeurons(3);
+		assertTrue(LIFPopulation.isSupported(nodes));
+
+		((SpikingNeuron) nodes[1]).setNoise(NoiseFactory.makeNullNoise());
+		assertFalse(LIFPopulation.isSupported(nodes));
+
+		nodes = makeNeurons(3);
+		((ExpandableSpikingNeuron) nodes[2]).addTermination("input", new float[][]{new float[]{1}}, .005f, false);
+		assertFalse(LIFPopulation.isSupported(nodes));
+
+		try {
+			new LIFPopulation(nodes);
+			fail("Should have thrown exception");
+		} catch (StructuralException e) {} //exception is expected
+	}
+
+	public void testRunSpiking() throws StructuralException, SimulationException {
+		Node[] neurons = makeNeurons(5);
+		Node[] copies = makeNeurons(5);
+		LIFPopulation population = new LIFPopulation(copies);
+
+		float[] input = new float[]{-1f, 0f, .3f, .7f, 1f};
+		float stepSize = .001f;
+		for (int step = 0; step < 500; step++) {
+			float startTime = step * stepSize;
+			float endTime = startTime + stepSize;
+			population.run(input, startTime, endTime, SimulationMode.DEFAULT);
+			population.writeOutputs(endTime);
+
+			for (int i = 0; i < neurons.length; i++) {
+				((SpikingNeuron) neurons[i]).setRadialInput(input[i]);
+				neurons[i].run(startTime, endTime);
+				boolean expected = ((SpikeOutput) neurons[i].getOrigin(Neuron.AXON).getValues()).getValues()[0];
+				assertEquals(expected, population.getOutput()[i] > 0);
+				assertEquals(expected, ((SpikeOutput) copies[i].getOrigin(Neuron.AXON).getValues()).getValues()[0]);
+			}
+		}
+	}
+
+	public void testRunRate() throws StructuralException, SimulationException {
+		Node[] neurons = makeNeurons(5);
+		LIFPopulation population = new LIFPopulation(neurons);
+
+		float[] input = new float[]{-1f, 0f, .3f, .7f, 1f};
+		population.run(input, 0f, .001f, SimulationMode.RATE);
+		assertFalse(population.isSpiking());
+
+		for (int i = 0; i < neurons.length; i++) {
+			SpikingNeuron neuron = (SpikingNeuron) neurons[i];
+			neuron.setMode(SimulationMode.RATE);
+			neuron.setRadialInput(input[i]);
+			neuron.run(0f, .001f);
+			float expected = ((RealOutput) neuron.getOrigin(Neuron.AXON).getValues()).getValues()[0];
+			TestUtil.assertClose(population.getOutput()[i], expected, .001f);
+		}
+	}
+
+	public void testWriteState() throws StructuralException {
+		Node[] neurons = makeNeurons(2);
+		LIFPopulation population = new LIFPopulation(neurons);
+		population.run(new float[]{.5f, .5f}, 0f, .003f, SimulationMode.DEFAULT);
+		population.writeState();
+
+		for (int i = 0; i < neurons.length; i++) {
+			LIFSpikeGenerator generator = (LIFSpikeGenerator) ((SpikingNeuron) neurons[i]).getGenerator();
+			TestUtil.assertClose(generator.getVoltage(), population.getVoltage()[i], 1e-6f);
+		}
+	}
+
+	private static Node[] makeNeurons(int n) {
+		Node[] result = new Node[n];
+		for (int i = 0; i < n; i++) {
+			LinearSynapticIntegrator integrator = new LinearSynapticIntegrator(.0005f, Units.ACU);
+			LIFSpikeGenerator generator = new LIFSpikeGenerator(.0005f, .02f, .002f);
+			result[i] = new ExpandableSpikingNeuron(integrator, generator, 10f + i, 2f - .5f * i, "neuron" + i);
+		}
+		return result;
+	}
+
+	public void testRunExact() throws StructuralException, SimulationException {
+		Node[] neurons = makeNeurons(5);
+		Node[] copies = makeNeurons(5);
+		for (int i = 0; i < neurons.length; i++) {
+			((LIFSpikeGenerator) ((SpikingNeuron) neurons[i]).getGenerator()).setExact(true);
+			((LIFSpikeGenerator) ((SpikingNeuron) copies[i]).getGenerator()).setExact(true);
+		}
+		LIFPopulation population = new LIFPopulation(copies);
+
+		float[] input = new float[]{-1f, 0f, .3f, .7f, 1f};
+		float stepSize = .001f;
+		int spikes = 0;
+		for (int step = 0; step < 500; step++) {
+			float startTime = step * stepSize;
+			float endTime = startTime + stepSize;
+			population.run(input, startTime, endTime, SimulationMode.DEFAULT);
+
+			for (int i = 0; i < neurons.length; i++) {
+				((SpikingNeuron) neurons[i]).setRadialInput(input[i]);
+				neurons[i].run(startTime, endTime);
+				boolean expected = ((SpikeOutput) neurons[i].getOrigin(Neuron.AXON).getValues()).getValues()[0];
+				assertEquals(expected, population.getOutput()[i] > 0);
+				if (expected) {
+					spikes++;
+				}
+			}
+		}
+		assertTrue(spikes > 0);
+	}
+
+}
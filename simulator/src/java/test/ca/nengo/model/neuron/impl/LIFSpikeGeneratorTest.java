@@ -3,6 +3,7 @@
  */
 package ca.nengo.model.neuron.impl;
 
+import ca.nengo.model.PreciseSpikeOutput;
 import ca.nengo.model.RealOutput;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.SimulationMode;
@@ -204,4 +205,84 @@ public void testRunPrecise() throws SimulationException {
 				spikeCount > rate-tolerance && spikeCount < rate+tolerance);
 	}
 
+	public void testRunExact() throws SimulationException {
+		float[] current = new float[]{0f, 1.2f, 2f, 5f};
+		float[] tauRC = new float[]{0.01f, .02f};
+		float[] tauRef = new float[]{.001f, .002f};
+
+		for (int i = 0; i < tauRC.length; i++) {
+			for (int j = 0; j < tauRef.length; j++) {
+				LIFSpikeGenerator sg = new LIFSpikeGenerator(.0005f, tauRC[i], tauRef[j]);
+				sg.setExact(true);
+				for (int k = 0; k < current.length; k++) {
+					assertSpikesCloseToRate(sg, current[k], 1);
+				}
+			}
+		}
+
+		LIFSpikeGenerator sg = new LIFSpikeGenerator(.0005f, .02f, .002f);
+		sg.setExact(true);
+		sg.run(new float[]{0f, .002f}, new float[]{1f, 1f});
+		TimeSeries history = sg.getHistory("V");
+		assertEquals(1, history.getTimes().length);
+		assertEquals(.002f, history.getTimes()[0]);
+		assertBetween(history.getValues()[0][0], .09f, .1f); //1 - exp(-.1)
+	}
+
+	public void testRunExactSynaptic() throws SimulationException {
+		float tauRC = .02f;
+		float[] tauPSC = new float[]{.005f, tauRC};
+		float len = .006f;
+		float asymptote = 1.5f;
+		float initial = 6f;
+
+		for (int i = 0; i < tauPSC.length; i++) {
+			LIFSpikeGenerator sg = new LIFSpikeGenerator(.0005f, tauRC, .002f);
+			sg.setExact(true);
+			sg.setTauPSC(tauPSC[i]);
+			sg.setMode(SimulationMode.PRECISE);
+			float end = asymptote + (initial - asymptote) * (float) Math.exp(-len / tauPSC[i]);
+			float spikeTime = ((PreciseSpikeOutput) sg.run(new float[]{0f, len}, new float[]{initial, end})).getSpikeTimes()[0];
+
+			//first spike time with fine Euler steps
+			double dt = 1e-7;
+			double V = 0;
+			double t = 0;
+			while (V < 1) {
+				double I = asymptote + (initial - asymptote) * Math.exp(-t / tauPSC[i]);
+				V += dt * (I - V) / tauRC;
+				t += dt;
+			}
+			assertEquals((float) t, spikeTime, 1e-5f);
+		}
+	}
+
+	public void testRunExactPeak() throws SimulationException {
+		//threshold is crossed early in the step, and voltage falls back below it by the end
+		float tauRC = .02f;
+		float[] tauPSC = new float[]{.005f, 0f}; //exponential and linear falling currents
+		float len = .001f;
+		float initial = 1.05f;
+
+		for (int i = 0; i < tauPSC.length; i++) {
+			LIFSpikeGenerator sg = new LIFSpikeGenerator(.0005f, tauRC, .002f, .9999f);
+			sg.setExact(true);
+			sg.setTauPSC(tauPSC[i]);
+			sg.setMode(SimulationMode.PRECISE);
+			float end = tauPSC[i] > 0 ? initial * (float) Math.exp(-len / tauPSC[i]) : .5f;
+			float spikeTime = ((PreciseSpikeOutput) sg.run(new float[]{0f, len}, new float[]{initial, end})).getSpikeTimes()[0];
+
+			double dt = 1e-8;
+			double V = .9999;
+			double t = 0;
+			while (V < 1 && t < len) {
+				double I = tauPSC[i] > 0 ? initial * Math.exp(-t / tauPSC[i]) : initial + (end - initial) * t / len;
+				V += dt * (I - V) / tauRC;
+				t += dt;
+			}
+			assertTrue(V >= 1);
+			assertEquals((float) t, spikeTime, 1e-6f);
+		}
+	}
+
 }
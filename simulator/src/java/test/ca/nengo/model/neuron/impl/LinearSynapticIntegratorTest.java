@@ -3,11 +3,13 @@
  */
 package ca.nengo.model.neuron.impl;
 
+import ca.nengo.TestUtil;
 import ca.nengo.model.InstantaneousOutput;
 import ca.nengo.model.SimulationException;
 import ca.nengo.model.StructuralException;
 import ca.nengo.model.Termination;
 import ca.nengo.model.Units;
+import ca.nengo.model.impl.RealOutputImpl;
 import ca.nengo.model.impl.SpikeOutputImpl;
 import ca.nengo.model.neuron.ExpandableSynapticIntegrator;
 import ca.nengo.model.neuron.impl.LinearSynapticIntegrator;
@@ -96,4 +98,26 @@ public class LinearSynapticIntegratorTest extends TestCase {
 		assertTrue(current.getValues1D()[1] < .01f);
 	}
 
+	public void testRunExact() throws StructuralException, SimulationException {
+		LinearSynapticIntegrator si = new LinearSynapticIntegrator(.0001f, Units.ACU);
+		si.setExact(true);
+		si.addTermination("spikes", new float[]{1f}, .01f, false);
+		si.addTermination("reals", new float[]{1f}, .01f, false);
+		Termination[] t = si.getTerminations();
+		Termination spikes = t[0].getName().equals("spikes") ? t[0] : t[1];
+		Termination reals = t[0].getName().equals("spikes") ? t[1] : t[0];
+
+		spikes.setValues(new SpikeOutputImpl(new boolean[]{true}, Units.SPIKES, 0));
+		reals.setValues(new RealOutputImpl(new float[]{2f}, Units.SPIKES_PER_S, 0));
+		TimeSeries1D current = si.run(0f, .005f);
+		assertEquals(2, current.getTimes().length);
+		float decay = (float) Math.exp(-.5);
+		TestUtil.assertClose(100f, current.getValues1D()[0], .001f);
+		TestUtil.assertClose(100f * decay + 2f * (1 - decay), current.getValues1D()[1], .001f);
+
+		assertEquals(.01f, si.getTauPSC());
+		si.addTermination("slow", new float[]{1f}, .1f, false);
+		assertEquals(0f, si.getTauPSC());
+	}
+
 }
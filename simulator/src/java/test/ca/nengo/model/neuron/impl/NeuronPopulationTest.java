@@ -0,0 +1,216 @@
+package ca.nengo.model.neuron.impl;
+
+import ca.nengo.TestUtil;
+import ca.nengo.math.impl.LinearFunction;
+import ca.nengo.model.Node;
+import ca.nengo.model.RealOutput;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.SimulationMode;
+import ca.nengo.model.SpikeOutput;
+import ca.nengo.model.StructuralException;
+import ca.nengo.model.Units;
+import ca.nengo.model.neuron.Neuron;
+import ca.nengo.model.neuron.SpikeGenerator;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for NeuronPopulation.
+ */
+public class NeuronPopulationTest extends TestCase {
+
+	private static final float[] INPUT = new float[]{-1f, 0f, .3f, .7f, 1f};
+
+	public void testIsSupported() throws StructuralException {
+		assertTrue(NeuronPopulation.isSupported(makeNeurons(new ALIFSpikeGenerator[]{
+				new ALIFSpikeGenerator(), new ALIFSpikeGenerator()})));
+		assertFalse(LIFPopulation.isSupported(makeNeurons(new ALIFSpikeGenerator[]{
+				new ALIFSpikeGenerator(), new ALIFSpikeGenerator()})));
+
+		Node[] mixed = makeNeurons(new SpikeGenerator[]{new ALIFSpikeGenerator(), new IzhikevichSpikeGenerator()});
+		assertFalse(NeuronPopulation.isSupported(mixed));
+		try {
+			new NeuronPopulation(mixed);
+			fail("Should have thrown exception");
+		} catch (StructuralException e) {} //exception is expected
+	}
+
+	public void testRunALIF() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[INPUT.length];
+		SpikeGenerator[] copies = new SpikeGenerator[INPUT.length];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new ALIFSpikeGenerator(.002f, .02f, .2f, .1f);
+			copies[i] = new ALIFSpikeGenerator(.002f, .02f, .2f, .1f);
+		}
+		assertMatches(makeNeurons(generators), makeNeurons(copies), SimulationMode.DEFAULT);
+
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new ALIFSpikeGenerator(.002f, .02f, .2f, .1f);
+			copies[i] = new ALIFSpikeGenerator(.002f, .02f, .2f, .1f);
+		}
+		assertMatches(makeNeurons(generators), makeNeurons(copies), SimulationMode.RATE);
+	}
+
+	public void testRunIzhikevich() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[INPUT.length];
+		SpikeGenerator[] copies = new SpikeGenerator[INPUT.length];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new IzhikevichSpikeGenerator();
+			copies[i] = new IzhikevichSpikeGenerator();
+		}
+		assertMatches(makeNeurons(generators), makeNeurons(copies), SimulationMode.DEFAULT);
+	}
+
+	public void testRunPoisson() throws StructuralException {
+		SpikeGenerator[] generators = new SpikeGenerator[INPUT.length];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new PoissonSpikeGenerator(new LinearFunction(new float[]{100}, 100, true));
+		}
+		NeuronPopulation population = new NeuronPopulation(makeNeurons(generators));
+
+		population.run(INPUT, 0f, .001f, SimulationMode.CONSTANT_RATE);
+		assertFalse(population.isSpiking());
+		for (int i = 0; i < INPUT.length; i++) {
+			float current = 1f + 10f * INPUT[i];
+			TestUtil.assertClose(Math.max(0, 100 * current + 100), population.getOutput()[i], .001f);
+		}
+
+		int[] spikes = new int[INPUT.length];
+		int steps = 2000;
+		for (int step = 0; step < steps; step++) {
+			population.run(INPUT, step * .001f, (step+1) * .001f, SimulationMode.DEFAULT);
+			assertTrue(population.isSpiking());
+			for (int i = 0; i < INPUT.length; i++) {
+				spikes[i] += population.getOutput()[i];
+			}
+		}
+		assertEquals(0, spikes[0]);
+		assertTrue(spikes[4] > spikes[2]);
+	}
+
+	public void testRunGruber() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[2];
+		for (int i = 0; i < generators.length; i++) {
+			GruberSpikeGenerator generator = new GruberSpikeGenerator();
+			generator.setDopamine(1f);
+			generators[i] = generator;
+		}
+		Node[] neurons = makeNeurons(generators);
+		NeuronPopulation population = new NeuronPopulation(neurons);
+
+		float[] input = new float[]{-1f, 1f};
+		int[] spikes = new int[input.length];
+		for (int step = 0; step < 500; step++) {
+			population.run(input, step * .001f, (step+1) * .001f, SimulationMode.DEFAULT);
+			for (int i = 0; i < input.length; i++) {
+				spikes[i] += population.getOutput()[i];
+			}
+		}
+		assertEquals(0, spikes[0]);
+		assertTrue(spikes[1] > 0);
+
+		float[] Vm = population.getKernel().getState(GruberSpikeGenerator.MEMBRANE_POTENTIAL);
+		assertTrue(Vm[1] > Vm[0]);
+	}
+
+	public void testRunDynamicalSystem() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[INPUT.length];
+		SpikeGenerator[] copies = new SpikeGenerator[INPUT.length];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new DynamicalSystemSpikeGenerator();
+			copies[i] = new DynamicalSystemSpikeGenerator();
+		}
+		assertMatches(makeNeurons(generators), makeNeurons(copies), SimulationMode.DEFAULT);
+	}
+
+	public void testRunHodgkinHuxley() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[INPUT.length];
+		SpikeGenerator[] copies = new SpikeGenerator[INPUT.length];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new HodgkinHuxleySpikeGenerator();
+			copies[i] = new HodgkinHuxleySpikeGenerator();
+		}
+		Node[] neurons = makeNeurons(generators);
+		NeuronPopulation population = new NeuronPopulation(makeNeurons(copies));
+
+		//step size control is shared across the batch, so spike counts are compared rather than spikes
+		int[] expected = new int[INPUT.length];
+		int[] actual = new int[INPUT.length];
+		float stepSize = .001f;
+		for (int step = 0; step < 200; step++) {
+			float startTime = step * stepSize;
+			float endTime = startTime + stepSize;
+			population.run(INPUT, startTime, endTime, SimulationMode.DEFAULT);
+			for (int i = 0; i < neurons.length; i++) {
+				((SpikingNeuron) neurons[i]).setRadialInput(INPUT[i]);
+				neurons[i].run(startTime, endTime);
+				if (((SpikeOutput) neurons[i].getOrigin(Neuron.AXON).getValues()).getValues()[0]) {
+					expected[i]++;
+				}
+				actual[i] += population.getOutput()[i];
+			}
+		}
+
+		assertTrue(expected[INPUT.length - 1] > 5);
+		for (int i = 0; i < INPUT.length; i++) {
+			assertTrue(Math.abs(expected[i] - actual[i]) <= 1);
+		}
+
+		population.writeState();
+		float[] V = population.getKernel().getState(DynamicalSystemSpikeGenerator.DYNAMICS + "0");
+		assertEquals(V[0], ((HodgkinHuxleySpikeGenerator) copies[0]).getDynamics().getState()[0], 0f);
+	}
+
+	public void testWriteState() throws StructuralException, SimulationException {
+		SpikeGenerator[] generators = new SpikeGenerator[2];
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new IzhikevichSpikeGenerator();
+		}
+		Node[] neurons = makeNeurons(generators);
+		NeuronPopulation population = new NeuronPopulation(neurons);
+		population.run(new float[]{.5f, 1f}, 0f, .003f, SimulationMode.DEFAULT);
+		population.writeState();
+
+		float[] expected = population.getKernel().getState(IzhikevichSpikeGenerator.V).clone();
+		float[] voltage = new NeuronPopulation(neurons).getKernel().getState(IzhikevichSpikeGenerator.V);
+		for (int i = 0; i < generators.length; i++) {
+			assertEquals(expected[i], voltage[i], 0f);
+		}
+		assertTrue(expected[0] != -65f);
+	}
+
+	//checks that a population gives the same output as individually-run neurons
+	private static void assertMatches(Node[] neurons, Node[] copies, SimulationMode mode)
+			throws StructuralException, SimulationException {
+		NeuronPopulation population = new NeuronPopulation(copies);
+		float stepSize = .001f;
+		for (int step = 0; step < 300; step++) {
+			float startTime = step * stepSize;
+			float endTime = startTime + stepSize;
+			population.run(INPUT, startTime, endTime, mode);
+			population.writeOutputs(endTime);
+
+			for (int i = 0; i < neurons.length; i++) {
+				((SpikingNeuron) neurons[i]).setMode(mode);
+				((SpikingNeuron) neurons[i]).setRadialInput(INPUT[i]);
+				neurons[i].run(startTime, endTime);
+				if (mode == SimulationMode.DEFAULT) {
+					boolean expected = ((SpikeOutput) neurons[i].getOrigin(Neuron.AXON).getValues()).getValues()[0];
+					assertEquals(expected, population.getOutput()[i] > 0);
+				} else {
+					float expected = ((RealOutput) neurons[i].getOrigin(Neuron.AXON).getValues()).getValues()[0];
+					TestUtil.assertClose(expected, population.getOutput()[i], .001f);
+				}
+			}
+		}
+	}
+
+	private static Node[] makeNeurons(SpikeGenerator[] generators) {
+		Node[] result = new Node[generators.length];
+		for (int i = 0; i < generators.length; i++) {
+			LinearSynapticIntegrator integrator = new LinearSynapticIntegrator(.001f, Units.ACU);
+			result[i] = new ExpandableSpikingNeuron(integrator, generators[i], 10f, 1f, "neuron" + i);
+		}
+		return result;
+	}
+
+}
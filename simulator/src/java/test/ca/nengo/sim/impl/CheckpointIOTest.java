@@ -0,0 +1,84 @@
+package ca.nengo.sim.impl;
+
+import junit.framework.TestCase;
+
+import ca.nengo.math.Function;
+import ca.nengo.math.impl.GaussianPDF;
+import ca.nengo.math.impl.SineFunction;
+import ca.nengo.model.Network;
+import ca.nengo.model.SimulationException;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.FunctionInput;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.impl.NoiseFactory;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.NEFEnsembleFactory;
+import ca.nengo.model.nef.impl.DecodedOrigin;
+import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import ca.nengo.sim.Simulator;
+import ca.nengo.util.Probe;
+
+/**
+ * Unit tests for CheckpointIO.
+ */
+public class CheckpointIOTest extends TestCase {
+
+	public void testRestore() throws Exception {
+		Network network = makeNetwork(50);
+		Simulator simulator = network.getSimulator();
+		Probe probe = simulator.addProbe("B", "X", true);
+		simulator.run(0f, .1f, .001f);
+		byte[] checkpoint = simulator.checkpoint();
+
+		float[][][] results = new float[2][][];
+		for (int i = 0; i < results.length; i++) {
+			if (i > 0) {
+				simulator.restore(checkpoint);
+			}
+			simulator.run(.1f, .15f, .001f);
+			results[i] = probe.getData().getValues();
+		}
+
+		assertEquals(50, results[0].length);
+		assertEquals(results[0].length, results[1].length);
+		for (int i = 0; i < results[0].length; i++) {
+			assertEquals(results[0][i][0], results[1][i][0], 0f);
+		}
+	}
+
+	public void testMismatch() throws Exception {
+		Simulator simulator = makeNetwork(50).getSimulator();
+		simulator.run(0f, .01f, .001f);
+		byte[] checkpoint = simulator.checkpoint();
+
+		try {
+			makeNetwork(40).getSimulator().restore(checkpoint);
+			fail("Should have thrown exception");
+		} catch (SimulationException e) {} // exception is expected
+
+		try {
+			simulator.restore(new byte[]{1, 2, 3});
+			fail("Should have thrown exception");
+		} catch (SimulationException e) {} // exception is expected
+	}
+
+	private static Network makeNetwork(int neurons) throws Exception {
+		Network network = new NetworkImpl();
+		FunctionInput input = new FunctionInput("input", new Function[]{new SineFunction(10)}, Units.UNK);
+		network.addNode(input);
+
+		NEFEnsembleFactory factory = new NEFEnsembleFactoryImpl();
+		NEFEnsemble a = factory.make("A", neurons, 1);
+		NEFEnsemble b = factory.make("B", neurons, 1);
+		network.addNode(a);
+		network.addNode(b);
+		((DecodedOrigin) a.getOrigin(NEFEnsemble.X)).setNoise(NoiseFactory.makeRandomNoise(1000, new GaussianPDF(0, .1f)));
+
+		a.addDecodedTermination("input", new float[][]{new float[]{1}}, .005f, false);
+		b.addDecodedTermination("A", new float[][]{new float[]{1}}, .01f, false);
+		network.addProjection(input.getOrigin(FunctionInput.ORIGIN_NAME), a.getTermination("input"));
+		network.addProjection(a.getOrigin(NEFEnsemble.X), b.getTermination("A"));
+		return network;
+	}
+
+}
@@ -0,0 +1,146 @@
+package ca.nengo.sim.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Scanner;
+
+import junit.framework.TestCase;
+
+import ca.nengo.model.Network;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.NEFEnsembleFactory;
+import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import ca.nengo.util.Probe;
+
+/**
+ * Unit tests for StreamingProbeWriter.
+ */
+public class StreamingProbeWriterTest extends TestCase {
+
+	public void testCSV() throws Exception {
+		File file = new File("testSPW.csv");
+		Network network = makeNetwork();
+		Probe probeA = network.getSimulator().addProbe("A", "X", true);
+		Probe probeB = network.getSimulator().addProbe("B", "X", false);
+
+		StreamingProbeWriter writer = new StreamingProbeWriter(file, StreamingProbeWriter.Format.CSV, 100, 2);
+		writer.addProbe(probeA);
+		writer.addProbe(probeB);
+		network.getSimulator().addSimulatorListener(writer);
+		network.getSimulator().run(0f, 0.5f, 0.001f);
+
+		Scanner reader = new Scanner(file);
+		int countA = 0, countB = 0;
+		while (reader.hasNextLine()) {
+			String[] fields = reader.nextLine().split(",");
+			assertEquals(4, fields.length);
+			if (fields[0].equals("A:X")) {
+				countA++;
+			} else if (fields[0].equals("B:X")) {
+				countB++;
+			} else {
+				fail("Unexpected probe " + fields[0]);
+			}
+		}
+		reader.close();
+
+		float[] times = probeA.getData().getTimes();
+		assertEquals(times.length, countA);
+		assertEquals(times.length, countB);
+		assertTrue(file.delete());
+	}
+
+	public void testRemoveProbe() throws Exception {
+		File file = new File("testSPW.csv");
+		Network network = makeNetwork();
+		Probe probeA = network.getSimulator().addProbe("A", "X", true);
+		Probe probeB = network.getSimulator().addProbe("B", "X", true);
+
+		StreamingProbeWriter writer = new StreamingProbeWriter(file, StreamingProbeWriter.Format.CSV, 100, 2);
+		writer.addProbe(probeA);
+		writer.addProbe(probeB);
+		writer.addProbe(probeA);
+		assertEquals(2, writer.getProbes().length);
+		writer.removeProbe(probeA);
+		assertEquals(1, writer.getProbes().length);
+		network.getSimulator().addSimulatorListener(writer);
+		network.getSimulator().run(0f, 0.1f, 0.001f);
+
+		Scanner reader = new Scanner(file);
+		int count = 0;
+		while (reader.hasNextLine()) {
+			assertEquals("B:X", reader.nextLine().split(",")[0]);
+			count++;
+		}
+		reader.close();
+
+		assertEquals(probeB.getData().getTimes().length, count);
+		assertTrue(file.delete());
+	}
+
+	public void testBinary() throws Exception {
+		File file = new File("testSPW.bin");
+		Network network = makeNetwork();
+		Probe probe = network.getSimulator().addProbe("A", "X", true);
+
+		StreamingProbeWriter writer = new StreamingProbeWriter(file, StreamingProbeWriter.Format.BINARY);
+		writer.addProbe(probe);
+		network.getSimulator().addSimulatorListener(writer);
+		network.getSimulator().run(0f, 0.2f, 0.001f);
+
+		float[] times = probe.getData().getTimes();
+		float[][] values = probe.getData().getValues();
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		assertEquals(StreamingProbeWriter.BINARY_MAGIC, in.readInt());
+		assertEquals(StreamingProbeWriter.BINARY_VERSION, in.readInt());
+		assertEquals(1, in.readInt());
+		assertEquals("A:X", in.readUTF());
+		for (int i = 0; i < times.length; i++) {
+			assertEquals(0, in.readInt());
+			assertEquals(times[i], in.readFloat());
+			assertEquals(2, in.readInt());
+			assertEquals(values[i][0], in.readFloat());
+			assertEquals(values[i][1], in.readFloat());
+		}
+		assertEquals(-1, in.read());
+		in.close();
+		assertTrue(file.delete());
+	}
+
+	public void testInterrupted() throws Exception {
+		File file = new File("testSPW_interrupted.csv");
+		Network network = makeNetwork();
+		Probe probe = network.getSimulator().addProbe("A", "X", true);
+
+		StreamingProbeWriter writer = new StreamingProbeWriter(file, StreamingProbeWriter.Format.CSV);
+		writer.addProbe(probe);
+		writer.open();
+		writer.sampleCollected(probe, 0f, new float[]{1, 2});
+
+		Thread.currentThread().interrupt();
+		writer.flush();
+		assertTrue(Thread.interrupted()); //flag is restored
+
+		try {
+			writer.close();
+			fail("Should have reported the lost samples");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("1 samples were not written"));
+		}
+		assertTrue(file.delete());
+	}
+
+	private static Network makeNetwork() throws Exception {
+		Network network = new NetworkImpl();
+		NEFEnsembleFactory factory = new NEFEnsembleFactoryImpl();
+		network.addNode(factory.make("A", 50, 2));
+		network.addNode(factory.make("B", 50, 2));
+		return network;
+	}
+
+}
@@ -0,0 +1,56 @@
+package ca.nengo.util.impl;
+
+import ca.nengo.model.Node;
+import ca.nengo.model.impl.PassthroughNode;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for NodeLoadBalancer.
+ */
+public class NodeLoadBalancerTest extends TestCase {
+
+	public void testPartition() {
+		float[] costs = new float[]{1, 100, 1, 1, 50, 50, 1, 1};
+		int[][] queues = NodeLoadBalancer.partition(costs, 2);
+
+		assertEquals(2, queues.length);
+		float[] loads = new float[2];
+		int count = 0;
+		for (int q = 0; q < queues.length; q++) {
+			for (int i = 0; i < queues[q].length; i++) {
+				loads[q] += costs[queues[q][i]];
+				if (i > 0) {
+					assertTrue(costs[queues[q][i-1]] >= costs[queues[q][i]]);
+				}
+			}
+			count += queues[q].length;
+		}
+		assertEquals(costs.length, count);
+		assertEquals(loads[0], loads[1], 2f);
+	}
+
+	public void testClaim() throws Exception {
+		Node[] nodes = new Node[10];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new PassthroughNode("node" + i, 1);
+		}
+		NodeLoadBalancer balancer = new NodeLoadBalancer(nodes, 3);
+
+		for (int step = 0; step < 2; step++) {
+			balancer.startStep();
+			boolean[] claimed = new boolean[nodes.length];
+
+			//thread 0 takes everything, including nodes assigned to the other threads
+			int i;
+			while ((i = balancer.claim(0)) >= 0) {
+				assertFalse(claimed[i]);
+				claimed[i] = true;
+			}
+			for (int j = 0; j < claimed.length; j++) {
+				assertTrue(claimed[j]);
+			}
+			assertEquals(-1, balancer.claim(1));
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package ca.nengo.util.impl;
+
+import junit.framework.TestCase;
+
+import ca.nengo.math.Function;
+import ca.nengo.math.impl.SineFunction;
+import ca.nengo.model.Network;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.FunctionInput;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.model.nef.NEFEnsemble;
+import ca.nengo.model.nef.NEFEnsembleFactory;
+import ca.nengo.model.nef.impl.NEFEnsembleFactoryImpl;
+import ca.nengo.sim.Simulator;
+import ca.nengo.util.Probe;
+
+/**
+ * Unit tests for NodeThreadPool.
+ */
+public class NodeThreadPoolTest extends TestCase {
+
+	public void testBalanceLoad() throws Exception {
+		int threads = NodeThreadPool.getNumJavaThreads();
+		boolean balance = NodeThreadPool.isBalancingLoad();
+		try {
+			Network network = makeNetwork();
+			Simulator simulator = network.getSimulator();
+			Probe[] probes = new Probe[]{simulator.addProbe("B", "X", true), simulator.addProbe("C", "X", true)};
+			NodeThreadPool.setNumJavaThreads(3);
+
+			float[][][][] results = new float[2][probes.length][][];
+			for (int run = 0; run < results.length; run++) {
+				NodeThreadPool.setBalanceLoad(run == 1);
+				network.reset(false);
+				simulator.run(0f, .1f, .001f);
+				for (int i = 0; i < probes.length; i++) {
+					results[run][i] = probes[i].getData().getValues();
+				}
+			}
+
+			for (int i = 0; i < probes.length; i++) {
+				assertEquals(100, results[0][i].length);
+				assertEquals(results[0][i].length, results[1][i].length);
+				for (int j = 0; j < results[0][i].length; j++) {
+					assertEquals(results[0][i][j][0], results[1][i][j][0], 0f);
+				}
+			}
+		} finally {
+			NodeThreadPool.setNumJavaThreads(threads);
+			NodeThreadPool.setBalanceLoad(balance);
+		}
+	}
+
+	private static Network makeNetwork() throws Exception {
+		Network network = new NetworkImpl();
+		FunctionInput input = new FunctionInput("input", new Function[]{new SineFunction(10)}, Units.UNK);
+		network.addNode(input);
+
+		NEFEnsembleFactory factory = new NEFEnsembleFactoryImpl();
+		NEFEnsemble a = factory.make("A", 100, 1);
+		NEFEnsemble b = factory.make("B", 50, 1);
+		NEFEnsemble c = factory.make("C", 20, 1);
+		network.addNode(a);
+		network.addNode(b);
+		network.addNode(c);
+
+		a.addDecodedTermination("input", new float[][]{new float[]{1}}, .005f, false);
+		b.addDecodedTermination("A", new float[][]{new float[]{1}}, .01f, false);
+		c.addDecodedTermination("A", new float[][]{new float[]{-1}}, .01f, false);
+		c.addDecodedTermination("B", new float[][]{new float[]{1}}, .01f, false);
+		network.addProjection(input.getOrigin(FunctionInput.ORIGIN_NAME), a.getTermination("input"));
+		network.addProjection(a.getOrigin(NEFEnsemble.X), b.getTermination("A"));
+		network.addProjection(a.getOrigin(NEFEnsemble.X), c.getTermination("A"));
+		network.addProjection(b.getOrigin(NEFEnsemble.X), c.getTermination("B"));
+		return network;
+	}
+
+}
@@ -0,0 +1,76 @@
+package ca.nengo.util.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for PhaseBarrier.
+ */
+public class PhaseBarrierTest extends TestCase {
+
+	public void testAwait() throws Exception {
+		for (int spins = 0; spins <= 100; spins += 100) {
+			final int parties = 4;
+			final int phases = 1000;
+			final PhaseBarrier barrier = new PhaseBarrier(parties, spins);
+			final AtomicInteger counter = new AtomicInteger(0);
+			final AtomicInteger errors = new AtomicInteger(0);
+
+			Thread[] threads = new Thread[parties];
+			for (int i = 0; i < parties; i++) {
+				threads[i] = new Thread() {
+					public void run() {
+						try {
+							for (int p = 0; p < phases; p++) {
+								counter.incrementAndGet();
+								barrier.await();
+								if (counter.get() < (p + 1) * parties) {
+									errors.incrementAndGet();
+								}
+								barrier.await();
+							}
+						} catch (InterruptedException e) {
+							errors.incrementAndGet();
+						}
+					}
+				};
+				threads[i].start();
+			}
+			for (int i = 0; i < parties; i++) {
+				threads[i].join(10000);
+			}
+
+			assertEquals(0, errors.get());
+			assertEquals(parties * phases, counter.get());
+		}
+	}
+
+	public void testBreakBarrier() throws Exception {
+		final PhaseBarrier barrier = new PhaseBarrier(2, 0);
+		final AtomicInteger interrupted = new AtomicInteger(0);
+
+		Thread waiter = new Thread() {
+			public void run() {
+				try {
+					barrier.await();
+				} catch (InterruptedException e) {
+					interrupted.incrementAndGet();
+				}
+			}
+		};
+		waiter.start();
+		Thread.sleep(50);
+		barrier.breakBarrier();
+		waiter.join(10000);
+
+		assertEquals(1, interrupted.get());
+		assertTrue(barrier.isBroken());
+		try {
+			barrier.await();
+			fail("Should have thrown an exception");
+		} catch (InterruptedException e) {
+		}
+	}
+
+}
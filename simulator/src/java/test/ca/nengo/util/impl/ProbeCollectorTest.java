@@ -0,0 +1,66 @@
+package ca.nengo.util.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.nengo.math.Function;
+import ca.nengo.math.impl.SineFunction;
+import ca.nengo.model.Network;
+import ca.nengo.model.Units;
+import ca.nengo.model.impl.FunctionInput;
+import ca.nengo.model.impl.NetworkImpl;
+import ca.nengo.util.Probe;
+import ca.nengo.util.TimeSeries;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for ProbeCollector.
+ */
+public class ProbeCollectorTest extends TestCase {
+
+	protected void tearDown() throws Exception {
+		ProbeCollector.setAsynchronous(false);
+		super.tearDown();
+	}
+
+	public void testCollect() throws Exception {
+		FunctionInput input = new FunctionInput("input", new Function[]{new SineFunction(10)}, Units.UNK);
+		Probe probe = new ProbeImpl();
+		probe.connect(input, FunctionInput.STATE_NAME, true);
+		List<Probe> probes = new ArrayList<Probe>();
+		probes.add(probe);
+
+		ProbeCollector collector = new ProbeCollector(probes, 2);
+		for (int i = 0; i < 500; i++) {
+			input.run(i * .001f, (i + 1) * .001f);
+			collector.collect((i + 1) * .001f);
+		}
+		collector.close();
+
+		TimeSeries data = probe.getData();
+		assertEquals(500, data.getTimes().length);
+		for (int i = 0; i < 500; i++) {
+			assertEquals((i + 1) * .001f, data.getTimes()[i], 1e-6f);
+			assertEquals((float) Math.sin(10 * data.getTimes()[i]), data.getValues()[i][0], 1e-5f);
+		}
+	}
+
+	public void testSimulator() throws Exception {
+		TimeSeries[] results = new TimeSeries[2];
+		for (int c = 0; c < 2; c++) {
+			ProbeCollector.setAsynchronous(c == 1);
+			Network network = new NetworkImpl();
+			network.addNode(new FunctionInput("input", new Function[]{new SineFunction(10)}, Units.UNK));
+			Probe probe = network.getSimulator().addProbe("input", FunctionInput.STATE_NAME, true);
+			network.getSimulator().run(0f, .5f, .001f);
+			results[c] = probe.getData();
+		}
+
+		assertEquals(results[0].getTimes().length, results[1].getTimes().length);
+		for (int i = 0; i < results[0].getTimes().length; i++) {
+			assertEquals(results[0].getTimes()[i], results[1].getTimes()[i]);
+			assertEquals(results[0].getValues()[i][0], results[1].getValues()[i][0]);
+		}
+	}
+
+}
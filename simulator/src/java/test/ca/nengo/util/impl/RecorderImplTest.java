@@ -3,6 +3,8 @@
  */
 package ca.nengo.util.impl;
 
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.util.Properties;
 
 import ca.nengo.model.Probeable;
@@ -66,6 +68,33 @@ public class RecorderImplTest extends TestCase {
 		assertEquals(2, ts.getValues().length);		
 	}
 	
+	public void testGetDataWindow() throws SimulationException {
+		myRecorder.connect(new MockProbeable(1f), "x", true);
+		for (int i = 0; i < 10; i++) {
+			myRecorder.collect(i); //the mock always reports time 0
+		}
+		assertEquals(10, myRecorder.getData(0f, 1f).getValues().length);
+		assertEquals(0, myRecorder.getData(1f, 2f).getValues().length);
+	}
+	
+	public void testFilters() throws SimulationException {
+		myRecorder.connect(new MockProbeable(1f), "x", true);
+		myRecorder.setFilters(new DecimatingSampleFilter(.01f));
+		for (int i = 0; i < 10; i++) {
+			myRecorder.collect(i); //the mock always reports time 0, so only the first is kept
+		}
+		assertEquals(1, myRecorder.getData().getValues().length);
+		assertEquals(1, myRecorder.getFilters().length);
+		
+		myRecorder.reset();
+		myRecorder.collect(10);
+		assertEquals(1, myRecorder.getData().getValues().length);
+		
+		myRecorder.setFilters();
+		myRecorder.collect(11);
+		assertEquals(2, myRecorder.getData().getValues().length);
+	}
+	
 	public void testRetention() throws SimulationException {
 		myRecorder.connect(new MockProbeable(1f), "x", true);
 		myRecorder.collect(1);
@@ -81,6 +110,32 @@ public class RecorderImplTest extends TestCase {
 		ts = myRecorder.getData();
 		assertEquals(1, ts.getValues().length);
 	}
+	
+	public void testReadOldVersion() throws Exception {
+		//saved by the earlier version, which kept samples in a List
+		InputStream in = getClass().getResourceAsStream("probe-baseline.ser");
+		ProbeImpl[] probes;
+		try {
+			probes = (ProbeImpl[]) new ObjectInputStream(in).readObject();
+		} finally {
+			in.close();
+		}
+		
+		TimeSeries recorded = probes[0].getData();
+		assertEquals(3, recorded.getTimes().length);
+		assertEquals(.003f, recorded.getTimes()[2]);
+		assertEquals(6f, recorded.getValues()[2][1]);
+		
+		TimeSeries latest = probes[1].getData();
+		assertEquals(1, latest.getTimes().length);
+		assertEquals(7f, latest.getValues()[0][0]);
+		
+		assertEquals(0, probes[0].getFilters().length);
+		probes[0].collect(new float[]{.004f}, new float[][]{{7, 8}}, new Units[]{Units.UNK, Units.UNK});
+		assertEquals(4, probes[0].getData().getValues().length);
+		probes[0].reset();
+		assertEquals(0, probes[0].getData().getValues().length);
+	}
  
 	private static class MockProbeable implements Probeable {
 
@@ -0,0 +1,81 @@
+package ca.nengo.util.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.SampleFilter;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the SampleFilter implementations.
+ */
+public class SampleFilterTest extends TestCase {
+
+	public void testExponential() {
+		ExponentialSampleFilter filter = new ExponentialSampleFilter(.01f);
+		List<float[]> output = run(filter, 1000, .001f, 1f);
+		assertEquals(1000, output.size());
+		assertEquals(0f, output.get(0)[0]);
+		assertEquals(1 - Math.exp(-1), output.get(10)[0], .001);
+		assertEquals(1f, output.get(999)[0], .0001f);
+	}
+
+	public void testAlpha() {
+		AlphaSampleFilter filter = new AlphaSampleFilter(.01f);
+		List<float[]> output = run(filter, 1000, .001f, 1f);
+		assertEquals(1 - 2 * Math.exp(-1), output.get(10)[0], .001); //step response at t = tau
+		assertEquals(1f, output.get(999)[0], .0001f);
+	}
+
+	public void testDecimating() {
+		DecimatingSampleFilter filter = new DecimatingSampleFilter(.01f);
+		List<float[]> output = run(filter, 1000, .001f, 1f);
+		assertEquals(100, output.size());
+
+		filter.reset(false);
+		assertEquals(10, run(filter, 100, .001f, 1f).size());
+	}
+
+	public void testEnvelope() {
+		EnvelopeSampleFilter filter = new EnvelopeSampleFilter(.01f);
+		final List<float[]> output = new ArrayList<float[]>();
+		SampleFilter.Sink sink = new SampleFilter.Sink() {
+			public void accept(float time, float[] values) {
+				output.add(values.clone());
+			}
+		};
+		for (int i = 0; i < 100; i++) {
+			filter.process(i * .001f, new float[]{i, -i}, sink);
+		}
+
+		assertEquals(10, output.size());
+		float[] first = output.get(0);
+		assertEquals(6, first.length);
+		assertEquals(0f, first[0]);
+		assertEquals(-9f, first[1]);
+		assertEquals(4.5f, first[2]);
+		assertEquals(-4.5f, first[3]);
+		assertEquals(9f, first[4]);
+		assertEquals(0f, first[5]);
+		assertEquals(10f, output.get(1)[0]);
+
+		Units[] units = filter.getOutputUnits(new Units[]{Units.mV, Units.UNK});
+		assertEquals(6, units.length);
+		assertEquals(Units.mV, units[4]);
+	}
+
+	private static List<float[]> run(SampleFilter filter, int steps, float dt, float value) {
+		final List<float[]> result = new ArrayList<float[]>();
+		SampleFilter.Sink sink = new SampleFilter.Sink() {
+			public void accept(float time, float[] values) {
+				result.add(values.clone());
+			}
+		};
+		for (int i = 0; i < steps; i++) {
+			filter.process(i * dt, new float[]{value}, sink);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,68 @@
+package ca.nengo.util.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import ca.nengo.model.Units;
+import ca.nengo.util.TimeSeries;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for SampleStore.
+ */
+public class SampleStoreTest extends TestCase {
+
+	public void testAppend() {
+		for (int offHeap = 0; offHeap < 2; offHeap++) {
+			SampleStore store = fill(new SampleStore(3, offHeap == 1), 20000);
+			assertEquals(20000, store.size());
+			assertEquals(12345f * .001f, store.getTime(12345), 1e-6f);
+
+			float[][] values = store.getValues(9999, 10002);
+			assertEquals(3, values.length);
+			assertEquals(10000f, values[1][0]);
+			assertEquals(-10000f, values[1][2]);
+		}
+	}
+
+	public void testViews() {
+		SampleStore store = fill(new SampleStore(3, false), 5000);
+		Units[] units = Units.uniform(Units.UNK, 3);
+
+		TimeSeries all = store.getView(units, "test");
+		fill(store, 10); //not included in the earlier view
+		assertEquals(5000, all.getTimes().length);
+		assertEquals(4999f, all.getValues()[4999][0]);
+		assertEquals("test", all.getName());
+
+		TimeSeries window = store.getView(1f, 2f, units, "test");
+		assertEquals(1000, window.getTimes().length);
+		assertEquals(1000f, window.getValues()[0][0]);
+	}
+
+	public void testSerialization() throws Exception {
+		SampleStore store = fill(new SampleStore(3, true), 3000);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(store);
+		out.close();
+		SampleStore copy = (SampleStore) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		assertEquals(3000, copy.size());
+		assertTrue(copy.isOffHeap());
+		assertEquals(store.getTime(2999), copy.getTime(2999));
+		assertEquals(store.getValues(2999, 3000)[0][1], copy.getValues(2999, 3000)[0][1]);
+	}
+
+	private static SampleStore fill(SampleStore store, int n) {
+		int start = store.size();
+		for (int i = start; i < start + n; i++) {
+			store.append(i * .001f, new float[]{i, 0, -i});
+		}
+		return store;
+	}
+
+}
@@ -0,0 +1,78 @@
+package ca.nengo.util.impl;
+
+import java.util.Random;
+
+import ca.nengo.util.SpikePattern;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for SpikeEventPattern.
+ */
+public class SpikeEventPatternTest extends TestCase {
+
+	public void testGetNumNeurons() {
+		SpikeEventPattern sp = new SpikeEventPattern(10);
+		assertEquals(10, sp.getNumNeurons());
+		assertEquals(0, sp.getSpikeTimes(3).length);
+	}
+
+	public void testConcurrentReads() throws Exception {
+		final SpikeEventPattern sp = new SpikeEventPattern(100, true);
+		Thread writer = new Thread() {
+			public void run() {
+				for (int step = 0; step < 20000; step++) {
+					for (int i = step % 3; i < 100; i += 3) {
+						sp.addSpike(i, step * .001f);
+					}
+				}
+			}
+		};
+		writer.start();
+
+		while (writer.isAlive()) {
+			float[] times = sp.getSpikeTimes(50);
+			for (int i = 1; i < times.length; i++) {
+				assertTrue(times[i] > times[i-1]);
+			}
+		}
+		writer.join();
+		assertEquals(20000 / 3, sp.getSpikeTimes(50).length);
+	}
+
+	public void testGetSpikeTimes() throws Exception {
+		for (int c = 0; c < 2; c++) {
+			SpikeEventPattern sp = new SpikeEventPattern(1000, c == 1);
+			SpikePatternImpl expected = new SpikePatternImpl(1000);
+
+			Random random = new Random(1);
+			for (int step = 0; step < 200; step++) {
+				float time = step * .001f;
+				for (int i = 0; i < 1000; i++) {
+					if (random.nextFloat() < .05f) {
+						sp.addSpike(i, time);
+						expected.addSpike(i, time);
+					}
+				}
+				if (step == 100) {
+					sp.addSpike(500, time + .0005f); //eg a precise spike time, out of neuron order
+					expected.addSpike(500, time + .0005f);
+					sp.addSpike(7, time + .0005f);
+					expected.addSpike(7, time + .0005f);
+					assertEquals(expected.getSpikeTimes(500).length, sp.getSpikeTimes(500).length);
+				}
+			}
+
+			SpikePattern copy = sp.clone();
+			for (int i = 0; i < 1000; i++) {
+				float[] times = sp.getSpikeTimes(i);
+				float[] expectedTimes = expected.getSpikeTimes(i);
+				assertEquals(expectedTimes.length, times.length);
+				for (int j = 0; j < times.length; j++) {
+					assertEquals(expectedTimes[j], times[j]);
+				}
+				assertEquals(times.length, copy.getSpikeTimes(i).length);
+			}
+		}
+	}
+
+}